@@ -203,6 +203,34 @@ public class BasicGroovyBuildTests extends GroovierBuilderTests {
 		//System.out.println(">>"+classpathForProjectD);
 	}
 
+	/**
+	 * The classpath for the ast transform loader is worked out once, and again only once the classpath of the project or of a
+	 * project it depends on has changed.
+	 */
+	public void testAstTransformClasspathCached() throws JavaModelException {
+		IPath projectAPath = env.addProject("ProjectA"); //$NON-NLS-1$
+		env.addExternalJars(projectAPath, Util.getJavaClassLibs());
+		env.setOutputFolder(projectAPath, "bin"); //$NON-NLS-1$
+		IPath projectBPath = env.addProject("ProjectB"); //$NON-NLS-1$
+		env.addExternalJars(projectBPath, Util.getJavaClassLibs());
+		env.setOutputFolder(projectBPath, "bin"); //$NON-NLS-1$
+		env.addRequiredProject(projectBPath, projectAPath, new IPath[]{}/*include all*/, new IPath[]{}/*exclude none*/, true);
+
+		String classpath = CompilerUtils.calculateClasspath(env.getJavaProject(projectBPath));
+		assertSame("An unchanged classpath should not be worked out again", classpath,
+				CompilerUtils.calculateClasspath(env.getJavaProject(projectBPath)));
+
+		env.setOutputFolder(projectBPath, "out"); //$NON-NLS-1$
+		classpath = CompilerUtils.calculateClasspath(env.getJavaProject(projectBPath));
+		assertTrue("Expected the new output folder: " + classpath, classpath.endsWith("out" + File.pathSeparator));
+
+		// a change to the project depended on does not change the resolved classpath of ProjectB
+		env.addInternalJar(projectAPath, "exported.jar", new byte[0], true); //$NON-NLS-1$
+		classpath = CompilerUtils.calculateClasspath(env.getJavaProject(projectBPath));
+		assertTrue("Expected the jar exported by ProjectA: " + classpath, classpath.indexOf("exported.jar") != -1);
+		assertSame(classpath, CompilerUtils.calculateClasspath(env.getJavaProject(projectBPath)));
+	}
+
 	// build hello world and run it
 	public void testBuildJavaHelloWorld() throws JavaModelException {
 		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
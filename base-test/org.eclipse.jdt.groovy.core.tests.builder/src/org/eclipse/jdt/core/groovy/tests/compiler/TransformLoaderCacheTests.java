@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2012 SpringSource and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.jdt.core.groovy.tests.compiler;
+
+import groovy.lang.GroovyClassLoader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.codehaus.jdt.groovy.internal.compiler.ast.TransformLoaderCache;
+
+/**
+ * Tests the sharing, reference counting and eviction behaviour of the pool of AST transform loaders
+ */
+public class TransformLoaderCacheTests extends TestCase {
+
+	private File tmpDir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		tmpDir = File.createTempFile("transformLoaderCache", "");
+		tmpDir.delete();
+		tmpDir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = tmpDir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		tmpDir.delete();
+		super.tearDown();
+	}
+
+	public void testProjectsWithSameClasspathShareLoader() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(4);
+		String classpath = jar("a.jar", 10) + File.pathSeparator + jar("b.jar", 20);
+		GroovyClassLoader one = cache.acquire("one", classpath);
+		GroovyClassLoader two = cache.acquire("two", classpath + File.pathSeparator + classpath);
+		assertSame("Duplicate entries should not affect the fingerprint", one, two);
+		assertSame(one, cache.acquire("one", classpath));
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getRetainedLoaderCount());
+	}
+
+	public void testChangedJarGetsNewLoader() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(4);
+		String classpath = jar("a.jar", 10);
+		GroovyClassLoader before = cache.acquire("one", classpath);
+		jar("a.jar", 30);
+		cache.entriesChanged(Collections.singleton(classpath));
+		GroovyClassLoader after = cache.acquire("one", classpath);
+		assertNotSame(before, after);
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testUnreportedChangeKeepsLoader() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(4);
+		String classpath = jar("a.jar", 10);
+		GroovyClassLoader before = cache.acquire("one", classpath);
+		jar("a.jar", 30);
+		assertSame("The entries should only be looked at once a change is reported", before, cache.acquire("one", classpath));
+		assertNotSame(before, cache.acquire("one", classpath, true));
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testReportedChangeWithSameFingerprintKeepsLoader() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(4);
+		String classpath = jar("a.jar", 10) + File.pathSeparator + jar("b.jar", 10);
+		GroovyClassLoader before = cache.acquire("one", classpath);
+		cache.entriesChanged(Collections.singleton(new File(tmpDir, "b.jar").getPath()));
+		assertSame(before, cache.acquire("one", classpath));
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testIdleLoaderReusedAfterRelease() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(4);
+		String classpath = jar("a.jar", 10);
+		GroovyClassLoader before = cache.acquire("one", classpath);
+		cache.release("one", false);
+		assertNull(cache.getClasspath("one"));
+		assertSame(before, cache.acquire("two", classpath));
+	}
+
+	public void testLeastRecentlyUsedIdleLoaderEvicted() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(1);
+		String first = jar("a.jar", 10);
+		String second = jar("b.jar", 10);
+		GroovyClassLoader firstLoader = cache.acquire("one", first);
+		cache.acquire("two", second);
+		cache.release("one", false);
+		cache.release("two", false);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(1, cache.getRetainedLoaderCount());
+		assertNotSame("Eldest idle loader should have been evicted", firstLoader, cache.acquire("three", first));
+	}
+
+	public void testLoaderInUseIsNotClosed() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(0);
+		String classpath = jar("a.jar", 10);
+		GroovyClassLoader loader = cache.acquire("one", classpath);
+		cache.acquire("two", classpath);
+		cache.release("one", true);
+		assertEquals(0, cache.getEvictions());
+		assertSame(loader, cache.acquire("two", classpath));
+		cache.release("two", true);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(0, cache.getRetainedLoaderCount());
+	}
+
+	public void testFolderClasspathNotRetainedOnceIdle() throws Exception {
+		TransformLoaderCache cache = new TransformLoaderCache(4);
+		String classpath = tmpDir.getAbsolutePath();
+		cache.acquire("one", classpath);
+		cache.release("one", false);
+		assertEquals(0, cache.getRetainedLoaderCount());
+	}
+
+	private String jar(String name, int size) throws IOException {
+		File f = new File(tmpDir, name);
+		FileOutputStream fos = new FileOutputStream(f);
+		try {
+			fos.write(new byte[size]);
+		} finally {
+			fos.close();
+		}
+		return f.getAbsolutePath();
+	}
+}
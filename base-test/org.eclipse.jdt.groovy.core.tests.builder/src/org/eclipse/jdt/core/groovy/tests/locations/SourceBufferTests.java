@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2012 SpringSource and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.jdt.core.groovy.tests.locations;
+
+import groovy.lang.GroovyClassLoader;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.codehaus.groovy.antlr.LineColumn;
+import org.codehaus.groovy.antlr.LocationSupport;
+import org.codehaus.groovy.antlr.SourceBuffer;
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
+import org.eclipse.jdt.groovy.core.util.GroovyUtils;
+
+/**
+ * Checks that a {@link SourceBuffer} working over the original char[] (and the line separators JDT computed for it) produces
+ * the same locations as one that records everything written to it
+ */
+public class SourceBufferTests extends TestCase {
+
+    public void testLineSeparators() throws Exception {
+        assertEquals("[]", Arrays.toString(GroovyUtils.getSourceLineSeparatorsIn("".toCharArray())));
+        assertEquals("[1, 3, 5]", Arrays.toString(GroovyUtils.getSourceLineSeparatorsIn("a\nb\rc\r\nd".toCharArray())));
+        assertEquals("[0, 1, 2]", Arrays.toString(GroovyUtils.getSourceLineSeparatorsIn("\n\r\r".toCharArray())));
+    }
+
+    public void testLocationsMatch() throws Exception {
+        checkLocations("");
+        checkLocations("def x = 7");
+        checkLocations("def x = 7\n");
+        checkLocations("def x = 7\n  x++\n  def y = []");
+        checkLocations("def x = 7\r\n  x++\r\n\r\n  def y = []\r\n");
+        checkLocations("def x = 7\r  x++\r\r  def y = []\r");
+    }
+
+    public void testLocationsMatchWhenOnlyPartWritten() throws Exception {
+        String contents = "class A {\r\n  def x\r\n}\r\n";
+        for (int written = 0; written <= contents.length(); written++) {
+            assertEquals("Written " + written, toString(classicBuffer(contents, written).getLocationSupport()),
+                    toString(zeroCopyBuffer(contents, written).getLocationSupport()));
+        }
+    }
+
+    public void testWrittenTextDiffersFromSource() throws Exception {
+        // as if the lexer had turned "\\u0041" into "A"
+        char[] contents = "def \\u0041 = 1\nA++".toCharArray();
+        SourceBuffer buffer = new SourceBuffer(contents, GroovyUtils.getSourceLineSeparatorsIn(contents));
+        String written = "def A = 1\nA++";
+        for (int i = 0; i < written.length(); i++) {
+            buffer.write(written.charAt(i));
+        }
+        assertEquals("A = 1\nA", buffer.getSnippet(new LineColumn(1, 5), new LineColumn(2, 2)));
+        assertEquals(2, buffer.getLocationSupport().getEndLine());
+    }
+
+    public void testSnippets() throws Exception {
+        String contents = "def x = 7\r\n  x++\n  def y = []";
+        SourceBuffer buffer = zeroCopyBuffer(contents, contents.length());
+        assertNull(buffer.getSnippet(new LineColumn(1, 1), new LineColumn(1, 1)));
+        assertEquals("x = 7", buffer.getSnippet(new LineColumn(1, 5), new LineColumn(1, 10)));
+        assertEquals("7\r\n  x++", buffer.getSnippet(new LineColumn(1, 9), new LineColumn(2, 6)));
+        assertEquals("x++\n  def", buffer.getSnippet(new LineColumn(2, 3), new LineColumn(3, 6)));
+        assertEquals(contents, buffer.getSnippet(new LineColumn(1, 1), new LineColumn(3, 13)));
+        assertEquals("", buffer.getSnippet(new LineColumn(3, 1), new LineColumn(2, 1)));
+    }
+
+    public void testParseFromCharArray() throws Exception {
+        String content = "def x = 7\r\n  x++\r\n  def y = '\\u0041'\r\n  y";
+        ModuleNode fromString = parse(new SourceUnit("Foo", content, new CompilerConfiguration(), new GroovyClassLoader(),
+                new ErrorCollector(new CompilerConfiguration())));
+        char[] chars = content.toCharArray();
+        CompilerConfiguration config = new CompilerConfiguration();
+        ModuleNode fromChars = parse(new SourceUnit("Foo", new CharArrayReaderSource(chars,
+                GroovyUtils.getSourceLineSeparatorsIn(chars), config), config, new GroovyClassLoader(), new ErrorCollector(config)));
+
+        assertEquals(content.length(), fromChars.getEnd());
+        assertEquals(fromString.getStatementBlock().getStatements().size(), fromChars.getStatementBlock().getStatements().size());
+        for (int i = 0; i < fromString.getStatementBlock().getStatements().size(); i++) {
+            ASTNode expected = (ASTNode) fromString.getStatementBlock().getStatements().get(i);
+            ASTNode actual = (ASTNode) fromChars.getStatementBlock().getStatements().get(i);
+            assertEquals("Start of statement " + i, expected.getStart(), actual.getStart());
+            assertEquals("End of statement " + i, expected.getEnd(), actual.getEnd());
+        }
+    }
+
+    private void checkLocations(String contents) {
+        LocationSupport expected = classicBuffer(contents, contents.length()).getLocationSupport();
+        LocationSupport actual = zeroCopyBuffer(contents, contents.length()).getLocationSupport();
+        assertEquals(toString(expected), toString(actual));
+        assertEquals(contents.length(), actual.getEnd());
+    }
+
+    private SourceBuffer classicBuffer(String contents, int written) {
+        SourceBuffer buffer = new SourceBuffer();
+        write(buffer, contents, written);
+        return buffer;
+    }
+
+    private SourceBuffer zeroCopyBuffer(String contents, int written) {
+        char[] chars = contents.toCharArray();
+        SourceBuffer buffer = new SourceBuffer(chars, GroovyUtils.getSourceLineSeparatorsIn(chars));
+        write(buffer, contents, written);
+        return buffer;
+    }
+
+    private void write(SourceBuffer buffer, String contents, int written) {
+        for (int i = 0; i < written; i++) {
+            buffer.write(contents.charAt(i));
+        }
+        if (written == contents.length()) {
+            buffer.write(-1);
+        }
+    }
+
+    private String toString(LocationSupport locations) {
+        StringBuilder sb = new StringBuilder();
+        for (int line = 1; line <= locations.getEndLine() + 1; line++) {
+            sb.append(locations.findOffset(line, 1)).append(' ');
+        }
+        return sb.append("end=").append(locations.getEnd()).toString();
+    }
+
+    private ModuleNode parse(SourceUnit sourceUnit) {
+        sourceUnit.parse();
+        sourceUnit.completePhase();
+        sourceUnit.convert();
+        return sourceUnit.getAST();
+    }
+}
@@ -11,13 +11,18 @@
 
 package org.eclipse.jdt.core.groovy.tests.model;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 import junit.framework.Test;
 
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.codehaus.jdt.groovy.model.ModuleNodeMapper;
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.core.IAnnotatable;
@@ -202,6 +207,150 @@ public class GroovyCompilationUnitTests extends AbstractGroovyTypeRootTests {
         assertTrue("Multiple calls to getModuleNode should return the same object after a call to reconcile with no force problem detection", node1 == node2);
     }
     
+    public void testGetModuleNode_11() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        final GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        unit1.becomeWorkingCopy(null);
+        unit1.getBuffer().append(" ");
+        final ModuleNode[] nodes = new ModuleNode[4];
+        Thread[] threads = new Thread[nodes.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    nodes[index] = unit1.getModuleNode();
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ModuleNode node = unit1.getModuleNode();
+        unit1.discardWorkingCopy();
+        for (ModuleNode other : nodes) {
+            assertTrue("Concurrent calls to getModuleNode should all see the same reconciled module node", node == other);
+        }
+        assertTrue("ModuleNodeMapper should be empty when there are no working copies", ModuleNodeMapper.isEmpty());
+    }
+    
+    public void testGetModuleNode_12() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        env.addGroovyClass(groovyFile.getParent().getFullPath(), "Other", "package p1\nclass Other { }");
+        final GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        final GroovyCompilationUnit unit2 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(getFile("Project/src/p1/Other.groovy"));
+        final ModuleNodeMapper mapper = ModuleNodeMapper.getInstance();
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final ModuleNodeInfo[] infos = new ModuleNodeInfo[2];
+        // each thread computes its unit and, whilst doing so, needs the unit the other thread is computing
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            final GroovyCompilationUnit first = i == 0 ? unit1 : unit2;
+            final GroovyCompilationUnit second = i == 0 ? unit2 : unit1;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    infos[index] = mapper.getOrCompute(first, false, new Callable<ModuleNodeInfo>() {
+                        public ModuleNodeInfo call() throws Exception {
+                            bothStarted.countDown();
+                            bothStarted.await();
+                            return mapper.getOrCompute(second, false, new Callable<ModuleNodeInfo>() {
+                                public ModuleNodeInfo call() {
+                                    return mapper.new ModuleNodeInfo(null, null);
+                                }
+                            });
+                        }
+                    });
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10000);
+            assertFalse("Threads computing units that need each other should not deadlock", thread.isAlive());
+        }
+        assertNotNull(infos[0]);
+        assertNotNull(infos[1]);
+    }
+    
+    public void testGetModuleNode_13() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        final GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        final ModuleNodeMapper mapper = ModuleNodeMapper.getInstance();
+        final ModuleNodeInfo[] seen = new ModuleNodeInfo[1];
+        final boolean[] waited = new boolean[1];
+        // whilst the module info is computed in a temporary working copy, other threads should not see it
+        ModuleNodeInfo info = mapper.getOrCompute(unit1, true, new Callable<ModuleNodeInfo>() {
+            public ModuleNodeInfo call() throws Exception {
+                unit1.becomeWorkingCopy(null);
+                try {
+                    unit1.reconcile(true, null);
+                    Thread other = new Thread() {
+                        @Override
+                        public void run() {
+                            seen[0] = unit1.getModuleInfo(false);
+                        }
+                    };
+                    other.start();
+                    other.join(500);
+                    waited[0] = other.isAlive();
+                    ModuleNodeInfo own = unit1.getModuleInfo(false);
+                    assertNotNull("The computing thread should see its own module info", own);
+                    return own;
+                } finally {
+                    unit1.discardWorkingCopy();
+                }
+            }
+        });
+        assertTrue("Another thread should wait for a module info that is still being computed", waited[0]);
+        for (int i = 0; i < 100 && seen[0] == null; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue("The waiting thread should get the completed module info", seen[0] == info);
+        assertTrue("ModuleNodeMapper should be empty when there are no working copies", ModuleNodeMapper.isEmpty());
+    }
+    
+    public void testGetSharedModuleInfo() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        ModuleNode node1 = unit1.getSharedModuleInfo().module;
+        GroovyCompilationUnit unit2 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        ModuleNode node2 = unit2.getSharedModuleInfo().module;
+        assertTrue("Shared module node of an unchanged closed file should be reused", node1 == node2);
+        assertTrue("ModuleNodeMapper should be empty when there are no working copies", ModuleNodeMapper.isEmpty());
+
+        groovyFile.setContents(new ByteArrayInputStream("class Other { }".getBytes()), true, false, null);
+        ModuleNode node3 = unit1.getSharedModuleInfo().module;
+        assertFalse("Shared module node should be discarded when the file changes", node1 == node3);
+        assertEquals("Other", ((ClassNode) node3.getClasses().get(0)).getName());
+    }
+    
+    public void testGetSharedModuleInfoAfterOtherChanges() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        ModuleNode node1 = unit1.getSharedModuleInfo().module;
+
+        env.addFile(groovyFile.getParent().getFullPath(), "notes.txt", "not a source");
+        ModuleNode node2 = unit1.getSharedModuleInfo().module;
+        assertTrue("Shared module node should be kept when a file that is not a source changes", node1 == node2);
+
+        env.addGroovyClass(groovyFile.getParent().getFullPath(), "Other", "package p1\nclass Other { }");
+        ModuleNode node3 = unit1.getSharedModuleInfo().module;
+        assertFalse("Shared module node should be discarded when another source changes", node1 == node3);
+    }
+    
+    public void testDiscardSharedModuleInfos() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        ModuleNode node1 = unit1.getSharedModuleInfo().module;
+
+        GroovyCompilationUnit.discardSharedModuleInfos(groovyFile.getProject());
+        ModuleNode node2 = unit1.getSharedModuleInfo().module;
+        assertFalse("Shared module node should be discarded when the type lookups of its project change", node1 == node2);
+    }
+    
     public void testGetNewModuleNode() throws Exception {
         IFile groovyFile = createSimpleGroovyProject();
         GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
@@ -16,14 +16,20 @@
 
 package org.eclipse.jdt.core.groovy.tests.search;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.Test;
 
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.tests.util.GroovyUtils;
+import org.eclipse.jdt.groovy.search.ITypeRequestor;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
+import org.eclipse.jdt.groovy.search.TypeLookupResult;
+import org.eclipse.jdt.groovy.search.TypeLookupResultCache;
 
 /**
  * Lots of tests to see that expressions have the proper type associated with them
@@ -1171,6 +1177,26 @@ public class InferencingTests extends AbstractInferencingTest {
         assertDeclaringType(contents, textStart, textEnd, "org.codehaus.groovy.runtime.DefaultGroovyMethods");
     }
     
+    public void testCategoriesInDeclarationOrder1() throws Exception {
+        String contents = "class Cat1 { static String pick(String self) { '' } }\n" +
+                "class Cat2 { static Integer pick(String self) { 0 } }\n" +
+                "use (Cat1) { use (Cat2) { 'x'.pick() } }";
+        int start = contents.lastIndexOf("pick");
+        int end = start + "pick".length();
+        assertType(contents, start, end, "java.lang.String");
+        assertDeclaringType(contents, start, end, "Cat1");
+    }
+
+    public void testCategoriesInDeclarationOrder2() throws Exception {
+        String contents = "class Cat1 { static String pick(String self) { '' } }\n" +
+                "class Cat2 { static Integer pick(String self) { 0 } }\n" +
+                "use (Cat2) { use (Cat1) { 'x'.pick() } }";
+        int start = contents.lastIndexOf("pick");
+        int end = start + "pick".length();
+        assertType(contents, start, end, "java.lang.Integer");
+        assertDeclaringType(contents, start, end, "Cat2");
+    }
+
     public void testClassReference1() throws Exception {
         String contents = "String";
         assertDeclaringType(contents, 0, contents.length(), "java.lang.String");
@@ -1475,6 +1501,65 @@ public class InferencingTests extends AbstractInferencingTest {
         assertType(contents, start, end, "java.lang.String");
     }
 
+    public void testLookupResultsReusedInWorkingCopy() throws Exception {
+        String contents = "class Cached {\n" + 
+                "    String action() { }\n" + 
+                "    def meth() {\n" + 
+                "        def x = action()\n" + 
+                "        x.substring()\n" + 
+                "    }\n" + 
+                "}";
+        GroovyCompilationUnit unit = createUnit("Search", contents);
+        unit.becomeWorkingCopy(null);
+        try {
+            int start = contents.lastIndexOf("substring");
+            int end = start + "substring".length();
+            TypeLookupResultCache cache = unit.getModuleInfo(true).getLookupResults();
+            assertType(unit, start, end, "java.lang.String");
+            int size = cache.size();
+            assertTrue("Lookup results should have been cached", size > 0);
+            // the second visit finds everything in the cache
+            assertType(unit, start, end, "java.lang.String");
+            assertEquals(size, cache.size());
+        } finally {
+            unit.discardWorkingCopy();
+        }
+    }
+
+    public void testTargetedVisitSkipsOtherMembers() throws Exception {
+        String contents = "class Other {\n" + 
+                "    def other() { 'other' }\n" + 
+                "}\n" + 
+                "class Targeted {\n" + 
+                "    def first() { 'first' }\n" + 
+                "    def second() {\n" + 
+                "        def x = 'second'\n" + 
+                "        x.substring()\n" + 
+                "    }\n" + 
+                "}";
+        GroovyCompilationUnit unit = createUnit("Search", contents);
+        final int start = contents.lastIndexOf("substring");
+        final List<String> constants = new ArrayList<String>();
+        final TypeLookupResult[] targetResult = new TypeLookupResult[1];
+        TypeInferencingVisitorWithRequestor visitor = factory.createVisitor(unit);
+        visitor.visitCompilationUnit(new ITypeRequestor() {
+            public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+                if (node instanceof ConstantExpression) {
+                    constants.add(((ConstantExpression) node).getText());
+                    if (node.getStart() == start) {
+                        targetResult[0] = result;
+                    }
+                }
+                return VisitStatus.CONTINUE;
+            }
+        }, start, start + "substring".length());
+        assertNotNull("Did not find expected ASTNode", targetResult[0]);
+        assertEquals("java.lang.String", printTypeName(targetResult[0].type));
+        assertTrue(constants.contains("second"));
+        assertFalse("Members not enclosing the target should be skipped: " + constants, constants.contains("first"));
+        assertFalse("Types not enclosing the target should be skipped: " + constants, constants.contains("other"));
+    }
+
     protected void assertNoUnknowns(String contents) {
         GroovyCompilationUnit unit = createUnit("Search", contents);
         
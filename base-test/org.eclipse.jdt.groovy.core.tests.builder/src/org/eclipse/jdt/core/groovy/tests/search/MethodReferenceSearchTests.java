@@ -250,6 +250,26 @@ public class MethodReferenceSearchTests extends AbstractGroovySearchTest {
                 "}", false, 0, "xxx" );
     }
     
+    public void testMethodReferencesWithOtherNumberOfArguments() throws Exception {
+        // the index knows the number of arguments of the first call but not of the second
+        doTestForTwoMethodReferences(
+                "class First {\n" +
+                "    void xxx(a, b = 9) { }\n" +
+                "}",
+                "class Second {\n" + 
+                "    void other0() {\n" +
+                "        First f\n" +
+                "        f.xxx(a)\n" +
+                "    }\n" +
+                "    void other1() {\n" +
+                "    }\n" +
+                "    void other2() {\n" +
+                "        First f\n" +
+                "        f.xxx(*[a, b])\n" +
+                "    }\n" +
+                "}", false, 0, "xxx" );
+    }
+    
     private void doTestForTwoMethodReferencesInScript(String secondContents) throws JavaModelException {
         doTestForTwoMethodReferences(FIRST_CONTENTS_CLASS_FOR_METHODS, secondContents, true, 3, "xxx");
     }
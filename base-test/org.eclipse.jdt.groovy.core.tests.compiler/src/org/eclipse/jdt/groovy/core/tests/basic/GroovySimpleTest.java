@@ -13,6 +13,8 @@ package org.eclipse.jdt.groovy.core.tests.basic;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -20,7 +22,9 @@ import java.util.Map;
 
 import junit.framework.Test;
 
+import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.ImportNode;
 import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
@@ -40,6 +44,7 @@ import org.eclipse.jdt.core.tests.compiler.regression.AbstractRegressionTest;
 import org.eclipse.jdt.core.tests.util.GroovyUtils;
 import org.eclipse.jdt.core.tests.util.Util;
 import org.eclipse.jdt.core.util.ClassFileBytesDisassembler;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import org.eclipse.jdt.internal.compiler.ast.ASTNode;
@@ -9554,6 +9559,188 @@ public class GroovySimpleTest extends AbstractRegressionTest {
 			JDTResolver.recordInstances=false;
 		}
 	}
+
+	private static final String[] LAZY_MEMBERS_SOURCES = new String[] {
+		"p/Run.groovy",
+		"package p\n"+
+		"class Run {\n"+
+		"  static void main(String[] args) { print 'ok' }\n"+
+		"  Sub sub\n"+
+		"  Bean bean\n"+
+		"  StringBox box\n"+
+		"}\n",
+
+		"p/Base.java",
+		"package p;\n"+
+		"public class Base {\n"+
+		"  public void m(int i) {}\n"+
+		"  public void other() {}\n"+
+		"}\n",
+
+		"p/Sub.java",
+		"package p;\n"+
+		"public class Sub extends Base {\n"+
+		"  public void z() {}\n"+
+		"  public void m(String s) {}\n"+
+		"  public void b() {}\n"+
+		"  public void m() {}\n"+
+		"  public int count;\n"+
+		"  public String a;\n"+
+		"}\n",
+
+		"p/Bean.java",
+		"package p;\n"+
+		"public class Bean {\n"+
+		"  private String name;\n"+
+		"  public int count;\n"+
+		"  public String other;\n"+
+		"  public String getName() { return name; }\n"+
+		"}\n",
+
+		"p/Box.java",
+		"package p;\n"+
+		"public class Box<T> {\n"+
+		"  public Box() {}\n"+
+		"  public Box(T t) { value = t; }\n"+
+		"  public T value;\n"+
+		"}\n",
+
+		"p/StringBox.java",
+		"package p;\n"+
+		"public class StringBox extends Box<String> {\n"+
+		"}\n",
+	};
+
+	public void testJDTClassNodeLazyMembers_overloads() {
+		try {
+			JDTResolver.recordInstances = true;
+			this.runConformTest(LAZY_MEMBERS_SOURCES, "ok");
+			JDTClassNode sub = newJDTClassNode("p.Sub");
+			List<MethodNode> ms = sub.getMethods("m");
+			assertEquals(3, ms.size());
+			// the declared ones first, in the order of their bindings
+			assertTrue(descriptors(ms.subList(0, 2)).containsAll(Arrays.asList(new String[] { "void m(java.lang.String)", "void m()" })));
+			assertEquals("p.Sub", ms.get(0).getDeclaringClass().getName());
+			assertEquals("p.Sub", ms.get(1).getDeclaringClass().getName());
+			assertEquals("void m(int)", ms.get(2).getTypeDescriptor());
+			assertEquals("p.Base", ms.get(2).getDeclaringClass().getName());
+			// only the methods with that name have been converted
+			assertEquals(2, convertedMethods(sub).size());
+			assertNotNull(sub.getDeclaredMethod("z", new Parameter[0]));
+			assertEquals(3, convertedMethods(sub).size());
+		} finally {
+			JDTResolver.instances.clear();
+			JDTResolver.recordInstances=false;
+		}
+	}
+
+	public void testJDTClassNodeLazyMembers_declarationOrder() {
+		try {
+			JDTResolver.recordInstances = true;
+			this.runConformTest(LAZY_MEMBERS_SOURCES, "ok");
+			JDTClassNode all = newJDTClassNode("p.Sub");
+			List<String> allMethods = descriptors(all.getMethods());
+			List<String> allFields = fieldNames(all.getFields());
+
+			JDTClassNode lazy = newJDTClassNode("p.Sub");
+			lazy.getDeclaredMethods("z");
+			lazy.getDeclaredMethods("m");
+			assertNotNull(lazy.getDeclaredField("count"));
+			assertEquals(allMethods, descriptors(lazy.getMethods()));
+			assertEquals(allFields, fieldNames(lazy.getFields()));
+			assertEquals(Arrays.asList(new String[] { "a", "count" }), allFields);
+		} finally {
+			JDTResolver.instances.clear();
+			JDTResolver.recordInstances=false;
+		}
+	}
+
+	public void testJDTClassNodeLazyMembers_properties() {
+		try {
+			JDTResolver.recordInstances = true;
+			this.runConformTest(LAZY_MEMBERS_SOURCES, "ok");
+			JDTClassNode bean = newJDTClassNode("p.Bean");
+			assertNotNull(bean.getDeclaredField("other"));
+			assertNotNull(bean.getProperty("name"));
+			// the field backing the property is replaced by it, and not converted again when the rest of the fields are
+			assertNull(bean.getDeclaredField("name"));
+			assertEquals(Arrays.asList(new String[] { "count", "other" }), fieldNames(bean.getFields()));
+			assertNull(bean.getDeclaredField("name"));
+		} finally {
+			JDTResolver.instances.clear();
+			JDTResolver.recordInstances=false;
+		}
+	}
+
+	public void testJDTClassNodeLazyMembers_proxy() {
+		try {
+			JDTResolver.recordInstances = true;
+			this.runConformTest(LAZY_MEMBERS_SOURCES, "ok");
+			JDTClassNode sub = newJDTClassNode("p.Sub");
+			ClassNode proxy = ClassHelper.makeWithoutCaching("p.Sub");
+			proxy.setRedirect(sub);
+			// the members are converted when asked for through a node redirecting to the JDTClassNode
+			assertEquals(1, proxy.getDeclaredConstructors().size());
+			assertNotNull(proxy.getDeclaredField("count"));
+			assertNull(proxy.getDeclaredField("missing"));
+			assertEquals(2, proxy.getDeclaredMethods("m").size());
+		} finally {
+			JDTResolver.instances.clear();
+			JDTResolver.recordInstances=false;
+		}
+	}
+
+	public void testJDTClassNodeLazyMembers_parameterized() {
+		try {
+			JDTResolver.recordInstances = true;
+			this.runConformTest(LAZY_MEMBERS_SOURCES, "ok");
+			JDTClassNode stringBox = newJDTClassNode("p.StringBox");
+			stringBox.lazyClassInit();
+			// Box<String>, redirecting to the node for Box
+			ClassNode boxOfString = stringBox.getUnresolvedSuperClass(false);
+			assertTrue(boxOfString instanceof JDTClassNode);
+			assertNotSame(boxOfString, boxOfString.redirect());
+			assertEquals(2, boxOfString.getDeclaredConstructors().size());
+			assertNotNull(boxOfString.getDeclaredField("value"));
+		} finally {
+			JDTResolver.instances.clear();
+			JDTResolver.recordInstances=false;
+		}
+	}
+
+	/**
+	 * @return a new node for the type, with nothing initialized, using the resolver of the last compile
+	 */
+	private JDTClassNode newJDTClassNode(String typeName) {
+		JDTResolver resolver = (JDTResolver) JDTResolver.instances.get(0);
+		JDTClassNode cached = resolver.getCachedNode(typeName);
+		assertNotNull("No node for " + typeName, cached);
+		JDTClassNode node = new JDTClassNode(cached.getJdtBinding(), resolver);
+		node.setupGenerics();
+		return node;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<MethodNode> convertedMethods(JDTClassNode node) {
+		// bypasses the conversion done by getMethods()
+		return (List<MethodNode>) ReflectionUtils.getPrivateField(ClassNode.class, "methodsList", node);
+	}
+
+	private static List<String> descriptors(List<MethodNode> methods) {
+		List<String> descriptors = new ArrayList<String>();
+		for (MethodNode method : methods) {
+			descriptors.add(method.getTypeDescriptor());
+		}
+		return descriptors;
+	}
+
+	private static List<String> fieldNames(List<FieldNode> fields) {
+		List<String> names = new ArrayList<String>();
+		for (FieldNode field : fields) {
+			names.add(field.getName());
+		}
+		return names;
+	}
 	
 	public void testStaticImports2_GtoJ() {
 		this.runConformTest(new String[] {
@@ -9618,6 +9805,46 @@ public class GroovySimpleTest extends AbstractRegressionTest {
 			assertTrue((tds[2].bits&ASTNode.IsSecondaryType)!=0);
 			assertTrue((tds[3].bits&ASTNode.IsSecondaryType)!=0);
 	}
+
+	// all the groovy files are added before the first is parsed, so they can be parsed and converted on several threads
+	public void testParallelConversion() {
+		String oldValue = System.getProperty("greclipse.parallelPhases");
+		System.setProperty("greclipse.parallelPhases", "4");
+		try {
+			this.runConformTest(new String[] {
+				"p/Run.groovy",
+				"package p\n"+
+				"class Run { public static void main(String[]argv) { print new A().b.c.d.name } }\n",
+				"p/A.groovy",
+				"package p\n"+
+				"class A { B b = new B() }\n",
+				"p/B.groovy",
+				"package p\n"+
+				"class B { C c = new C() }\n",
+				"p/C.groovy",
+				"package p\n"+
+				"class C { D d = new D() }\n",
+				"p/D.groovy",
+				"package p\n"+
+				"class D { String name = 'D' }\n"
+			},"D");
+		} finally {
+			if (oldValue == null) {
+				System.clearProperty("greclipse.parallelPhases");
+			} else {
+				System.setProperty("greclipse.parallelPhases", oldValue);
+			}
+		}
+		GroovyCompilationUnitDeclaration gcud = getCUDeclFor("Run.groovy");
+		assertEquals(4, gcud.getCompilationUnit().getParallelism());
+		assertTrue("Expected the files to be converted on more than one thread, but were on "
+				+ gcud.getCompilationUnit().getWorkerThreadsUsed(), gcud.getCompilationUnit().getWorkerThreadsUsed() > 1);
+		String[] names = { "A.groovy", "B.groovy", "C.groovy", "D.groovy" };
+		for (int i = 0; i < names.length; i++) {
+			assertSame(gcud.getCompilationUnit(), getCUDeclFor(names[i]).getCompilationUnit());
+			assertNotNull(getCUDeclFor(names[i]).getModuleNode());
+		}
+	}
 	
 	// Test 'import static a.B.FOO'
 	public void testImportStatic1() {
@@ -34,23 +34,29 @@ public class GroovyLogManager {
     private GroovyLogManager() {
         // uninstantiable
         defaultLogger = new DefaultGroovyLogger();
-        timers = new HashMap<String, Long>();
     }
     
-    private IGroovyLogger[] loggers = null;
+    private volatile IGroovyLogger[] loggers = null;
     
     // only use default logger if no others are registered
     private IGroovyLogger defaultLogger;
     
-    private Map<String, Long> timers;
+    // event > start time in nanos, per thread so that the same event
+    // running on different threads does not get mixed up
+    private final ThreadLocal<Map<String, Long>> timers = new ThreadLocal<Map<String, Long>>() {
+        @Override
+        protected Map<String, Long> initialValue() {
+            return new HashMap<String, Long>();
+        }
+    };
 
-    private boolean useDefaultLogger;
+    private volatile boolean useDefaultLogger;
     
     /**
      * @return true if logger was added.  False if not
      * if not added, then this means the exact logger is already in the list
      */
-    public boolean addLogger(IGroovyLogger logger) {
+    public synchronized boolean addLogger(IGroovyLogger logger) {
         int newIndex;
         if (loggers == null) {
             loggers = new IGroovyLogger[1];
@@ -77,8 +83,8 @@ public class GroovyLogManager {
      * @return true iff found and removed
      * false iff nothing found.
      */
-    public boolean removeLogger(IGroovyLogger logger) {
-        if (logger != null) {
+    public synchronized boolean removeLogger(IGroovyLogger logger) {
+        if (logger != null && loggers != null) {
             int foundIndex = -1;
             for (int i = 0; i < loggers.length; i++) {
                 if (loggers[i] == logger) {
@@ -105,8 +111,15 @@ public class GroovyLogManager {
     }
     
     
+    /**
+     * Start timing an event, {@link #logEnd(String, TraceCategory)} must be
+     * called for it on the same thread.  Nothing is timed if there are no loggers.
+     * See {@link GroovyMetrics} for timings that are aggregated rather than logged.
+     */
     public void logStart(String event) {
-        timers.put(event, System.currentTimeMillis());
+        if (hasLoggers()) {
+            timers.get().put(event, System.nanoTime());
+        }
     }
     
     public void logEnd(String event, TraceCategory category) {
@@ -114,18 +127,17 @@ public class GroovyLogManager {
     }
     
     public void logEnd(String event, TraceCategory category, String message) {
-        Long then = timers.get(event);
+        Long then = timers.get().remove(event);
         if (then != null) {
             if (hasLoggers()) {
-                long now = System.currentTimeMillis();
-                long elapsed = now - then.longValue();
+                long now = System.nanoTime();
+                long elapsed = (now - then.longValue()) / 1000000;
                 if ((message != null) && (message.length() > 0)) {
                     log(category,"Event complete: "+elapsed + "ms: " + event + " (" + message + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
                 } else {
                     log(category,"Event complete: "+elapsed + "ms: " + event); //$NON-NLS-1$ //$NON-NLS-2$
                 }
             }
-            timers.remove(event);
         }
     }
 
@@ -138,6 +150,7 @@ public class GroovyLogManager {
             return;
         }
         
+        IGroovyLogger[] loggers = this.loggers;
         if (loggers != null) {
             for (IGroovyLogger logger : loggers) {
                 if (logger.isCategoryEnabled(category)) {
@@ -161,6 +174,13 @@ public class GroovyLogManager {
         return loggers != null || useDefaultLogger;
     }
     
+    /**
+     * @return the performance metrics, see {@link GroovyMetrics}
+     */
+    public GroovyMetrics getMetrics() {
+        return GroovyMetrics.metrics;
+    }
+    
     /**
      * enables/disables the default logger (printing to sysout
      * @param useDefaultLogger
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse;
+
+import junit.framework.TestCase;
+
+import org.codehaus.groovy.eclipse.GroovyMetrics.CategorySnapshot;
+import org.codehaus.groovy.eclipse.GroovyMetrics.Span;
+
+/**
+ * Checks that spans and counters are recorded (only) when metrics are enabled
+ */
+public class MetricsTest extends TestCase {
+
+    private final GroovyMetrics metrics = GroovyMetrics.metrics;
+    private boolean wasEnabled;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        wasEnabled = metrics.isEnabled();
+        metrics.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        metrics.setEnabled(wasEnabled);
+        metrics.reset();
+        super.tearDown();
+    }
+
+    public void testNothingRecordedWhenDisabled() throws Exception {
+        metrics.setEnabled(false);
+        metrics.start(MetricCategory.PARSE).end();
+        metrics.increment(MetricCategory.PARSE, "files");
+        CategorySnapshot parse = metrics.snapshot().get(MetricCategory.PARSE);
+        assertEquals(0, parse.getCount());
+        assertTrue(parse.getCounters().isEmpty());
+    }
+
+    public void testNestedSpans() throws Exception {
+        metrics.setEnabled(true);
+        Span outer = metrics.start(MetricCategory.INFERENCE);
+        Span inner = metrics.start(MetricCategory.DSLD);
+        Thread.sleep(5);
+        inner.end();
+        outer.end();
+        // ending twice is ignored
+        outer.end();
+
+        CategorySnapshot inference = metrics.snapshot().get(MetricCategory.INFERENCE);
+        CategorySnapshot dsld = metrics.snapshot().get(MetricCategory.DSLD);
+        assertEquals(1, inference.getCount());
+        assertEquals(1, dsld.getCount());
+        assertTrue(inference.getTotalNanos() >= dsld.getTotalNanos());
+        assertEquals(inference.getTotalNanos() - dsld.getTotalNanos(), inference.getSelfNanos());
+        assertEquals(dsld.getTotalNanos(), dsld.getSelfNanos());
+        assertEquals(dsld.getTotalNanos(), dsld.getMaxNanos());
+        assertTrue(dsld.getPercentileNanos(50) >= dsld.getTotalNanos());
+
+        long spans = 0;
+        for (long bucket : dsld.getHistogram()) {
+            spans += bucket;
+        }
+        assertEquals(1, spans);
+    }
+
+    public void testCounters() throws Exception {
+        metrics.setEnabled(true);
+        metrics.increment(MetricCategory.RESOLVE, "lookups");
+        metrics.add(MetricCategory.RESOLVE, "lookups", 2);
+        assertEquals(Long.valueOf(3), metrics.snapshot().get(MetricCategory.RESOLVE).getCounters().get("lookups"));
+        assertTrue(metrics.snapshot().toString().contains("resolve.counter.lookups=3"));
+    }
+
+    public void testSpansOnOtherThreadsDoNotNest() throws Exception {
+        metrics.setEnabled(true);
+        Span outer = metrics.start(MetricCategory.CLASSGEN);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                metrics.start(MetricCategory.PARSE).end();
+            }
+        };
+        other.start();
+        other.join();
+        outer.end();
+        CategorySnapshot classgen = metrics.snapshot().get(MetricCategory.CLASSGEN);
+        assertEquals(classgen.getTotalNanos(), classgen.getSelfNanos());
+        assertEquals(1, metrics.snapshot().get(MetricCategory.PARSE).getCount());
+    }
+}
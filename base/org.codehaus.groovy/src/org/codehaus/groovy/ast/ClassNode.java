@@ -564,6 +564,9 @@ public class ClassNode extends AnnotatedNode implements Opcodes {
 
     public List<ConstructorNode> getDeclaredConstructors() {
         if (!redirect().lazyInitDone) redirect().lazyClassInit();
+        // GRECLIPSE: start: ask the redirect, so a JDTClassNode can convert its members as they are asked for
+        if (redirect!=null) return redirect().getDeclaredConstructors();
+        // end
         final ClassNode r = redirect();
         if (r.constructors == null)
             r.constructors = new ArrayList<ConstructorNode> ();
@@ -802,6 +805,9 @@ public class ClassNode extends AnnotatedNode implements Opcodes {
     	// GRECLIPSE: Need to do this because AnnotationVisitor.validateEnum calls it
         if (!redirect().lazyInitDone) redirect().lazyClassInit();
         // end
+        // GRECLIPSE: start: ask the redirect, so a JDTClassNode can convert its members as they are asked for
+        if (redirect!=null) return redirect().getDeclaredField(name);
+        // end
         ClassNode r = redirect ();
         if (r.fieldIndex == null)
             r.fieldIndex = new HashMap<String,FieldNode> ();
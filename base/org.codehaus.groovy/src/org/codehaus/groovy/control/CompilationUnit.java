@@ -27,10 +27,17 @@ import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.Set;
 
 import org.codehaus.groovy.GroovyBugError;
@@ -53,6 +60,8 @@ import org.codehaus.groovy.control.io.ReaderSource;
 import org.codehaus.groovy.control.messages.ExceptionMessage;
 import org.codehaus.groovy.control.messages.Message;
 import org.codehaus.groovy.control.messages.SimpleMessage;
+import org.codehaus.groovy.eclipse.GroovyMetrics;
+import org.codehaus.groovy.eclipse.MetricCategory;
 import org.codehaus.groovy.syntax.SyntaxException;
 import org.codehaus.groovy.tools.GroovyClass;
 import org.codehaus.groovy.transform.ASTTransformationVisitor;
@@ -86,6 +95,9 @@ public class CompilationUnit extends ProcessingUnit {
 
     protected CompileUnit ast;        // The overall AST for this CompilationUnit.
     protected List<GroovyClass> generatedClasses;  // The classes generated during classgen.
+    // GRECLIPSE: start
+    protected Map<SourceUnit, List<GroovyClass>> generatedClassesBySource; // The generated classes, indexed by originating SourceUnit
+    // end
 
     protected Verifier verifier;   // For use by verify().
 
@@ -163,6 +175,9 @@ public class CompilationUnit extends ProcessingUnit {
 
         this.ast = new CompileUnit(this.classLoader, security, this.configuration);
         this.generatedClasses = new ArrayList<GroovyClass>();
+        // GRECLIPSE: start
+        this.generatedClassesBySource = new HashMap<SourceUnit, List<GroovyClass>>();
+        // end
 
 
         this.verifier = new Verifier();
@@ -182,11 +197,21 @@ public class CompilationUnit extends ProcessingUnit {
             phaseOperations[i] = new LinkedList();
             newPhaseOperations[i] = new LinkedList();
         }
+        // GRECLIPSE: start: parsing one unit does not involve any of the others
+        /*old{
         addPhaseOperation(new SourceUnitOperation() {
             public void call(SourceUnit source) throws CompilationFailedException {
                 source.parse();
             }
         }, Phases.PARSING);
+        }*/
+        // newcode
+        addPhaseOperation(new ParallelSourceUnitOperation() {
+            public void callConcurrently(SourceUnit source) throws CompilationFailedException {
+                source.parse();
+            }
+        }, Phases.PARSING);
+        // end
         addPhaseOperation(convert, Phases.CONVERSION);
         addPhaseOperation(new PrimaryClassNodeOperation() {
             public void call(SourceUnit source, GeneratorContext context,
@@ -315,6 +340,20 @@ public class CompilationUnit extends ProcessingUnit {
         return generatedClasses;
     }
 
+    // GRECLIPSE: start
+    /**
+     * Get the GroovyClasses generated by compile() for a single SourceUnit,
+     * in generation order.  Never returns null.
+     */
+    public List<GroovyClass> getClasses(SourceUnit source) {
+        List<GroovyClass> classes = generatedClassesBySource.get(source);
+        if (classes == null) {
+            return Collections.emptyList();
+        }
+        return classes;
+    }
+    // end
+
 
     /**
      * Convenience routine to get the first ClassNode, for
@@ -526,6 +565,25 @@ public class CompilationUnit extends ProcessingUnit {
      * Compiles the compilation unit from sources.
      */
     public void compile(int throughPhase) throws CompilationFailedException {
+        // GRECLIPSE: start
+        compiling++;
+        try {
+            doCompile(throughPhase);
+        } finally {
+            compiling--;
+        }
+    }
+
+    // GRECLIPSE: new field
+    private int compiling;
+
+    // GRECLIPSE: new method: sources must not be added while the unit is compiling
+    public boolean isCompiling() {
+        return compiling > 0;
+    }
+
+    private void doCompile(int throughPhase) throws CompilationFailedException {
+        // end
         //
         // To support delta compilations, we always restart
         // the compiler.  The individual passes are responsible
@@ -533,8 +591,16 @@ public class CompilationUnit extends ProcessingUnit {
         gotoPhase(Phases.INITIALIZATION);
         throughPhase = Math.min(throughPhase, Phases.ALL);
 
+        // GRECLIPSE: start
+        GroovyMetrics.Span span = null;
+        try {
+        // end
         while (throughPhase >= phase && phase <= Phases.ALL) {
 
+            // GRECLIPSE: start: each pass is timed as the phase it starts in
+            if (span != null) span.end();
+            span = GroovyMetrics.metrics.start(getMetricCategory(phase));
+            // end
             if (phase == Phases.SEMANTIC_ANALYSIS) {
                 doPhaseOperation(resolve);
                 if (dequeued()) continue;
@@ -556,9 +622,29 @@ public class CompilationUnit extends ProcessingUnit {
                 sortClasses();
             }
         }
+        // GRECLIPSE: start
+        } finally {
+            if (span != null) span.end();
+        }
+        // end
 
         errorCollector.failIfErrors();
     }
+
+    // GRECLIPSE: new method
+    private static MetricCategory getMetricCategory(int phase) {
+        switch (phase) {
+            case Phases.PARSING:
+            case Phases.CONVERSION:
+                return MetricCategory.PARSE;
+            case Phases.SEMANTIC_ANALYSIS:
+                return MetricCategory.RESOLVE;
+            case Phases.CLASS_GENERATION:
+                return MetricCategory.CLASSGEN;
+            default:
+                return null;
+        }
+    }
     
     private void processPhaseOperations(int ph) {
         LinkedList ops = phaseOperations[ph];
@@ -710,6 +796,8 @@ public class CompilationUnit extends ProcessingUnit {
     /**
      * Runs convert() on a single SourceUnit.
      */
+    // GRECLIPSE: start: building the AST of a unit can run alongside the others, adding it to the CompileUnit cannot
+    /*old{
     private SourceUnitOperation convert = new SourceUnitOperation() {
         public void call(SourceUnit source) throws CompilationFailedException {
             source.convert();
@@ -721,6 +809,23 @@ public class CompilationUnit extends ProcessingUnit {
             }
         }
     };
+    }*/
+    // newcode
+    private SourceUnitOperation convert = new ParallelSourceUnitOperation() {
+        public void callConcurrently(SourceUnit source) throws CompilationFailedException {
+            source.convert();
+        }
+
+        public void completed(SourceUnit source) throws CompilationFailedException {
+            CompilationUnit.this.ast.addModule(source.getAST());
+
+
+            if (CompilationUnit.this.progressCallback != null) {
+                CompilationUnit.this.progressCallback.call(source, CompilationUnit.this.phase);
+            }
+        }
+    };
+    // end
 
  private GroovyClassOperation output = new GroovyClassOperation() {
         public void call(GroovyClass gclass) throws CompilationFailedException {
@@ -872,7 +977,16 @@ public class CompilationUnit extends ProcessingUnit {
 	            generatedClasses.add(new GroovyClass(classNode.getName(), bytes));
 	            }*/
 	            // newcode
-	            generatedClasses.add(new GroovyClass(classNode.getName(), bytes, classNode, source));
+	            GroovyClass gclass = new GroovyClass(classNode.getName(), bytes, classNode, source);
+	            generatedClasses.add(gclass);
+	            // GRECLIPSE: start: remember which SourceUnit gave rise to it
+	            List<GroovyClass> classesForSource = generatedClassesBySource.get(source);
+	            if (classesForSource == null) {
+	                classesForSource = new ArrayList<GroovyClass>();
+	                generatedClassesBySource.put(source, classesForSource);
+	            }
+	            classesForSource.add(gclass);
+	            // end
 			// end
 			
 	            //
@@ -940,6 +1054,183 @@ public class CompilationUnit extends ProcessingUnit {
         public abstract void call(SourceUnit source) throws CompilationFailedException;
     }
 
+    // GRECLIPSE: start
+    /**
+     * A SourceUnitOperation whose work on a SourceUnit neither reads nor changes anything shared
+     * with the other units, so it can be applied to several of them at once when the CompilationUnit
+     * runs with a parallelism above 1. Anything that updates shared state belongs in completed(),
+     * which is always called on the compiling thread, one unit at a time, in the order the units
+     * were added.
+     */
+    public abstract static class ParallelSourceUnitOperation extends SourceUnitOperation {
+        public void call(SourceUnit source) throws CompilationFailedException {
+            callConcurrently(source);
+            completed(source);
+        }
+
+        public abstract void callConcurrently(SourceUnit source) throws CompilationFailedException;
+
+        public void completed(SourceUnit source) throws CompilationFailedException {
+        }
+    }
+
+    private int parallelism = getDefaultParallelism();
+
+    /**
+     * @return the number of threads used for ParallelSourceUnitOperations when none is set, from the
+     *         greclipse.parallelPhases system property, 1 (everything on the compiling thread) by default
+     */
+    public static int getDefaultParallelism() {
+        try {
+            return Math.max(1, Integer.getInteger("greclipse.parallelPhases", 1).intValue());
+        } catch (SecurityException se) {
+            return 1;
+        }
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private int workerThreadsUsed;
+
+    /**
+     * @return the largest number of threads that processed the units of one phase operation so far,
+     *         0 if no operation has been applied in parallel
+     */
+    public int getWorkerThreadsUsed() {
+        return workerThreadsUsed;
+    }
+
+    /**
+     * Applies the operation to the units that need it, up to 'parallelism' at a time. Each unit that
+     * shares the CompilationUnit's ErrorCollector is given its own whilst it is being processed, the
+     * messages are then merged back unit by unit in the order the units were added, and a failure
+     * is rethrown for the first failing unit in that order, so the outcome is the same as for a serial
+     * run regardless of which thread finished first.
+     *
+     * @return false if there were fewer than two units to process, and nothing was done
+     */
+    private boolean applyToSourceUnitsInParallel(final ParallelSourceUnitOperation body) throws CompilationFailedException {
+        List<SourceUnit> pending = new ArrayList<SourceUnit>();
+        for (String name : names) {
+            SourceUnit source = sources.get(name);
+            if ((source.phase < phase) || (source.phase == phase && !source.phaseComplete)) {
+                pending.add(source);
+            }
+        }
+        if (pending.size() < 2) {
+            return false;
+        }
+
+        int count = pending.size();
+        ErrorCollector[] ownCollectors = new ErrorCollector[count];
+        Throwable[] problems = new Throwable[count];
+        final Set<Thread> workers = Collections.synchronizedSet(new HashSet<Thread>());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, count),
+                new PhaseThreadFactory(Thread.currentThread().getContextClassLoader()));
+        iterating = true;
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>(count);
+            for (int i = 0; i < count; i++) {
+                final SourceUnit source = pending.get(i);
+                if (source.getErrorCollector() == errorCollector) {
+                    ErrorCollector own = new ErrorCollector(source.getConfiguration());
+                    own.transformActive = errorCollector.transformActive;
+                    ownCollectors[i] = own;
+                    source.errorCollector = own;
+                }
+                results.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        workers.add(Thread.currentThread());
+                        body.callConcurrently(source);
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < count; i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException ee) {
+                    problems[i] = ee.getCause();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    GroovyBugError gbe = new GroovyBugError("Interrupted whilst waiting for source units to be processed");
+                    changeBugText(gbe, pending.get(i));
+                    throw gbe;
+                }
+            }
+            workerThreadsUsed = Math.max(workerThreadsUsed, workers.size());
+        } finally {
+            executor.shutdownNow();
+            for (int i = 0; i < count; i++) {
+                if (ownCollectors[i] != null) {
+                    pending.get(i).errorCollector = errorCollector;
+                }
+            }
+            iterating = false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            SourceUnit source = pending.get(i);
+            if (ownCollectors[i] != null) {
+                errorCollector.addCollectorContents(ownCollectors[i]);
+            }
+            try {
+                if (problems[i] != null) {
+                    if (problems[i] instanceof CompilationFailedException && ownCollectors[i] != null) {
+                        // report the messages of this and the preceding units, as a serial run would have
+                        errorCollector.failIfErrors();
+                    }
+                    throw problems[i];
+                }
+                body.completed(source);
+                if (phase==Phases.CONVERSION && getProgressListener()!=null && body==phaseOperations[phase].getLast()) {
+                    getProgressListener().parseComplete(phase,source.getName());
+                }
+            } catch (CompilationFailedException e) {
+                throw e;
+            } catch (GroovyBugError e) {
+                changeBugText(e, source);
+                throw e;
+            } catch (Exception e) {
+                GroovyBugError gbe = new GroovyBugError(e);
+                changeBugText(gbe, source);
+                throw gbe;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                GroovyBugError gbe = new GroovyBugError(t.toString());
+                changeBugText(gbe, source);
+                throw gbe;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Daemon threads that load classes (e.g. AST transforms) through the same loader as the compiling thread
+     */
+    private static class PhaseThreadFactory implements ThreadFactory {
+        private final ClassLoader contextLoader;
+
+        PhaseThreadFactory(ClassLoader contextLoader) {
+            this.contextLoader = contextLoader;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Groovy compilation worker");
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextLoader);
+            return thread;
+        }
+    }
+    // end
+
 
     // GRECLIPSE: new field
     private boolean iterating = false;
@@ -951,6 +1242,11 @@ public class CompilationUnit extends ProcessingUnit {
      */
     public void applyToSourceUnits(SourceUnitOperation body) throws CompilationFailedException {
     // GRECLIPSE: start
+        if (parallelism > 1 && body instanceof ParallelSourceUnitOperation
+                && applyToSourceUnitsInParallel((ParallelSourceUnitOperation) body)) {
+            getErrorCollector().failIfErrors();
+            return;
+        }
     	try {
     		iterating = true;
     // end
@@ -536,6 +536,9 @@ public class ClassNode extends AnnotatedNode implements Opcodes {
 
     public List getDeclaredConstructors() {
         if (!redirect().lazyInitDone) redirect().lazyClassInit();
+        // GRECLIPSE: start: ask the redirect, so a JDTClassNode can convert its members as they are asked for
+        if (redirect!=null) return redirect().getDeclaredConstructors();
+        // end
         return redirect().getDeclaredConstructorsLazy();
     }
 
@@ -755,6 +758,9 @@ public class ClassNode extends AnnotatedNode implements Opcodes {
      * @return the method matching the given name and parameters or null
      */
     public FieldNode getDeclaredField(String name) {
+        // GRECLIPSE: start: ask the redirect, so a JDTClassNode can convert its members as they are asked for
+        if (redirect!=null) return redirect().getDeclaredField(name);
+        // end
         return (FieldNode) redirect().getFieldIndexLazy().get(name);
     }
 
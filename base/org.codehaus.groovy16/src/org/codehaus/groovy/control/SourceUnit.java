@@ -360,6 +360,8 @@ public class SourceUnit extends ProcessingUnit {
     }
 
     // FIXASC (groovychange)
+    public ReaderSource getSource() { return source; }
+
     public List<Comment> getComments() {
 		return comments;
 	}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.control.io;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+
+/**
+ * GRECLIPSE: new class.
+ * A ReaderSource for source held in a char[], as handed over by JDT, that
+ * reads it in place rather than copying it into a String. It can also carry
+ * the positions of the line separators in the source (computed by the caller
+ * for its own use), which saves the parser working them out again.
+ */
+public class CharArrayReaderSource extends AbstractReaderSource {
+    private final char[] contents;
+    private final int[] lineSeparators;
+
+    /**
+     * @param contents the source, which must not be modified whilst this ReaderSource is in use
+     * @param lineSeparators the positions of the '\r' or '\n' ending each line, with a "\r\n"
+     *        recorded once at its '\n', or null if they are not known
+     */
+    public CharArrayReaderSource(char[] contents, int[] lineSeparators, CompilerConfiguration configuration) {
+        super(configuration);
+        this.contents = contents;
+        this.lineSeparators = lineSeparators;
+    }
+
+    public Reader getReader() throws IOException {
+        return new CharArrayReader(contents);
+    }
+
+    public char[] getContents() {
+        return contents;
+    }
+
+    /**
+     * @return the positions of the line separators, or null if they are not known
+     */
+    public int[] getLineSeparators() {
+        return lineSeparators;
+    }
+}
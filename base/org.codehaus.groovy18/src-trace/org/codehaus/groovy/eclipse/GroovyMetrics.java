@@ -0,0 +1,396 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects timings and counters for the work done by the compiler and the tooling,
+ * per {@link MetricCategory}.  Nothing is recorded unless metrics are enabled,
+ * either through {@link #setEnabled(boolean)} or by starting with
+ * -Dgreclipse.metrics=true.  When disabled, starting and ending a span costs
+ * a single volatile read.
+ * <p>
+ * Timings are taken with spans:
+ * <pre>
+ * Span span = GroovyMetrics.metrics.start(MetricCategory.PARSE);
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ * Spans nest per thread, the time spent in nested spans is recorded against the
+ * nested category and is excluded from the self time of the enclosing one.
+ * <p>
+ * Use {@link #snapshot()} to read the figures.  If -Dgreclipse.metrics.output=&lt;file&gt;
+ * is set, a snapshot is written to that file when the VM exits, which is handy
+ * for headless builds.
+ */
+public class GroovyMetrics {
+
+    public static final GroovyMetrics metrics = new GroovyMetrics();
+
+    /**
+     * Number of latency buckets. Bucket 0 counts spans shorter than 1 microsecond,
+     * bucket i (i > 0) spans of at least 2^(i-1) and less than 2^i microseconds,
+     * the last bucket everything longer.
+     */
+    public static final int BUCKETS = 32;
+
+    /**
+     * A running timing, see {@link GroovyMetrics#start(MetricCategory)}
+     */
+    public static class Span {
+        private final GroovyMetrics owner;
+        private final MetricCategory category;
+        private final Span parent;
+        private final long start;
+        // time spent in spans nested within this one, only touched by the thread that started it
+        private long nestedNanos;
+        private boolean ended;
+
+        Span(GroovyMetrics owner, MetricCategory category, Span parent, long start) {
+            this.owner = owner;
+            this.category = category;
+            this.parent = parent;
+            this.start = start;
+        }
+
+        /**
+         * Stop timing and record the elapsed time. Must be called on the thread
+         * that started the span, calls after the first one are ignored.
+         */
+        public void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            long elapsed = System.nanoTime() - start;
+            owner.stats[category.ordinal()].record(elapsed, elapsed - nestedNanos);
+            if (parent != null) {
+                parent.nestedNanos += elapsed;
+            }
+            owner.current.set(parent);
+        }
+    }
+
+    private static final Span NO_SPAN = new Span(null, null, null, 0) {
+        @Override
+        public void end() {
+        }
+    };
+
+    private static class Stats {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong selfNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+        void record(long elapsed, long self) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            selfNanos.addAndGet(self);
+            long max = maxNanos.get();
+            while (elapsed > max && !maxNanos.compareAndSet(max, elapsed)) {
+                max = maxNanos.get();
+            }
+            histogram.incrementAndGet(bucketFor(elapsed));
+        }
+
+        AtomicLong counter(String name) {
+            AtomicLong counter = counters.get(name);
+            if (counter == null) {
+                AtomicLong newCounter = new AtomicLong();
+                counter = counters.putIfAbsent(name, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            return counter;
+        }
+    }
+
+    static int bucketFor(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * @return the exclusive upper bound, in nanoseconds, of the spans counted in the bucket,
+     * or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getBucketLimitNanos(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) * 1000;
+    }
+
+    private volatile boolean enabled;
+
+    private volatile Stats[] stats;
+
+    private final ThreadLocal<Span> current = new ThreadLocal<Span>();
+
+    private GroovyMetrics() {
+        stats = newStats();
+        enabled = Boolean.getBoolean("greclipse.metrics"); //$NON-NLS-1$
+        final String output = System.getProperty("greclipse.metrics.output"); //$NON-NLS-1$
+        if (output != null) {
+            enabled = true;
+            try {
+                Runtime.getRuntime().addShutdownHook(new Thread("Groovy metrics export") { //$NON-NLS-1$
+                    @Override
+                    public void run() {
+                        try {
+                            PrintWriter writer = new PrintWriter(new FileWriter(output));
+                            try {
+                                snapshot().export(writer);
+                            } finally {
+                                writer.close();
+                            }
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            } catch (SecurityException e) {
+                // no export then
+            }
+        }
+    }
+
+    private static Stats[] newStats() {
+        Stats[] stats = new Stats[MetricCategory.values().length];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new Stats();
+        }
+        return stats;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Start timing some work on the current thread.
+     * @param category the category to record the time against, nothing is recorded if null
+     * @return the span to end when the work is done, never null
+     */
+    public Span start(MetricCategory category) {
+        if (!enabled || category == null) {
+            return NO_SPAN;
+        }
+        Span span = new Span(this, category, current.get(), System.nanoTime());
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Add one to the named counter of the category
+     */
+    public void increment(MetricCategory category, String counter) {
+        add(category, counter, 1);
+    }
+
+    /**
+     * Add to the named counter of the category
+     */
+    public void add(MetricCategory category, String counter, long delta) {
+        if (enabled) {
+            stats[category.ordinal()].counter(counter).addAndGet(delta);
+        }
+    }
+
+    /**
+     * Discard everything recorded so far. Spans running at the time are
+     * recorded against the new figures when they end.
+     */
+    public void reset() {
+        stats = newStats();
+    }
+
+    /**
+     * @return a copy of the figures recorded so far.  Figures being recorded while
+     * the snapshot is taken may or may not be included.
+     */
+    public Snapshot snapshot() {
+        Stats[] stats = this.stats;
+        Map<MetricCategory, CategorySnapshot> categories = new EnumMap<MetricCategory, CategorySnapshot>(MetricCategory.class);
+        for (MetricCategory category : MetricCategory.values()) {
+            categories.put(category, new CategorySnapshot(category, stats[category.ordinal()]));
+        }
+        return new Snapshot(categories);
+    }
+
+    /**
+     * The figures for one category at the time of a {@link GroovyMetrics#snapshot()}
+     */
+    public static class CategorySnapshot {
+        private final MetricCategory category;
+        private final long count;
+        private final long totalNanos;
+        private final long selfNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+        private final Map<String, Long> counters;
+
+        CategorySnapshot(MetricCategory category, Stats stats) {
+            this.category = category;
+            this.count = stats.count.get();
+            this.totalNanos = stats.totalNanos.get();
+            this.selfNanos = stats.selfNanos.get();
+            this.maxNanos = stats.maxNanos.get();
+            this.histogram = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = stats.histogram.get(i);
+            }
+            Map<String, Long> counters = new TreeMap<String, Long>();
+            for (Map.Entry<String, AtomicLong> entry : stats.counters.entrySet()) {
+                counters.put(entry.getKey(), entry.getValue().get());
+            }
+            this.counters = Collections.unmodifiableMap(counters);
+        }
+
+        public MetricCategory getCategory() {
+            return category;
+        }
+
+        /**
+         * @return the number of spans ended
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the total time minus the time spent in nested spans
+         */
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * @return the number of spans per latency bucket, see {@link GroovyMetrics#BUCKETS}
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * @return an upper bound for the given percentile (0-100) of the span durations,
+         * to the resolution of the histogram buckets
+         */
+        public long getPercentileNanos(double percentile) {
+            long threshold = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= threshold && seen > 0) {
+                    return Math.min(getBucketLimitNanos(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+    }
+
+    /**
+     * The figures for all the categories
+     */
+    public static class Snapshot {
+        private final Map<MetricCategory, CategorySnapshot> categories;
+
+        Snapshot(Map<MetricCategory, CategorySnapshot> categories) {
+            this.categories = Collections.unmodifiableMap(categories);
+        }
+
+        public CategorySnapshot get(MetricCategory category) {
+            return categories.get(category);
+        }
+
+        public Map<MetricCategory, CategorySnapshot> getCategories() {
+            return categories;
+        }
+
+        /**
+         * Write the figures as key=value lines, e.g. <code>parse.count=12</code>.
+         * Times are in nanoseconds, histogram buckets are keyed by their upper bound
+         * in microseconds and empty buckets are left out.
+         */
+        @SuppressWarnings("nls")
+        public void export(PrintWriter writer) {
+            for (CategorySnapshot snapshot : categories.values()) {
+                String key = snapshot.getCategory().key;
+                writer.println(key + ".count=" + snapshot.getCount());
+                writer.println(key + ".totalNanos=" + snapshot.getTotalNanos());
+                writer.println(key + ".selfNanos=" + snapshot.getSelfNanos());
+                writer.println(key + ".maxNanos=" + snapshot.getMaxNanos());
+                writer.println(key + ".p50Nanos=" + snapshot.getPercentileNanos(50));
+                writer.println(key + ".p90Nanos=" + snapshot.getPercentileNanos(90));
+                writer.println(key + ".p99Nanos=" + snapshot.getPercentileNanos(99));
+                for (int i = 0; i < BUCKETS; i++) {
+                    if (snapshot.histogram[i] > 0) {
+                        String limit = i == BUCKETS - 1 ? "inf" : String.valueOf(1L << i);
+                        writer.println(key + ".histogram.lt" + limit + "us=" + snapshot.histogram[i]);
+                    }
+                }
+                for (Map.Entry<String, Long> counter : snapshot.getCounters().entrySet()) {
+                    writer.println(key + ".counter." + counter.getKey() + "=" + counter.getValue());
+                }
+            }
+            writer.flush();
+        }
+
+        @Override
+        public String toString() {
+            StringWriter writer = new StringWriter();
+            export(new PrintWriter(writer));
+            return writer.toString();
+        }
+    }
+}
@@ -31,6 +31,8 @@ import org.codehaus.groovy.ast.stmt.*;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.ParserPlugin;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
+import org.codehaus.groovy.control.io.ReaderSource;
 import org.codehaus.groovy.control.messages.SyntaxErrorMessage;
 import org.codehaus.groovy.syntax.*;
 import org.objectweb.asm.Opcodes;
@@ -111,12 +113,33 @@ public class AntlrParserPlugin extends ASTHelper implements ParserPlugin, Groovy
 
     
     public /*final*/ Reduction parseCST(final SourceUnit sourceUnit, Reader reader) throws CompilationFailedException {
+        // GRECLIPSE: start
+        /*old{
         final SourceBuffer sourceBuffer = new SourceBuffer();
+        }*/
+        // newcode
+        final SourceBuffer sourceBuffer = createSourceBuffer(sourceUnit);
+        // end
         transformCSTIntoAST(sourceUnit, reader, sourceBuffer);
         processAST();
         return outputAST(sourceUnit,sourceBuffer);
     }
 
+    // GRECLIPSE: new method
+    /**
+     * When the source is already in memory, the buffer works over it in place (and over its line
+     * separators, if the caller has computed them) rather than keeping its own copy.
+     */
+    protected SourceBuffer createSourceBuffer(SourceUnit sourceUnit) {
+        ReaderSource source = sourceUnit.getSource();
+        if (source instanceof CharArrayReaderSource) {
+            CharArrayReaderSource charSource = (CharArrayReaderSource) source;
+            return new SourceBuffer(charSource.getContents(), charSource.getLineSeparators());
+        }
+        return new SourceBuffer();
+    }
+    // end
+
     protected void transformCSTIntoAST(SourceUnit sourceUnit, Reader reader, SourceBuffer sourceBuffer) throws CompilationFailedException {
         ast = null;
 
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse;
+
+/**
+ * The kinds of work {@link GroovyMetrics} keeps timings and counters for.
+ * Unlike {@link TraceCategory} these are not used for filtering log messages.
+ */
+@SuppressWarnings("nls")
+public enum MetricCategory {
+
+    PARSE("parse"), RESOLVE("resolve"), CLASSGEN("classgen"), INFERENCE("inference"), DSLD("dsld"), CONTENT_ASSIST("contentassist");
+
+    MetricCategory(String key) {
+        this.key = key;
+    }
+
+    /**
+     * the name used for this category when metrics are exported
+     */
+    public final String key;
+}
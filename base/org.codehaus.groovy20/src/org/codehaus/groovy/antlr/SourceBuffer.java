@@ -15,8 +15,7 @@
  */
 package org.codehaus.groovy.antlr;
 
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A simple buffer that provides line/col access to chunks of source code
@@ -26,26 +25,58 @@ import java.util.ArrayList;
  * @version $Revision$
  */
 public class SourceBuffer {
+    // GRECLIPSE: start: no longer a list of lines plus a list of boxed line endings
+    /*old{
     private final List<StringBuilder> lines;
     private StringBuilder current;
-    // GRECLIPSE: start
-    private final List<Integer> lineEndings;
+    }*/
+    // newcode
+    // in zero-copy mode, the source the lexer reads and the positions of its line separators,
+    // both belong to the caller and are never modified
+    private final char[] contents;
+    private final int[] lineSeparators;
+
+    // what has been written, left null for as long as that is the start of contents
+    private StringBuilder text;
+
+    // offset in the source at which each line starts
+    private int[] lineEndings;
+    private int lineCount;
+
+    // offset in the written text at which each line starts and where the text ends, built when first needed by getSnippet()
+    private int[] snippetLineStarts;
 
     // GRECLIPSE-805 Support for unicode escape sequences
     private UnicodeEscapingReader unescaper;
     // end
 
     public SourceBuffer() {
-        lines = new ArrayList<StringBuilder>();
-        //lines.add(new StringBuffer()); // dummy row for position [0] in the List
-        // GRECLIPSE: start
-        lineEndings = new ArrayList<Integer>();
-        lineEndings.add(0);
+        this(null, null);
+    }
+
+    // GRECLIPSE: new constructor
+    /**
+     * Creates a buffer for the lexer to write the source into that does not copy the characters
+     * written, as long as they match the source (they will not when it contains unicode escapes).
+     *
+     * @param contents the source that is going to be read
+     * @param lineSeparators the positions of the '\r' or '\n' ending each line of the source, a "\r\n"
+     *        pair is recorded once at its '\n'
+     */
+    public SourceBuffer(char[] contents, int[] lineSeparators) {
+        if (contents != null && lineSeparators != null) {
+            this.contents = contents;
+            this.lineSeparators = lineSeparators;
+        } else {
+            this.contents = null;
+            this.lineSeparators = null;
+            text = new StringBuilder();
+        }
+        lineEndings = new int[16];
+        lineEndings[lineCount++] = 0;
         unescaper = new NoEscaper();
-        // end
-        current = new StringBuilder();
-        lines.add(current);
     }
+    // end
 
     /**
      * Obtains a snippet of the source code within the bounds specified
@@ -57,7 +88,15 @@ public class SourceBuffer {
         // preconditions
         if (start == null || end == null) { return null; } // no text to return
         if (start.equals(end)) { return null; } // no text to return
+        // GRECLIPSE: start
+        /*old{
         if (lines.size() == 1 && current.length() == 0) { return null; } // buffer hasn't been filled yet
+        }*/
+        // newcode
+        if (getLength() == 0) { return null; } // buffer hasn't been filled yet
+        int[] lineStarts = getSnippetLineStarts();
+        int lines = lineStarts.length - 1;
+        // end
 
         // working variables
         int startLine = start.getLine();
@@ -70,9 +109,11 @@ public class SourceBuffer {
         if (endLine < 1) { endLine = 1;}
         if (startColumn < 1) { startColumn = 1;}
         if (endColumn < 1) { endColumn = 1;}
-        if (startLine > lines.size()) { startLine = lines.size(); }
-        if (endLine > lines.size()) { endLine = lines.size(); }
+        if (startLine > lines) { startLine = lines; }
+        if (endLine > lines) { endLine = lines; }
 
+        // GRECLIPSE: start: slice the text rather than rebuilding it line by line
+        /*old{
         // obtain the snippet from the buffer within specified bounds
         StringBuffer snippet = new StringBuffer();
         for (int i = startLine - 1; i < endLine;i++) {
@@ -100,7 +141,114 @@ public class SourceBuffer {
             snippet.append(line);
         }
         return snippet.toString();
+        }*/
+        // newcode
+        if (startLine > endLine) { return ""; }
+        int startLineOffset = lineStarts[startLine - 1];
+        int startLineLength = lineStarts[startLine] - startLineOffset;
+        if (startLine == endLine) {
+            // reset any out of bounds requests (again)
+            if (startColumn > startLineLength) { startColumn = startLineLength;}
+            if (startColumn < 1) { startColumn = 1;}
+            if (endColumn > startLineLength) { endColumn = startLineLength + 1;}
+            if (endColumn < 1) { endColumn = 1;}
+
+            return getText(startLineOffset + startColumn - 1, startLineOffset + endColumn - 1);
+        }
+        int from = startLineOffset;
+        if (startColumn - 1 < startLineLength) {
+            from += startColumn - 1;
+        }
+        int to = lineStarts[endLine];
+        if (endColumn - 1 < to - lineStarts[endLine - 1]) {
+            to = lineStarts[endLine - 1] + endColumn - 1;
+        }
+        return getText(from, to);
+        // end
+    }
+
+    // GRECLIPSE: start
+    private int getLength() {
+        return text == null ? col : text.length();
+    }
+
+    private char getChar(int index) {
+        return text == null ? contents[index] : text.charAt(index);
+    }
+
+    private String getText(int from, int to) {
+        return text == null ? new String(contents, from, to - from) : text.substring(from, to);
+    }
+
+    private int[] getSnippetLineStarts() {
+        int length = getLength();
+        if (snippetLineStarts == null || snippetLineStarts[snippetLineStarts.length - 1] != length) {
+            int[] starts = new int[lineCount + 1];
+            int count = 0;
+            starts[count++] = 0;
+            for (int i = 0; i < length; i++) {
+                char ch = getChar(i);
+                if (ch == '\n' || (ch == '\r' && (i + 1 == length || getChar(i + 1) != '\n'))) {
+                    if (count + 1 >= starts.length) {
+                        starts = grow(starts, count);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            int[] result = new int[count + 1];
+            System.arraycopy(starts, 0, result, 0, count);
+            result[count] = length;
+            snippetLineStarts = result;
+        }
+        return snippetLineStarts;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] larger = new int[array.length * 2];
+        System.arraycopy(array, 0, larger, 0, length);
+        return larger;
+    }
+
+    private void addLineEnding(int offset) {
+        if (lineCount == lineEndings.length) {
+            lineEndings = grow(lineEndings, lineCount);
+        }
+        lineEndings[lineCount++] = offset;
+    }
+
+    /**
+     * @return the number of line separators in the part of contents that has been written
+     */
+    private int getWrittenSeparatorCount() {
+        int index = Arrays.binarySearch(lineSeparators, col);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    /**
+     * @return true if the last character written was the '\r' of a "\r\n" (whose separator position is that of the '\n')
+     */
+    private boolean isHalfWrittenSeparator(int writtenSeparators) {
+        return col > 0 && contents[col - 1] == '\r'
+                && (writtenSeparators == 0 || lineSeparators[writtenSeparators - 1] != col - 1);
+    }
+
+    /**
+     * The characters being written no longer match contents, copy what has been written so far and
+     * switch to recording everything
+     */
+    private void copyWrittenContents() {
+        text = new StringBuilder(contents.length + 16);
+        text.append(contents, 0, col);
+        int writtenSeparators = getWrittenSeparatorCount();
+        for (int i = 0; i < writtenSeparators; i++) {
+            addLineEnding(lineSeparators[i] + 1);
+        }
+        if (isHalfWrittenSeparator(writtenSeparators)) {
+            addLineEnding(col);
+        }
+        prevWasCarriageReturn = col > 0 && contents[col - 1] == '\r';
     }
+    // end
 
     /**
      * Writes the specified character into the buffer
@@ -125,31 +273,34 @@ public class SourceBuffer {
     
     private boolean prevWasCarriageReturn = false;
     private int col = 0;
-    // FIXASC tidy this up, looks slow
+
     public void write(int c) {
+        if (text == null) {
+            if (c == -1) {
+                return;
+            }
+            if (col < contents.length && contents[col] == c) {
+                // same as the source, nothing to record
+                col++;
+                return;
+            }
+            copyWrittenContents();
+        }
         if (c != -1) {
         	col++;
-            current.append((char)c);
+            text.append((char)c);
         }
         if (c == '\n') {
-        	if (!prevWasCarriageReturn) {
-	            current = new StringBuilder();
-	            lines.add(current);
-	            lineEndings.add(col + unescaper.getUnescapedUnicodeOffsetCount());
-        	} else {
-        		// \r\n was found
-        		// back out previous line and add a \n to the line
-        		current = new StringBuilder();
-        		lines.get(lines.size()-1).append('\n');
-        		lineEndings.remove(lineEndings.size()-1);
-        		lineEndings.add(col + unescaper.getUnescapedUnicodeOffsetCount());
+        	if (prevWasCarriageReturn) {
+        		// \r\n was found, the line ends after the \n rather than the \r
+        		lineCount--;
         	}
+        	addLineEnding(col + unescaper.getUnescapedUnicodeOffsetCount());
         }
         // handle carriage returns as well as newlines
         if (c == '\r') {
-        	current = new StringBuilder();
-        	lines.add(current);
-        	lineEndings.add(col + unescaper.getUnescapedUnicodeOffsetCount());
+        	addLineEnding(col + unescaper.getUnescapedUnicodeOffsetCount());
+
         	// this may be a \r\n, but may not be
         	prevWasCarriageReturn = true;
         } else {
@@ -158,11 +309,23 @@ public class SourceBuffer {
     }
     
     public LocationSupport getLocationSupport() {
-    	lineEndings.add(col + unescaper.getUnescapedUnicodeOffsetCount()); // last line ends where the data runs out
-    	int[] lineEndingsArray = new int[lineEndings.size()];
-    	for (int i=0,max=lineEndings.size();i<max;i++) {
-    		lineEndingsArray[i] = lineEndings.get(i).intValue();
-    	}
+        int[] lineEndingsArray;
+        if (text == null) {
+            // the lines are those of the source, up to where the lexer got to
+            int writtenSeparators = getWrittenSeparatorCount();
+            boolean halfWritten = isHalfWrittenSeparator(writtenSeparators);
+            lineEndingsArray = new int[writtenSeparators + (halfWritten ? 3 : 2)];
+            for (int i = 0; i < writtenSeparators; i++) {
+                lineEndingsArray[i + 1] = lineSeparators[i] + 1;
+            }
+            if (halfWritten) {
+                lineEndingsArray[writtenSeparators + 1] = col;
+            }
+        } else {
+            lineEndingsArray = new int[lineCount + 1];
+            System.arraycopy(lineEndings, 0, lineEndingsArray, 0, lineCount);
+        }
+        lineEndingsArray[lineEndingsArray.length - 1] = col + unescaper.getUnescapedUnicodeOffsetCount(); // last line ends where the data runs out
     	return new LocationSupport(lineEndingsArray);
     }
     // end
@@ -15,6 +15,7 @@ import groovy.lang.GroovyClassLoader;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
 import org.eclipse.core.resources.IFile;
 
 /**
@@ -34,6 +35,19 @@ public class EclipseSourceUnit extends SourceUnit {
 		this.file = resource;
 	}
 
+	/**
+	 * Create a source unit that parses the contents in place
+	 * 
+	 * @param lineSeparators the line separator positions in the contents (as for CompilationResult.lineSeparatorPositions), can
+	 *        be null
+	 */
+	public EclipseSourceUnit(IFile resource, String filepath, char[] contents, int[] lineSeparators,
+			CompilerConfiguration groovyCompilerConfig, GroovyClassLoader classLoader, ErrorCollector errorCollector) {
+		super(filepath, new CharArrayReaderSource(contents, lineSeparators, groovyCompilerConfig), groovyCompilerConfig,
+				classLoader, errorCollector);
+		this.file = resource;
+	}
+
 	/**
 	 * Will be null if workspace is closed (ie- batch compilation mode)
 	 */
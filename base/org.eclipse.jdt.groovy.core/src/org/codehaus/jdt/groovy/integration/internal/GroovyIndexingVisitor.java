@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.codehaus.jdt.groovy.integration.internal;
 
+import java.util.List;
 import java.util.SortedSet;
 
 import org.codehaus.groovy.ast.AnnotatedNode;
@@ -30,8 +31,11 @@ import org.codehaus.groovy.ast.expr.ClosureExpression;
 import org.codehaus.groovy.ast.expr.ConstantExpression;
 import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
 import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.Expression;
 import org.codehaus.groovy.ast.expr.FieldExpression;
 import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.SpreadExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
 import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.ast.stmt.Statement;
 import org.codehaus.groovy.control.SourceUnit;
@@ -40,6 +44,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.groovy.core.Activator;
 import org.eclipse.jdt.internal.compiler.ISourceElementRequestor;
 import org.eclipse.jdt.internal.compiler.ast.ImportReference;
+import org.eclipse.jdt.internal.core.search.indexing.SourceIndexerRequestor;
 import org.eclipse.jdt.internal.core.util.Util;
 
 /**
@@ -103,7 +108,12 @@ public class GroovyIndexingVisitor extends ClassCodeVisitorSupport {
 
 	@Override
 	public void visitMethodCallExpression(MethodCallExpression call) {
-		super.visitMethodCallExpression(call);
+		call.getObjectExpression().visit(this);
+		// a constant method name is reported below, not as a constant
+		if (!(call.getMethod() instanceof ConstantExpression)) {
+			call.getMethod().visit(this);
+		}
+		call.getArguments().visit(this);
 		String methodStr = call.getMethodAsString();
 		if (methodStr == null)
 			return;
@@ -112,9 +122,41 @@ public class GroovyIndexingVisitor extends ClassCodeVisitorSupport {
 		int start = call.getStart();
 		// also could be a field reference
 		requestor.acceptFieldReference(methodName, start);
-		// we don't know how many arguments the method has, so go up to 7.
-		for (int i = 0; i < 7; i++) {
-			requestor.acceptMethodReference(methodName, i, start);
+		acceptMethodReference(methodName, countArguments(call.getArguments()), start);
+	}
+
+	/**
+	 * @return the number of arguments, or -1 if it is only known at runtime
+	 */
+	private int countArguments(Expression arguments) {
+		if (!(arguments instanceof TupleExpression)) {
+			return -1;
+		}
+		List<Expression> expressions = ((TupleExpression) arguments).getExpressions();
+		for (Expression expression : expressions) {
+			if (expression instanceof SpreadExpression) {
+				return -1;
+			}
+		}
+		return expressions.size();
+	}
+
+	/**
+	 * Groovy method references get their own index category, so that searches can match them with methods that take another
+	 * number of parameters, see MethodPattern.queryIn(Index)
+	 * 
+	 * @param argCount the number of arguments, or -1 if it is not known
+	 */
+	private void acceptMethodReference(char[] methodName, int argCount, int start) {
+		if (requestor instanceof SourceIndexerRequestor) {
+			((SourceIndexerRequestor) requestor).acceptGroovyMethodReference(methodName, argCount);
+		} else if (argCount >= 0) {
+			requestor.acceptMethodReference(methodName, argCount, start);
+		} else {
+			// we don't know how many arguments the method has, so go up to 7.
+			for (int i = 0; i < 7; i++) {
+				requestor.acceptMethodReference(methodName, i, start);
+			}
 		}
 	}
 
@@ -126,20 +168,33 @@ public class GroovyIndexingVisitor extends ClassCodeVisitorSupport {
 
 	@Override
 	public void visitConstantExpression(ConstantExpression expression) {
-		if (!(expression.isTrueExpression() || expression.isFalseExpression() || expression.isNullExpression() || expression
-				.isEmptyStringExpression())) {
-			char[] constName = expression.getValue().toString().toCharArray();
+		// property names, map keys and the like, numbers and most string literals can never name a member
+		if (isIdentifier(expression.getValue())) {
+			char[] constName = ((String) expression.getValue()).toCharArray();
 			int start = expression.getStart();
 			requestor.acceptFieldReference(constName, start);
 			// also could be a method reference
-			// we don't know how many arguments the method has, so go up to 7.
-			for (int i = 0; i < 7; i++) {
-				requestor.acceptMethodReference(constName, i, start);
-			}
+			acceptMethodReference(constName, -1, start);
 		}
 		super.visitConstantExpression(expression);
 	}
 
+	private static boolean isIdentifier(Object value) {
+		if (!(value instanceof String) || ((String) value).length() == 0) {
+			return false;
+		}
+		String name = (String) value;
+		if (!Character.isJavaIdentifierStart(name.charAt(0))) {
+			return false;
+		}
+		for (int i = 1, length = name.length(); i < length; i++) {
+			if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public void visitCastExpression(CastExpression expression) {
 		handleType(expression.getType(), false, true);
@@ -21,6 +21,7 @@ import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.io.CharArrayReaderSource;
 import org.codehaus.jdt.groovy.integration.EventHandler;
 import org.codehaus.jdt.groovy.integration.LanguageSupport;
 import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyCompilationUnitDeclaration;
@@ -131,8 +132,10 @@ public class GroovyLanguageSupport implements LanguageSupport {
 			CompilerConfiguration groovyCompilerConfig = new CompilerConfiguration();
 			// groovyCompilerConfig.setPluginFactory(new ErrorRecoveredCSTParserPluginFactory(null));
 			ErrorCollector errorCollector = new GroovyErrorCollectorForJDT(groovyCompilerConfig);
-			SourceUnit groovySourceUnit = new SourceUnit(new String(compilationResult.getFileName()),
-					new String(unit.getContents()), groovyCompilerConfig, null, errorCollector);
+			char[] contents = unit.getContents();
+			int[] lineSeparatorPositions = GroovyUtils.getSourceLineSeparatorsIn(contents);
+			SourceUnit groovySourceUnit = new SourceUnit(new String(compilationResult.getFileName()), new CharArrayReaderSource(
+					contents, lineSeparatorPositions, groovyCompilerConfig), groovyCompilerConfig, null, errorCollector);
 
 			// FIXASC missing the classloader configuration (eg. to include transformers)
 			org.codehaus.groovy.control.CompilationUnit groovyCU = new org.codehaus.groovy.control.CompilationUnit(
@@ -141,8 +144,7 @@ public class GroovyLanguageSupport implements LanguageSupport {
 			JDTResolver resolver = new JDTResolver(groovyCU);
 			groovyCU.setResolveVisitor(resolver);
 
-			// TODO groovy get this from the Antlr parser
-			compilationResult.lineSeparatorPositions = GroovyUtils.getSourceLineSeparatorsIn(unit.getContents());
+			compilationResult.lineSeparatorPositions = lineSeparatorPositions;
 
 			groovyCU.addSource(groovySourceUnit);
 			GroovyCompilationUnitDeclaration gcuDeclaration = new GroovyCompilationUnitDeclaration(problemReporter,
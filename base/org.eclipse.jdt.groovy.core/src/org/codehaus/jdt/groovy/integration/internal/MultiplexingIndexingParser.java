@@ -23,13 +23,9 @@ import org.eclipse.jdt.internal.compiler.IProblemFactory;
 import org.eclipse.jdt.internal.compiler.ISourceElementRequestor;
 import org.eclipse.jdt.internal.compiler.SourceElementNotifier;
 import org.eclipse.jdt.internal.compiler.SourceElementParser;
-import org.eclipse.jdt.internal.compiler.ast.AbstractMethodDeclaration;
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
-import org.eclipse.jdt.internal.compiler.ast.FieldDeclaration;
-import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
-import org.eclipse.jdt.internal.compiler.util.HashtableOfObjectToInt;
 import org.eclipse.jdt.internal.core.search.indexing.IndexingParser;
 
 /**
@@ -67,54 +63,20 @@ public class MultiplexingIndexingParser extends IndexingParser {
 
 			CompilationResult compilationResult = new CompilationResult(unit, 0, 0, this.options.maxProblemsPerUnit);
 
-			// FIXASC Is it ok to use a new parser here everytime? If we don't we sometimes recurse back into the first one
-			GroovyCompilationUnitDeclaration cud = (GroovyCompilationUnitDeclaration) new GroovyParser(this.options,
-					problemReporter, false, true).dietParse(unit, compilationResult);
+			// the parser is reused for every file this thread indexes, a new one is handed out if we recurse back into it
+			GroovyCompilationUnitDeclaration cud = (GroovyCompilationUnitDeclaration) GroovyParser.getIndexingParser(
+					this.options, problemReporter).dietParse(unit, compilationResult);
 
-			// CompilationUnitDeclaration cud groovyParser.dietParse(sourceUnit, compilationResult);
-			HashtableOfObjectToInt sourceEnds = createSourceEnds(cud);
 			GroovyIndexingVisitor visitor = new GroovyIndexingVisitor(requestor);
 			visitor.doVisit(cud.getModuleNode(), cud.currentPackage);
 
-			notifier.notifySourceElementRequestor(cud, 0, unit.getContents().length, groovyReportReferenceInfo, sourceEnds,
-			/* We don't care about the @category tag, so pass empty map */Collections.EMPTY_MAP);
+			notifier.notifySourceElementRequestor(cud, 0, unit.getContents().length, groovyReportReferenceInfo,
+					cud.getSourceEnds(),
+					/* We don't care about the @category tag, so pass empty map */Collections.EMPTY_MAP);
 			return cud;
 		} else {
 			return super.parseCompilationUnit(unit, fullParse, pm);
 		}
 	}
 
-	// FIXASC this code is copied from MultiplexingSourceElementParser. Should combine
-	// FIXASC This should be calculated in GroovyCompilationUnitDeclaration
-	private HashtableOfObjectToInt createSourceEnds(CompilationUnitDeclaration cDecl) {
-		HashtableOfObjectToInt table = new HashtableOfObjectToInt();
-		if (cDecl.types != null) {
-			for (TypeDeclaration tDecl : cDecl.types) {
-				createSourceEndsForType(tDecl, table);
-			}
-		}
-		return table;
-	}
-
-	// FIXASC this code is copied from MultiplexingSourceElementParser. Should combine
-	// FIXASC This should be calculated in GroovyCompilationUnitDeclaration
-	private void createSourceEndsForType(TypeDeclaration tDecl, HashtableOfObjectToInt table) {
-		table.put(tDecl, tDecl.sourceEnd);
-		if (tDecl.fields != null) {
-			for (FieldDeclaration fDecl : tDecl.fields) {
-				table.put(fDecl, fDecl.sourceEnd);
-			}
-		}
-		if (tDecl.methods != null) {
-			for (AbstractMethodDeclaration mDecl : tDecl.methods) {
-				table.put(mDecl, mDecl.sourceEnd);
-			}
-		}
-		if (tDecl.memberTypes != null) {
-			for (TypeDeclaration innerTDecl : tDecl.memberTypes) {
-				createSourceEndsForType(innerTDecl, table);
-			}
-		}
-	}
-
 }
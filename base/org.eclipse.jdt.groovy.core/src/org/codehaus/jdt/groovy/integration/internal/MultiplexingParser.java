@@ -47,6 +47,11 @@ public class MultiplexingParser extends Parser {
 		}
 	}
 
+	@Override
+	public void beginParsing(ICompilationUnit[] sourceUnits, int maxUnits) {
+		groovyParser.beginParsing(sourceUnits, maxUnits);
+	}
+
 	@Override
 	public void reset() {
 		groovyParser.reset();
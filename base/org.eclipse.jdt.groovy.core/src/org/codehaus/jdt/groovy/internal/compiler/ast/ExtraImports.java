@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+
+/**
+ * The parsed form of the groovyExtraImports compiler option. The option has the form
+ * 'com.foo.*,com.bar.MyType;.gradle=com.this.*,com.foo.Type' - a ';' separated list of groups, each group optionally qualified
+ * by a file suffix and containing a ',' separated list of on-demand (package.*) and single type imports.
+ * <p>
+ * The specification is parsed once (instances are shared between all CompilerOptions with the same setting) and the result
+ * indexed so the resolver can go straight from a simple type name to the qualified names worth trying, rather than tokenizing
+ * the option string for every unresolved name in every file.
+ * <p>
+ * Note: the suffix qualifiers are recorded but do not currently restrict which files a group applies to, every group applies
+ * to every groovy file (this is the existing behaviour, see GroovySimpleTest.testExtraImports_noneMatchingSuffix).
+ */
+class ExtraImports {
+
+	static class Import {
+		// file suffix this group was qualified with (e.g. '.gradle') or null
+		final String suffix;
+		// for an on-demand import the package prefix including the trailing '.', otherwise the fully qualified type name
+		final String name;
+		final boolean onDemand;
+		// for a single type import, the simple name of the type
+		final String simpleName;
+
+		Import(String suffix, String name, boolean onDemand) {
+			this.suffix = suffix;
+			this.name = name;
+			this.onDemand = onDemand;
+			this.simpleName = onDemand ? null : name.substring(name.lastIndexOf('.') + 1);
+		}
+
+		/**
+		 * @return for an on-demand import the package prefix including the trailing '.', otherwise the type's qualifier
+		 *         including the trailing '.' (empty string if none)
+		 */
+		String getPrefix() {
+			return onDemand ? name : name.substring(0, name.lastIndexOf('.') + 1);
+		}
+	}
+
+	private static final String[] NO_CANDIDATES = new String[0];
+
+	// there are seldom more than a few different settings in a workspace
+	private static final int MAX_SPECIFICATIONS = 16;
+
+	// the simple names looked up grow with the code compiled, only the first ones are remembered
+	private static final int MAX_CANDIDATE_NAMES = 4096;
+
+	// specification > parsed form, the least recently used is dropped once there are too many
+	private static final Map<String, ExtraImports> cache = Collections.synchronizedMap(new LinkedHashMap<String, ExtraImports>(
+			MAX_SPECIFICATIONS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ExtraImports> eldest) {
+			return size() > MAX_SPECIFICATIONS;
+		}
+	});
+
+	/**
+	 * @return the parsed extra imports for these options, or null if none are configured
+	 */
+	static ExtraImports forOptions(CompilerOptions options) {
+		String spec = options.groovyExtraImports;
+		if (spec == null) {
+			return null;
+		}
+		ExtraImports extraImports = cache.get(spec);
+		if (extraImports == null) {
+			extraImports = new ExtraImports(spec);
+			cache.put(spec, extraImports);
+		}
+		return extraImports;
+	}
+
+	private final String specification;
+
+	// all the imports in the order they were declared
+	private final List<Import> imports;
+
+	// the on-demand imports, in declaration order
+	private final List<Import> onDemandImports;
+
+	// simple name > single type imports with that simple name
+	private final Map<String, List<Import>> singleTypeImports;
+
+	// simple name > prefixes to try for that simple name, in declaration order (computed on demand, up to MAX_CANDIDATE_NAMES)
+	private final Map<String, String[]> candidatePrefixes = new ConcurrentHashMap<String, String[]>();
+
+	ExtraImports(String specification) {
+		this.specification = specification;
+		List<Import> imports = new ArrayList<Import>();
+		List<Import> onDemandImports = new ArrayList<Import>();
+		Map<String, List<Import>> singleTypeImports = new LinkedHashMap<String, List<Import>>();
+		try {
+			StringTokenizer st = new StringTokenizer(specification, ";");
+			while (st.hasMoreTokens()) {
+				String onesuffix = st.nextToken();
+				int equals = onesuffix.indexOf('=');
+				String suffix = null;
+				String group = onesuffix;
+				if (equals != -1) {
+					suffix = onesuffix.substring(0, equals);
+					group = onesuffix.substring(equals + 1);
+				}
+				StringTokenizer st2 = new StringTokenizer(group, ",");
+				while (st2.hasMoreTokens()) {
+					String nextElement = st2.nextToken().trim();
+					if (nextElement.length() == 0) {
+						continue;
+					}
+					// One of two forms: a.b.c.* or a.b.c.Type
+					Import anImport;
+					if (nextElement.endsWith(".*")) {
+						anImport = new Import(suffix, nextElement.substring(0, nextElement.length() - 1), true);
+						onDemandImports.add(anImport);
+					} else {
+						anImport = new Import(suffix, nextElement, false);
+						List<Import> sameName = singleTypeImports.get(anImport.simpleName);
+						if (sameName == null) {
+							sameName = new ArrayList<Import>(1);
+							singleTypeImports.put(anImport.simpleName, sameName);
+						}
+						sameName.add(anImport);
+					}
+					imports.add(anImport);
+				}
+			}
+		} catch (Exception e) {
+			new RuntimeException("Problem processing extraImports: " + specification, e).printStackTrace();
+		}
+		this.imports = imports;
+		this.onDemandImports = onDemandImports;
+		this.singleTypeImports = singleTypeImports;
+	}
+
+	String getSpecification() {
+		return specification;
+	}
+
+	/**
+	 * @return all the imports, in declaration order
+	 */
+	List<Import> getImports() {
+		return imports;
+	}
+
+	/**
+	 * Answer the package prefixes (each including its trailing '.') under which the simple type name may be found through these
+	 * imports, in the order they should be tried. Never returns null.
+	 */
+	String[] getCandidatePrefixes(String simpleName) {
+		String[] prefixes = candidatePrefixes.get(simpleName);
+		if (prefixes == null) {
+			List<Import> exact = singleTypeImports.get(simpleName);
+			if (onDemandImports.isEmpty() && exact == null) {
+				prefixes = NO_CANDIDATES;
+			} else {
+				List<String> result = new ArrayList<String>();
+				for (Import anImport : imports) {
+					if (anImport.onDemand || simpleName.equals(anImport.simpleName)) {
+						String prefix = anImport.getPrefix();
+						if (!result.contains(prefix)) {
+							result.add(prefix);
+						}
+					}
+				}
+				prefixes = result.toArray(new String[result.size()]);
+			}
+			if (candidatePrefixes.size() < MAX_CANDIDATE_NAMES) {
+				candidatePrefixes.put(simpleName, prefixes);
+			}
+		}
+		return prefixes;
+	}
+}
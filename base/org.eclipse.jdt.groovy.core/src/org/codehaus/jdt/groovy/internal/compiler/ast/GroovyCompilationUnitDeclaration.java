@@ -101,6 +101,7 @@ import org.eclipse.jdt.internal.compiler.problem.AbortCompilation;
 import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
 import org.eclipse.jdt.internal.compiler.problem.ProblemReporter;
 import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObjectToInt;
 import org.eclipse.jdt.internal.core.util.Util;
 import org.objectweb.asm.Opcodes;
 
@@ -124,6 +125,9 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 
 	private boolean isScript = false;
 
+	// the source end of every type, field and method declaration, recorded as they are created for the source element notifier
+	private HashtableOfObjectToInt sourceEnds = new HashtableOfObjectToInt();
+
 	private static final boolean DEBUG_TASK_TAGS = false;
 
 	public GroovyCompilationUnitDeclaration(ProblemReporter problemReporter, CompilationResult compilationResult, int sourceLength,
@@ -701,6 +705,7 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 			typeDeclaration.methods = createMethodAndConstructorDeclarations(classNode, isEnum, compilationResult);
 			typeDeclaration.fields = createFieldDeclarations(classNode);
 			typeDeclaration.properties = classNode.getProperties();
+			recordSourceEnds(typeDeclaration);
 			if (classNode instanceof InnerClassNode) {
 				InnerClassNode innerClassNode = (InnerClassNode) classNode;
 				ClassNode outerClass = innerClassNode.getOuterClass();
@@ -736,6 +741,28 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 		types = typeDeclarations.toArray(new TypeDeclaration[typeDeclarations.size()]);
 	}
 
+	private void recordSourceEnds(TypeDeclaration typeDeclaration) {
+		sourceEnds.put(typeDeclaration, typeDeclaration.sourceEnd);
+		if (typeDeclaration.fields != null) {
+			for (FieldDeclaration fieldDeclaration : typeDeclaration.fields) {
+				sourceEnds.put(fieldDeclaration, fieldDeclaration.sourceEnd);
+			}
+		}
+		if (typeDeclaration.methods != null) {
+			for (AbstractMethodDeclaration methodDeclaration : typeDeclaration.methods) {
+				sourceEnds.put(methodDeclaration, methodDeclaration.sourceEnd);
+			}
+		}
+	}
+
+	/**
+	 * @return the source ends of the type, field and method declarations, as passed to
+	 *         {@link org.eclipse.jdt.internal.compiler.SourceElementNotifier#notifySourceElementRequestor}
+	 */
+	public HashtableOfObjectToInt getSourceEnds() {
+		return sourceEnds;
+	}
+
 	public char[] toMainName(char[] fileName) {
 		if (fileName == null) {
 			return new char[0];
@@ -1528,7 +1555,6 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 
 	// FIXASC are costly regens being done for all the classes???
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void generateCode() {
 		boolean successful = processToPhase(Phases.ALL);
@@ -1555,8 +1581,16 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 			// we have to do very little hunting for the binding and don't have to mess around with strings (chopping off
 			// packages, etc).
 
-			// This returns all of them, for all source files
-			List<GroovyClass> classes = groovyCompilationUnit.getClasses();
+			// This returns only those coming about because of this groovySourceUnit (the shared
+			// CompilationUnit indexes them by SourceUnit as they are generated)
+			List<GroovyClass> classes = groovyCompilationUnit.getClasses(groovySourceUnit);
+
+			// Index the bindings for the declared types (including member types) so that each
+			// lookup below is a map access rather than a walk over the type declarations
+			Map<ClassNode, SourceTypeBinding> bindings = new HashMap<ClassNode, SourceTypeBinding>();
+			if (types != null) {
+				collectBindings(types, bindings);
+			}
 
 			if (DEBUG) {
 				log("Processing sourceUnit " + groovySourceUnit.getName());
@@ -1568,52 +1602,41 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 					log("Looking at class " + clazz.getName());
 					log("ClassNode where it came from " + classnode);
 				}
-				// Only care about those coming about because of this groovySourceUnit
-				if (clazz.getSourceUnit() == groovySourceUnit) {
-					if (DEBUG) {
-						log("It is from this source unit");
-					}
-					// Worth continuing
-					String classname = clazz.getName();
-					SourceTypeBinding binding = null;
-					if (types != null && types.length != 0) {
-						binding = findBinding(types, clazz.getClassNode());
-					}
-					if (DEBUG) {
-						log("Binding located?" + (binding != null));
-					}
-					if (binding == null) {
-						// closures will be represented as InnerClassNodes
-						ClassNode current = classnode;
-						while (current instanceof InnerClassNode && binding == null) {
-							current = ((InnerClassNode) current).getOuterClass();
-							binding = findBinding(types, current);
-							if (DEBUG) {
-								log("Had another look because it is in an InnerClassNode, found binding? " + (binding != null));
-							}
+				String classname = clazz.getName();
+				SourceTypeBinding binding = bindings.get(classnode);
+				if (DEBUG) {
+					log("Binding located?" + (binding != null));
+				}
+				if (binding == null) {
+					// closures will be represented as InnerClassNodes
+					ClassNode current = classnode;
+					while (current instanceof InnerClassNode && binding == null) {
+						current = ((InnerClassNode) current).getOuterClass();
+						binding = bindings.get(current);
+						if (DEBUG) {
+							log("Had another look because it is in an InnerClassNode, found binding? " + (binding != null));
 						}
 					}
-					if (binding == null) {
-						RuntimeException rEx = new RuntimeException("Couldn't find binding for '" + classname
-								+ "': do you maybe have a duplicate type around?");
-						rEx.printStackTrace();
-						Util.log(rEx, "Couldn't find binding for '" + classname + "': do you maybe have a duplicate type around?");
-					} else {
-						// Suppress class file output if it is a script
-						boolean isScript = false;
-						if (binding.scope != null && (binding.scope.parent instanceof GroovyCompilationUnitScope)) {
-							GroovyCompilationUnitScope gcuScope = (GroovyCompilationUnitScope) binding.scope.parent;
-							if (gcuScope.isScript()) {
-								isScript = true;
-							}
-						}
-						if (!isScript) {
-							byte[] classbytes = clazz.getBytes();
-							String path = clazz.getName().replace('.', '/');
-							compilationResult.record(classname.toCharArray(), new GroovyClassFile(classname, classbytes, binding,
-									path));
+				}
+				if (binding == null) {
+					RuntimeException rEx = new RuntimeException("Couldn't find binding for '" + classname
+							+ "': do you maybe have a duplicate type around?");
+					rEx.printStackTrace();
+					Util.log(rEx, "Couldn't find binding for '" + classname + "': do you maybe have a duplicate type around?");
+				} else {
+					// Suppress class file output if it is a script
+					boolean isScript = false;
+					if (binding.scope != null && (binding.scope.parent instanceof GroovyCompilationUnitScope)) {
+						GroovyCompilationUnitScope gcuScope = (GroovyCompilationUnitScope) binding.scope.parent;
+						if (gcuScope.isScript()) {
+							isScript = true;
 						}
 					}
+					if (!isScript) {
+						byte[] classbytes = clazz.getBytes();
+						String path = clazz.getName().replace('.', '/');
+						compilationResult.record(classname.toCharArray(), new GroovyClassFile(classname, classbytes, binding, path));
+					}
 				}
 			}
 		}
@@ -1623,20 +1646,21 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 		System.out.println(message);
 	}
 
-	private SourceTypeBinding findBinding(TypeDeclaration[] typedeclarations, ClassNode cnode) {
+	/**
+	 * Record the binding of each type declaration (and, recursively, of its member types) against the ClassNode it was built
+	 * from. Where two declarations map to equal ClassNodes the first one encountered wins, as it did for the linear search.
+	 */
+	private void collectBindings(TypeDeclaration[] typedeclarations, Map<ClassNode, SourceTypeBinding> bindings) {
 		for (TypeDeclaration typedeclaration : typedeclarations) {
 			GroovyTypeDeclaration groovyTypeDeclaration = (GroovyTypeDeclaration) typedeclaration;
-			if (groovyTypeDeclaration.getClassNode().equals(cnode)) {
-				return groovyTypeDeclaration.binding;
+			ClassNode classNode = groovyTypeDeclaration.getClassNode();
+			if (!bindings.containsKey(classNode)) {
+				bindings.put(classNode, groovyTypeDeclaration.binding);
 			}
 			if (typedeclaration.memberTypes != null) {
-				SourceTypeBinding binding = findBinding(typedeclaration.memberTypes, cnode);
-				if (binding != null) {
-					return binding;
-				}
+				collectBindings(typedeclaration.memberTypes, bindings);
 			}
 		}
-		return null;
 	}
 
 	// ---
@@ -2091,7 +2115,11 @@ public class GroovyCompilationUnitDeclaration extends CompilationUnitDeclaration
 
 	@Override
 	public void cleanUp() {
-		// FIXASC any tidy up for us to do?
+		// the resolver may be kept for later lookups (see ModuleNodeMapper), which must not rely on what was missing during this
+		// compile
+		if (groovyCompilationUnit.getResolveVisitor() instanceof JDTResolver) {
+			((JDTResolver) groovyCompilationUnit.getResolveVisitor()).cleanUp();
+		}
 		super.cleanUp();
 	}
 
@@ -15,7 +15,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 import org.codehaus.groovy.ast.ClassNode;
 import org.eclipse.jdt.core.compiler.CharOperation;
@@ -23,7 +22,6 @@ import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
 import org.eclipse.jdt.internal.compiler.ast.ImportReference;
 import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
 import org.eclipse.jdt.internal.compiler.ast.TypeReference;
-import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
 import org.eclipse.jdt.internal.compiler.lookup.BinaryTypeBinding;
 import org.eclipse.jdt.internal.compiler.lookup.Binding;
 import org.eclipse.jdt.internal.compiler.lookup.ClassScope;
@@ -51,6 +49,12 @@ public class GroovyCompilationUnitScope extends CompilationUnitScope {
 
 	private Map<String, ClassNode> typenameToClassNodeCache = new HashMap<String, ClassNode>();
 
+	// shared with the other scopes using the same lookup environment
+	private GroovyResolutionCache resolutionCache;
+
+	// the package and imports of this unit, which the answers in the resolution cache depend on
+	private String lookupContext;
+
 	private static final char[][] javaLang;
 	// Matches ResolveVisitor - these are the additional automatic imports for groovy files
 	private static final char[][] javaIo;
@@ -116,54 +120,25 @@ public class GroovyCompilationUnitScope extends CompilationUnitScope {
 		Binding jmBigInteger = environment.getType(javaMathBigInteger);
 		importBindings.add(new ImportBinding(javaMathBigInteger, false, jmBigInteger, null));
 
-		CompilerOptions co = compilerOptions();
-		String extraImports = co.groovyExtraImports;
 		// TODO support static imports
-		// TODO need to refactor (code is copied in JDTResolver)
+		ExtraImports extraImports = ExtraImports.forOptions(compilerOptions());
 		if (extraImports != null) {
 			try {
-				String filename = new String(this.referenceContext.getFileName());
-				// may be something to do
-				StringTokenizer st = new StringTokenizer(extraImports, ";");
-				// Form would be 'com.foo.*,com.bar.MyType;.gradle=com.this.*,com.foo.Type"
-				// If there is no qualifying suffix it applies to all types
-
-				while (st.hasMoreTokens()) {
-					String onesuffix = st.nextToken();
-					int equals = onesuffix.indexOf('=');
-					boolean shouldApply = false;
-					String imports = null;
-					if (equals == -1) {
-						// definetly applies
-						shouldApply = true;
-						imports = onesuffix;
+				for (ExtraImports.Import extraImport : extraImports.getImports()) {
+					if (extraImport.onDemand) {
+						String withoutDotStar = extraImport.name.substring(0, extraImport.name.length() - 1);
+						char[][] cs = CharOperation.splitOn('.', withoutDotStar.toCharArray());
+						importBinding = environment.createPackage(cs);
+						// TODO verify binding exists!
+						importBindings.add(new ImportBinding(cs, true, importBinding, null));
 					} else {
-						// need to check the suffix
-						String suffix = onesuffix.substring(0, equals);
-						shouldApply = filename.endsWith(suffix);
-						imports = onesuffix.substring(equals + 1);
-					}
-					StringTokenizer st2 = new StringTokenizer(imports, ",");
-					while (st2.hasMoreTokens()) {
-						String nextElement = st2.nextToken();
-						// One of two forms: a.b.c.* or a.b.c.Type
-						if (nextElement.endsWith(".*")) {
-							char[] withoutDotStar = nextElement.substring(0, nextElement.length() - 2).toCharArray();
-							char[][] cs = CharOperation.splitOn('.', withoutDotStar);
-							importBinding = environment.createPackage(cs);
-							// TODO verify binding exists!
-							importBindings.add(new ImportBinding(cs, true, importBinding, null));
-						} else {
-							char[] type = nextElement.toCharArray();
-							char[][] cs = CharOperation.splitOn('.', type);
-							Binding typeBinding = environment.getType(cs);
-							importBindings.add(new ImportBinding(cs, false, typeBinding, null));
-						}
+						char[][] cs = CharOperation.splitOn('.', extraImport.name.toCharArray());
+						Binding typeBinding = environment.getType(cs);
+						importBindings.add(new ImportBinding(cs, false, typeBinding, null));
 					}
-
 				}
 			} catch (Exception e) {
-				new RuntimeException("Problem processing extraImports: " + extraImports, e).printStackTrace();
+				new RuntimeException("Problem processing extraImports: " + extraImports.getSpecification(), e).printStackTrace();
 			}
 		}
 
@@ -224,11 +199,9 @@ public class GroovyCompilationUnitScope extends CompilationUnitScope {
 			return node;
 		}
 
-		char[][] compoundName = CharOperation.splitOn('.', typename.toCharArray());
-
 		TypeBinding jdtBinding = null;
 		try {
-			jdtBinding = getType(compoundName, compoundName.length);
+			jdtBinding = lookupType(typename);
 		} catch (AbortCompilation t) {
 			if (t.silentException instanceof AbortIncrementalBuildException) {
 				jdtBinding = null;
@@ -273,8 +246,7 @@ public class GroovyCompilationUnitScope extends CompilationUnitScope {
 	// FIXASC worth a cache for binary bindings or would it just not get hit due to the binary binding support in the other
 	// lookup method?
 	public ClassNode lookupClassNodeForBinary(String typename, JDTResolver jdtResolver) {
-		char[][] compoundName = CharOperation.splitOn('.', typename.toCharArray());
-		TypeBinding jdtBinding = getType(compoundName, compoundName.length);
+		TypeBinding jdtBinding = lookupType(typename);
 
 		if (jdtBinding != null && (jdtBinding instanceof BinaryTypeBinding)) {
 			// log("GCUScope.lookupClassNodeForBinary(): JDTBinding for '" + typename + "' found to be "
@@ -295,6 +267,67 @@ public class GroovyCompilationUnitScope extends CompilationUnitScope {
 		return null;
 	}
 
+	/**
+	 * Ask JDT for the type. The answer is remembered in the resolution cache for the lookup environment, so the other scopes in
+	 * the build with the same package and imports that probe the same name do not have to ask again.
+	 */
+	private TypeBinding lookupType(String typename) {
+		char[][] compoundName = CharOperation.splitOn('.', typename.toCharArray());
+		if (resolutionCache == null) {
+			resolutionCache = GroovyResolutionCache.forEnvironment(environment);
+			lookupContext = getLookupContext();
+		}
+		if (resolutionCache.contains(lookupContext, typename)) {
+			TypeBinding cachedBinding = resolutionCache.get(lookupContext, typename);
+			// JDT would have recorded these references whilst doing the lookup, they are needed for incremental building
+			recordQualifiedReference(compoundName);
+			if (cachedBinding instanceof ReferenceBinding && cachedBinding.isValidBinding()) {
+				recordTypeReference(cachedBinding);
+			}
+			return cachedBinding;
+		}
+		TypeBinding jdtBinding = getType(compoundName, compoundName.length);
+		if (isScopeIndependent(jdtBinding)) {
+			resolutionCache.put(lookupContext, typename, jdtBinding);
+		}
+		return jdtBinding;
+	}
+
+	/**
+	 * @return the package and the imports of this unit, including aliases and the extra imports that apply to every unit
+	 */
+	private String getLookupContext() {
+		StringBuilder sb = new StringBuilder();
+		if (fPackage != null) {
+			sb.append(fPackage.readableName());
+		}
+		ImportReference[] imports = referenceContext.imports;
+		if (imports != null) {
+			for (ImportReference importReference : imports) {
+				sb.append(';').append(importReference).append(" as ").append(importReference.getSimpleName());
+			}
+		}
+		String extraImports = compilerOptions().groovyExtraImports;
+		if (extraImports != null) {
+			sb.append(';').append(extraImports);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Visibility is checked relative to this scope, so only answers that cannot change with the package of the asker are shared:
+	 * public types and types that do not exist.
+	 */
+	private boolean isScopeIndependent(TypeBinding binding) {
+		if (binding == null) {
+			return true;
+		}
+		if (!binding.isValidBinding()) {
+			return binding.problemId() == ProblemReasons.NotFound;
+		}
+		return binding instanceof ReferenceBinding && ((ReferenceBinding) binding).isPublic();
+	}
+
 	// let it run to create synthetic methods
 	// @Override
 	// public void verifyMethods(MethodVerifier verifier) {
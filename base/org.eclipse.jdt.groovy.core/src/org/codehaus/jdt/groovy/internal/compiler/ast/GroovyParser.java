@@ -15,13 +15,16 @@ package org.codehaus.jdt.groovy.internal.compiler.ast;
 import groovy.lang.GroovyClassLoader;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.jar.JarFile;
@@ -44,6 +47,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.util.CompilerUtils;
+import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
 import org.eclipse.jdt.groovy.core.util.GroovyUtils;
 import org.eclipse.jdt.groovy.core.util.ScriptFolderSelector;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
@@ -56,6 +60,7 @@ import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
 import org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment;
 import org.eclipse.jdt.internal.compiler.problem.ProblemReporter;
+import org.eclipse.jdt.internal.core.builder.AbstractImageBuilder;
 import org.eclipse.jdt.internal.core.builder.BatchImageBuilder;
 import org.eclipse.jdt.internal.core.builder.BuildNotifier;
 import org.eclipse.jdt.internal.core.builder.SourceFile;
@@ -81,26 +86,39 @@ public class GroovyParser {
 	private boolean allowTransforms;
 	private boolean isReconcile;
 	private ScriptFolderSelector scriptFolderSelector;
+	// set once the builder has given this parser a file of the current batch, see reportBatch()
+	private boolean inBuildBatch;
+	// parses the groovy files faulted in while the compilation unit of this parser is compiling, see dietParse()
+	private GroovyParser faultedInParser;
+	// groovy files of the batch that have been added to the groovy compilation unit but not yet parsed, see beginParsing()
+	private Map<ICompilationUnit, PreparedSource> preparedSources;
 
 	/*
-	 * Each project is allowed a GroovyClassLoader that will be used to load transform definitions and supporting classes. A cache
-	 * is maintained from project names to the current classpath and associated loader. If the classpath matches the cached version
-	 * on a call to build a parser then it is reused. If it does not match then a new loader is created and stored (storing it
-	 * orphans the previously cached one). When either a full build or a clean or project close occurs, we also discard the loader
-	 * instances associated with the project.
+	 * Indexing only needs the declarations in a file, which are known once it has been converted to a groovy AST. Parsers created
+	 * for indexing skip setting up the transform and grab loaders, the resolver and the grails support, and are reused by the
+	 * indexing thread for each file it indexes (see getIndexingParser()). Every file still gets a groovy compilation unit of its
+	 * own so that the ASTs of the indexed files are not kept around.
 	 */
+	private static final ThreadLocal<GroovyParser> indexingParsers = new ThreadLocal<GroovyParser>();
+	private boolean forIndexing;
+	// set while an indexing parser is parsing, a parser asked for in the meantime must be a different one
+	private boolean parsing;
+	private CompilerConfiguration indexingConfiguration;
+	private GroovyClassLoader indexingLoader;
 
-	private static Map<String, PathLoaderPair> projectToLoaderCache = Collections
-			.synchronizedMap(new HashMap<String, PathLoaderPair>());
+	/*
+	 * Each project is allowed a GroovyClassLoader that will be used to load transform definitions and supporting classes. The
+	 * loaders are pooled by a fingerprint of their classpath (see TransformLoaderCache) so that projects with the same transform
+	 * classpath share a loader. If the classpath is the one the project used last time, and none of its entries has been
+	 * reported as changed, then the loader is reused. Otherwise the project switches to the pooled loader for the fingerprint
+	 * of the classpath, creating it if necessary. When a clean occurs the project gives up its reference, and on project close the loader is discarded (and its
+	 * jars closed) once no other project is using it.
+	 */
 
-	static class PathLoaderPair {
-		String classpath;
-		GroovyClassLoader groovyClassLoader;
+	private static TransformLoaderCache transformLoaderCache = new TransformLoaderCache();
 
-		PathLoaderPair(String classpath) {
-			this.classpath = classpath;
-			this.groovyClassLoader = new GroovyClassLoader(createConfigureLoader(classpath));
-		}
+	public static TransformLoaderCache getTransformLoaderCache() {
+		return transformLoaderCache;
 	}
 
 	/**
@@ -141,18 +159,18 @@ public class GroovyParser {
 	}
 
 	/**
-	 * Remove all cached classloaders for this project
+	 * Release the classloader held for this project. It remains pooled for other projects (or a later build) with the same
+	 * transform classpath.
 	 */
 	public static void tidyCache(String projectName) {
-		// This will orphan the loader on the heap
-		projectToLoaderCache.remove(projectName);
+		transformLoaderCache.release(projectName, false);
 	}
 
+	/**
+	 * Release the classloader held for this project, closing its jars if no other project is using it.
+	 */
 	public static void closeClassLoader(String projectName) {
-		PathLoaderPair pathLoaderPair = projectToLoaderCache.get(projectName);
-		if (pathLoaderPair != null) {
-			close(pathLoaderPair.groovyClassLoader);
-		}
+		transformLoaderCache.release(projectName, true);
 	}
 
 	// public GroovyParser(CompilerOptions options, ProblemReporter problemReporter) {
@@ -186,13 +204,7 @@ public class GroovyParser {
 									Field f = FileSystem.class.getDeclaredField("classpaths");
 									if (f != null) {
 										f.setAccessible(true);
-										gclForBatch = new GroovyClassLoader();
-										Classpath[] classpaths = (Classpath[]) f.get(fileSystem);
-										if (classpaths != null) {
-											for (int i = 0; i < classpaths.length; i++) {
-												gclForBatch.addClasspath(classpaths[i].getPath());
-											}
-										}
+										gclForBatch = createBatchLoader((Classpath[]) f.get(fileSystem));
 									} else {
 										System.err.println("Cannot find classpaths field on FileSystem class");
 									}
@@ -211,29 +223,92 @@ public class GroovyParser {
 			if (projectName == null) {
 				// throw new IllegalStateException("Cannot build without knowing project name");
 			} else {
-				PathLoaderPair pathAndLoader = projectToLoaderCache.get(projectName);
-				if (pathAndLoader == null) {
-					if (GroovyLogManager.manager.hasLoggers()) {
-						GroovyLogManager.manager.log(TraceCategory.AST_TRANSFORM,
-								"Classpath for GroovyClassLoader (used to discover transforms): " + path);
-					}
-					pathAndLoader = new PathLoaderPair(path);
-					projectToLoaderCache.put(projectName, pathAndLoader);
-				} else {
-					if (!path.equals(pathAndLoader.classpath)) {
-						// classpath change detected
-						// System.out.println("Classpath change detected for " + projectName);
-						pathAndLoader = new PathLoaderPair(path);
-						projectToLoaderCache.put(projectName, pathAndLoader);
-					}
+				gcl = transformLoaderCache.acquire(projectName, path);
+			}
+		}
+		return gcl;
+	}
+
+	/*
+	 * A batch compiler that is kept running to compile one module after the other (the groovy-eclipse-compiler daemon sets
+	 * greclipse.batch.reuseTransformLoaders) sees mostly the same jars each time. Those are given to the transform loader cache
+	 * so the transforms on them are only loaded once. Folders, such as the output folders of the modules, may have changed since
+	 * the last compile and so get a fresh loader on top each time. That loader holds every entry up to the last folder and looks
+	 * in them before asking the shared loader of the jars after it, so classes are still found in the order of the classpath.
+	 */
+	private static final String BATCH_LOADER_OWNER = "<batch>";
+
+	private static GroovyClassLoader createBatchLoader(Classpath[] classpaths) {
+		if (!Boolean.getBoolean("greclipse.batch.reuseTransformLoaders")) {
+			GroovyClassLoader gcl = new GroovyClassLoader();
+			if (classpaths != null) {
+				for (int i = 0; i < classpaths.length; i++) {
+					gcl.addClasspath(classpaths[i].getPath());
 				}
-				// System.out.println("Using loader with path " + pathAndLoader.classpath);
-				gcl = pathAndLoader.groovyClassLoader;
 			}
+			return gcl;
+		}
+		int lastFolder = -1;
+		int length = classpaths != null ? classpaths.length : 0;
+		for (int i = 0; i < length; i++) {
+			if (new File(classpaths[i].getPath()).isDirectory()) {
+				lastFolder = i;
+			}
+		}
+		StringBuilder jars = new StringBuilder();
+		for (int i = lastFolder + 1; i < length; i++) {
+			jars.append(classpaths[i].getPath()).append(File.pathSeparator);
+		}
+		// there are no deltas to tell of changed jars, so check them for each compile
+		GroovyClassLoader gcl = new LocalFirstClassLoader(transformLoaderCache.acquire(BATCH_LOADER_OWNER, jars.toString(), true));
+		for (int i = 0; i <= lastFolder; i++) {
+			gcl.addClasspath(classpaths[i].getPath());
 		}
 		return gcl;
 	}
 
+	/**
+	 * A loader that looks at its own entries before asking its parent, for entries that come before those of a shared parent in
+	 * the classpath.
+	 */
+	static class LocalFirstClassLoader extends GroovyClassLoader {
+
+		LocalFirstClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		@Override
+		public Class<?> loadClass(String name, boolean lookupScriptFiles, boolean preferClassOverScript, boolean resolve)
+				throws ClassNotFoundException {
+			Class<?> local = findLocalClass(name);
+			if (local != null) {
+				if (resolve) {
+					resolveClass(local);
+				}
+				return local;
+			}
+			return super.loadClass(name, lookupScriptFiles, preferClassOverScript, resolve);
+		}
+
+		private synchronized Class<?> findLocalClass(String name) {
+			Class<?> loaded = findLoadedClass(name);
+			if (loaded != null || name.startsWith("java.")) { //$NON-NLS-1$
+				return loaded;
+			}
+			try {
+				return findClass(name);
+			} catch (ClassNotFoundException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public URL getResource(String name) {
+			URL local = findResource(name);
+			return local != null ? local : super.getResource(name);
+		}
+	}
+
 	// FIXASC review callers who pass null for options
 	public GroovyParser(Object requestor, CompilerOptions options, ProblemReporter problemReporter, boolean allowTransforms,
 			boolean isReconcile) {
@@ -289,6 +364,36 @@ public class GroovyParser {
 		groovyCompilationUnit.setResolveVisitor(resolver);
 	}
 
+	private GroovyParser(CompilerOptions options, ProblemReporter problemReporter) {
+		this.compilerOptions = options;
+		this.problemReporter = problemReporter;
+		this.projectName = options.groovyProjectName;
+		this.isReconcile = true;
+		this.forIndexing = true;
+		this.indexingConfiguration = new CompilerConfiguration();
+		this.indexingLoader = new GroovyClassLoader();
+	}
+
+	/**
+	 * @return a parser for the calling thread that only takes files as far as the conversion to a groovy AST, which is all the
+	 *         indexer needs
+	 */
+	public static GroovyParser getIndexingParser(CompilerOptions options, ProblemReporter problemReporter) {
+		GroovyParser parser = indexingParsers.get();
+		if (parser == null) {
+			parser = new GroovyParser(options, problemReporter);
+			indexingParsers.set(parser);
+		} else if (parser.parsing) {
+			// parsing a file has led to indexing another one
+			return new GroovyParser(options, problemReporter);
+		} else {
+			parser.compilerOptions = options;
+			parser.problemReporter = problemReporter;
+			parser.projectName = options.groovyProjectName;
+		}
+		return parser;
+	}
+
 	static class GrapeAwareGroovyClassLoader extends GroovyClassLoader {
 
 		// Could be prodded to indicate a grab has occurred within this compilation unit
@@ -354,7 +459,7 @@ public class GroovyParser {
 		}
 	}
 
-	private static URLClassLoader createConfigureLoader(String path) {
+	static URLClassLoader createConfigureLoader(String path) {
 		// GRECLIPSE-1090
 		ClassLoader pcl = GroovyParser.class.getClassLoader();// Thread.currentThread().getContextClassLoader();
 		if (path == null) {
@@ -396,51 +501,69 @@ public class GroovyParser {
 	}
 
 	/**
-	 * Call the groovy parser to drive the first few phases of
+	 * Adds the groovy files of the batch the compiler is about to parse to the groovy compilation unit up front. The first of them
+	 * to be parsed then takes all of them through conversion, on several threads if the groovy compilation unit is allowed more
+	 * than one (see CompilationUnit.setParallelism()), and the others find their module node already built when their turn comes.
 	 */
-	public CompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult) {
-		char[] sourceCode = sourceUnit.getContents();
-		if (sourceCode == null) {
-			sourceCode = CharOperation.NO_CHAR; // pretend empty from thereon
+	public void beginParsing(ICompilationUnit[] sourceUnits, int maxUnits) {
+		if (forIndexing || groovyCompilationUnit.isCompiling()) {
+			return;
 		}
-
-		// FIXASC (M3) need our own tweaked subclass of CompilerConfiguration?
-		CompilerConfiguration groovyCompilerConfig = new CompilerConfiguration();
-		// groovyCompilerConfig.setPluginFactory(new ErrorRecoveredCSTParserPluginFactory(null));
-		ErrorCollector errorCollector = new GroovyErrorCollectorForJDT(groovyCompilerConfig);
-		String filepath = null;
-
-		// This check is necessary because the filename is short (as in the last part, eg. Foo.groovy) for types coming in
-		// from the hierarchy resolver. If there is the same type in two different packages then the compilation process
-		// is going to go wrong because the filename is used as a key in some groovy data structures. This can lead to false
-		// complaints about the same file defining duplicate types.
-		if (sourceUnit instanceof org.eclipse.jdt.internal.compiler.batch.CompilationUnit) {
-			filepath = new String(((org.eclipse.jdt.internal.compiler.batch.CompilationUnit) sourceUnit).fileName);
-		} else {
-			filepath = new String(sourceUnit.getFileName());
+		for (int i = 0; i < maxUnits; i++) {
+			ICompilationUnit sourceUnit = sourceUnits[i];
+			if (ContentTypeUtils.isGroovyLikeFileName(sourceUnit.getFileName())) {
+				if (preparedSources == null) {
+					preparedSources = new IdentityHashMap<ICompilationUnit, PreparedSource>();
+				}
+				if (!preparedSources.containsKey(sourceUnit)) {
+					preparedSources.put(sourceUnit, prepareSource(sourceUnit, new CompilerConfiguration()));
+				}
+			}
 		}
+	}
 
-		// Try to turn this into a 'real' absolute file system reference (this is because Grails 1.5 expects it).
-		Path path = new Path(filepath);
-		IFile eclipseFile = null;
-		// GRECLIPSE-1269 ensure get plugin is not null to ensure the workspace is open (ie- not in batch mode)
-		if (ResourcesPlugin.getPlugin() != null && path.segmentCount() >= 2) { // Needs 2 segments: a project and file name or
-																				// eclipse throws assertion failed here.
-			eclipseFile = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(filepath));
-			final IPath location = eclipseFile.getLocation();
-			if (location != null) {
-				filepath = location.toFile().getAbsolutePath();
+	/**
+	 * Call the groovy parser to drive the first few phases of
+	 */
+	public CompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult) {
+		if (!forIndexing) {
+			if (groovyCompilationUnit.isCompiling()) {
+				// Faulted in by a type lookup made while compiling the other files, which happens when the builder compiles a
+				// project in batches and a type is declared by a file of a later batch. Files cannot be added to a compilation
+				// unit that is compiling, so the files faulted in go to a compilation unit of their own, shared by all of them
+				// until it starts compiling beyond conversion.
+				if (faultedInParser == null || !faultedInParser.canAddSources()) {
+					faultedInParser = new GroovyParser(requestor, compilerOptions, problemReporter, allowTransforms, isReconcile);
+				}
+				return faultedInParser.dietParse(sourceUnit, compilationResult, new CompilerConfiguration());
+			}
+			if (!inBuildBatch && isBuild()) {
+				inBuildBatch = true;
+				resetPeakHeapUsage();
 			}
+			// FIXASC (M3) need our own tweaked subclass of CompilerConfiguration?
+			return dietParse(sourceUnit, compilationResult, new CompilerConfiguration());
 		}
+		parsing = true;
+		try {
+			groovyCompilationUnit = new CompilationUnit(null, null, indexingLoader, null, false, null);
+			groovyCompilationUnit.tweak(true);
+			return dietParse(sourceUnit, compilationResult, indexingConfiguration);
+		} finally {
+			groovyCompilationUnit = null;
+			parsing = false;
+		}
+	}
 
-		SourceUnit groovySourceUnit = new EclipseSourceUnit(eclipseFile, filepath, new String(sourceCode), groovyCompilerConfig,
-				groovyCompilationUnit.getClassLoader(), errorCollector);
-		groovySourceUnit.isReconcile = isReconcile;
+	private CompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult,
+			CompilerConfiguration groovyCompilerConfig) {
+		PreparedSource prepared = preparedSources != null ? preparedSources.remove(sourceUnit) : null;
+		if (prepared == null) {
+			prepared = prepareSource(sourceUnit, groovyCompilerConfig);
+		}
 		GroovyCompilationUnitDeclaration gcuDeclaration = new GroovyCompilationUnitDeclaration(problemReporter, compilationResult,
-				sourceCode.length, groovyCompilationUnit, groovySourceUnit, compilerOptions);
-		// FIXASC get this from the Antlr parser
-		compilationResult.lineSeparatorPositions = GroovyUtils.getSourceLineSeparatorsIn(sourceCode);
-		groovyCompilationUnit.addSource(groovySourceUnit);
+				prepared.sourceCode.length, groovyCompilationUnit, prepared.groovySourceUnit, compilerOptions);
+		compilationResult.lineSeparatorPositions = prepared.lineSeparatorPositions;
 
 		// Check if it is worth plugging in a callback listener for parse/generation
 		if (requestor instanceof org.eclipse.jdt.internal.compiler.Compiler) {
@@ -458,9 +581,11 @@ public class GroovyParser {
 		// Otherwise, recover what we can
 		if (gcuDeclaration.getModuleNode() != null) {
 			gcuDeclaration.populateCompilationUnitDeclaration();
-			for (TypeDeclaration decl : gcuDeclaration.types) {
-				GroovyTypeDeclaration gtDeclaration = (GroovyTypeDeclaration) decl;
-				resolver.record(gtDeclaration);
+			if (resolver != null) {
+				for (TypeDeclaration decl : gcuDeclaration.types) {
+					GroovyTypeDeclaration gtDeclaration = (GroovyTypeDeclaration) decl;
+					resolver.record(gtDeclaration);
+				}
 			}
 		}
 		// Is this a script?
@@ -482,6 +607,63 @@ public class GroovyParser {
 		return gcuDeclaration;
 	}
 
+	/**
+	 * A groovy file that has been added to the groovy compilation unit, with what JDT needs to know about its contents
+	 */
+	private static class PreparedSource {
+		final char[] sourceCode;
+		final int[] lineSeparatorPositions;
+		final SourceUnit groovySourceUnit;
+
+		PreparedSource(char[] sourceCode, int[] lineSeparatorPositions, SourceUnit groovySourceUnit) {
+			this.sourceCode = sourceCode;
+			this.lineSeparatorPositions = lineSeparatorPositions;
+			this.groovySourceUnit = groovySourceUnit;
+		}
+	}
+
+	private PreparedSource prepareSource(ICompilationUnit sourceUnit, CompilerConfiguration groovyCompilerConfig) {
+		char[] sourceCode = sourceUnit.getContents();
+		if (sourceCode == null) {
+			sourceCode = CharOperation.NO_CHAR; // pretend empty from thereon
+		}
+
+		// groovyCompilerConfig.setPluginFactory(new ErrorRecoveredCSTParserPluginFactory(null));
+		ErrorCollector errorCollector = new GroovyErrorCollectorForJDT(groovyCompilerConfig);
+		String filepath = null;
+
+		// This check is necessary because the filename is short (as in the last part, eg. Foo.groovy) for types coming in
+		// from the hierarchy resolver. If there is the same type in two different packages then the compilation process
+		// is going to go wrong because the filename is used as a key in some groovy data structures. This can lead to false
+		// complaints about the same file defining duplicate types.
+		if (sourceUnit instanceof org.eclipse.jdt.internal.compiler.batch.CompilationUnit) {
+			filepath = new String(((org.eclipse.jdt.internal.compiler.batch.CompilationUnit) sourceUnit).fileName);
+		} else {
+			filepath = new String(sourceUnit.getFileName());
+		}
+
+		// Try to turn this into a 'real' absolute file system reference (this is because Grails 1.5 expects it).
+		Path path = new Path(filepath);
+		IFile eclipseFile = null;
+		// GRECLIPSE-1269 ensure get plugin is not null to ensure the workspace is open (ie- not in batch mode)
+		if (ResourcesPlugin.getPlugin() != null && path.segmentCount() >= 2) { // Needs 2 segments: a project and file name or
+																				// eclipse throws assertion failed here.
+			eclipseFile = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(filepath));
+			final IPath location = eclipseFile.getLocation();
+			if (location != null) {
+				filepath = location.toFile().getAbsolutePath();
+			}
+		}
+
+		// computed once, then shared by JDT and the groovy parser, which reads sourceCode in place
+		int[] lineSeparatorPositions = GroovyUtils.getSourceLineSeparatorsIn(sourceCode);
+		SourceUnit groovySourceUnit = new EclipseSourceUnit(eclipseFile, filepath, sourceCode, lineSeparatorPositions,
+				groovyCompilerConfig, groovyCompilationUnit.getClassLoader(), errorCollector);
+		groovySourceUnit.isReconcile = isReconcile;
+		groovyCompilationUnit.addSource(groovySourceUnit);
+		return new PreparedSource(sourceCode, lineSeparatorPositions, groovySourceUnit);
+	}
+
 	/**
 	 * ProgressListener is called back when parsing of a file or generation of a classfile completes. By calling back to the build
 	 * notifier we ignore those long pauses where it look likes it has hung!
@@ -532,17 +714,65 @@ public class GroovyParser {
 	}
 
 	public void reset() {
+		if (inBuildBatch) {
+			inBuildBatch = false;
+			reportBatch();
+		}
+		faultedInParser = null;
 		GroovyClassLoader gcl = getLoaderFor(gclClasspath);
 		GrapeAwareGroovyClassLoader grabbyLoader = new GrapeAwareGroovyClassLoader();
 		boolean allowTransforms = this.groovyCompilationUnit.allowTransforms;
 		boolean isReconcile = this.groovyCompilationUnit.isReconcile;
 		this.groovyCompilationUnit = makeCompilationUnit(grabbyLoader, gcl, isReconcile, allowTransforms);
 		this.scriptFolderSelector = null;
+		this.preparedSources = null;
 		grabbyLoader.setCompilationUnit(this.groovyCompilationUnit);
 		this.resolver = new JDTResolver(groovyCompilationUnit);
 		this.groovyCompilationUnit.setResolveVisitor(resolver);
 	}
 
+	/**
+	 * @return true if the groovy compilation unit has not been taken past conversion, so files can still be added to it
+	 */
+	private boolean canAddSources() {
+		return !groovyCompilationUnit.isCompiling() && groovyCompilationUnit.getPhase() <= Phases.SEMANTIC_ANALYSIS;
+	}
+
+	private boolean isBuild() {
+		return requestor instanceof org.eclipse.jdt.internal.compiler.Compiler
+				&& ((org.eclipse.jdt.internal.compiler.Compiler) requestor).requestor instanceof AbstractImageBuilder;
+	}
+
+	/**
+	 * Reports the number of groovy files and the peak heap use of the batch of files the builder has just compiled (all the files
+	 * of a project, unless it compiles in batches), for tuning the batch size.
+	 */
+	private void reportBatch() {
+		if (!GroovyLogManager.manager.hasLoggers()) {
+			return;
+		}
+		long peak = resetPeakHeapUsage();
+		GroovyLogManager.manager.log(TraceCategory.COMPILER, "Compiled a batch of " + groovyCompilationUnit.getAST().getModules().size()
+				+ " groovy files in project " + projectName + ", peak heap use " + (peak >> 20) + "MB");
+	}
+
+	/**
+	 * @return the peak heap use since the last call, as the sum of the peaks of the heap memory pools
+	 */
+	private static long resetPeakHeapUsage() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				MemoryUsage usage = pool.getPeakUsage();
+				if (usage != null) {
+					peak += usage.getUsed();
+				}
+				pool.resetPeakUsage();
+			}
+		}
+		return peak;
+	}
+
 	private CompilationUnit makeCompilationUnit(GroovyClassLoader loader, GroovyClassLoader transformLoader, boolean isReconcile,
 			boolean allowTransforms) {
 		CompilationUnit it = new CompilationUnit(null, null, loader, transformLoader, allowTransforms,
@@ -569,6 +799,8 @@ public class GroovyParser {
 		}
 		// Grails: end
 		it.tweak(isReconcile);
+		// a reconcile only has the one file to work on
+		it.setParallelism(isReconcile ? 1 : CompilationUnit.getDefaultParallelism());
 		return it;
 	}
 
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal.compiler.ast;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.eclipse.jdt.internal.compiler.lookup.LookupEnvironment;
+import org.eclipse.jdt.internal.compiler.lookup.PackageBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
+
+/**
+ * Remembers, for one LookupEnvironment, what JDT answered when asked for a qualified type name during resolution - either the
+ * binding or the fact that there is no such type. The resolver probes the same candidate names (foo.bar, java.lang.foo,
+ * groovy.util.foo...) for every file in a build, this cache means JDT only gets asked once per build. It is shared by all the
+ * resolvers/scopes working against the environment and is safe for concurrent use.
+ * <p>
+ * What a name resolves to depends on the package and the imports of the unit asking (a simple name, or the first segment of a
+ * qualified name, may be a type that is imported, aliased or in the same package). So answers are kept per lookup context, a
+ * string made of the package and the imports, and are only shared between units with the same context.
+ * <p>
+ * The cache is discarded when the environment is reset, detected by the environment's default package having been replaced.
+ */
+@SuppressWarnings("restriction")
+public class GroovyResolutionCache {
+
+	private static final Object MISSING = new Object();
+
+	private static final Map<LookupEnvironment, GroovyResolutionCache> caches = Collections
+			.synchronizedMap(new WeakHashMap<LookupEnvironment, GroovyResolutionCache>());
+
+	/**
+	 * @return the cache for the specified environment, a new one if the environment has been reset since it was last asked for
+	 */
+	public static GroovyResolutionCache forEnvironment(LookupEnvironment environment) {
+		synchronized (caches) {
+			GroovyResolutionCache cache = caches.get(environment);
+			if (cache == null || cache.defaultPackage != environment.defaultPackage) {
+				if (cache != null) {
+					cache.logStats("Discarding resolution cache, lookup environment reset");
+				}
+				cache = new GroovyResolutionCache(environment.defaultPackage);
+				caches.put(environment, cache);
+			}
+			return cache;
+		}
+	}
+
+	// identifies the 'generation' of the environment this cache is valid for
+	private final PackageBinding defaultPackage;
+
+	// lookup context > qualified name > TypeBinding or MISSING
+	private final ConcurrentMap<String, Map<String, Object>> bindings = new ConcurrentHashMap<String, Map<String, Object>>();
+
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong jdtLookups = new AtomicLong();
+
+	private GroovyResolutionCache(PackageBinding defaultPackage) {
+		this.defaultPackage = defaultPackage;
+	}
+
+	/**
+	 * Answer whether the name has been looked up before from the context. If it has then {@link #get(String, String)} returns
+	 * the answer.
+	 */
+	public boolean contains(String context, String typename) {
+		lookups.incrementAndGet();
+		Map<String, Object> contextBindings = bindings.get(context);
+		if (contextBindings != null && contextBindings.containsKey(typename)) {
+			hits.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the binding found last time the name was looked up from the context, or null if there was no such type
+	 */
+	public TypeBinding get(String context, String typename) {
+		Map<String, Object> contextBindings = bindings.get(context);
+		Object binding = contextBindings == null ? null : contextBindings.get(typename);
+		return binding == MISSING ? null : (TypeBinding) binding;
+	}
+
+	/**
+	 * Record what JDT answered for the name looked up from the context
+	 */
+	public void put(String context, String typename, TypeBinding binding) {
+		jdtLookups.incrementAndGet();
+		Map<String, Object> contextBindings = bindings.get(context);
+		if (contextBindings == null) {
+			Map<String, Object> newBindings = new ConcurrentHashMap<String, Object>();
+			contextBindings = bindings.putIfAbsent(context, newBindings);
+			if (contextBindings == null) {
+				contextBindings = newBindings;
+			}
+		}
+		contextBindings.put(typename, binding == null ? MISSING : binding);
+	}
+
+	public long getLookups() {
+		return lookups.get();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getJDTLookups() {
+		return jdtLookups.get();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Map<String, Object> contextBindings : bindings.values()) {
+			size += contextBindings.size();
+		}
+		return size;
+	}
+
+	public void logStats(String reason) {
+		if (GroovyLogManager.manager.hasLoggers()) {
+			GroovyLogManager.manager.log(TraceCategory.COMPILER, reason + ": " + toString());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "GroovyResolutionCache: lookups=" + lookups.get() + " hits=" + hits.get() + " jdtLookups=" + jdtLookups.get()
+				+ " contexts=" + bindings.size() + " entries=" + size();
+	}
+}
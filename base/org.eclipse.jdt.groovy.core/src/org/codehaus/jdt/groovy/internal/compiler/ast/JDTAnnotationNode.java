@@ -124,6 +124,13 @@ public class JDTAnnotationNode extends AnnotationNode {
 	}
 
 	private void ensureMembersInitialized() {
+		// shares the lock of the lazy conversions of the resolver (see JDTClassNode)
+		synchronized (resolver) {
+			initializeMembers();
+		}
+	}
+
+	private void initializeMembers() {
 		if (membersInitialized) {
 			return;
 		}
@@ -12,8 +12,11 @@
 package org.codehaus.jdt.groovy.internal.compiler.ast;
 
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.codehaus.groovy.GroovyBugError;
@@ -67,6 +70,10 @@ import org.eclipse.jdt.internal.compiler.lookup.WildcardBinding;
  * Groovy can use these to ask questions of JDT bindings. They are only built as required (as groovy references to java files are
  * resolved). They remain uninitialized until groovy starts digging into them - at that time the details are filled in (eg.
  * members).
+ * <p>
+ * Members are converted on demand: asking for the methods or the field with a particular name only converts the bindings with
+ * that name, the full set is only converted when all the methods/fields/constructors are asked for. Nodes redirecting to a
+ * JDTClassNode, such as a parameterization of it, ask it for its members.
  * 
  * @author Andy Clement
  */
@@ -92,6 +99,18 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 	private static final int ANNOTATIONS_INITIALIZED = 0x0001;
 	private static final int PROPERTIES_INITIALIZED = 0x0002;
 
+	// Member state, guarded by lazyInitLock. The bindings are collected (and indexed by name) when a member is first asked for,
+	// the nodes arrays hold what has been converted so far, in the same order as the bindings.
+	private MethodBinding[] methodBindings; // methods, infra methods and synthetic methods - no constructors
+	private MethodNode[] methodNodes;
+	private Map<String, List<Integer>> methodsBySelector;
+	private MethodBinding[] constructorBindings;
+	private FieldBinding[] fieldBindings;
+	private FieldNode[] fieldNodes;
+	private Map<String, Integer> fieldsByName;
+	private TypeDeclaration groovyDecl;
+	private boolean allMethodsInitialized, allFieldsInitialized, constructorsInitialized;
+
 	static final ClassNode unboundWildcard; // represents plain old '?'
 
 	static {
@@ -118,6 +137,9 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 		super(getName(jdtReferenceBinding), getMods(jdtReferenceBinding), null);
 		this.jdtBinding = jdtReferenceBinding;
 		this.resolver = resolver;
+		// the conversions done lazily by all the nodes of a resolver go through its lookup environment and its stack of type
+		// generics, which cannot be used by two threads at once, so they share the lock of the resolver
+		this.lazyInitLock = resolver;
 
 		// population of the methods/ctors/fields/etc is not done until required
 		this.lazyInitDone = false;
@@ -201,7 +223,7 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 
 	/**
 	 * Basic initialization of the node - try and do most resolution lazily but some elements are worth getting correct up front:
-	 * superclass, superinterfaces
+	 * superclass, superinterfaces. Members are converted as they are asked for.
 	 */
 	// FIXASC confusing (and problematic?) that the superclass is setup after the generics information
 	void initialize() {
@@ -230,15 +252,19 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 				interfaces[i] = resolver.convertToClassNode(superInterfaceBindings[i]);
 			}
 			setInterfaces(interfaces);
-			initializeMembers();
 			resolver.popTypeGenerics();
 		} finally {
 			beingInitialized = false;
 		}
 	}
 
-	private void initializeMembers() {
-		TypeDeclaration groovyDecl = null;
+	/**
+	 * Collect the member bindings of the type and index the methods and fields by name. Nothing is converted.
+	 */
+	private void ensureMembersIndexed() {
+		if (methodBindings != null) {
+			return;
+		}
 		if (jdtBinding instanceof SourceTypeBinding) {
 			SourceTypeBinding sourceType = (SourceTypeBinding) jdtBinding;
 			if (sourceType.scope != null) {
@@ -248,6 +274,8 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 				}
 			}
 		}
+		List<MethodBinding> methods = new ArrayList<MethodBinding>();
+		List<MethodBinding> constructors = new ArrayList<MethodBinding>();
 		MethodBinding[] bindings = null;
 		if (jdtBinding instanceof ParameterizedTypeBinding) {
 			ReferenceBinding genericType = ((ParameterizedTypeBinding) jdtBinding).genericType();
@@ -255,28 +283,9 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 		} else {
 			bindings = jdtBinding.methods();
 		}
-		if (bindings != null) {
-			for (int i = 0; i < bindings.length; i++) {
-				if (bindings[i].isConstructor()) {
-					ConstructorNode cNode = constructorBindingToConstructorNode(bindings[i]);
-					addConstructor(cNode);
-				} else {
-					MethodNode mNode = methodBindingToMethodNode(bindings[i]);
-					addMethod(mNode);
-				}
-			}
-		}
+		sortMethodBindings(bindings, methods, constructors);
 		if (jdtBinding instanceof BinaryTypeBinding) {
-			MethodBinding[] infraBindings = ((BinaryTypeBinding) jdtBinding).infraMethods();
-			for (int i = 0; i < infraBindings.length; i++) {
-				if (infraBindings[i].isConstructor()) {
-					ConstructorNode cNode = constructorBindingToConstructorNode(infraBindings[i]);
-					addConstructor(cNode);
-				} else {
-					MethodNode mNode = methodBindingToMethodNode(infraBindings[i]);
-					addMethod(mNode);
-				}
-			}
+			sortMethodBindings(((BinaryTypeBinding) jdtBinding).infraMethods(), methods, constructors);
 		}
 		// Synthetic bindings are created for features like covariance, where the method implementing an interface method uses a
 		// different return type (interface I { A foo(); } class C implements I { AA foo(); } - this needs a method 'A foo()' in C.
@@ -290,18 +299,18 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 				MethodVerifier verifier = environment.methodVerifier();
 				cuScope.verifyMethods(verifier);
 			}
-			SyntheticMethodBinding[] syntheticMethodBindings = ((SourceTypeBinding) jdtBinding).syntheticMethods();
-			if (syntheticMethodBindings != null) {
-				for (int i = 0; i < syntheticMethodBindings.length; i++) {
-					if (syntheticMethodBindings[i].isConstructor()) {
-						ConstructorNode cNode = constructorBindingToConstructorNode(bindings[i]);
-						addConstructor(cNode);
-					} else {
-						MethodNode mNode = methodBindingToMethodNode(syntheticMethodBindings[i]);
-						addMethod(mNode);
-					}
-				}
+			sortMethodBindings(((SourceTypeBinding) jdtBinding).syntheticMethods(), methods, constructors);
+		}
+
+		Map<String, List<Integer>> methodsBySelector = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < methods.size(); i++) {
+			String selector = new String(methods.get(i).selector);
+			List<Integer> positions = methodsBySelector.get(selector);
+			if (positions == null) {
+				positions = new ArrayList<Integer>(1);
+				methodsBySelector.put(selector, positions);
 			}
+			positions.add(i);
 		}
 
 		FieldBinding[] fieldBindings = null;
@@ -310,14 +319,220 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 		} else {
 			fieldBindings = jdtBinding.fields();
 		}
-		if (fieldBindings != null) {
-			for (int i = 0; i < fieldBindings.length; i++) {
-				FieldNode fNode = fieldBindingToFieldNode(fieldBindings[i], groovyDecl);
-				addField(fNode);
+		if (fieldBindings == null) {
+			fieldBindings = new FieldBinding[0];
+		}
+		Map<String, Integer> fieldsByName = new HashMap<String, Integer>();
+		for (int i = 0; i < fieldBindings.length; i++) {
+			fieldsByName.put(new String(fieldBindings[i].name), i);
+		}
+
+		this.methodNodes = new MethodNode[methods.size()];
+		this.methodsBySelector = methodsBySelector;
+		this.constructorBindings = constructors.toArray(new MethodBinding[constructors.size()]);
+		this.fieldNodes = new FieldNode[fieldBindings.length];
+		this.fieldsByName = fieldsByName;
+		this.fieldBindings = fieldBindings;
+		// set last, marks the index as built
+		this.methodBindings = methods.toArray(new MethodBinding[methods.size()]);
+	}
+
+	private static void sortMethodBindings(MethodBinding[] bindings, List<MethodBinding> methods, List<MethodBinding> constructors) {
+		if (bindings != null) {
+			for (int i = 0; i < bindings.length; i++) {
+				if (bindings[i].isConstructor()) {
+					constructors.add(bindings[i]);
+				} else {
+					methods.add(bindings[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Convert the methods with this name, if not done already
+	 */
+	private void ensureMethodsInitialized(String name) {
+		synchronized (lazyInitLock) {
+			if (allMethodsInitialized) {
+				return;
+			}
+			ensureMembersIndexed();
+			List<Integer> positions = methodsBySelector.get(name);
+			if (positions != null) {
+				resolver.pushTypeGenerics(getGenericsTypes());
+				try {
+					for (Integer position : positions) {
+						convertMethod(position);
+					}
+				} finally {
+					resolver.popTypeGenerics();
+				}
+			}
+		}
+	}
+
+	private void ensureAllMethodsInitialized() {
+		synchronized (lazyInitLock) {
+			if (allMethodsInitialized) {
+				return;
+			}
+			ensureMembersIndexed();
+			resolver.pushTypeGenerics(getGenericsTypes());
+			try {
+				for (int i = 0; i < methodBindings.length; i++) {
+					convertMethod(i);
+				}
+			} finally {
+				resolver.popTypeGenerics();
+			}
+			restoreDeclarationOrder(super.getMethods(), methodNodes);
+			allMethodsInitialized = true;
+		}
+	}
+
+	private void convertMethod(int position) {
+		if (methodNodes[position] == null) {
+			MethodNode mNode = methodBindingToMethodNode(methodBindings[position]);
+			methodNodes[position] = mNode;
+			addMethod(mNode);
+		}
+	}
+
+	private void ensureConstructorsInitialized() {
+		synchronized (lazyInitLock) {
+			if (constructorsInitialized) {
+				return;
+			}
+			ensureMembersIndexed();
+			resolver.pushTypeGenerics(getGenericsTypes());
+			try {
+				for (int i = 0; i < constructorBindings.length; i++) {
+					ConstructorNode cNode = constructorBindingToConstructorNode(constructorBindings[i]);
+					addConstructor(cNode);
+				}
+			} finally {
+				resolver.popTypeGenerics();
+			}
+			constructorsInitialized = true;
+		}
+	}
+
+	/**
+	 * Convert the field with this name, if not done already
+	 */
+	private void ensureFieldInitialized(String name) {
+		synchronized (lazyInitLock) {
+			if (allFieldsInitialized) {
+				return;
+			}
+			ensureMembersIndexed();
+			Integer position = fieldsByName.get(name);
+			if (position != null) {
+				resolver.pushTypeGenerics(getGenericsTypes());
+				try {
+					convertField(position);
+				} finally {
+					resolver.popTypeGenerics();
+				}
 			}
 		}
 	}
 
+	private void ensureAllFieldsInitialized() {
+		synchronized (lazyInitLock) {
+			if (allFieldsInitialized) {
+				return;
+			}
+			ensureMembersIndexed();
+			resolver.pushTypeGenerics(getGenericsTypes());
+			try {
+				for (int i = 0; i < fieldBindings.length; i++) {
+					convertField(i);
+				}
+			} finally {
+				resolver.popTypeGenerics();
+			}
+			restoreDeclarationOrder(super.getFields(), fieldNodes);
+			allFieldsInitialized = true;
+		}
+	}
+
+	private void convertField(int position) {
+		if (fieldNodes[position] == null) {
+			FieldNode fNode = fieldBindingToFieldNode(fieldBindings[position], groovyDecl);
+			fieldNodes[position] = fNode;
+			addField(fNode);
+		}
+	}
+
+	/**
+	 * Members converted a name at a time were added in the order they were asked for, put them back in the order of their bindings
+	 * (as if they had all been converted at once). Anything no longer in the list (e.g. a field replaced by a property) stays out,
+	 * anything added from elsewhere goes at the end.
+	 */
+	private static <T> void restoreDeclarationOrder(List<T> members, T[] declared) {
+		Set<T> present = new HashSet<T>(members);
+		List<T> ordered = new ArrayList<T>(members.size());
+		for (T member : declared) {
+			if (member != null && present.remove(member)) {
+				ordered.add(member);
+			}
+		}
+		for (T member : members) {
+			if (present.contains(member)) {
+				ordered.add(member);
+			}
+		}
+		members.clear();
+		members.addAll(ordered);
+	}
+
+	@Override
+	public List<MethodNode> getMethods() {
+		if (redirect() == this) {
+			lazyClassInit();
+			ensureAllMethodsInitialized();
+		}
+		return super.getMethods();
+	}
+
+	@Override
+	public List<MethodNode> getDeclaredMethods(String name) {
+		if (redirect() == this) {
+			lazyClassInit();
+			ensureMethodsInitialized(name);
+		}
+		return super.getDeclaredMethods(name);
+	}
+
+	@Override
+	public List<ConstructorNode> getDeclaredConstructors() {
+		if (redirect() == this) {
+			lazyClassInit();
+			ensureConstructorsInitialized();
+		}
+		return super.getDeclaredConstructors();
+	}
+
+	@Override
+	public List<FieldNode> getFields() {
+		if (redirect() == this) {
+			lazyClassInit();
+			ensureAllFieldsInitialized();
+		}
+		return super.getFields();
+	}
+
+	@Override
+	public FieldNode getDeclaredField(String name) {
+		if (redirect() == this) {
+			lazyClassInit();
+			ensureFieldInitialized(name);
+		}
+		return super.getDeclaredField(name);
+	}
+
 	/**
 	 * Convert a JDT MethodBinding to a Groovy MethodNode
 	 */
@@ -498,7 +713,13 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 		return super.getAnnotations();
 	}
 
-	private synchronized void ensureAnnotationsInitialized() {
+	private void ensureAnnotationsInitialized() {
+		synchronized (lazyInitLock) {
+			initializeAnnotations();
+		}
+	}
+
+	private void initializeAnnotations() {
 		if ((bits & ANNOTATIONS_INITIALIZED) == 0) {
 			if ((jdtBinding instanceof SourceTypeBinding)) {
 				// ensure resolved
@@ -518,7 +739,13 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 		}
 	}
 
-	protected synchronized void initializeProperties() {
+	protected void initializeProperties() {
+		synchronized (lazyInitLock) {
+			createProperties();
+		}
+	}
+
+	private void createProperties() {
 		if ((bits & PROPERTIES_INITIALIZED) == 0) {
 			lazyClassInit();
 			// getX methods
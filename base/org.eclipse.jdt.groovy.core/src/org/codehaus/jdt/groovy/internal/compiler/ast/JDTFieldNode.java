@@ -62,6 +62,13 @@ public class JDTFieldNode extends FieldNode implements JDTNode {
 	}
 
 	private void ensureAnnotationsInitialized() {
+		// shares the lock of the lazy conversions of the resolver (see JDTClassNode)
+		synchronized (resolver) {
+			initializeAnnotations();
+		}
+	}
+
+	private void initializeAnnotations() {
 		if ((bits & ANNOTATIONS_INITIALIZED) == 0) {
 			// If the backing declaring entity for the member is not a SourceTypeBinding then the
 			// annotations will have already been discarded/lost
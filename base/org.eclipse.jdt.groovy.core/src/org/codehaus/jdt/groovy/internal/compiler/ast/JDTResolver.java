@@ -14,14 +14,14 @@ package org.codehaus.jdt.groovy.internal.compiler.ast;
 import groovy.lang.GroovyClassLoader;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
-import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
@@ -136,7 +136,11 @@ public class JDTResolver extends ResolveVisitor {
 	private List<ClassNode> haveBeenResolved = new ArrayList<ClassNode>();
 
 	// Cache from bindings to JDTClassNodes to avoid unnecessary JDTClassNode creation
-	private Map<Binding, JDTClassNode> nodeCache = Collections.synchronizedMap(new HashMap<Binding, JDTClassNode>());
+	private Map<Binding, JDTClassNode> nodeCache = new ConcurrentHashMap<Binding, JDTClassNode>();
+
+	// Index over nodeCache from the readable name of the binding to the node, for getCachedNode(). Where several bindings share a
+	// readable name the first one cached wins.
+	private ConcurrentMap<String, JDTClassNode> nodeCacheByName = new ConcurrentHashMap<String, JDTClassNode>();
 
 	public JDTResolver(CompilationUnit groovyCompilationUnit) {
 		super(groovyCompilationUnit);
@@ -149,13 +153,7 @@ public class JDTResolver extends ResolveVisitor {
 	}
 
 	public JDTClassNode getCachedNode(String name) {
-		for (Map.Entry<Binding, JDTClassNode> nodeFromCache : nodeCache.entrySet()) {
-			String nodename = new String(nodeFromCache.getKey().readableName());
-			if (nodename.equals(name)) {
-				return nodeFromCache.getValue();
-			}
-		}
-		return null;
+		return nodeCacheByName.get(name);
 	}
 
 	/**
@@ -207,66 +205,26 @@ public class JDTResolver extends ResolveVisitor {
 	protected boolean resolveFromDefaultImports(ClassNode type, boolean testDefaultImports) {
 		boolean foundit = super.resolveFromDefaultImports(type, testDefaultImports);
 		if (activeScope != null) {
-			// TODO need to refactor (duplicated in GroovyCompilationUnitScope)
 			boolean b = testDefaultImports & !type.hasPackageName();
 			// we do not resolve a vanilla name starting with a lower case letter
 			// try to resolve against adefault import, because we know that the
 			// default packages do not contain classes like these
 			b &= !(type instanceof LowerCaseClass);
 			if (b) {
-				String extraImports = activeScope.compilerOptions().groovyExtraImports;
+				ExtraImports extraImports = ExtraImports.forOptions(activeScope.compilerOptions());
 				if (extraImports != null) {
-					try {
-						String filename = new String(activeScope.referenceContext.getFileName());
-						// may be something to do
-						StringTokenizer st = new StringTokenizer(extraImports, ";");
-						// Form would be 'com.foo.*,com.bar.MyType;.gradle=com.this.*,com.foo.Type"
-						// If there is no qualifying suffix it applies to all types
-
-						while (st.hasMoreTokens()) {
-							String onesuffix = st.nextToken();
-							int equals = onesuffix.indexOf('=');
-							boolean shouldApply = false;
-							String imports = null;
-							if (equals == -1) {
-								// definetly applies
-								shouldApply = true;
-								imports = onesuffix;
-							} else {
-								// need to check the suffix
-								String suffix = onesuffix.substring(0, equals);
-								shouldApply = filename.endsWith(suffix);
-								imports = onesuffix.substring(equals + 1);
-							}
-							StringTokenizer st2 = new StringTokenizer(imports, ",");
-							while (st2.hasMoreTokens()) {
-								String nextElement = st2.nextToken();
-								// One of two forms: a.b.c.* or a.b.c.Type
-								if (nextElement.endsWith(".*")) {
-									String withoutStar = nextElement.substring(0, nextElement.length() - 1);
-									ConstructedClassWithPackage tmp = new ConstructedClassWithPackage(withoutStar, type.getName());
-									if (resolve(tmp, false, false, false)) {
-										type.setRedirect(tmp.redirect());
-										return true;
-									}
-								} else {
-									String importedTypeName = nextElement;
-									if (importedTypeName.endsWith(type.getName())) {
-										int lastdot = importedTypeName.lastIndexOf('.');
-										String importTypeNameChopped = importedTypeName.substring(0, lastdot + 1);
-										ConstructedClassWithPackage tmp = new ConstructedClassWithPackage(importTypeNameChopped,
-												type.getName());
-										if (resolve(tmp, false, false, false)) {
-											type.setRedirect(tmp.redirect());
-											return true;
-										}
-									}
-								}
-							}
-
+					String typename = type.getName();
+					for (String prefix : extraImports.getCandidatePrefixes(typename)) {
+						String candidate = prefix + typename;
+						if (missingExtraImportCandidates.contains(candidate)) {
+							continue;
+						}
+						ConstructedClassWithPackage tmp = new ConstructedClassWithPackage(prefix, typename);
+						if (resolve(tmp, false, false, false)) {
+							type.setRedirect(tmp.redirect());
+							return true;
 						}
-					} catch (Exception e) {
-						new RuntimeException("Problem processing extraImports: " + extraImports, e).printStackTrace();
+						missingExtraImportCandidates.add(candidate);
 					}
 				}
 			}
@@ -366,6 +324,10 @@ public class JDTResolver extends ResolveVisitor {
 	// over and over (GRECLIPSE-870)
 	private Set<String> unresolvables = new HashSet<String>();
 
+	// Qualified names built from the extra imports (see ExtraImports) that were found not to exist. Unlike unresolvables this is
+	// not cleared between resolutions, the answer will not change during the compile or reconcile. It is cleared in cleanUp().
+	private Set<String> missingExtraImportCandidates = new HashSet<String>();
+
 	@Override
 	protected boolean resolve(ClassNode type, boolean testModuleImports, boolean testDefaultImports, boolean testStaticInnerClasses) {
 		String name = type.getName();
@@ -390,7 +352,11 @@ public class JDTResolver extends ResolveVisitor {
 		}
 	}
 
-	public ClassNode resolve(String qualifiedName) {
+	/**
+	 * Resolve a type once the compile is over, e.g. for DSLD. Holds the lock shared with the lazy conversions of the nodes created
+	 * by this resolver (see {@link JDTClassNode}), so a module node and its resolver may be used from several threads.
+	 */
+	public synchronized ClassNode resolve(String qualifiedName) {
 		ClassNode type = ClassHelper.makeWithoutCaching(qualifiedName);
 		if (super.resolve(type)) {
 			return type.redirect();
@@ -453,11 +419,16 @@ public class JDTResolver extends ResolveVisitor {
 			jdtNode.setupGenerics();
 			inProgressStack.pop();
 			inProgress.remove(jdtBinding);
-			nodeCache.put(jdtBinding, jdtNode);
+			cacheNode(jdtBinding, jdtNode);
 		}
 		return classNode;
 	}
 
+	private void cacheNode(TypeBinding jdtBinding, JDTClassNode jdtNode) {
+		nodeCache.put(jdtBinding, jdtNode);
+		nodeCacheByName.putIfAbsent(new String(jdtBinding.readableName()), jdtNode);
+	}
+
 	/**
 	 * Create a ClassNode based on the type of the JDT binding, this takes account of all the possible kinds of JDT binding.
 	 */
@@ -716,6 +687,14 @@ public class JDTResolver extends ResolveVisitor {
 		System.err.println("Resolver: " + string + " " + type.getName() + "  ?" + foundit);
 	}
 
+	/**
+	 * The compile or reconcile this resolver was created for is over. Forget what was found missing, types may be added before
+	 * the resolver is used again.
+	 */
+	public void cleanUp() {
+		missingExtraImportCandidates.clear();
+	}
+
 	public void startResolving(ClassNode node, SourceUnit source) {
 		try {
 			super.startResolving(node, source);
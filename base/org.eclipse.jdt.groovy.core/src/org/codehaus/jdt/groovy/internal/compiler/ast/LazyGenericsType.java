@@ -127,6 +127,13 @@ public class LazyGenericsType extends GenericsType {
 	// }
 
 	private void ensureInitialized() {
+		// shares the lock of the lazy conversions of the resolver (see JDTClassNode)
+		synchronized (resolver) {
+			initialize();
+		}
+	}
+
+	private void initialize() {
 		if (!initialized) {
 			ClassNode cn = ClassHelper.makeWithoutCaching(name);
 			cn.setGenericsPlaceHolder(true);
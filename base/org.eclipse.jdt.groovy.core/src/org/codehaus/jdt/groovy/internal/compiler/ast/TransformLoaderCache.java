@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal.compiler.ast;
+
+import groovy.lang.GroovyClassLoader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+
+/**
+ * A pool of the GroovyClassLoaders used to discover and load AST transforms. Loaders are keyed by a fingerprint of the
+ * classpath they were built from (each entry's path, size and modification time) rather than by project, so projects whose
+ * transform classpaths are identical share a single loader and the transform classes on it are only loaded (and JITted) once.
+ * <p>
+ * A project asking again for the loader of the same classpath gets it back without the entries being looked at, since that
+ * happens on every reconcile. Changes to the jars are reported through {@link #entriesChanged(Collection)} (from java element
+ * deltas in the IDE), and the fingerprint of a loader whose entries have changed is checked the next time it is asked for.
+ * Callers that do not get deltas, such as a batch compile, ask for the entries to be checked every time.
+ * <p>
+ * Each project holds a reference on at most one loader. A loader that is no longer referenced by any project is kept around
+ * (so a later build with the same classpath can pick it up again) until more than {@link #getMaxIdle()} idle loaders are
+ * retained, at which point the least recently used idle loader is discarded and its jars closed via
+ * {@link GroovyParser#close(GroovyClassLoader)}. Loaders whose classpath contains folders are never retained once idle, since
+ * the fingerprint of a folder cannot tell us whether the classes inside it have changed.
+ */
+public class TransformLoaderCache {
+
+	private static final int DEFAULT_MAX_IDLE = 8;
+
+	static class Entry {
+		final String fingerprint;
+		final String classpath;
+		final List<String> entries;
+		final GroovyClassLoader groovyClassLoader;
+		final boolean containsFolders;
+		int refCount;
+		// set when one of the entries has been reported as changed, until the fingerprint is checked again
+		boolean stale;
+
+		Entry(String fingerprint, String classpath, List<String> entries) {
+			this.fingerprint = fingerprint;
+			this.classpath = classpath;
+			this.entries = entries;
+			this.containsFolders = containsFolders(entries);
+			this.groovyClassLoader = new GroovyClassLoader(GroovyParser.createConfigureLoader(classpath));
+		}
+	}
+
+	// fingerprint > entry, in access order so the eldest idle entry is the least recently used one
+	private final LinkedHashMap<String, Entry> pool = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	// project name > the entry that project is currently holding a reference on
+	private final Map<String, Entry> projectToEntry = new HashMap<String, Entry>();
+
+	private final int maxIdle;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public TransformLoaderCache() {
+		this(Integer.getInteger("greclipse.transformLoaderPoolSize", DEFAULT_MAX_IDLE).intValue());
+	}
+
+	public TransformLoaderCache(int maxIdle) {
+		this.maxIdle = Math.max(0, maxIdle);
+	}
+
+	/**
+	 * Answer the loader to use for the specified project and classpath, creating one only if no loader for an equivalent
+	 * classpath is already pooled. Any loader the project was previously using with a different classpath is released.
+	 */
+	public GroovyClassLoader acquire(String projectName, String classpath) {
+		return acquire(projectName, classpath, false);
+	}
+
+	/**
+	 * As {@link #acquire(String, String)}, but if <tt>checkEntries</tt> is specified the entries are looked at even when the
+	 * project asks for the same classpath as last time and no change to them has been reported.
+	 */
+	public synchronized GroovyClassLoader acquire(String projectName, String classpath, boolean checkEntries) {
+		Entry current = projectToEntry.get(projectName);
+		if (current != null && !current.stale && !checkEntries && current.classpath.equals(classpath)) {
+			hits += 1;
+			pool.get(current.fingerprint); // touch
+			return current.groovyClassLoader;
+		}
+		List<String> entries = normalize(classpath);
+		String fingerprint = fingerprint(entries);
+		if (current != null && current.fingerprint.equals(fingerprint)) {
+			hits += 1;
+			current.stale = false;
+			pool.get(fingerprint); // touch
+			return current.groovyClassLoader;
+		}
+		if (current != null) {
+			// classpath change detected
+			projectToEntry.remove(projectName);
+			unreference(current, false);
+		}
+		Entry entry = pool.get(fingerprint);
+		if (entry == null) {
+			misses += 1;
+			if (GroovyLogManager.manager.hasLoggers()) {
+				GroovyLogManager.manager.log(TraceCategory.AST_TRANSFORM,
+						"Classpath for GroovyClassLoader (used to discover transforms): " + classpath);
+			}
+			entry = new Entry(fingerprint, classpath, entries);
+			pool.put(fingerprint, entry);
+		} else {
+			hits += 1;
+		}
+		entry.refCount += 1;
+		projectToEntry.put(projectName, entry);
+		evictIdle();
+		return entry.groovyClassLoader;
+	}
+
+	/**
+	 * The project no longer needs its loader. The loader stays pooled (subject to the idle limit) for reuse unless
+	 * <tt>close</tt> is specified, in which case it is discarded and its jars are closed as soon as no other project is using
+	 * it.
+	 */
+	public synchronized void release(String projectName, boolean close) {
+		Entry entry = projectToEntry.remove(projectName);
+		if (entry != null) {
+			unreference(entry, close);
+		}
+	}
+
+	/**
+	 * The jars or folders at the given paths have been changed, added or removed. Loaders with any of them on their classpath
+	 * are checked again the next time they are asked for.
+	 */
+	public synchronized void entriesChanged(Collection<String> paths) {
+		List<String> changed = new ArrayList<String>(paths.size());
+		for (String path : paths) {
+			changed.add(new File(path).getAbsolutePath());
+		}
+		for (Entry entry : pool.values()) {
+			for (String path : changed) {
+				if (entry.entries.contains(path)) {
+					entry.stale = true;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the classpath of the loader currently held by the project, or null if it holds none
+	 */
+	public synchronized String getClasspath(String projectName) {
+		Entry entry = projectToEntry.get(projectName);
+		return entry == null ? null : entry.classpath;
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of loaders currently retained, whether in use or idle
+	 */
+	public synchronized int getRetainedLoaderCount() {
+		return pool.size();
+	}
+
+	public synchronized String getStats() {
+		long lookups = hits + misses;
+		int hitRate = lookups == 0 ? 0 : (int) ((hits * 100) / lookups);
+		return "TransformLoaderCache: lookups=" + lookups + " hits=" + hits + " (" + hitRate + "%) misses=" + misses
+				+ " evictions=" + evictions + " retained=" + pool.size() + " inUseBy=" + projectToEntry.size() + " projects";
+	}
+
+	public synchronized void clear() {
+		for (Entry entry : pool.values()) {
+			GroovyParser.close(entry.groovyClassLoader);
+		}
+		pool.clear();
+		projectToEntry.clear();
+	}
+
+	private void unreference(Entry entry, boolean close) {
+		entry.refCount -= 1;
+		if (entry.refCount <= 0 && (close || entry.containsFolders)) {
+			discard(entry);
+		} else {
+			evictIdle();
+		}
+	}
+
+	private void evictIdle() {
+		int idle = 0;
+		for (Entry entry : pool.values()) {
+			if (entry.refCount <= 0) {
+				idle += 1;
+			}
+		}
+		for (Iterator<Entry> iter = pool.values().iterator(); idle > maxIdle && iter.hasNext();) {
+			Entry entry = iter.next();
+			if (entry.refCount <= 0) {
+				iter.remove();
+				idle -= 1;
+				closeLoader(entry);
+			}
+		}
+	}
+
+	private void discard(Entry entry) {
+		if (pool.get(entry.fingerprint) == entry) {
+			pool.remove(entry.fingerprint);
+		}
+		closeLoader(entry);
+	}
+
+	private void closeLoader(Entry entry) {
+		evictions += 1;
+		if (GroovyLogManager.manager.hasLoggers()) {
+			GroovyLogManager.manager.log(TraceCategory.AST_TRANSFORM, "Discarding transform loader for classpath: "
+					+ entry.classpath + "  " + getStats());
+		}
+		GroovyParser.close(entry.groovyClassLoader);
+	}
+
+	/**
+	 * Split the classpath into its entries, dropping empty and duplicate entries but otherwise keeping the order since that
+	 * determines which class wins when several entries define it.
+	 */
+	static List<String> normalize(String classpath) {
+		Set<String> entries = new LinkedHashSet<String>();
+		if (classpath != null) {
+			int pos = 0;
+			while (pos <= classpath.length()) {
+				int nextSep = classpath.indexOf(File.pathSeparator, pos);
+				if (nextSep == -1) {
+					nextSep = classpath.length();
+				}
+				String entry = classpath.substring(pos, nextSep).trim();
+				if (entry.length() > 0) {
+					entries.add(new File(entry).getAbsolutePath());
+				}
+				pos = nextSep + 1;
+			}
+		}
+		return new ArrayList<String>(entries);
+	}
+
+	static String fingerprint(List<String> entries) {
+		StringBuilder sb = new StringBuilder();
+		for (String entry : entries) {
+			File f = new File(entry);
+			sb.append(entry).append('|').append(f.length()).append('|').append(f.lastModified()).append(File.pathSeparatorChar);
+		}
+		return sb.toString();
+	}
+
+	private static boolean containsFolders(List<String> entries) {
+		for (String entry : entries) {
+			if (new File(entry).isDirectory()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
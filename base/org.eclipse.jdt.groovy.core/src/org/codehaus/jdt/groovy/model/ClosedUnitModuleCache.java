@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2012 SpringSource and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.codehaus.jdt.groovy.model;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/**
+ * Remembers the module nodes built for groovy compilation units that are not working copies, so that search, refactoring
+ * and static checking, which visit many closed files (often the same ones repeatedly), only parse each file once.
+ *
+ * Entries are keyed by the file and its modification stamp and are held through soft references. The cache is bounded
+ * by the total size of the files whose module nodes it holds and by the number of entries, since each entry also keeps
+ * the resolver and lookup environment of its compile whatever the size of the file. The least recently used entries are
+ * evicted first. Any change to a groovy or java source in the workspace clears the whole cache, since the resolved types
+ * in a module node depend on the files it references and not just on its own contents. A change to the classpath of a
+ * project discards the entries of its files. Other changes, such as class files written by a build, are ignored. Changes to
+ * the type lookups of a project, such as refreshed DSLD scripts, discard its entries too (see
+ * {@link GroovyCompilationUnit#discardSharedModuleInfos(IProject)}).
+ *
+ * A cached module info may be used by several threads at once, e.g. by a search and by a parallel check. Visitors only read
+ * the module node. The only state that is built as it is used is the members, generics and annotations that the nodes
+ * created by the resolver convert from their JDT bindings, and the types the resolver looks up afterwards; all of that is
+ * done holding the lock of the resolver (see {@link org.codehaus.jdt.groovy.internal.compiler.ast.JDTClassNode}). The type
+ * lookup results of {@link ModuleNodeInfo#getLookupResults()} are only recorded for working copies, never for cached
+ * entries.
+ */
+class ClosedUnitModuleCache implements IResourceChangeListener {
+
+	private static final long DEFAULT_MAX_WEIGHT = 4 * 1024 * 1024;
+
+	private static final int DEFAULT_MAX_ENTRIES = 100;
+
+	private static final String CLASSPATH_FILE = ".classpath"; //$NON-NLS-1$
+
+	private static ClosedUnitModuleCache instance;
+
+	static synchronized ClosedUnitModuleCache getInstance() {
+		if (instance == null) {
+			instance = new ClosedUnitModuleCache(Long.getLong("greclipse.closedModuleCacheSize", DEFAULT_MAX_WEIGHT).longValue(), //$NON-NLS-1$
+					Integer.getInteger("greclipse.closedModuleCacheEntries", DEFAULT_MAX_ENTRIES).intValue()); //$NON-NLS-1$
+			try {
+				ResourcesPlugin.getWorkspace().addResourceChangeListener(instance, IResourceChangeEvent.POST_CHANGE);
+			} catch (IllegalStateException e) {
+				// workspace is not available, entries are still checked against the modification stamp
+			}
+		}
+		return instance;
+	}
+
+	private static class Entry {
+		final long modificationStamp;
+		final long weight;
+		final SoftReference<ModuleNodeInfo> info;
+
+		Entry(long modificationStamp, long weight, ModuleNodeInfo info) {
+			this.modificationStamp = modificationStamp;
+			this.weight = weight;
+			this.info = new SoftReference<ModuleNodeInfo>(info);
+		}
+	}
+
+	// file path > entry, in access order so the eldest entry is the least recently used one
+	private final LinkedHashMap<IPath, Entry> entries = new LinkedHashMap<IPath, Entry>(16, 0.75f, true);
+
+	private final long maxWeight;
+
+	private final int maxEntries;
+
+	private long weight;
+
+	ClosedUnitModuleCache(long maxWeight, int maxEntries) {
+		this.maxWeight = maxWeight;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the module info cached for the file, or null if there is none for its current modification stamp
+	 */
+	synchronized ModuleNodeInfo get(IResource file) {
+		Entry entry = entries.get(file.getFullPath());
+		if (entry == null) {
+			return null;
+		}
+		ModuleNodeInfo info = entry.info.get();
+		if (info == null || entry.modificationStamp != file.getModificationStamp()) {
+			remove(file.getFullPath());
+			return null;
+		}
+		return info;
+	}
+
+	/**
+	 * @param modificationStamp the stamp of the file read <em>before</em> its contents were parsed
+	 */
+	synchronized void put(IResource file, long modificationStamp, ModuleNodeInfo info) {
+		if (modificationStamp == IResource.NULL_STAMP) {
+			return;
+		}
+		remove(file.getFullPath());
+		Entry entry = new Entry(modificationStamp, weigh(file), info);
+		entries.put(file.getFullPath(), entry);
+		weight += entry.weight;
+		for (Iterator<Entry> iter = entries.values().iterator(); (weight > maxWeight || entries.size() > maxEntries)
+				&& iter.hasNext();) {
+			Entry eldest = iter.next();
+			iter.remove();
+			weight -= eldest.weight;
+		}
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Discard the entries of the files in the project
+	 */
+	synchronized void clear(IProject project) {
+		for (Iterator<Map.Entry<IPath, Entry>> iter = entries.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<IPath, Entry> entry = iter.next();
+			if (project.getName().equals(entry.getKey().segment(0))) {
+				iter.remove();
+				weight -= entry.getValue().weight;
+			}
+		}
+	}
+
+	private void remove(IPath path) {
+		Entry removed = entries.remove(path);
+		if (removed != null) {
+			weight -= removed.weight;
+		}
+	}
+
+	private static long weigh(IResource file) {
+		IPath location = file.getLocation();
+		long length = location != null ? new File(location.toOSString()).length() : 0;
+		return Math.max(1, length);
+	}
+
+	public void resourceChanged(IResourceChangeEvent event) {
+		synchronized (this) {
+			if (entries.isEmpty()) {
+				return;
+			}
+		}
+		IResourceDelta delta = event.getDelta();
+		if (delta == null) {
+			return;
+		}
+		final boolean[] sourceChanged = new boolean[1];
+		final Set<IProject> classpathChanged = new HashSet<IProject>();
+		try {
+			delta.accept(new IResourceDeltaVisitor() {
+				public boolean visit(IResourceDelta delta) {
+					if (sourceChanged[0]) {
+						return false;
+					}
+					IResource resource = delta.getResource();
+					switch (resource.getType()) {
+						case IResource.PROJECT:
+							if (delta.getKind() != IResourceDelta.CHANGED || (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+								// all of its sources appear or go away
+								sourceChanged[0] = true;
+								return false;
+							}
+							return true;
+						case IResource.FILE:
+							if (delta.getKind() != IResourceDelta.CHANGED
+									|| (delta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) != 0) {
+								if (Util.isJavaLikeFileName(resource.getName())) {
+									sourceChanged[0] = true;
+								} else if (resource.getParent().getType() == IResource.PROJECT
+										&& CLASSPATH_FILE.equals(resource.getName())) {
+									classpathChanged.add(resource.getProject());
+								}
+							}
+							return false;
+						default:
+							return true;
+					}
+				}
+			});
+		} catch (CoreException e) {
+			Util.log(e, "Problem processing resource delta, discarding cached module nodes"); //$NON-NLS-1$
+			sourceChanged[0] = true;
+		}
+		if (sourceChanged[0]) {
+			clear();
+		} else {
+			for (IProject project : classpathChanged) {
+				clear(project);
+			}
+		}
+	}
+}
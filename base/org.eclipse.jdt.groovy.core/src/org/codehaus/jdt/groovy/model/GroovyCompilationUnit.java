@@ -14,6 +14,7 @@ package org.codehaus.jdt.groovy.model;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.eclipse.GroovyLogManager;
@@ -111,34 +112,85 @@ public class GroovyCompilationUnit extends CompilationUnit {
 	 * @return the {@link ModuleNodeInfo} for this compilation unit. Will be null if force is set to false and this unit is not a
 	 *         working copy. Also will be null if a problem occurs
 	 */
-	public ModuleNodeInfo getModuleInfo(boolean force) {
-		synchronized (ModuleNodeMapper.getInstance()) {
+	public ModuleNodeInfo getModuleInfo(final boolean force) {
+		// fast path, a consistent working copy whose module node is already known and complete needs no locking
+		PerWorkingCopyInfo info = getPerWorkingCopyInfo();
+		if (info != null) {
+			ModuleNodeInfo moduleInfo = ModuleNodeMapper.getInstance().getComplete(this, info);
 			try {
-				// discard the working copy after finishing
-				// if there was no working copy to begin with
-				boolean becameWorkingCopy = false;
-				try {
-					if (becameWorkingCopy = (force && !isWorkingCopy())) {
-						becomeWorkingCopy(null);
-					}
-					if (!isConsistent()) {
-						reconcile(true, null);
-					}
-					PerWorkingCopyInfo info = getPerWorkingCopyInfo();
-					if (info != null) {
-						return ModuleNodeMapper.getInstance().get(info);
-					}
-				} finally {
-					if (becameWorkingCopy) {
-						discardWorkingCopy();
-					}
+				if (moduleInfo != null && isConsistent()) {
+					return moduleInfo;
 				}
 			} catch (JavaModelException e) {
-				Util.log(e, "Exception thrown when trying to get Groovy module node for " + this.getElementName()); //$NON-NLS-1$
+				// fall through and let the slow path report it
+			}
+		}
+		// otherwise reconcile, sharing the work with any other thread asking about this unit at the same time
+		return ModuleNodeMapper.getInstance().getOrCompute(this, force, new Callable<ModuleNodeInfo>() {
+			public ModuleNodeInfo call() {
+				return computeModuleInfo(force);
+			}
+		});
+	}
+
+	/**
+	 * Like {@link #getModuleInfo(boolean) getModuleInfo(true)}, but if this unit is not a working copy the module info may be
+	 * shared with other callers: it is cached (see {@link ClosedUnitModuleCache}) until the file, or any other file in the
+	 * workspace, changes. Intended for search, refactoring and checking, which visit many closed files and must treat the module
+	 * node as read only.
+	 */
+	public ModuleNodeInfo getSharedModuleInfo() {
+		IResource resource = getResource();
+		if (isWorkingCopy() || resource == null || resource.getType() != IResource.FILE) {
+			return getModuleInfo(true);
+		}
+		ClosedUnitModuleCache cache = ClosedUnitModuleCache.getInstance();
+		ModuleNodeInfo moduleInfo = cache.get(resource);
+		if (moduleInfo == null) {
+			long modificationStamp = resource.getModificationStamp();
+			moduleInfo = getModuleInfo(true);
+			if (moduleInfo != null && !isWorkingCopy()) {
+				cache.put(resource, modificationStamp, moduleInfo);
+			}
+		}
+		return moduleInfo;
+	}
+
+	/**
+	 * Discard the module infos shared by {@link #getSharedModuleInfo()} for the closed units of the project. For changes that
+	 * affect how they are inferred but that do not come with a change to a source or the classpath, such as refreshed DSLD
+	 * scripts.
+	 */
+	public static void discardSharedModuleInfos(IProject project) {
+		ClosedUnitModuleCache.getInstance().clear(project);
+	}
+
+	private ModuleNodeInfo computeModuleInfo(boolean force) {
+		try {
+			// discard the working copy after finishing
+			// if there was no working copy to begin with
+			boolean becameWorkingCopy = false;
+			try {
+				if (becameWorkingCopy = (force && !isWorkingCopy())) {
+					becomeWorkingCopy(null);
+				}
+				if (!isConsistent()) {
+					reconcile(true, null);
+				}
+				PerWorkingCopyInfo info = getPerWorkingCopyInfo();
+				if (info != null) {
+					return ModuleNodeMapper.getInstance().get(info);
+				}
+			} finally {
+				if (becameWorkingCopy) {
+					discardWorkingCopy();
+				}
 			}
-			// return null if not found. Means that there was a problem with build structure
-			return null;
+		} catch (JavaModelException e) {
+			Util.log(e, "Exception thrown when trying to get Groovy module node for " + this.getElementName()); //$NON-NLS-1$
 		}
+		// return null if not found. Means that there was a problem with build structure
+		return null;
 	}
 
 	/**
@@ -158,9 +210,13 @@ public class GroovyCompilationUnit extends CompilationUnit {
 
 	@Override
 	public void discardWorkingCopy() throws JavaModelException {
-		// GRECLIPSE-804 must synchronize
-		synchronized (ModuleNodeMapper.getInstance()) {
-			PerWorkingCopyInfo info = getPerWorkingCopyInfo();
+		// GRECLIPSE-804 must synchronize, but only with other changes to this working copy
+		PerWorkingCopyInfo info = getPerWorkingCopyInfo();
+		if (info == null) {
+			super.discardWorkingCopy();
+			return;
+		}
+		synchronized (info) {
 			if (workingCopyInfoWillBeDiscarded(info)) {
 				ModuleNodeMapper.getInstance().remove(info);
 			}
@@ -172,8 +228,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 	 * working copy info is about to be discared if useCount <= 1
 	 */
 	private boolean workingCopyInfoWillBeDiscarded(PerWorkingCopyInfo info) {
-		return info != null
-				&& ((Integer) ReflectionUtils.getPrivateField(PerWorkingCopyInfo.class, "useCount", info)).intValue() <= 1; //$NON-NLS-1$
+		return ModuleNodeMapper.getUseCount(info) <= 1;
 	}
 
 	/**
@@ -15,12 +15,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyCompilationUnitDeclaration;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.groovy.search.TypeLookupResultCache;
 import org.eclipse.jdt.internal.core.JavaModelManager;
 import org.eclipse.jdt.internal.core.JavaModelManager.PerWorkingCopyInfo;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -32,6 +37,10 @@ import org.eclipse.jdt.internal.core.util.Util;
  *          This class stores module nodes for groovy compilation units This class is not meant to be accessed externally.
  * 
  *          One module node is stored per working copy of a unit
+ * 
+ *          There is no global lock. Lookups never block, changes to the entry for a working copy are made whilst holding the lock
+ *          on its {@link PerWorkingCopyInfo}, and concurrent requests to compute the module node of the same unit share a single
+ *          computation (see {@link #getOrCompute(GroovyCompilationUnit, boolean, Callable)}).
  */
 public class ModuleNodeMapper {
 
@@ -43,19 +52,42 @@ public class ModuleNodeMapper {
 
 		public final ModuleNode module;
 		public final JDTResolver resolver;
+
+		private TypeLookupResultCache lookupResults;
+
+		/**
+		 * @return the results of type lookups done in this module node, created on first use
+		 */
+		public synchronized TypeLookupResultCache getLookupResults() {
+			if (lookupResults == null) {
+				lookupResults = new TypeLookupResultCache();
+			}
+			return lookupResults;
+		}
 	}
 
 	private static final ModuleNodeMapper INSTANCE = new ModuleNodeMapper();
 
-	static ModuleNodeMapper getInstance() {
+	public static ModuleNodeMapper getInstance() {
 		return INSTANCE;
 	}
 
-	private final Map<PerWorkingCopyInfo, ModuleNodeInfo> infoToModuleMap = new HashMap<PerWorkingCopyInfo, ModuleNodeInfo>();
+	private final Map<PerWorkingCopyInfo, ModuleNodeInfo> infoToModuleMap = new ConcurrentHashMap<PerWorkingCopyInfo, ModuleNodeInfo>();
+
+	// computations of module infos currently in progress, one per unit
+	private final ConcurrentHashMap<GroovyCompilationUnit, PendingModuleInfo> pending = new ConcurrentHashMap<GroovyCompilationUnit, PendingModuleInfo>();
+
+	// threads > the computation in another thread they are waiting for
+	private final Map<Thread, PendingModuleInfo> waiting = new HashMap<Thread, PendingModuleInfo>();
 
-	synchronized void store(PerWorkingCopyInfo info, ModuleNode module, JDTResolver resolver) {
+	void store(PerWorkingCopyInfo info, ModuleNode module, JDTResolver resolver) {
 		sweepAndPurgeModuleNodes();
-		infoToModuleMap.put(info, new ModuleNodeInfo(module, shouldStoreResovler() ? resolver : null));
+		synchronized (info) {
+			// GRECLIPSE-804 a reconcile may finish after its working copy has been discarded, do not resurrect the entry
+			if (getUseCount(info) > 0) {
+				infoToModuleMap.put(info, new ModuleNodeInfo(module, shouldStoreResovler() ? resolver : null));
+			}
+		}
 	}
 
 	private final static boolean DSL_BUNDLE_INSTALLED;
@@ -73,34 +105,150 @@ public class ModuleNodeMapper {
 		return DSL_BUNDLE_INSTALLED;
 	}
 
-	synchronized ModuleNode getModule(PerWorkingCopyInfo info) {
+	ModuleNode getModule(PerWorkingCopyInfo info) {
 		ModuleNodeInfo moduleNodeInfo = get(info);
 		return moduleNodeInfo != null ? moduleNodeInfo.module : null;
 	}
 
-	synchronized ModuleNodeInfo get(PerWorkingCopyInfo info) {
+	ModuleNodeInfo get(PerWorkingCopyInfo info) {
 		sweepAndPurgeModuleNodes();
 		return infoToModuleMap.get(info);
 	}
 
-	synchronized JDTResolver getResolver(PerWorkingCopyInfo info) {
+	/**
+	 * Like {@link #get(PerWorkingCopyInfo)}, but only answers an entry that is complete. Whilst another thread is computing the
+	 * module info of the unit, the working copy may be a temporary one that is still being reconciled, so the entry is only
+	 * published once that computation has finished. The thread doing the computation may use its own entry.
+	 */
+	ModuleNodeInfo getComplete(GroovyCompilationUnit unit, PerWorkingCopyInfo info) {
+		ModuleNodeInfo moduleInfo = get(info);
+		if (moduleInfo != null) {
+			// checked after reading the entry, so an entry read whilst a computation was in progress is only answered once it is done
+			PendingModuleInfo task = pending.get(unit);
+			if (task != null && task.owner != Thread.currentThread()) {
+				return null;
+			}
+		}
+		return moduleInfo;
+	}
+
+	JDTResolver getResolver(PerWorkingCopyInfo info) {
 		ModuleNodeInfo moduleNodeInfo = get(info);
 		return moduleNodeInfo != null ? moduleNodeInfo.resolver : null;
 	}
 
-	synchronized ModuleNode remove(PerWorkingCopyInfo info) {
+	/**
+	 * Callers that are about to discard the working copy should hold the lock on info
+	 */
+	ModuleNode remove(PerWorkingCopyInfo info) {
 		sweepAndPurgeModuleNodes();
 		ModuleNodeInfo removed = infoToModuleMap.remove(info);
 		return removed != null ? removed.module : null;
 	}
 
+	private static class PendingModuleInfo extends FutureTask<ModuleNodeInfo> {
+		final Thread owner = Thread.currentThread();
+		final boolean force;
+
+		PendingModuleInfo(Callable<ModuleNodeInfo> computation, boolean force) {
+			super(computation);
+			this.force = force;
+		}
+	}
+
+	/**
+	 * Run the computation of the module info for the unit, unless the unit is already being computed in another thread in which
+	 * case wait for it and share its result. So however many threads ask at the same time a unit is only reconciled once, and
+	 * threads asking about other units are not held up.
+	 * 
+	 * A forced request that finds an unforced computation in progress uses its result if there is one, and otherwise computes
+	 * again. A thread never waits for a computation that is itself waiting, directly or through other threads, for a unit being
+	 * computed by that thread; it runs the computation on its own instead.
+	 */
+	public ModuleNodeInfo getOrCompute(GroovyCompilationUnit unit, boolean force, Callable<ModuleNodeInfo> computation) {
+		while (true) {
+			PendingModuleInfo task = new PendingModuleInfo(computation, force);
+			PendingModuleInfo existing = pending.putIfAbsent(unit, task);
+			if (existing == null) {
+				try {
+					task.run();
+				} finally {
+					pending.remove(unit, task);
+				}
+				return getResult(unit, task);
+			}
+			if (!startWaiting(existing)) {
+				// waiting would deadlock
+				task.run();
+				return getResult(unit, task);
+			}
+			ModuleNodeInfo info;
+			try {
+				info = getResult(unit, existing);
+			} finally {
+				stopWaiting();
+			}
+			if (info != null || existing.force || !force || Thread.currentThread().isInterrupted()) {
+				return info;
+			}
+			// an unforced computation finds nothing for a unit that is not a working copy, take its place with a forced one
+			pending.remove(unit, existing);
+		}
+	}
+
+	/**
+	 * Register that the current thread is about to wait for the given computation.
+	 * 
+	 * @return false if the computation is waiting, directly or through other threads, for the current thread
+	 */
+	private boolean startWaiting(PendingModuleInfo task) {
+		Thread current = Thread.currentThread();
+		synchronized (waiting) {
+			for (PendingModuleInfo next = task; next != null; next = waiting.get(next.owner)) {
+				if (next.owner == current) {
+					return false;
+				}
+			}
+			waiting.put(current, task);
+			return true;
+		}
+	}
+
+	private void stopWaiting() {
+		synchronized (waiting) {
+			waiting.remove(Thread.currentThread());
+		}
+	}
+
+	private ModuleNodeInfo getResult(GroovyCompilationUnit unit, PendingModuleInfo task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			Util.log(cause, "Exception thrown when trying to get Groovy module node for " + unit.getElementName()); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	static int getUseCount(PerWorkingCopyInfo info) {
+		return ((Integer) ReflectionUtils.getPrivateField(PerWorkingCopyInfo.class, "useCount", info)).intValue(); //$NON-NLS-1$
+	}
+
 	/**
 	 * Cache the module node if this is a working copy
 	 * 
 	 * @param perWorkingCopyInfo
 	 * @param compilationUnitDeclaration
 	 */
-	synchronized protected void maybeCacheModuleNode(JavaModelManager.PerWorkingCopyInfo perWorkingCopyInfo,
+	protected void maybeCacheModuleNode(JavaModelManager.PerWorkingCopyInfo perWorkingCopyInfo,
 			GroovyCompilationUnitDeclaration compilationUnitDeclaration) {
 		if (perWorkingCopyInfo != null && compilationUnitDeclaration != null) {
 			ModuleNode module = compilationUnitDeclaration.getModuleNode();
@@ -124,7 +272,7 @@ public class ModuleNodeMapper {
 
 	// GRECLIPSE-804 check to see that the stored nodes are correct
 	// provide info to stdout if not and purge any stale elements
-	synchronized void sweepAndPurgeModuleNodes() {
+	void sweepAndPurgeModuleNodes() {
 		if (System.getProperty("groovy.eclipse.model.purge") == null) {
 			return;
 		}
@@ -132,7 +280,7 @@ public class ModuleNodeMapper {
 		System.out.println("ModuleNodeMap.size(): " + infoToModuleMap.size());
 		List<PerWorkingCopyInfo> toPurge = new ArrayList<PerWorkingCopyInfo>();
 		for (PerWorkingCopyInfo info : infoToModuleMap.keySet()) {
-			int useCount = ((Integer) ReflectionUtils.getPrivateField(PerWorkingCopyInfo.class, "useCount", info)).intValue();
+			int useCount = getUseCount(info);
 			if (useCount <= 0) {
 				String message = "Bad module node map entry: " + info.getWorkingCopy().getElementName();
 				System.out.println(message);
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.codehaus.jdt.groovy.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyParser;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+/**
+ * Tells the pool of AST transform loaders which jars have changed, so that it only needs to look at the classpath entries of a
+ * loader when one of them has. Jars in the workspace and external jars that have been refreshed are reported by the java model
+ * as package fragment roots whose archive content changed.
+ */
+public class TransformLoaderCacheUpdater implements IElementChangedListener {
+
+	public void elementChanged(ElementChangedEvent event) {
+		List<String> changed = new ArrayList<String>();
+		collectChangedRoots(event.getDelta(), changed);
+		if (!changed.isEmpty()) {
+			GroovyParser.getTransformLoaderCache().entriesChanged(changed);
+		}
+	}
+
+	private void collectChangedRoots(IJavaElementDelta delta, List<String> changed) {
+		switch (delta.getElement().getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+			case IJavaElement.JAVA_PROJECT:
+				for (IJavaElementDelta child : delta.getAffectedChildren()) {
+					collectChangedRoots(child, changed);
+				}
+				break;
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				if (delta.getKind() != IJavaElementDelta.CHANGED
+						|| (delta.getFlags() & (IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED
+								| IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH)) != 0) {
+					IPath location = getLocation((IPackageFragmentRoot) delta.getElement());
+					if (location != null) {
+						changed.add(location.toOSString());
+					}
+				}
+				break;
+		}
+	}
+
+	private IPath getLocation(IPackageFragmentRoot root) {
+		if (root.isExternal()) {
+			return root.getPath();
+		}
+		IResource resource = root.getResource();
+		return resource != null ? resource.getLocation() : null;
+	}
+}
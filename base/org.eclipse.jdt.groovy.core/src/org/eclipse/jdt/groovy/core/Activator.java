@@ -15,12 +15,15 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.codehaus.jdt.groovy.model.TransformLoaderCacheUpdater;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.internal.core.util.Util;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.prefs.BackingStoreException;
@@ -38,6 +41,8 @@ public class Activator extends Plugin {
 
 	private IEclipsePreferences instanceScope;
 
+	private TransformLoaderCacheUpdater transformLoaderCacheUpdater;
+
 	// comma-separated list of regex filters that specify groovy scripts.
 	public static final String GROOVY_SCRIPT_FILTERS = "groovy.script.filters";
 	public static final String GROOVY_SCRIPT_FILTERS_ENABLED = "groovy.script.filters.enabled";
@@ -51,9 +56,13 @@ public class Activator extends Plugin {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		transformLoaderCacheUpdater = new TransformLoaderCacheUpdater();
+		JavaCore.addElementChangedListener(transformLoaderCacheUpdater, ElementChangedEvent.POST_CHANGE);
 	}
 
 	public void stop(BundleContext context) throws Exception {
+		JavaCore.removeElementChangedListener(transformLoaderCacheUpdater);
+		transformLoaderCacheUpdater = null;
 		plugin = null;
 		super.stop(context);
 	}
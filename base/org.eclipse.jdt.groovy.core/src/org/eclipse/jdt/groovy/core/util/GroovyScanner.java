@@ -32,8 +32,41 @@ import antlr.TokenStreamException;
  */
 public class GroovyScanner {
 
+	/**
+	 * Exposes enough of the lexer state to tell whether scanning could start over at the current position, and to start over
+	 */
+	private static class RestartableLexer extends GroovyLexer {
+
+		RestartableLexer(Reader input) {
+			super(input);
+		}
+
+		/**
+		 * @return the number of enclosing braces if only braces are open, -1 if inside parentheses, brackets or a string
+		 */
+		int getRestartDepth() {
+			if (parenLevel != 0 || suppressNewline != 0 || stringCtorState != 0) {
+				return -1;
+			}
+			for (Object level : parenLevelStack) {
+				if (((Integer) level).intValue() != 0) {
+					return -1;
+				}
+			}
+			return parenLevelStack.size();
+		}
+
+		@SuppressWarnings("unchecked")
+		void restart(int depth) {
+			for (int i = 0; i < depth; i++) {
+				parenLevelStack.add(Integer.valueOf(0));
+			}
+			lastSigTokenType = NLS;
+		}
+	}
+
 	private TokenStream stream;
-	private GroovyLexer lexer;
+	private RestartableLexer lexer;
 	private boolean whiteSpaceIncluded;
 
 	public GroovyScanner(Reader input) {
@@ -46,7 +79,7 @@ public class GroovyScanner {
 
 	private void init(Reader input, boolean whiteSpaceIncluded) {
 		this.whiteSpaceIncluded = whiteSpaceIncluded;
-		lexer = new GroovyLexer(input);
+		lexer = new RestartableLexer(input);
 		lexer.setWhitespaceIncluded(whiteSpaceIncluded);
 		this.stream = (TokenStream) lexer.plumb();
 	}
@@ -55,6 +88,27 @@ public class GroovyScanner {
 		this(new StringReader(text), false);
 	}
 
+	/**
+	 * Scan the document from the given offset onwards, in the state the lexer is in right after a newline token with the
+	 * given number of braces open. The line and column of the tokens are those in the whole document.
+	 * 
+	 * @param restartDepth a value returned by {@link #getRestartDepth()} when the newline token was scanned
+	 * @throws BadLocationException
+	 */
+	public GroovyScanner(IDocument document, int offset, int restartDepth) throws BadLocationException {
+		initAt(document, offset, false);
+		lexer.restart(restartDepth);
+	}
+
+	private void initAt(IDocument document, int offset, boolean whiteSpaceIncluded) throws BadLocationException {
+		int line = document.getLineOfOffset(offset);
+		int col = offset - document.getLineOffset(line) + 1; // antlr cols start at 1
+		String remainingInput = document.get(offset, document.getLength() - offset);
+		init(new StringReader(remainingInput), whiteSpaceIncluded);
+		lexer.setLine(line + 1); // antlr lines start at 1
+		lexer.setColumn(col);
+	}
+
 	public Token nextToken() throws TokenStreamException {
 		return stream.nextToken();
 	}
@@ -69,14 +123,18 @@ public class GroovyScanner {
 		int line = lexer.getInputState().getLine(); // Line and
 		int col = lexer.getInputState().getColumn(); // column where error happened.
 		int offset = getOffset(document, line, col) + 1; // +1 to skip one character.
-		line = document.getLineOfOffset(offset);
-		int lineStart = document.getLineOffset(line);
-		line = line + 1; // antlr lines start at 1
-		col = offset - lineStart + 1; // antlr cols start at 1
-		String remainingInput = document.get(offset, document.getLength() - offset);
-		init(new StringReader(remainingInput), whiteSpaceIncluded); // Reinitialize with remaining input
-		lexer.setLine(line); // Fix antlr line and
-		lexer.setColumn(col);// column infos because we are not starting at the start
+		initAt(document, offset, whiteSpaceIncluded); // Reinitialize with remaining input
+	}
+
+	/**
+	 * Tells whether scanning could be restarted at the end of the last token returned, which is the case when the lexer is not
+	 * inside parentheses, brackets, a string or an embedded expression. Only meaningful right after a newline token.
+	 * 
+	 * @return the number of open braces, to pass to {@link #GroovyScanner(IDocument, int, int)} when restarting, or -1 if
+	 *         scanning cannot be restarted here
+	 */
+	public int getRestartDepth() {
+		return lexer.getRestartDepth();
 	}
 
 	/**
@@ -11,9 +11,6 @@
  *******************************************************************************/
 package org.eclipse.jdt.groovy.core.util;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Helper methods - can be made more eclipse friendly or replaced if the groovy infrastructure provides the information (eg.
  * getSourceLineSeparatorsIn())
@@ -22,25 +19,30 @@ import java.util.List;
  */
 public class GroovyUtils {
 
-	// FIXASC don't use this any more?
+	/**
+	 * Answer the positions of the line separators in the code, in the form of CompilationResult.lineSeparatorPositions: the
+	 * position of each '\r' or '\n', with a "\r\n" recorded once at its '\n'. The groovy parser can be handed the same
+	 * array (see CharArrayReaderSource) rather than working them out again.
+	 */
 	public static int[] getSourceLineSeparatorsIn(char[] code) {
-		List<Integer> lineSeparatorsCollection = new ArrayList<Integer>();
+		int[] lineSepPositions = new int[16];
+		int count = 0;
 		for (int i = 0, max = code.length; i < max; i++) {
-			if (code[i] == '\r') {
-				if ((i + 1) < max && code[i + 1] == '\n') {// \r\n
-					lineSeparatorsCollection.add(i + 1); // add the position of the \n
-					i++;
-				} else {
-					lineSeparatorsCollection.add(i); // add the position of the \r
+			char c = code[i];
+			if (c == '\r' || c == '\n') {
+				if (c == '\r' && (i + 1) < max && code[i + 1] == '\n') {// \r\n
+					i++; // record the position of the \n
+				}
+				if (count == lineSepPositions.length) {
+					int[] larger = new int[count * 2];
+					System.arraycopy(lineSepPositions, 0, larger, 0, count);
+					lineSepPositions = larger;
 				}
-			} else if (code[i] == '\n') {
-				lineSeparatorsCollection.add(i);
+				lineSepPositions[count++] = i;
 			}
 		}
-		int[] lineSepPositions = new int[lineSeparatorsCollection.size()];
-		for (int i = 0; i < lineSeparatorsCollection.size(); i++) {
-			lineSepPositions[i] = lineSeparatorsCollection.get(i);
-		}
-		return lineSepPositions;
+		int[] result = new int[count];
+		System.arraycopy(lineSepPositions, 0, result, 0, count);
+		return result;
 	}
 }
@@ -16,8 +16,12 @@
 
 package org.eclipse.jdt.groovy.search;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.codehaus.groovy.ast.AnnotationNode;
@@ -41,6 +45,57 @@ import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
  */
 public class CategoryTypeLookup implements ITypeLookup {
 
+	/**
+	 * The methods of a category class that could apply to some receiver, indexed by name and then by the name of the type of
+	 * their first (self) parameter. Methods without parameters can never apply so are left out.
+	 */
+	private static class CategoryMethods {
+		// method name > self type name > methods
+		private final Map<String, Map<String, List<MethodNode>>> methods = new HashMap<String, Map<String, List<MethodNode>>>();
+		// the same for static getters and setters only, which are also candidates for their property name
+		private final Map<String, Map<String, List<MethodNode>>> accessors = new HashMap<String, Map<String, List<MethodNode>>>();
+
+		CategoryMethods(ClassNode category) {
+			for (MethodNode method : category.getMethods()) {
+				Parameter[] params = method.getParameters();
+				if (params == null || params.length == 0) {
+					continue;
+				}
+				String selfTypeName = params[0].getType().getName();
+				add(methods, method.getName(), selfTypeName, method);
+				if (method.isStatic()) {
+					AccessorSupport kind = AccessorSupport.findAccessorKind(method, true);
+					if (kind == AccessorSupport.GETTER || kind == AccessorSupport.SETTER) {
+						add(accessors, method.getName(), selfTypeName, method);
+					}
+				}
+			}
+		}
+
+		private static void add(Map<String, Map<String, List<MethodNode>>> index, String name, String selfTypeName,
+				MethodNode method) {
+			Map<String, List<MethodNode>> bySelfType = index.get(name);
+			if (bySelfType == null) {
+				bySelfType = new LinkedHashMap<String, List<MethodNode>>();
+				index.put(name, bySelfType);
+			}
+			List<MethodNode> bucket = bySelfType.get(selfTypeName);
+			if (bucket == null) {
+				bucket = new ArrayList<MethodNode>(1);
+				bySelfType.put(selfTypeName, bucket);
+			}
+			bucket.add(method);
+		}
+	}
+
+	// These caches live as long as this lookup, ie. for one inferencing session, so they do not go stale when types change
+
+	// category class > its indexed methods
+	private final Map<ClassNode, CategoryMethods> categoryMethods = new HashMap<ClassNode, CategoryMethods>();
+
+	// type name > names of the type and all its super classes and interfaces (and java.lang.Object)
+	private final Map<String, Set<String>> supertypeClosures = new HashMap<String, Set<String>>();
+
 	/**
 	 * Looks up method calls to see if they are declared in any current categories
 	 */
@@ -48,8 +103,7 @@ public class CategoryTypeLookup implements ITypeLookup {
 		if (node instanceof ConstantExpression || node instanceof VariableExpression) {
 			Set<ClassNode> categories = scope.getCategoryNames();
 			ClassNode currentType = objectExpressionType != null ? objectExpressionType : scope.getDelegateOrThis();
-			Set<MethodNode> possibleMethods = new HashSet<MethodNode>();
-			// go through all categories and look for and look for a method with the given name
+			// go through all categories, in declaration order, and look for a method with the given name
 			String text = node.getText();
 			if (text.startsWith("${") && text.endsWith("}")) {
 				text = text.substring(2, text.length() - 1);
@@ -58,33 +112,30 @@ public class CategoryTypeLookup implements ITypeLookup {
 			}
 			String getterName = AccessorSupport.GETTER.createAccessorName(text);
 			String setterName = AccessorSupport.SETTER.createAccessorName(text);
+			Set<String> allSupers = null;
 			for (ClassNode category : categories) {
-				List<MethodNode> methods = category.getMethods(text);
-
-				possibleMethods.addAll(methods);
-
-				// also check to see if the getter variant of any name is available
-				if (getterName != null) {
-					methods = category.getMethods(getterName);
-					for (MethodNode method : methods) {
-						if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.GETTER) {
-							possibleMethods.add(method);
-						}
-					}
+				CategoryMethods indexed = getCategoryMethods(category);
+				Map<String, List<MethodNode>> candidates = indexed.methods.get(text);
+				// also check to see if the getter or setter variant of the name is available
+				Map<String, List<MethodNode>> getterCandidates = getterName == null ? null : indexed.accessors.get(getterName);
+				Map<String, List<MethodNode>> setterCandidates = setterName == null ? null : indexed.accessors.get(setterName);
+				if (candidates == null && getterCandidates == null && setterCandidates == null) {
+					continue;
 				}
-				if (setterName != null) {
-					methods = category.getMethods(setterName);
-					for (MethodNode method : methods) {
-						if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.SETTER) {
-							possibleMethods.add(method);
-						}
+				if (allSupers == null) {
+					allSupers = getAllSupers(VariableScope.maybeConvertFromPrimitive(currentType));
+					if (allSupers == null) {
+						return null;
 					}
 				}
-			}
-			for (MethodNode methodNode : possibleMethods) {
-				Parameter[] params = methodNode.getParameters();
-				if (params != null && params.length > 0
-						&& isAssignableFrom(VariableScope.maybeConvertFromPrimitive(currentType), params[0].getType())) {
+				MethodNode methodNode = findApplicable(candidates, allSupers);
+				if (methodNode == null) {
+					methodNode = findApplicable(getterCandidates, allSupers);
+				}
+				if (methodNode == null) {
+					methodNode = findApplicable(setterCandidates, allSupers);
+				}
+				if (methodNode != null) {
 					ClassNode declaringClass = methodNode.getDeclaringClass();
 					return new TypeLookupResult(methodNode.getReturnType(), declaringClass, methodNode,
 							getConfidence(declaringClass), scope);
@@ -94,6 +145,29 @@ public class CategoryTypeLookup implements ITypeLookup {
 		return null;
 	}
 
+	private CategoryMethods getCategoryMethods(ClassNode category) {
+		CategoryMethods indexed = categoryMethods.get(category);
+		if (indexed == null) {
+			indexed = new CategoryMethods(category);
+			categoryMethods.put(category, indexed);
+		}
+		return indexed;
+	}
+
+	/**
+	 * @return the first method whose self type is one of the specified super types, or null
+	 */
+	private MethodNode findApplicable(Map<String, List<MethodNode>> candidates, Set<String> allSupers) {
+		if (candidates != null) {
+			for (Map.Entry<String, List<MethodNode>> bucket : candidates.entrySet()) {
+				if (allSupers.contains(bucket.getKey())) {
+					return bucket.getValue().get(0);
+				}
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * DGM and DGSM classes are loosely inferred so that other lookups can provide better solutions
 	 * 
@@ -124,25 +198,23 @@ public class CategoryTypeLookup implements ITypeLookup {
 	}
 
 	/**
-	 * can from be assigned to to?
+	 * The names of all the types that from can be assigned to. Computed once per type per inferencing session.
 	 * 
 	 * @param from
-	 * @param to
-	 * @return
+	 * @return the names, or null if from is null
 	 */
-	private boolean isAssignableFrom(ClassNode from, ClassNode to) {
-		if (from == null || to == null) {
-			return false;
+	private Set<String> getAllSupers(ClassNode from) {
+		if (from == null) {
+			return null;
 		}
-		Set<String> allSupers = new HashSet<String>();
-		allSupers.add("java.lang.Object");
-		findAllSupers(from, allSupers);
-		for (String supr : allSupers) {
-			if (to.getName().equals(supr)) {
-				return true;
-			}
+		Set<String> allSupers = supertypeClosures.get(from.getName());
+		if (allSupers == null) {
+			allSupers = new HashSet<String>();
+			allSupers.add("java.lang.Object");
+			findAllSupers(from, allSupers);
+			supertypeClosures.put(from.getName(), allSupers);
 		}
-		return false;
+		return allSupers;
 	}
 
 	public TypeLookupResult lookupType(FieldNode node, VariableScope scope) {
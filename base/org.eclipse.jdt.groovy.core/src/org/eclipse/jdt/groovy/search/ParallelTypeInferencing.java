@@ -0,0 +1,211 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eclipse.jdt.groovy.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs type inferencing over a batch of compilation units, visiting up to {@link #getParallelism()} units at the same time.
+ * <p>
+ * Every unit gets its own {@link TypeInferencingVisitorWithRequestor} (and so its own set of {@link ITypeLookup}s) and its own
+ * {@link ITypeRequestor}, created by the {@link IUnitRequestorFactory}, so a requestor only ever sees the nodes of one unit and
+ * only from one thread. Once a unit has been visited its requestor is handed back to the factory on the calling thread, in the
+ * order the units were passed in, so results can be merged without any locking and come out in the same order as a serial run.
+ */
+public class ParallelTypeInferencing {
+
+	/**
+	 * Creates the requestors for the units in a batch and receives them back when the units have been visited
+	 */
+	public interface IUnitRequestorFactory {
+		/**
+		 * Called on a worker thread. Prepare the unit and create the requestor that will be passed its nodes.
+		 *
+		 * @return the requestor, or null to skip the unit
+		 */
+		ITypeRequestor createRequestor(GroovyCompilationUnit unit) throws CoreException;
+
+		/**
+		 * Called on the same worker thread once the unit has been visited (or visiting failed), if a requestor was created
+		 */
+		void releaseRequestor(GroovyCompilationUnit unit, ITypeRequestor requestor);
+
+		/**
+		 * Called on the thread that started the batch, in the order the units were given, for each unit that was visited
+		 */
+		void acceptResults(GroovyCompilationUnit unit, ITypeRequestor requestor) throws CoreException;
+	}
+
+	/**
+	 * @return the number of threads used when none is specified, from the greclipse.inferencing.threads system property, 1 by
+	 *         default
+	 */
+	public static int getDefaultParallelism() {
+		return Math.max(1, Integer.getInteger("greclipse.inferencing.threads", 1).intValue()); //$NON-NLS-1$
+	}
+
+	private final int parallelism;
+
+	public ParallelTypeInferencing() {
+		this(getDefaultParallelism());
+	}
+
+	public ParallelTypeInferencing(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Visit all the units. Returns once every unit has been visited and its results accepted, or as soon as the monitor is
+	 * canceled or a unit fails, in which case the remaining units are not visited and the exception is rethrown.
+	 *
+	 * @param monitor progress monitor, can be null. One unit of work is reported per compilation unit.
+	 */
+	public void visit(List<GroovyCompilationUnit> units, IUnitRequestorFactory factory, IProgressMonitor monitor)
+			throws CoreException {
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		monitor.beginTask("Type inferencing", units.size()); //$NON-NLS-1$
+		try {
+			if (parallelism == 1 || units.size() <= 1) {
+				visitSerially(units, factory, monitor);
+			} else {
+				visitInParallel(units, factory, monitor);
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private void visitSerially(List<GroovyCompilationUnit> units, IUnitRequestorFactory factory, IProgressMonitor monitor)
+			throws CoreException {
+		for (GroovyCompilationUnit unit : units) {
+			if (monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			monitor.subTask(unit.getElementName());
+			ITypeRequestor requestor = visitUnit(unit, factory);
+			if (requestor != null) {
+				factory.acceptResults(unit, requestor);
+			}
+			monitor.worked(1);
+		}
+	}
+
+	private void visitInParallel(List<GroovyCompilationUnit> units, IUnitRequestorFactory factory, IProgressMonitor monitor)
+			throws CoreException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, units.size()), new InferencingThreadFactory());
+		try {
+			List<Future<ITypeRequestor>> results = new ArrayList<Future<ITypeRequestor>>(units.size());
+			for (GroovyCompilationUnit unit : units) {
+				results.add(executor.submit(new VisitTask(unit, factory, monitor)));
+			}
+			for (int i = 0; i < units.size(); i++) {
+				GroovyCompilationUnit unit = units.get(i);
+				monitor.subTask(unit.getElementName());
+				ITypeRequestor requestor = waitFor(results.get(i));
+				if (requestor != null) {
+					factory.acceptResults(unit, requestor);
+				}
+				monitor.worked(1);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private ITypeRequestor visitUnit(GroovyCompilationUnit unit, IUnitRequestorFactory factory) throws CoreException {
+		ITypeRequestor requestor = factory.createRequestor(unit);
+		if (requestor == null) {
+			return null;
+		}
+		try {
+			TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
+			visitor.visitCompilationUnit(requestor);
+		} finally {
+			factory.releaseRequestor(unit, requestor);
+		}
+		return requestor;
+	}
+
+	private ITypeRequestor waitFor(Future<ITypeRequestor> result) throws CoreException {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CoreException) {
+				throw (CoreException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private class VisitTask implements Callable<ITypeRequestor> {
+		private final GroovyCompilationUnit unit;
+		private final IUnitRequestorFactory factory;
+		private final IProgressMonitor monitor;
+
+		VisitTask(GroovyCompilationUnit unit, IUnitRequestorFactory factory, IProgressMonitor monitor) {
+			this.unit = unit;
+			this.factory = factory;
+			this.monitor = monitor;
+		}
+
+		public ITypeRequestor call() throws CoreException {
+			// only reading the canceled flag here, all other monitor calls are made on the calling thread
+			if (monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			return visitUnit(unit, factory);
+		}
+	}
+
+	private static class InferencingThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Groovy type inferencing " + count.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
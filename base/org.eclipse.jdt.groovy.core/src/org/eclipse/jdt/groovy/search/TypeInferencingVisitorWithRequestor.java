@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.groovy.search;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -79,6 +80,8 @@ import org.codehaus.groovy.ast.stmt.ReturnStatement;
 import org.codehaus.groovy.ast.stmt.Statement;
 import org.codehaus.groovy.classgen.BytecodeExpression;
 import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.eclipse.GroovyMetrics;
+import org.codehaus.groovy.eclipse.MetricCategory;
 import org.codehaus.groovy.syntax.Types;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
@@ -87,6 +90,8 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.ISourceReference;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
@@ -274,6 +279,29 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 
 	private final AssignmentStorer assignmentStorer = new AssignmentStorer();
 
+	/**
+	 * The results of the lookups done by earlier visits of the same module node, or null if they are not cached
+	 */
+	private final TypeLookupResultCache lookupResults;
+
+	/**
+	 * Lookup results are recorded until the requestor first cancels a branch or a member. From then on the scopes may differ from
+	 * those of a complete visit, and so may the results.
+	 */
+	private boolean recordLookups;
+
+	/**
+	 * The change count of the scopes when the last lookup not found in the cache started. Lookups that change the scopes, such as
+	 * DSLD contributions setting the type of the delegate, are not cached since a cache hit would skip the changes.
+	 */
+	private int scopeChangesBeforeLookup;
+
+	/**
+	 * The source range being inferred, or -1 if the whole unit is visited
+	 */
+	private int targetStart = -1;
+	private int targetEnd = -1;
+
 	/**
 	 * Use factory to instantiate
 	 */
@@ -283,6 +311,8 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		ModuleNodeInfo info = createModuleNode(unit);
 		this.enclosingDeclarationNode = info != null ? info.module : null;
 		this.resolver = info != null ? info.resolver : null;
+		// only working copies keep their module node until the next reconcile
+		this.lookupResults = info != null && unit.isWorkingCopy() ? info.getLookupResults() : null;
 		this.lookups = lookups;
 		scopes = new Stack<VariableScope>();
 		completeExpressionStack = new Stack<ASTNode>();
@@ -291,49 +321,76 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		dependentDeclaringTypeStack = new Stack<ClassNode>();
 	}
 
+	/**
+	 * Visits only what is needed to infer the nodes between targetStart and targetEnd: the imports, the types enclosing the range
+	 * with their field initializers, and the members enclosing the range. Other members have their own scopes and cannot affect
+	 * the inferencing of the target, so they are skipped. If no member of a type encloses the range, all of them are visited.
+	 * Meant for code select and hovers, where the requestor is only interested in a single node.
+	 */
+	public void visitCompilationUnit(ITypeRequestor requestor, int targetStart, int targetEnd) {
+		if (targetStart < 0 || targetEnd < targetStart) {
+			visitCompilationUnit(requestor);
+			return;
+		}
+		this.targetStart = targetStart;
+		this.targetEnd = targetEnd;
+		try {
+			visitCompilationUnit(requestor);
+		} finally {
+			this.targetStart = -1;
+			this.targetEnd = -1;
+		}
+	}
+
 	public void visitCompilationUnit(ITypeRequestor requestor) {
 		if (enclosingDeclarationNode == null) {
 			// no module node, can't do anything
 			return;
 		}
 
-		this.requestor = requestor;
-		enclosingElement = unit;
-		VariableScope topLevelScope = new VariableScope(null, enclosingDeclarationNode, false);
-		scopes.push(topLevelScope);
+		GroovyMetrics.Span span = GroovyMetrics.metrics.start(MetricCategory.INFERENCE);
+		try {
+			this.requestor = requestor;
+			enclosingElement = unit;
+			recordLookups = lookupResults != null;
+			VariableScope topLevelScope = new VariableScope(null, enclosingDeclarationNode, false);
+			scopes.push(topLevelScope);
 
-		for (ITypeLookup lookup : lookups) {
-			if (lookup instanceof ITypeResolver) {
-				((ITypeResolver) lookup).setResolverInformation((ModuleNode) enclosingDeclarationNode, resolver);
+			for (ITypeLookup lookup : lookups) {
+				if (lookup instanceof ITypeResolver) {
+					((ITypeResolver) lookup).setResolverInformation((ModuleNode) enclosingDeclarationNode, resolver);
+				}
+				lookup.initialize(unit, topLevelScope);
 			}
-			lookup.initialize(unit, topLevelScope);
-		}
 
-		try {
-			visitPackage(((ModuleNode) enclosingDeclarationNode).getPackage());
-			visitImports((ModuleNode) enclosingDeclarationNode);
 			try {
-				IType[] types = unit.getTypes();
-				for (IType type : types) {
-					visitJDT(type, requestor);
+				visitPackage(((ModuleNode) enclosingDeclarationNode).getPackage());
+				visitImports((ModuleNode) enclosingDeclarationNode);
+				try {
+					IType[] types = unit.getTypes();
+					for (IJavaElement type : targetedChildren(types)) {
+						visitJDT((IType) type, requestor);
+					}
+				} catch (JavaModelException e) {
+					Util.log(e, "Error getting types for " + unit.getElementName());
 				}
-			} catch (JavaModelException e) {
-				Util.log(e, "Error getting types for " + unit.getElementName());
-			}
 
-			scopes.pop();
+				scopes.pop();
 
-		} catch (VisitCompleted vc) {
-			// can ignore
-		} catch (Exception e) {
-			Util.log(e, "Error in inferencing engine for " + unit.getElementName());
+			} catch (VisitCompleted vc) {
+				// can ignore
+			} catch (Exception e) {
+				Util.log(e, "Error in inferencing engine for " + unit.getElementName());
+				if (DEBUG) {
+					System.err.println("Excpetion thrown from inferencing engine");
+					e.printStackTrace();
+				}
+			}
 			if (DEBUG) {
-				System.err.println("Excpetion thrown from inferencing engine");
-				e.printStackTrace();
+				postVisitSanityCheck();
 			}
-		}
-		if (DEBUG) {
-			postVisitSanityCheck();
+		} finally {
+			span.end();
 		}
 	}
 
@@ -360,7 +417,7 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 			try {
 				// visitJDT so that we have the proper enclosing element
 				boolean isEnum = type.isEnum();
-				for (IJavaElement child : type.getChildren()) {
+				for (IJavaElement child : targetedChildren(type.getChildren())) {
 					// filter out synthetic members for enums
 					if (isEnum && shouldFilterEnumMember(child)) {
 						continue;
@@ -407,6 +464,42 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		}
 	}
 
+	/**
+	 * @return the elements to visit, all of them unless a source range is targeted
+	 */
+	private IJavaElement[] targetedChildren(IJavaElement[] children) {
+		if (targetStart < 0) {
+			return children;
+		}
+		List<IJavaElement> targeted = new ArrayList<IJavaElement>(children.length);
+		boolean enclosed = false;
+		for (IJavaElement child : children) {
+			ISourceRange range = null;
+			try {
+				if (child instanceof ISourceReference) {
+					range = ((ISourceReference) child).getSourceRange();
+				}
+			} catch (JavaModelException e) {
+				// visit it then
+			}
+			if (range == null || range.getOffset() < 0 || range.getLength() <= 0) {
+				targeted.add(child);
+			} else if (range.getOffset() <= targetStart && targetEnd <= range.getOffset() + range.getLength()) {
+				targeted.add(child);
+				enclosed = true;
+			}
+		}
+		// the range may be in the declaration of the type itself or in a script, where statements are outside of any member
+		return enclosed ? targeted.toArray(new IJavaElement[targeted.size()]) : children;
+	}
+
+	/**
+	 * @return true unless a source range is targeted that the node is known not to enclose
+	 */
+	private boolean isTargeted(ASTNode node) {
+		return targetStart < 0 || node.getEnd() <= 0 || (node.getStart() <= targetStart && targetEnd <= node.getEnd());
+	}
+
 	/**
 	 * @param node
 	 * @return
@@ -593,6 +686,7 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		// only visit field initializers here.
 		// it is important here to get the right variable scope for the initializer.
 		// need to ensure that the field is one of the enclosing nodes
+		// when targeting a range, only the initializers of the fields enclosing it are visited; enum constants only have theirs here
 		MethodNode clinit = node.getMethod("<clinit>", new Parameter[0]);
 		if (clinit != null && clinit.getCode() instanceof BlockStatement) {
 			for (Statement element : (Iterable<Statement>) ((BlockStatement) clinit.getCode()).getStatements()) {
@@ -602,7 +696,8 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 					BinaryExpression bexpr = (BinaryExpression) ((ExpressionStatement) element).getExpression();
 					if (bexpr.getLeftExpression() instanceof FieldExpression) {
 						FieldNode f = ((FieldExpression) bexpr.getLeftExpression()).getField();
-						if (f != null && f.isStatic() && bexpr.getRightExpression() != null) {
+						if (f != null && f.isStatic() && bexpr.getRightExpression() != null
+								&& (isTargeted(f) || isTargeted(bexpr.getRightExpression()))) {
 							// create the field scope so that it looks like we are visiting within the context of the field
 							VariableScope fieldScope = new VariableScope(currentScope, f, true);
 							scopes.push(fieldScope);
@@ -637,16 +732,20 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		TypeLookupResult result = null;
 		VariableScope scope = scopes.peek();
 		assignmentStorer.storeField(node, scope);
-		for (ITypeLookup lookup : lookups) {
-			TypeLookupResult candidate = lookup.lookupType(node, scope);
-			if (candidate != null) {
-				if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
-					result = candidate;
-				}
-				if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
-					break;
+		result = cachedResult(node, scope);
+		if (result == null) {
+			for (ITypeLookup lookup : lookups) {
+				TypeLookupResult candidate = lookup.lookupType(node, scope);
+				if (candidate != null) {
+					if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
+						result = candidate;
+					}
+					if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
+						break;
+					}
 				}
 			}
+			cacheResult(node, scope, result);
 		}
 		scope.setPrimaryNode(false);
 
@@ -685,16 +784,20 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 
 		TypeLookupResult result = null;
 		VariableScope scope = scopes.peek();
-		for (ITypeLookup lookup : lookups) {
-			TypeLookupResult candidate = lookup.lookupType(node, scope);
-			if (candidate != null) {
-				if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
-					result = candidate;
-				}
-				if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
-					break;
+		result = cachedResult(node, scope);
+		if (result == null) {
+			for (ITypeLookup lookup : lookups) {
+				TypeLookupResult candidate = lookup.lookupType(node, scope);
+				if (candidate != null) {
+					if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
+						result = candidate;
+					}
+					if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
+						break;
+					}
 				}
 			}
+			cacheResult(node, scope, result);
 		}
 		scope.setPrimaryNode(false);
 
@@ -741,16 +844,20 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 	public void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
 		TypeLookupResult result = null;
 		VariableScope scope = scopes.peek();
-		for (ITypeLookup lookup : lookups) {
-			TypeLookupResult candidate = lookup.lookupType(node, scope);
-			if (candidate != null) {
-				if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
-					result = candidate;
-				}
-				if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
-					break;
+		result = cachedResult(node, scope);
+		if (result == null) {
+			for (ITypeLookup lookup : lookups) {
+				TypeLookupResult candidate = lookup.lookupType(node, scope);
+				if (candidate != null) {
+					if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
+						result = candidate;
+					}
+					if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
+						break;
+					}
 				}
 			}
+			cacheResult(node, scope, result);
 		}
 		scope.setPrimaryNode(false);
 		VisitStatus status = notifyRequestor(node, requestor, result);
@@ -827,16 +934,20 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 				VariableScope scope = scopes.peek();
 				scope.setPrimaryNode(false);
 				assignmentStorer.storeImport(imp, scope);
-				for (ITypeLookup lookup : lookups) {
-					TypeLookupResult candidate = lookup.lookupType(imp, scope);
-					if (candidate != null) {
-						if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
-							result = candidate;
-						}
-						if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
-							break;
+				result = cachedResult(imp, scope);
+				if (result == null) {
+					for (ITypeLookup lookup : lookups) {
+						TypeLookupResult candidate = lookup.lookupType(imp, scope);
+						if (candidate != null) {
+							if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
+								result = candidate;
+							}
+							if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
+								break;
+							}
 						}
 					}
+					cacheResult(imp, scope, result);
 				}
 				VisitStatus status = notifyRequestor(imp, requestor, result);
 
@@ -1745,16 +1856,20 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 	private void visitAnnotation(AnnotationNode node) {
 		TypeLookupResult result = null;
 		VariableScope scope = scopes.peek();
-		for (ITypeLookup lookup : lookups) {
-			TypeLookupResult candidate = lookup.lookupType(node, scope);
-			if (candidate != null) {
-				if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
-					result = candidate;
-				}
-				if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
-					break;
+		result = cachedResult(node, scope);
+		if (result == null) {
+			for (ITypeLookup lookup : lookups) {
+				TypeLookupResult candidate = lookup.lookupType(node, scope);
+				if (candidate != null) {
+					if (result == null || result.confidence.isLessPreciseThan(candidate.confidence)) {
+						result = candidate;
+					}
+					if (TypeConfidence.LOOSELY_INFERRED.isLessPreciseThan(result.confidence)) {
+						break;
+					}
 				}
 			}
+			cacheResult(node, scope, result);
 		}
 		VisitStatus status = notifyRequestor(node, requestor, result);
 
@@ -1830,7 +1945,11 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 		}
 		scope.setPrimaryNode(primaryType == null);
 
-		TypeLookupResult result = lookupExpressionType(node, primaryType, isStatic, scope);
+		TypeLookupResult result = cachedResult(node, scope);
+		if (result == null) {
+			result = lookupExpressionType(node, primaryType, isStatic, scope);
+			cacheResult(node, scope, result);
+		}
 		return handleRequestor(node, primaryType, result);
 	}
 
@@ -1950,6 +2069,9 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 	private boolean handleRequestor(Expression node, ClassNode primaryType, TypeLookupResult result) {
 		result.enclosingAssignment = enclosingAssignment;
 		VisitStatus status = requestor.acceptASTNode(node, result, enclosingElement);
+		if (status != VisitStatus.CONTINUE) {
+			recordLookups = false;
+		}
 		VariableScope scope = scopes.peek();
 		// forget the number of arguments
 		scope.setMethodCallNumberOfArguments(-1);
@@ -1981,7 +2103,31 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 
 	private VisitStatus notifyRequestor(ASTNode node, ITypeRequestor requestor, TypeLookupResult result) {
 		// result is never null because SimpleTypeLookup always returns non-null
-		return requestor.acceptASTNode(node, result, enclosingElement);
+		VisitStatus status = requestor.acceptASTNode(node, result, enclosingElement);
+		if (status != VisitStatus.CONTINUE) {
+			recordLookups = false;
+		}
+		return status;
+	}
+
+	/**
+	 * @return the result of an earlier lookup of the node in the same kind of scope, or null if there is none
+	 */
+	private TypeLookupResult cachedResult(ASTNode node, VariableScope scope) {
+		if (lookupResults == null) {
+			return null;
+		}
+		TypeLookupResult result = lookupResults.get(node, scope);
+		if (result == null) {
+			scopeChangesBeforeLookup = scope.getChangeCount();
+		}
+		return result;
+	}
+
+	private void cacheResult(ASTNode node, VariableScope scope, TypeLookupResult result) {
+		if (recordLookups && scope.getChangeCount() == scopeChangesBeforeLookup) {
+			lookupResults.put(node, scope, result);
+		}
 	}
 
 	private MethodNode findMethodNode(IMethod method) {
@@ -2142,12 +2288,13 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 	/**
 	 * Get the module node. Potentially forces creation of a new module node if the working copy owner is non-default. This is
 	 * necessary because a non-default working copy owner implies that this may be a search related to refactoring and therefore,
-	 * the ModuleNode must be based on the most recent working copies.
+	 * the ModuleNode must be based on the most recent working copies. Otherwise the module node of a unit that is not open is
+	 * cached and shared with other visitors, just as the module node of a working copy is.
 	 * 
 	 */
 	private ModuleNodeInfo createModuleNode(GroovyCompilationUnit unit) {
 		if (unit.getOwner() == null || unit.owner == DefaultWorkingCopyOwner.PRIMARY) {
-			return unit.getModuleInfo(true);
+			return unit.getSharedModuleInfo();
 		} else {
 			return unit.getNewModuleInfo();
 		}
@@ -17,6 +17,7 @@
 package org.eclipse.jdt.groovy.search;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,8 +51,9 @@ public class TypeLookupRegistry {
 		return DEFAULT;
 	}
 
-	// maps from project nature to lists of type lookup classes
-	private Map<String, List<IConfigurationElement>> natureLookupMap = new HashMap<String, List<IConfigurationElement>>();
+	// maps from project nature to lists of type lookup classes. Unmodifiable once built, so lookups may be created from several
+	// threads at once; every call to getLookupsFor answers new lookup instances that are not shared between threads.
+	private final Map<String, List<IConfigurationElement>> natureLookupMap;
 
 	List<ITypeLookup> getLookupsFor(IProject project) throws CoreException {
 		if (!project.exists()) {
@@ -75,21 +77,26 @@ public class TypeLookupRegistry {
 	}
 
 	private TypeLookupRegistry() {
-		initialize();
+		natureLookupMap = initialize();
 	}
 
-	private void initialize() {
+	private static Map<String, List<IConfigurationElement>> initialize() {
+		Map<String, List<IConfigurationElement>> natureLookupMap = new HashMap<String, List<IConfigurationElement>>();
 		IExtensionPoint extPoint = Platform.getExtensionRegistry().getExtensionPoint(TYPE_LOOKUP_EXTENSION);
 		IExtension[] exts = extPoint.getExtensions();
 		for (IExtension ext : exts) {
 			IConfigurationElement[] configs = ext.getConfigurationElements();
 			for (IConfigurationElement config : configs) {
-				createLookup(config);
+				createLookup(config, natureLookupMap);
 			}
 		}
+		for (Map.Entry<String, List<IConfigurationElement>> entry : natureLookupMap.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(natureLookupMap);
 	}
 
-	private void createLookup(IConfigurationElement config) {
+	private static void createLookup(IConfigurationElement config, Map<String, List<IConfigurationElement>> natureLookupMap) {
 		try {
 			if (config.getName().equals(LOOKUP)) {
 				if (config.getAttribute(LOOKUP) != null) {
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2012 SpringSource and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.jdt.groovy.search;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Remembers the results of the type lookups done while inferring a module node, so that hovers, code select, mark
+ * occurrences and semantic highlighting, which each visit the same module node after a reconcile, only do the lookups
+ * once. The cache is held by the {@link org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo} of a working copy
+ * and is discarded along with it on the next reconcile.
+ *
+ * Results are keyed by the identity of the node and of the node enclosing the scope it was looked up in. Only visits that
+ * have not been pruned by their requestor record results (see {@link TypeInferencingVisitorWithRequestor}), so every
+ * result is the one a complete visit finds. Lookups that change the scopes, such as DSLD contributions that set the delegate
+ * type, are not recorded either, since a visit using the cached result would miss the change (see
+ * {@link VariableScope#getChangeCount()}). Results are kept without their scope, {@link #get(ASTNode, VariableScope)}
+ * returns them with the scope of the visit asking for them.
+ *
+ * Changes to type lookups that do not come with a reconcile, such as an edited DSLD script, are only seen once the unit is
+ * reconciled again.
+ */
+public class TypeLookupResultCache {
+
+	private static class Key {
+		private final ASTNode node;
+		private final ASTNode scopeNode;
+
+		Key(ASTNode node, ASTNode scopeNode) {
+			this.node = node;
+			this.scopeNode = scopeNode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return node == other.node && scopeNode == other.scopeNode;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(node) * 31 + System.identityHashCode(scopeNode);
+		}
+	}
+
+	// concurrent visits of the same module node record the same results, whichever is first is kept
+	private final ConcurrentHashMap<Key, TypeLookupResult> results = new ConcurrentHashMap<Key, TypeLookupResult>();
+
+	/**
+	 * @return the cached result for the node looked up in the given scope, with that scope, or null if there is none
+	 */
+	public TypeLookupResult get(ASTNode node, VariableScope scope) {
+		TypeLookupResult cached = results.get(new Key(node, scope.getEnclosingNode()));
+		if (cached == null) {
+			return null;
+		}
+		return new TypeLookupResult(cached.type, cached.declaringType, cached.declaration, cached.confidence, scope,
+				cached.extraDoc);
+	}
+
+	public void put(ASTNode node, VariableScope scope, TypeLookupResult result) {
+		if (result != null) {
+			// the scopes of the visit that recorded the result need not be kept
+			results.putIfAbsent(new Key(node, scope.getEnclosingNode()), new TypeLookupResult(result.type, result.declaringType,
+					result.declaration, result.confidence, null, result.extraDoc));
+		}
+	}
+
+	public int size() {
+		return results.size();
+	}
+}
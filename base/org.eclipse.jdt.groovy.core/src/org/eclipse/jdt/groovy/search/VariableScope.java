@@ -27,7 +27,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -186,6 +185,10 @@ public class VariableScope {
 		 * true iff current scope is implicit run method of script
 		 */
 		boolean isRunMethod;
+		/**
+		 * incremented whenever a variable is added or updated or the wormhole is handed out, see getChangeCount()
+		 */
+		int changeCount;
 	}
 
 	public static ClassNode NO_CATEGORY = null;
@@ -255,9 +258,19 @@ public class VariableScope {
 	 * @return the wormhole object
 	 */
 	public Map<String, Object> getWormhole() {
+		// whoever asks may change it
+		shared.changeCount++;
 		return shared.wormhole;
 	}
 
+	/**
+	 * @return a number that changes whenever a variable is added to or updated in this scope or any scope related to it, or the
+	 *         wormhole is asked for, so that callers can tell whether some code has changed the scopes
+	 */
+	public int getChangeCount() {
+		return shared.changeCount;
+	}
+
 	public ASTNode getEnclosingNode() {
 		if (shared.nodeStack.size() > 1) {
 			ASTNode current = shared.nodeStack.pop();
@@ -294,7 +307,7 @@ public class VariableScope {
 	/**
 	 * The name of all categories in scope.
 	 * 
-	 * @return
+	 * @return the categories in the order they were declared, the default categories first
 	 */
 	public Set<ClassNode> getCategoryNames() {
 		if (parent != null) {
@@ -308,7 +321,7 @@ public class VariableScope {
 			}
 			return categories;
 		} else {
-			return new HashSet<ClassNode>(ALL_DEFAULT_CATEGORIES);
+			return new LinkedHashSet<ClassNode>(ALL_DEFAULT_CATEGORIES);
 		}
 	}
 
@@ -388,6 +401,7 @@ public class VariableScope {
 	}
 
 	public void addVariable(String name, ClassNode type, ClassNode declaringType) {
+		shared.changeCount++;
 		nameVariableMap.put(name, new VariableInfo(type, declaringType != null ? declaringType : OBJECT_CLASS_NODE));
 	}
 
@@ -496,6 +510,7 @@ public class VariableScope {
 	 * @return true iff the variable exists in scope and was updated
 	 */
 	public boolean updateVariable(String name, ClassNode type, ClassNode declaringType) {
+		shared.changeCount++;
 		return internalUpdateVariable(name, type, declaringType);
 	}
 
@@ -0,0 +1,641 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IBinaryField;
+import org.eclipse.jdt.internal.compiler.impl.Constant;
+
+/**
+ * What an incremental compile needs to know about the previous compile into
+ * the same output folder: for each source file, when it was compiled, the
+ * class files it produced and the types its class files refer to.
+ * <p>
+ * A source file is recompiled if it is new or has changed since, or if its
+ * class files have gone. Its old class files are deleted first and kept in
+ * memory, so that once it has been compiled the new class files can be
+ * compared with them. The sources that refer to a type whose class file has
+ * changed in a way that matters to other classes, or that has been removed,
+ * are compiled in another round, and so on. So are the sources referring to
+ * any of its subtypes, as a class file names the type a member was looked up
+ * in rather than the one declaring it. A type that has been added causes
+ * the sources referring to any type of the same simple name to be compiled
+ * again, in case they now resolve that name differently.
+ * <p>
+ * References are read from the constant pool of the class files rather than
+ * taken from the compiler, so that this works with any groovy-eclipse-batch.
+ * Dynamic groovy code refers to types by name, so the qualified names found in
+ * string constants are counted as references too. The value of a constant
+ * field is copied into the class files using it, which then need not refer to
+ * the type declaring it at all, so when the constants of a type change or go
+ * all the sources are compiled again.
+ */
+class CompileState {
+
+    private static final String VERSION = "2";
+
+    private static class Source {
+        long lastModified;
+
+        long length;
+
+        final Set<String> classes = new TreeSet<String>();
+
+        final Set<String> references = new TreeSet<String>();
+
+        // the superclass and interfaces of each of the classes
+        final Map<String, Set<String>> supertypes = new TreeMap<String, Set<String>>();
+    }
+
+    private final File stateFile;
+
+    private final File outputDirectory;
+
+    private final String fingerprint;
+
+    private final Map<File, Source> sources = new HashMap<File, Source>();
+
+    private boolean loaded;
+
+    // the sources being compiled in the current round
+    private Set<File> compiling;
+
+    // the class files there were before the current round, name > last modified
+    private Map<String, Long> classFilesBefore;
+
+    // the class files deleted for the current round
+    private final Map<String, byte[]> previousBytes = new HashMap<String, byte[]>();
+
+    /**
+     * @param fingerprint describes the classpath and the options of the
+     *        compile, everything is compiled again if it has changed
+     */
+    CompileState(File stateFile, File outputDirectory, String fingerprint) {
+        this.stateFile = stateFile;
+        this.outputDirectory = outputDirectory;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return true if the state of an earlier compile with the same
+     *         fingerprint has been read
+     */
+    boolean load() {
+        sources.clear();
+        loaded = false;
+        if (!stateFile.isFile()) {
+            return false;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), "UTF-8"));
+            try {
+                if (!VERSION.equals(reader.readLine()) || !fingerprint.equals(reader.readLine())) {
+                    return false;
+                }
+                Source source = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    if (parts[0].equals("S") && parts.length == 4) {
+                        source = new Source();
+                        source.lastModified = Long.parseLong(parts[2]);
+                        source.length = Long.parseLong(parts[3]);
+                        sources.put(new File(parts[1]), source);
+                    } else if (parts[0].equals("C") && parts.length == 2 && source != null) {
+                        source.classes.add(parts[1]);
+                    } else if (parts[0].equals("R") && parts.length == 2 && source != null) {
+                        source.references.add(parts[1]);
+                    } else if (parts[0].equals("T") && parts.length == 3 && source != null) {
+                        addSupertype(source, parts[1], parts[2]);
+                    } else {
+                        sources.clear();
+                        return false;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            sources.clear();
+            return false;
+        } catch (NumberFormatException e) {
+            sources.clear();
+            return false;
+        }
+        loaded = true;
+        return true;
+    }
+
+    void save() throws IOException {
+        stateFile.getParentFile().mkdirs();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(stateFile), "UTF-8"));
+        try {
+            writer.write(VERSION + "\n");
+            writer.write(fingerprint + "\n");
+            for (Map.Entry<File, Source> entry : sources.entrySet()) {
+                Source source = entry.getValue();
+                writer.write("S\t" + entry.getKey().getPath() + "\t" + source.lastModified + "\t" + source.length + "\n");
+                for (String name : source.classes) {
+                    writer.write("C\t" + name + "\n");
+                }
+                for (String name : source.references) {
+                    writer.write("R\t" + name + "\n");
+                }
+                for (Map.Entry<String, Set<String>> supertypes : source.supertypes.entrySet()) {
+                    for (String supertype : supertypes.getValue()) {
+                        writer.write("T\t" + supertypes.getKey() + "\t" + supertype + "\n");
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return all the sources known from this or earlier compiles
+     */
+    Set<File> getSources() {
+        return new HashSet<File>(sources.keySet());
+    }
+
+    /**
+     * Forget everything, so that the next compile compiles all the sources
+     */
+    void discard() {
+        sources.clear();
+        loaded = false;
+        stateFile.delete();
+    }
+
+    /**
+     * Works out what has to be compiled and starts the first round.
+     *
+     * @param allSources the source files there are now
+     * @return the source files to compile, all of them if there is no state of
+     *         an earlier compile
+     */
+    Set<File> prepare(Set<File> allSources) throws IOException {
+        // written again once the compile has succeeded, an interrupted compile is followed by a full one
+        stateFile.delete();
+        if (!loaded) {
+            sources.clear();
+            return beginRound(new HashSet<File>(allSources));
+        }
+        Set<File> toCompile = new HashSet<File>();
+        Set<String> removedTypes = new HashSet<String>();
+        boolean constantsRemoved = false;
+        for (File file : new ArrayList<File>(sources.keySet())) {
+            if (!allSources.contains(file)) {
+                for (String name : sources.remove(file).classes) {
+                    File classFile = classFile(name);
+                    if (classFile.isFile()) {
+                        constantsRemoved |= hasConstants(readBytes(classFile));
+                        classFile.delete();
+                    }
+                    removedTypes.add(name);
+                }
+            }
+        }
+        if (constantsRemoved) {
+            // the users of the constants cannot be told apart
+            sources.clear();
+            return beginRound(new HashSet<File>(allSources));
+        }
+        for (File file : allSources) {
+            Source source = sources.get(file);
+            if (source == null || source.lastModified != file.lastModified() || source.length != file.length()) {
+                toCompile.add(file);
+            } else {
+                for (String name : source.classes) {
+                    if (!classFile(name).isFile()) {
+                        toCompile.add(file);
+                        break;
+                    }
+                }
+            }
+        }
+        toCompile.addAll(findDependents(removedTypes, new HashSet<String>()));
+        return beginRound(toCompile);
+    }
+
+    /**
+     * Deletes the class files of the sources about to be compiled.
+     *
+     * @return the sources to compile, including any other source that produced
+     *         some of the same class files
+     */
+    Set<File> beginRound(Set<File> toCompile) throws IOException {
+        Map<String, List<File>> owners = new HashMap<String, List<File>>();
+        for (Map.Entry<File, Source> entry : sources.entrySet()) {
+            for (String name : entry.getValue().classes) {
+                List<File> files = owners.get(name);
+                if (files == null) {
+                    files = new ArrayList<File>(1);
+                    owners.put(name, files);
+                }
+                files.add(entry.getKey());
+            }
+        }
+        List<File> pending = new ArrayList<File>(toCompile);
+        while (!pending.isEmpty()) {
+            Source source = sources.get(pending.remove(pending.size() - 1));
+            if (source == null) {
+                continue;
+            }
+            for (String name : source.classes) {
+                for (File owner : owners.get(name)) {
+                    if (toCompile.add(owner)) {
+                        pending.add(owner);
+                    }
+                }
+            }
+        }
+
+        previousBytes.clear();
+        for (File file : toCompile) {
+            Source source = sources.get(file);
+            if (source == null) {
+                source = new Source();
+                sources.put(file, source);
+            }
+            for (String name : source.classes) {
+                File classFile = classFile(name);
+                if (classFile.isFile()) {
+                    previousBytes.put(name, readBytes(classFile));
+                    classFile.delete();
+                }
+            }
+            source.classes.clear();
+            source.references.clear();
+            source.supertypes.clear();
+            source.lastModified = file.lastModified();
+            source.length = file.length();
+        }
+        compiling = toCompile;
+        classFilesBefore = listClassFiles();
+        return toCompile;
+    }
+
+    /**
+     * Records the class files written by the round that has just been
+     * compiled.
+     *
+     * @return the sources to compile in the next round, because they refer to
+     *         types that have changed
+     */
+    Set<File> endRound() throws IOException {
+        Set<String> changedTypes = new HashSet<String>();
+        Set<String> addedTypes = new HashSet<String>();
+        boolean constantsChanged = false;
+        for (Map.Entry<String, Long> entry : listClassFiles().entrySet()) {
+            String name = entry.getKey();
+            Long before = classFilesBefore.get(name);
+            if (before != null && before.equals(entry.getValue())) {
+                continue;
+            }
+            byte[] bytes = readBytes(classFile(name));
+            ClassFileReader reader;
+            try {
+                reader = new ClassFileReader(bytes, classFile(name).getPath().toCharArray());
+            } catch (ClassFormatException e) {
+                throw new IOException("Cannot read " + classFile(name) + ": " + e);
+            }
+            Set<String> references = findReferences(bytes);
+            for (File owner : findOwners(name, reader.sourceFileName())) {
+                Source source = sources.get(owner);
+                source.classes.add(name);
+                source.references.addAll(references);
+                if (reader.getSuperclassName() != null) {
+                    addSupertype(source, name, new String(reader.getSuperclassName()));
+                }
+                if (reader.getInterfaceNames() != null) {
+                    for (char[] interfaceName : reader.getInterfaceNames()) {
+                        addSupertype(source, name, new String(interfaceName));
+                    }
+                }
+            }
+
+            byte[] previous = previousBytes.remove(name);
+            if (previous == null) {
+                addedTypes.add(name);
+            } else {
+                try {
+                    ClassFileReader previousReader = new ClassFileReader(previous, reader.getFileName());
+                    if (previousReader.hasStructuralChanges(bytes)) {
+                        changedTypes.add(name);
+                        constantsChanged |= !constantValues(previousReader).equals(constantValues(reader));
+                    }
+                } catch (ClassFormatException e) {
+                    changedTypes.add(name);
+                    constantsChanged = true;
+                }
+            }
+        }
+        // not written again, so gone
+        for (Map.Entry<String, byte[]> entry : previousBytes.entrySet()) {
+            changedTypes.add(entry.getKey());
+            constantsChanged |= hasConstants(entry.getValue());
+        }
+        previousBytes.clear();
+
+        Set<File> dependents = constantsChanged ? getSources() : findDependents(changedTypes, addedTypes);
+        dependents.removeAll(compiling);
+        compiling = null;
+        classFilesBefore = null;
+        return dependents;
+    }
+
+    /**
+     * @return the sources being compiled that the class file comes from
+     */
+    private Set<File> findOwners(String name, char[] sourceFileName) {
+        Set<File> owners = new HashSet<File>();
+        String packageName = name.lastIndexOf('/') == -1 ? "" : name.substring(0, name.lastIndexOf('/') + 1);
+        String[] candidates;
+        if (sourceFileName != null) {
+            candidates = new String[] { new String(sourceFileName) };
+        } else {
+            // no debug information, the class must be a java one
+            String topLevel = topLevelName(name);
+            String simpleName = topLevel.substring(topLevel.lastIndexOf('/') + 1);
+            candidates = new String[] { simpleName + ".java", simpleName + ".groovy" };
+        }
+        Set<File> sameName = new HashSet<File>();
+        for (File file : compiling) {
+            for (String candidate : candidates) {
+                if (file.getName().equals(candidate)) {
+                    sameName.add(file);
+                    if (file.getPath().replace(File.separatorChar, '/').endsWith("/" + packageName + candidate)) {
+                        owners.add(file);
+                    }
+                }
+            }
+        }
+        if (owners.isEmpty()) {
+            // a script in a folder that does not match its package
+            owners = sameName;
+        }
+        if (owners.isEmpty()) {
+            // cannot tell, so it goes with all of them
+            owners = compiling;
+        }
+        return owners;
+    }
+
+    private static void addSupertype(Source source, String name, String supertype) {
+        Set<String> supertypes = source.supertypes.get(name);
+        if (supertypes == null) {
+            supertypes = new TreeSet<String>();
+            source.supertypes.put(name, supertypes);
+        }
+        supertypes.add(supertype);
+    }
+
+    /**
+     * @param changedTypes types whose users, and the users of their subtypes,
+     *        must be compiled again
+     * @param addedTypes types whose simple name may now mean something else
+     * @return the sources referring to the types
+     */
+    private Set<File> findDependents(Set<String> changedTypes, Set<String> addedTypes) {
+        Set<File> dependents = new HashSet<File>();
+        if (changedTypes.isEmpty() && addedTypes.isEmpty()) {
+            return dependents;
+        }
+        Set<String> qualifiedNames = new HashSet<String>();
+        for (String name : withSubtypes(changedTypes)) {
+            qualifiedNames.add(name);
+            qualifiedNames.add(topLevelName(name));
+        }
+        Set<String> simpleNames = new HashSet<String>();
+        for (String name : addedTypes) {
+            qualifiedNames.add(name);
+            simpleNames.add(simpleName(name));
+            simpleNames.add(simpleName(topLevelName(name)));
+        }
+        for (Map.Entry<File, Source> entry : sources.entrySet()) {
+            for (String reference : entry.getValue().references) {
+                if (qualifiedNames.contains(reference) || (!simpleNames.isEmpty() && simpleNames.contains(simpleName(reference)))) {
+                    dependents.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * @return the types and all the types known to extend or implement them,
+     *         directly or not
+     */
+    private Set<String> withSubtypes(Set<String> types) {
+        Map<String, List<String>> subtypes = new HashMap<String, List<String>>();
+        for (Source source : sources.values()) {
+            for (Map.Entry<String, Set<String>> entry : source.supertypes.entrySet()) {
+                for (String supertype : entry.getValue()) {
+                    List<String> names = subtypes.get(supertype);
+                    if (names == null) {
+                        names = new ArrayList<String>(1);
+                        subtypes.put(supertype, names);
+                    }
+                    names.add(entry.getKey());
+                }
+            }
+        }
+        Set<String> result = new HashSet<String>(types);
+        List<String> pending = new ArrayList<String>(types);
+        while (!pending.isEmpty()) {
+            List<String> names = subtypes.get(pending.remove(pending.size() - 1));
+            if (names != null) {
+                for (String name : names) {
+                    if (result.add(name)) {
+                        pending.add(name);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the values of the constant fields of the class, by field name
+     */
+    private static Map<String, String> constantValues(ClassFileReader reader) {
+        Map<String, String> values = new HashMap<String, String>();
+        IBinaryField[] fields = reader.getFields();
+        if (fields != null) {
+            for (IBinaryField field : fields) {
+                Constant constant = field.getConstant();
+                if (constant != null && constant != Constant.NotAConstant) {
+                    values.put(new String(field.getName()), constant.typeID() + ":" + constant.stringValue());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static boolean hasConstants(byte[] bytes) {
+        try {
+            return !constantValues(new ClassFileReader(bytes, null)).isEmpty();
+        } catch (ClassFormatException e) {
+            // cannot tell, so assume the worst
+            return true;
+        }
+    }
+
+    private static String topLevelName(String name) {
+        int dollar = name.indexOf('$', name.lastIndexOf('/') + 1);
+        return dollar == -1 ? name : name.substring(0, dollar);
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('$')) + 1);
+    }
+
+    private File classFile(String name) {
+        return new File(outputDirectory, name.replace('/', File.separatorChar) + ".class");
+    }
+
+    /**
+     * @return the names of the class files in the output folder, such as
+     *         <code>p/A$B</code>, with their last modified time
+     */
+    private Map<String, Long> listClassFiles() {
+        Map<String, Long> classFiles = new HashMap<String, Long>();
+        listClassFiles(outputDirectory, "", classFiles);
+        return classFiles;
+    }
+
+    private static void listClassFiles(File folder, String prefix, Map<String, Long> classFiles) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                listClassFiles(file, prefix + name + "/", classFiles);
+            } else if (name.endsWith(".class")) {
+                classFiles.put(prefix + name.substring(0, name.length() - ".class".length()), file.lastModified());
+            }
+        }
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            new DataInputStream(in).readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the names of the types the class file refers to, in the form
+     *         <code>p/A$B</code>, along with other strings that could be such
+     *         names
+     */
+    static Set<String> findReferences(byte[] bytes) throws IOException {
+        Set<String> references = new HashSet<String>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipBytes(8); // magic and version
+        int count = in.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // utf8
+                    addReferences(in.readUTF(), references);
+                    break;
+                case 3: // integer
+                case 4: // float
+                case 9: // field
+                case 10: // method
+                case 11: // interface method
+                case 12: // name and type
+                case 18: // invoke dynamic
+                    in.skipBytes(4);
+                    break;
+                case 5: // long
+                case 6: // double
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                case 7: // class
+                case 8: // string
+                case 16: // method type
+                    in.skipBytes(2);
+                    break;
+                case 15: // method handle
+                    in.skipBytes(3);
+                    break;
+                default:
+                    throw new IOException("Unexpected constant pool tag " + tag);
+            }
+        }
+        return references;
+    }
+
+    private static void addReferences(String string, Set<String> references) {
+        if (string.indexOf(';') != -1) {
+            // a descriptor or a signature
+            int start = -1;
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (start == -1) {
+                    if (c == 'L') {
+                        start = i + 1;
+                    }
+                } else if (c == ';' || c == '<') {
+                    if (i > start) {
+                        references.add(string.substring(start, i));
+                    }
+                    start = -1;
+                } else if (!Character.isJavaIdentifierPart(c) && c != '/') {
+                    start = -1;
+                }
+            }
+        } else if (string.length() > 0 && (string.indexOf('/') != -1 || string.indexOf('.') != -1)) {
+            // a class name, or a type name in a string
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (!Character.isJavaIdentifierPart(c) && c != '/' && c != '.') {
+                    return;
+                }
+            }
+            references.add(string.replace('.', '/'));
+        } else if (string.length() > 0 && Character.isUpperCase(string.charAt(0))) {
+            // maybe a type in the default package
+            references.add(string);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.jdt.internal.compiler.batch.Main;
+
+/**
+ * A long running groovy-eclipse compiler that forked compiles can be sent to,
+ * so that they do not each pay for starting a JVM, loading the compiler and
+ * warming up the JIT.
+ * <p>
+ * The daemon listens on a local port and describes itself in a state file
+ * holding the port and a secret that clients must send before anything else.
+ * The state file and its directory are only accessible to their owner. A
+ * client sends its working directory and the compiler arguments and gets back
+ * the exit code and the output of the compile, exactly as a forked compiler
+ * started in that directory would have printed it.
+ * Compiles are run one at a time. The daemon exits once it has been idle for
+ * the given time, or after a compile if it is using most of its heap, leaving
+ * the next client to start a fresh one.
+ * <p>
+ * Only the JDK and the groovy-eclipse-batch jar may be used from here, as they
+ * are all that is on the classpath of the daemon besides this class.
+ */
+public class CompilerDaemon {
+
+    static final String PORT = "port";
+
+    static final String SECRET = "secret";
+
+    /**
+     * Changes whenever what clients send or receive changes, so that they do
+     * not talk to a daemon started by an older version
+     */
+    static final int PROTOCOL_VERSION = 2;
+
+    // options of the batch compiler followed by a path
+    private static final List<String> PATH_OPTIONS = Arrays.asList("-d", "-s", "-log", "-properties");
+
+    // options followed by a list of paths
+    private static final List<String> PATH_LIST_OPTIONS = Arrays.asList("-classpath", "-cp", "-bootclasspath", "-sourcepath",
+            "-extdirs", "-endorseddirs", "-processorpath");
+
+    // options followed by anything else
+    private static final List<String> VALUE_OPTIONS = Arrays.asList("-source", "-target", "-encoding", "-repeat",
+            "-maxProblems", "-processor", "-classNames");
+
+    /**
+     * Once a compile leaves more than this part of the maximum heap in use, the
+     * daemon exits rather than risk running out of memory in the next one
+     */
+    private static final double MAX_HEAP_USE = 0.75;
+
+    private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * How long to wait for a client that has connected to send its request,
+     * so that one that hangs or dies half way does not block the daemon
+     */
+    static final int REQUEST_TIMEOUT = 60 * 1000;
+
+    private final File stateFile;
+
+    private final int idleTimeoutMillis;
+
+    private final String secret;
+
+    CompilerDaemon(File stateFile, int idleTimeoutMillis) {
+        this.stateFile = stateFile;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.secret = Long.toHexString(new SecureRandom().nextLong());
+    }
+
+    /**
+     * @param args the state file to write and the idle timeout in seconds
+     */
+    public static void main(String[] args) throws IOException {
+        File stateFile = new File(args[0]);
+        // nobody reads the streams of the daemon once the build that started it is over
+        File logFile = new File(stateFile.getPath() + ".log");
+        OutputStream logOut = new FileOutputStream(logFile);
+        restrictToOwner(logFile);
+        PrintStream log = new PrintStream(logOut, true);
+        System.setOut(log);
+        System.setErr(log);
+        // the daemon compiles one module after the other, transforms loaded from unchanged jars can be kept
+        System.setProperty("greclipse.batch.reuseTransformLoaders", "true");
+        try {
+            new CompilerDaemon(stateFile, Integer.parseInt(args[1]) * 1000).run();
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+        System.exit(0);
+    }
+
+    void run() throws IOException {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName(null));
+        try {
+            server.setSoTimeout(idleTimeoutMillis);
+            writeState(server.getLocalPort());
+            System.out.println("Compiler daemon listening on port " + server.getLocalPort());
+            boolean retire = false;
+            while (!retire) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    System.out.println("Idle for " + idleTimeoutMillis / 1000 + "s, exiting");
+                    break;
+                }
+                try {
+                    socket.setSoTimeout(REQUEST_TIMEOUT);
+                    retire = serve(socket);
+                } catch (SocketTimeoutException e) {
+                    System.out.println("Gave up on a client that did not send its request within " + REQUEST_TIMEOUT / 1000 + "s");
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            removeState();
+            server.close();
+        }
+    }
+
+    /**
+     * @return true if the daemon should exit
+     */
+    private boolean serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        if (!secret.equals(readString(in))) {
+            System.out.println("Rejected a connection without the secret");
+            return false;
+        }
+        File workingDirectory = new File(readString(in));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(in);
+        }
+        // the daemon was started in another directory
+        args = resolveArguments(args, workingDirectory);
+
+        StringWriter output = new StringWriter();
+        StringWriter errors = new StringWriter();
+        int exitCode;
+        try {
+            Main main = new Main(new PrintWriter(output), new PrintWriter(errors), false/* systemExit */, null/* options */,
+                    null/* progress */);
+            exitCode = main.compile(args) ? 0 : -1;
+        } catch (Throwable t) {
+            PrintWriter writer = new PrintWriter(errors);
+            writer.println("error: compiler daemon failed: " + t);
+            t.printStackTrace(writer);
+            writer.flush();
+            exitCode = -1;
+        }
+        out.writeInt(exitCode);
+        writeString(out, output.toString());
+        writeString(out, errors.toString());
+        out.flush();
+
+        return isLowOnMemory();
+    }
+
+    private static boolean isLowOnMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used < runtime.maxMemory() * MAX_HEAP_USE) {
+            return false;
+        }
+        System.gc();
+        used = runtime.totalMemory() - runtime.freeMemory();
+        if (used < runtime.maxMemory() * MAX_HEAP_USE) {
+            return false;
+        }
+        System.out.println("Using " + used + " of " + runtime.maxMemory() + " bytes of heap, exiting");
+        return true;
+    }
+
+    private void writeState(int port) throws IOException {
+        Properties state = new Properties();
+        state.setProperty(PORT, String.valueOf(port));
+        state.setProperty(SECRET, secret);
+        createPrivateDirectory(stateFile.getParentFile());
+        File temp = new File(stateFile.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            // before the secret is written
+            restrictToOwner(temp);
+            state.store(out, "groovy-eclipse compiler daemon");
+        } finally {
+            out.close();
+        }
+        stateFile.delete();
+        if (!temp.renameTo(stateFile)) {
+            throw new IOException("Cannot write " + stateFile);
+        }
+    }
+
+    private void removeState() {
+        // a daemon started since may have taken over the file
+        Properties state = readState(stateFile);
+        if (state != null && secret.equals(state.getProperty(SECRET))) {
+            stateFile.delete();
+        }
+    }
+
+    /**
+     * Create the directory if needed and make it accessible to its owner only
+     */
+    static void createPrivateDirectory(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        restrictToOwner(directory);
+    }
+
+    /**
+     * Take away the access of everybody but the owner, as far as the file
+     * system allows
+     */
+    private static void restrictToOwner(File file) {
+        file.setReadable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(false, false);
+        file.setWritable(true, true);
+        if (file.isDirectory()) {
+            file.setExecutable(false, false);
+            file.setExecutable(true, true);
+        }
+    }
+
+    /**
+     * @return the arguments with their relative paths resolved against the
+     *         given working directory
+     */
+    static String[] resolveArguments(String[] args, File workingDirectory) {
+        String[] resolved = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String option = i > 0 ? args[i - 1] : null;
+            if (PATH_OPTIONS.contains(option)) {
+                resolved[i] = "-d".equals(option) && "none".equals(arg) ? arg : resolvePath(arg, workingDirectory);
+            } else if (PATH_LIST_OPTIONS.contains(option)) {
+                StringBuilder sb = new StringBuilder();
+                for (String entry : arg.split(File.pathSeparator, -1)) {
+                    if (sb.length() > 0) {
+                        sb.append(File.pathSeparatorChar);
+                    }
+                    sb.append(resolvePath(entry, workingDirectory));
+                }
+                resolved[i] = sb.toString();
+            } else if (VALUE_OPTIONS.contains(option) || arg.startsWith("-")) {
+                resolved[i] = arg;
+            } else if (arg.startsWith("@")) {
+                resolved[i] = "@" + resolvePath(arg.substring(1), workingDirectory);
+            } else {
+                // a source file or folder
+                resolved[i] = resolvePath(arg, workingDirectory);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * @param path a path, possibly followed by access rules or a destination in
+     *            square brackets
+     */
+    private static String resolvePath(String path, File workingDirectory) {
+        int rules = path.indexOf('[');
+        String file = rules >= 0 ? path.substring(0, rules) : path;
+        if (file.length() == 0 || new File(file).isAbsolute()) {
+            return path;
+        }
+        return new File(workingDirectory, file).getPath() + (rules >= 0 ? path.substring(rules) : "");
+    }
+
+    /**
+     * @return the port and secret of the daemon that wrote the state file, or
+     *         null if there is none
+     */
+    static Properties readState(File stateFile) {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        Properties state = new Properties();
+        try {
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return state.getProperty(PORT) != null && state.getProperty(SECRET) != null ? state : null;
+    }
+
+    // unlike writeUTF, not limited to 64k, which a classpath may well exceed
+    static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Unexpected string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -12,16 +12,26 @@
  *******************************************************************************/
 package org.codehaus.groovy.eclipse.compiler;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -39,6 +49,7 @@ import org.codehaus.plexus.compiler.CompilerError;
 import org.codehaus.plexus.compiler.CompilerException;
 import org.codehaus.plexus.compiler.CompilerOutputStyle;
 import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
+import org.codehaus.plexus.compiler.util.scan.SimpleSourceInclusionScanner;
 import org.codehaus.plexus.compiler.util.scan.SourceInclusionScanner;
 import org.codehaus.plexus.compiler.util.scan.StaleSourceScanner;
 import org.codehaus.plexus.compiler.util.scan.mapping.SourceMapping;
@@ -73,8 +84,39 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
 
     private static final String JAVA_AGENT_CLASS_PARAM_NAME = "-javaAgentClass";
 
+    // with fork=true, send the compile to a long running compiler instead of forking a new one
+    private static final String DAEMON_PARAM_NAME = "-daemon";
+
+    // the seconds after which an idle compiler daemon exits
+    private static final String DAEMON_IDLE_TIMEOUT_PARAM_NAME = "-daemonIdleTimeout";
+
+    private static final int DEFAULT_DAEMON_IDLE_TIMEOUT = 3 * 60 * 60;
+
+    // how long to wait for a daemon that has just been launched
+    private static final int DAEMON_START_TIMEOUT = 30 * 1000;
+
+    // the seconds after which a compile sent to the daemon is given up on and run in process instead
+    private static final String DAEMON_COMPILE_TIMEOUT_PARAM_NAME = "-daemonCompileTimeout";
+
+    private static final int DEFAULT_DAEMON_COMPILE_TIMEOUT = 30 * 60;
+
+    // compile the changed sources and the sources using the types that changed, see CompileState
+    private static final String INCREMENTAL_PARAM_NAME = "-incremental";
+
+    // after this many rounds of compiling dependent sources, all the sources are compiled
+    private static final int MAX_INCREMENTAL_ROUNDS = 10;
+
     private String javaAgentClass = "";
 
+    private boolean useDaemon = false;
+
+    private int daemonIdleTimeout = DEFAULT_DAEMON_IDLE_TIMEOUT;
+
+    private int daemonCompileTimeout = DEFAULT_DAEMON_COMPILE_TIMEOUT;
+
+    // set for an incremental compile
+    private CompileState compileState;
+
     /**
      * Simple progress monitor to keep track of number of files compiled
      * 
@@ -217,10 +259,22 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
 
         String[] args = createCommandLine(config);
         if (args.length == 0) {
+            if (compileState != null) {
+                // sources may have been removed
+                compileDependents(config, new ArrayList<CompilerError>());
+            }
             getLogger().info("Nothing to compile - all classes are up to date");
             return Collections.emptyList();
         }
 
+        List<CompilerError> messages = new ArrayList<CompilerError>(runCompiler(config, args));
+        if (compileState != null) {
+            compileDependents(config, messages);
+        }
+        return messages;
+    }
+
+    private List<CompilerError> runCompiler(CompilerConfiguration config, String[] args) throws CompilerException {
         List<CompilerError> messages;
         if (config.isFork()) {
             String executable = config.getExecutable();
@@ -235,25 +289,75 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
             }
 
             String groovyEclipseLocation = getGroovyEclipseBatchLocation();
-            messages = compileOutOfProcess(config, executable, groovyEclipseLocation, args);
+            if (useDaemon) {
+                messages = compileInDaemon(config, executable, groovyEclipseLocation, args);
+            } else {
+                messages = compileOutOfProcess(config, executable, groovyEclipseLocation, args);
+            }
         } else {
-            Progress progress = new Progress();
-            Main main = new Main(new PrintWriter(System.out), new PrintWriter(System.err), false/* systemExit */,
-                    null/* options */, progress);
-            boolean result = main.compile(args);
-
-            messages = formatResult(main, result);
+            messages = compileInProcess(args);
         }
         return messages;
     }
 
+    private List<CompilerError> compileInProcess(String[] args) {
+        Progress progress = new Progress();
+        Main main = new Main(new PrintWriter(System.out), new PrintWriter(System.err), false/* systemExit */,
+                null/* options */, progress);
+        boolean result = main.compile(args);
+
+        return formatResult(main, result);
+    }
+
+    /**
+     * Compiles again the sources using types that changed in the last compile,
+     * until there are none, and records the outcome for the next incremental
+     * compile.
+     */
+    private void compileDependents(CompilerConfiguration config, List<CompilerError> messages) throws CompilerException {
+        try {
+            for (int round = 1; !hasErrors(messages); round++) {
+                Set<File> dependents = compileState.endRound();
+                if (dependents.isEmpty()) {
+                    compileState.save();
+                    return;
+                }
+                if (round == MAX_INCREMENTAL_ROUNDS) {
+                    getLogger().warn("Types are still changing after " + round + " rounds, compiling all sources");
+                    dependents = compileState.getSources();
+                }
+                dependents = compileState.beginRound(dependents);
+                getLogger().info("Compiling " + dependents.size() + " source file" + (dependents.size() == 1 ? "" : "s")
+                        + " using changed types");
+                messages.addAll(runCompiler(config, createCommandLine(config, dependents.toArray(new File[0]))));
+            }
+        } catch (IOException e) {
+            getLogger().warn("Unable to record the incremental compile state, all sources will be compiled next time", e);
+        }
+        // which types have changed is not known any more after errors
+        compileState.discard();
+    }
+
+    private static boolean hasErrors(List<CompilerError> messages) {
+        for (CompilerError message : messages) {
+            if (message.isError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private File[] recalculateStaleFiles(CompilerConfiguration config) throws CompilerException {
         config.setSourceFiles(null);
-        long staleMillis = 0; // can we do better than using 0?
         Set<String> includes = config.getIncludes();
         if (includes == null || includes.isEmpty()) {
             includes = Collections.singleton("**/*");
         }
+        compileState = null;
+        if (config.getCustomCompilerArguments().containsKey(INCREMENTAL_PARAM_NAME)) {
+            return recalculateChangedFiles(config, includes);
+        }
+        long staleMillis = 0; // can we do better than using 0?
         StaleSourceScanner scanner = new StaleSourceScanner(staleMillis, includes, config.getExcludes());
         Set<File> staleSources = computeStaleSources(config, scanner);
         config.setSourceFiles(staleSources);
@@ -262,6 +366,98 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
         return sourceFiles;
     }
 
+    /**
+     * @return the sources that have changed since the last incremental compile
+     *         and the ones using types they declared that have gone, or all the
+     *         sources if there was no incremental compile with the same
+     *         classpath and options
+     */
+    private File[] recalculateChangedFiles(CompilerConfiguration config, Set<String> includes) throws CompilerException {
+        Set<File> allSources = new HashSet<File>();
+        for (File file : computeStaleSources(config, new SimpleSourceInclusionScanner(includes, config.getExcludes()))) {
+            if (file.getName().endsWith(".groovy") || file.getName().endsWith(".java")) {
+                allSources.add(file.getAbsoluteFile());
+            }
+        }
+        File outputDirectory = new File(config.getOutputLocation()).getAbsoluteFile();
+        File stateFile = new File(new File(outputDirectory.getParentFile(), "groovy-eclipse-compiler"), outputDirectory.getName()
+                + ".state");
+        compileState = new CompileState(stateFile, outputDirectory, computeFingerprint(config, outputDirectory));
+        if (!compileState.load()) {
+            getLogger().info("No incremental compile state for this classpath and options, compiling all sources");
+        }
+        Set<File> changedSources;
+        try {
+            changedSources = compileState.prepare(allSources);
+        } catch (IOException e) {
+            throw new CompilerException("Error reading the class files of the sources to compile", e);
+        }
+        config.setSourceFiles(changedSources);
+        return changedSources.toArray(new File[0]);
+    }
+
+    /**
+     * @return a digest of the classpath, the compiler and the options, which
+     *         must stay the same for an incremental compile to be possible
+     */
+    private String computeFingerprint(CompilerConfiguration config, File outputDirectory) throws CompilerException {
+        StringBuilder sb = new StringBuilder();
+        for (String entry : (List<String>) config.getClasspathEntries()) {
+            File file = new File(entry).getAbsoluteFile();
+            if (file.equals(outputDirectory)) {
+                continue;
+            }
+            sb.append(file).append('|');
+            if (file.isDirectory()) {
+                // such as the output folder of another module
+                long[] lastModifiedAndCount = new long[2];
+                fingerprintFolder(file, lastModifiedAndCount);
+                sb.append(lastModifiedAndCount[0]).append('|').append(lastModifiedAndCount[1]);
+            } else {
+                sb.append(file.lastModified()).append('|').append(file.length());
+            }
+            sb.append(File.pathSeparatorChar);
+        }
+        File batchJar = new File(getGroovyEclipseBatchLocation());
+        sb.append(batchJar).append('|').append(batchJar.lastModified()).append(File.pathSeparatorChar);
+        sb.append(config.getSourceVersion()).append('|').append(config.getTargetVersion()).append('|')
+                .append(config.getSourceEncoding()).append('|').append(config.isDebug()).append('|')
+                .append(config.getDebugLevel()).append('|').append(config.getProc());
+        List<String> customArguments = new ArrayList<String>();
+        for (Entry<Object, Object> entry : (Iterable<Entry<Object, Object>>) config.getCustomCompilerArguments().entrySet()) {
+            customArguments.add(entry.getKey() + "=" + entry.getValue());
+        }
+        Collections.sort(customArguments);
+        sb.append(customArguments);
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(sb.toString().getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(sb.toString().hashCode());
+        } catch (UnsupportedEncodingException e) {
+            return Integer.toHexString(sb.toString().hashCode());
+        }
+    }
+
+    private static void fingerprintFolder(File folder, long[] lastModifiedAndCount) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                fingerprintFolder(file, lastModifiedAndCount);
+            } else {
+                lastModifiedAndCount[0] = Math.max(lastModifiedAndCount[0], file.lastModified());
+                lastModifiedAndCount[1]++;
+            }
+        }
+    }
+
     private boolean startsWithHyphen(Object key) {
         return null != key && String.class.isInstance(key) && ((String) key).startsWith("-");
     }
@@ -317,6 +513,11 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
         if (sourceFiles.length == 0) {
             return new String[0];
         }
+        return createCommandLine(config, sourceFiles);
+    }
+
+    private String[] createCommandLine(CompilerConfiguration config, File[] sourceFiles) throws CompilerException {
+        File destinationDir = new File(config.getOutputLocation());
 
         getLogger().info("Using Groovy-Eclipse compiler to compile both Java and Groovy files");
         getLogger().debug(
@@ -405,6 +606,9 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
             args.add(config.getSourceEncoding());
         }
 
+        useDaemon = false;
+        daemonIdleTimeout = DEFAULT_DAEMON_IDLE_TIMEOUT;
+        daemonCompileTimeout = DEFAULT_DAEMON_COMPILE_TIMEOUT;
         for (Entry<Object, Object> entry : (Iterable<Entry<Object, Object>>) config.getCustomCompilerArguments().entrySet()) {
 
             Object key = entry.getKey();
@@ -413,6 +617,22 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
                     setJavaAgentClass((String) entry.getValue());
                     // do not add the custom java agent arg because it is not
                     // expected by groovy-eclipse compiler
+                } else if (DAEMON_PARAM_NAME.equals(key)) {
+                    useDaemon = entry.getValue() == null || !"false".equals(entry.getValue());
+                } else if (INCREMENTAL_PARAM_NAME.equals(key)) {
+                    // see recalculateStaleFiles
+                } else if (DAEMON_IDLE_TIMEOUT_PARAM_NAME.equals(key)) {
+                    try {
+                        daemonIdleTimeout = Integer.parseInt(((String) entry.getValue()).trim());
+                    } catch (RuntimeException e) {
+                        getLogger().warn("Ignoring invalid " + DAEMON_IDLE_TIMEOUT_PARAM_NAME + ": " + entry.getValue());
+                    }
+                } else if (DAEMON_COMPILE_TIMEOUT_PARAM_NAME.equals(key)) {
+                    try {
+                        daemonCompileTimeout = Integer.parseInt(((String) entry.getValue()).trim());
+                    } catch (RuntimeException e) {
+                        getLogger().warn("Ignoring invalid " + DAEMON_COMPILE_TIMEOUT_PARAM_NAME + ": " + entry.getValue());
+                    }
                 } else {
                     // don't add a "-" if the arg
                     // already has one
@@ -563,6 +783,150 @@ public class GroovyEclipseCompiler extends AbstractCompiler {
         return messages;
     }
 
+    /**
+     * Compile in a compiler daemon, launching one if there is none running for
+     * this java executable and groovy-eclipse-batch jar. Compiles in process if
+     * the daemon cannot be reached or does not answer in time.
+     * 
+     * @return List of CompilerError objects with the errors encountered.
+     */
+    private List<CompilerError> compileInDaemon(CompilerConfiguration config, String executable, String groovyEclipseLocation,
+            String[] args) throws CompilerException {
+        File stateFile = getDaemonStateFile(config, executable, groovyEclipseLocation);
+        Socket socket = connectToDaemon(stateFile);
+        if (socket == null) {
+            try {
+                launchDaemon(config, executable, groovyEclipseLocation, stateFile);
+                long giveUp = System.currentTimeMillis() + DAEMON_START_TIMEOUT;
+                while (socket == null && System.currentTimeMillis() < giveUp) {
+                    Thread.sleep(100);
+                    socket = connectToDaemon(stateFile);
+                }
+            } catch (IOException e) {
+                getLogger().warn("Unable to launch the compiler daemon", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (socket == null) {
+            getLogger().warn("Compiler daemon is not available, compiling in process instead.");
+            return compileInProcess(args);
+        }
+
+        int returnCode;
+        String errors;
+        try {
+            getLogger().info("Compiling in the compiler daemon described by " + stateFile);
+            // the daemon may hang or be busy with a compile that a client gave up on
+            socket.setSoTimeout(daemonCompileTimeout * 1000);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            CompilerDaemon.writeString(out, CompilerDaemon.readState(stateFile).getProperty(CompilerDaemon.SECRET));
+            // like a forked compiler, relative paths are relative to the working directory
+            CompilerDaemon.writeString(out, config.getWorkingDirectory().getAbsolutePath());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                CompilerDaemon.writeString(out, arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            returnCode = in.readInt();
+            CompilerDaemon.readString(in); // the standard output, which forked compiles ignore too
+            errors = CompilerDaemon.readString(in);
+        } catch (SocketTimeoutException e) {
+            getLogger().warn("The compiler daemon did not answer within " + daemonCompileTimeout + "s, compiling in process instead.");
+            return compileInProcess(args);
+        } catch (Exception e) {
+            getLogger().warn("Lost the connection to the compiler daemon, compiling in process instead.", e);
+            return compileInProcess(args);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        List<CompilerError> messages;
+        try {
+            messages = parseModernStream(returnCode, new BufferedReader(new StringReader(errors)));
+        } catch (IOException e) {
+            throw new CompilerException("Error while reading the output of the compiler daemon.", e);
+        }
+        if (returnCode != 0 && messages.isEmpty()) {
+            messages.add(new CompilerError("Failure executing groovy-eclipse compiler:" + EOL + errors, true));
+        }
+        return messages;
+    }
+
+    /**
+     * @return the file describing the daemon for this java executable,
+     *         groovy-eclipse-batch jar, java agent and heap settings. A new
+     *         version of the jar or of the daemon protocol gets a daemon of its
+     *         own. The state file is kept in a directory of the user that only
+     *         they can access.
+     */
+    private File getDaemonStateFile(CompilerConfiguration config, String executable, String groovyEclipseLocation) {
+        File batchJar = new File(groovyEclipseLocation);
+        String key = executable + File.pathSeparator + batchJar.getAbsolutePath() + File.pathSeparator + batchJar.lastModified()
+                + File.pathSeparator + javaAgentClass + File.pathSeparator + config.getMaxmem() + File.pathSeparator
+                + config.getMeminitial() + File.pathSeparator + CompilerDaemon.PROTOCOL_VERSION;
+        File stateDir = new File(System.getProperty("java.io.tmpdir"), "groovy-eclipse-compiler-" + System.getProperty("user.name"));
+        return new File(stateDir, "daemon-" + Integer.toHexString(key.hashCode()) + ".properties");
+    }
+
+    /**
+     * @return a connection to the daemon described by the state file, or null
+     *         if it is not running
+     */
+    private Socket connectToDaemon(File stateFile) {
+        Properties state = CompilerDaemon.readState(stateFile);
+        if (state == null) {
+            return null;
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName(null), Integer.parseInt(state.getProperty(CompilerDaemon.PORT))),
+                    1000);
+            return socket;
+        } catch (Exception e) {
+            try {
+                socket.close();
+            } catch (IOException e1) {
+                // ignore
+            }
+            return null;
+        }
+    }
+
+    private void launchDaemon(CompilerConfiguration config, String executable, String groovyEclipseLocation, File stateFile)
+            throws IOException, CompilerException {
+        List<String> command = new ArrayList<String>();
+        command.add(executable);
+        if (!StringUtils.isEmpty(javaAgentClass)) {
+            command.add("-javaagent:" + getAdditionnalJavaAgentLocation());
+        }
+        if (!StringUtils.isEmpty(config.getMaxmem())) {
+            command.add("-Xmx" + config.getMaxmem());
+        }
+        if (!StringUtils.isEmpty(config.getMeminitial())) {
+            command.add("-Xms" + config.getMeminitial());
+        }
+        command.add("-cp");
+        command.add(groovyEclipseLocation + File.pathSeparator + getClassLocation(CompilerDaemon.class.getName()));
+        command.add(CompilerDaemon.class.getName());
+        command.add(stateFile.getAbsolutePath());
+        command.add(String.valueOf(daemonIdleTimeout));
+
+        getLogger().info("Launching a compiler daemon using " + groovyEclipseLocation);
+        if (verbose) {
+            getLogger().info("Compiler daemon command: " + command);
+        }
+        CompilerDaemon.createPrivateDirectory(stateFile.getParentFile());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        // the daemon outlives this build and logs to a file of its own
+        process.getOutputStream().close();
+    }
+
     /**
      * Parse the output from the compiler into a list of CompilerError objects
      * 
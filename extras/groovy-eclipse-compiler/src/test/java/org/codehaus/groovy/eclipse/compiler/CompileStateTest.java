@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jdt.internal.compiler.batch.Main;
+
+/**
+ * Runs incremental compiles of small java and groovy projects through
+ * {@link CompileState}
+ */
+public class CompileStateTest extends TestCase {
+
+    private File root;
+
+    private File sourceFolder;
+
+    private File outputFolder;
+
+    private File stateFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = File.createTempFile("compile-state", "");
+        root.delete();
+        sourceFolder = new File(root, "src");
+        outputFolder = new File(root, "classes");
+        stateFile = new File(root, "state/compile.state");
+        outputFolder.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(root);
+    }
+
+    public void testConstantChangeCompilesUsers() throws Exception {
+        File constants = write("p/K.java", "package p;\npublic class K { public static final int VALUE = 1; }\n");
+        File user = write("p/U.java", "package p;\npublic class U { int get() { return K.VALUE; } }\n");
+        compileAll();
+        // the value has been copied, nothing in the class file tells that it came from K
+        assertFalse(CompileState.findReferences(readBytes(new File(outputFolder, "p/U.class"))).contains("p/K"));
+
+        write("p/K.java", "package p;\npublic class K { public static final int VALUE = 2; }\n");
+        Set<File> compiled = compileIncrementally();
+        assertEquals(set(constants, user), compiled);
+    }
+
+    public void testRemovedConstantCompilesUsers() throws Exception {
+        File constants = write("p/K.java", "package p;\npublic class K { public static final String NAME = \"k\"; }\n");
+        File user = write("p/U.java", "package p;\npublic class U { String get() { return K.NAME; } }\n");
+        File other = write("p/V.java", "package p;\npublic class V {}\n");
+        compileAll();
+
+        write("p/K.java", "package p;\npublic class K {}\n");
+        Set<File> compiled = compileIncrementally();
+        assertEquals(set(constants, user, other), compiled);
+    }
+
+    public void testUnchangedConstantDoesNotCompileUsers() throws Exception {
+        File constants = write("p/K.java", "package p;\npublic class K { public static final int VALUE = 1; }\n");
+        write("p/U.java", "package p;\npublic class U { int get() { return K.VALUE; } }\n");
+        compileAll();
+
+        write("p/K.java", "package p;\npublic class K { public static final int VALUE = 1; public void m() {} }\n");
+        Set<File> compiled = compileIncrementally();
+        assertEquals(set(constants), compiled);
+    }
+
+    public void testSupertypeChangeCompilesUsersOfSubtypes() throws Exception {
+        File a = write("p/A.java", "package p;\npublic class A { public void foo() {} }\n");
+        File b = write("p/B.java", "package p;\npublic class B extends A {}\n");
+        File c = write("p/C.java", "package p;\npublic class C { void m(B b) { b.foo(); } }\n");
+        write("p/D.java", "package p;\npublic class D {}\n");
+        compileAll();
+        // the call names B, which has not changed
+        assertFalse(CompileState.findReferences(readBytes(new File(outputFolder, "p/C.class"))).contains("p/A"));
+
+        write("p/A.java", "package p;\npublic class A { public int foo() { return 1; } }\n");
+        Set<File> compiled = compileIncrementally();
+        assertEquals(set(a, b, c), compiled);
+    }
+
+    public void testAddedTypeCompilesUsersOfSameName() throws Exception {
+        write("q/Helper.java", "package q;\npublic class Helper { public static int get() { return 1; } }\n");
+        File user = write("p/U.java", "package p;\nimport q.*;\npublic class U { int get() { return Helper.get(); } }\n");
+        write("p/V.java", "package p;\npublic class V {}\n");
+        compileAll();
+
+        // hides q.Helper from U
+        File helper = write("p/Helper.java", "package p;\npublic class Helper { public static int get() { return 2; } }\n");
+        Set<File> compiled = compileIncrementally();
+        assertEquals(set(helper, user), compiled);
+        assertTrue(CompileState.findReferences(readBytes(new File(outputFolder, "p/U.class"))).contains("p/Helper"));
+    }
+
+    public void testRemovedTypeCompilesUsers() throws Exception {
+        write("q/Helper.java", "package q;\npublic class Helper { public static int get() { return 1; } }\n");
+        File helper = write("p/Helper.java", "package p;\npublic class Helper { public static int get() { return 2; } }\n");
+        File user = write("p/U.java", "package p;\nimport q.*;\npublic class U { int get() { return Helper.get(); } }\n");
+        write("p/V.java", "package p;\npublic class V {}\n");
+        compileAll();
+
+        helper.delete();
+        Set<File> compiled = compileIncrementally();
+        assertEquals(set(user), compiled);
+        assertFalse(new File(outputFolder, "p/Helper.class").exists());
+        assertTrue(CompileState.findReferences(readBytes(new File(outputFolder, "p/U.class"))).contains("q/Helper"));
+    }
+
+    public void testClassOfScriptWithOtherName() throws Exception {
+        File script = write("p/Shapes.groovy", "package p\nclass Circle { int radius() { 1 } }\nprintln new Circle().radius()\n");
+        File user = write("p/U.java", "package p;\npublic class U { long get() { return new Circle().radius(); } }\n");
+        compileAll();
+
+        // Circle comes from the script, not from U
+        write("p/U.java", "package p;\npublic class U { long get() { return new Circle().radius(); } }\n");
+        assertEquals(set(user), compileIncrementally());
+
+        write("p/Shapes.groovy", "package p\nclass Circle { long radius() { 1 } }\nprintln new Circle().radius()\n");
+        assertEquals(set(script, user), compileIncrementally());
+
+        new File(outputFolder, "p/Circle.class").delete();
+        assertTrue(compileIncrementally().contains(script));
+        assertTrue(new File(outputFolder, "p/Circle.class").isFile());
+    }
+
+    private void compileAll() throws IOException {
+        CompileState state = new CompileState(stateFile, outputFolder, "fingerprint");
+        assertFalse(state.load());
+        compileRounds(state, state.prepare(allSources()));
+    }
+
+    /**
+     * @return all the sources compiled
+     */
+    private Set<File> compileIncrementally() throws IOException {
+        CompileState state = new CompileState(stateFile, outputFolder, "fingerprint");
+        assertTrue(state.load());
+        return compileRounds(state, state.prepare(allSources()));
+    }
+
+    private Set<File> compileRounds(CompileState state, Set<File> toCompile) throws IOException {
+        Set<File> compiled = new HashSet<File>();
+        while (!toCompile.isEmpty()) {
+            compile(toCompile);
+            compiled.addAll(toCompile);
+            toCompile = state.endRound();
+            if (!toCompile.isEmpty()) {
+                toCompile = state.beginRound(toCompile);
+            }
+        }
+        state.save();
+        return compiled;
+    }
+
+    private void compile(Set<File> files) throws IOException {
+        List<String> args = new ArrayList<String>();
+        // the groovy runtime is in the groovy-eclipse-batch jar
+        String classpath = outputFolder.getPath() + File.pathSeparator + getBatchJar().getPath();
+        Collections.addAll(args, "-1.5", "-nowarn", "-d", outputFolder.getPath(), "-cp", classpath);
+        for (File file : files) {
+            args.add(file.getPath());
+        }
+        StringWriter errors = new StringWriter();
+        Main main = new Main(new PrintWriter(new StringWriter()), new PrintWriter(errors), false/* systemExit */,
+                null/* options */, null/* progress */);
+        assertTrue(errors.toString(), main.compile(args.toArray(new String[args.size()])));
+    }
+
+    private static File getBatchJar() throws IOException {
+        try {
+            return new File(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e.toString());
+        }
+    }
+
+    private File write(String path, String contents) throws IOException {
+        File file = new File(sourceFolder, path);
+        long lastModified = file.lastModified();
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+        if (lastModified != 0) {
+            // the same length and within the resolution of the file system, so make sure the change is seen
+            file.setLastModified(lastModified + 2000);
+        }
+        return file;
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private Set<File> allSources() {
+        Set<File> sources = new HashSet<File>();
+        collect(sourceFolder, sources);
+        return sources;
+    }
+
+    private static void collect(File folder, Set<File> sources) {
+        for (File file : folder.listFiles()) {
+            if (file.isDirectory()) {
+                collect(file, sources);
+            } else {
+                sources.add(file);
+            }
+        }
+    }
+
+    private static Set<File> set(File... files) {
+        Set<File> set = new HashSet<File>();
+        Collections.addAll(set, files);
+        return set;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.compiler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks how the compiler daemon handles the arguments of clients started in
+ * other directories, and compiles through it the way a client would
+ */
+public class CompilerDaemonTest extends TestCase {
+
+    private final File workingDirectory = new File("project").getAbsoluteFile();
+
+    public void testRelativePathsAreResolved() throws Exception {
+        String[] args = { "-d", "target/classes", "-cp", "lib/a.jar" + File.pathSeparator + "lib/b.jar[-**/internal/*]",
+                "src/p/A.groovy", "@target/args" };
+        String[] expected = { "-d", path("target/classes"), "-cp",
+                path("lib/a.jar") + File.pathSeparator + path("lib/b.jar") + "[-**/internal/*]", path("src/p/A.groovy"),
+                "@" + path("target/args") };
+        assertEquals(Arrays.asList(expected), Arrays.asList(CompilerDaemon.resolveArguments(args, workingDirectory)));
+    }
+
+    public void testOtherArgumentsAreKept() throws Exception {
+        String absolute = new File("src/p/A.groovy").getAbsolutePath();
+        String[] args = { "-encoding", "UTF-8", "-source", "1.5", "-nowarn", "-d", "none", absolute };
+        assertEquals(Arrays.asList(args), Arrays.asList(CompilerDaemon.resolveArguments(args, workingDirectory)));
+    }
+
+    public void testCompileRoundTrip() throws Exception {
+        File root = File.createTempFile("compiler-daemon", "");
+        root.delete();
+        try {
+            File source = new File(root, "src/p/A.java");
+            source.getParentFile().mkdirs();
+            Writer writer = new OutputStreamWriter(new FileOutputStream(source), "UTF-8");
+            try {
+                writer.write("package p;\npublic class A { String get() { return \"a\"; } }\n");
+            } finally {
+                writer.close();
+            }
+            File stateFile = new File(root, "state/daemon.properties");
+            final CompilerDaemon daemon = new CompilerDaemon(stateFile, 2000);
+            Thread thread = new Thread("compiler daemon") {
+                @Override
+                public void run() {
+                    try {
+                        daemon.run();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            thread.start();
+            for (int i = 0; i < 100 && CompilerDaemon.readState(stateFile) == null; i++) {
+                Thread.sleep(100);
+            }
+            Properties state = CompilerDaemon.readState(stateFile);
+            assertNotNull("the daemon did not start", state);
+
+            // relative paths, as a client started in root would send them
+            String[] args = { "-1.5", "-nowarn", "-d", "classes", "src/p/A.java" };
+            assertEquals(0, compile(state, root, args));
+            assertTrue(new File(root, "classes/p/A.class").isFile());
+
+            String[] broken = { "-1.5", "-nowarn", "-d", "classes", "src/p/Missing.java" };
+            assertEquals(-1, compile(state, root, broken));
+
+            // the daemon exits once idle and takes its state file with it
+            thread.join(10000);
+            assertFalse(thread.isAlive());
+            assertFalse(stateFile.exists());
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * @return the exit code of the compile
+     */
+    private static int compile(Properties state, File workingDirectory, String[] args) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName(null), Integer.parseInt(state.getProperty(CompilerDaemon.PORT)));
+        try {
+            socket.setSoTimeout(60000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            CompilerDaemon.writeString(out, state.getProperty(CompilerDaemon.SECRET));
+            CompilerDaemon.writeString(out, workingDirectory.getAbsolutePath());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                CompilerDaemon.writeString(out, arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int exitCode = in.readInt();
+            CompilerDaemon.readString(in);
+            String errors = CompilerDaemon.readString(in);
+            if (exitCode == 0) {
+                assertEquals("", errors);
+            }
+            return exitCode;
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private String path(String relative) {
+        return new File(workingDirectory, relative).getPath();
+    }
+}
@@ -17,9 +17,11 @@ import junit.framework.TestSuite;
 import org.eclipse.jdt.core.groovy.tests.builder.BasicGroovyBuildTests;
 import org.eclipse.jdt.core.groovy.tests.builder.FullProjectTests;
 import org.eclipse.jdt.core.groovy.tests.compiler.ScriptFolderTests;
+import org.eclipse.jdt.core.groovy.tests.compiler.TransformLoaderCacheTests;
 import org.eclipse.jdt.core.groovy.tests.locations.ASTConverterTests;
 import org.eclipse.jdt.core.groovy.tests.locations.ASTNodeSourceLocationsTests;
 import org.eclipse.jdt.core.groovy.tests.locations.LocationSupportTests;
+import org.eclipse.jdt.core.groovy.tests.locations.SourceBufferTests;
 import org.eclipse.jdt.core.groovy.tests.locations.SourceLocationsTests;
 import org.eclipse.jdt.core.groovy.tests.model.AnnotationsTests;
 import org.eclipse.jdt.core.groovy.tests.model.GroovyClassFileTests;
@@ -54,6 +56,7 @@ public class GroovyJDTTests {
 
 		// Location tests
         suite.addTestSuite(LocationSupportTests.class);
+        suite.addTestSuite(SourceBufferTests.class);
 		suite.addTestSuite(SourceLocationsTests.class);
 		suite.addTestSuite(ASTNodeSourceLocationsTests.class);
 		suite.addTestSuite(ASTConverterTests.class);
@@ -61,6 +64,7 @@ public class GroovyJDTTests {
         // Compiler tests
         suite.addTest(GroovySimpleTest.suite());
         suite.addTest(ScriptFolderTests.suite());
+        suite.addTestSuite(TransformLoaderCacheTests.class);
 
         // Search tests
         suite.addTest(AllSearchTests.suite());
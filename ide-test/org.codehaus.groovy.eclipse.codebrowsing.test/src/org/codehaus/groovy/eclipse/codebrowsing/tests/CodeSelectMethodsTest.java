@@ -15,6 +15,7 @@ import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.SourceRange;
 
 /**
  * @author Andrew Eisenberg
@@ -444,4 +445,10 @@ public class CodeSelectMethodsTest extends BrowsingTestCase {
         assertEquals("Wrong number of parameters to method", 2, ((IMethod) elt[0]).getParameterTypes().length);
     }
 
+    // the arguments of enum constants are moved into <clinit>
+    public void testCodeSelectMethodInEnumConstant() throws Exception {
+        String contents = "enum E {\n  A(foo()), B(1)\n  E(x) { }\n  static foo() { 0 }\n}";
+        assertCodeSelect(contents, new SourceRange(contents.indexOf("foo"), "foo".length()), "foo");
+    }
+
 }
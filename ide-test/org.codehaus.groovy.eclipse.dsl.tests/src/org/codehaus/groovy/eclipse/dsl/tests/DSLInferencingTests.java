@@ -11,10 +11,19 @@
 package org.codehaus.groovy.eclipse.dsl.tests;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.TypeLookupResult;
+import org.eclipse.jdt.groovy.search.VariableScope.VariableInfo;
+
 /**
  * Tests type inferencing that involve dsls
  * 
@@ -738,6 +747,39 @@ public class DSLInferencingTests extends AbstractDSLInferencingTest {
         int end = start + "delegate".length();
         assertType(contents, start, end, "Obj", true);
     }
+    // the lookups of a working copy are cached, except for those that change the scope, as setDelegateType does
+    public void testSetDelegateTypeWithCachedLookups() throws Exception {
+        createDsls(
+                SET_DELEGATE_TYPE_DSLD);
+        GroovyCompilationUnit unit = createUnit("Search", SET_DELEGATE_TYPE_SCRIPT);
+        unit.becomeWorkingCopy(null);
+        try {
+            Map<String, String> uncached = inferAll(unit);
+            assertTrue("Lookup results should have been cached", unit.getModuleInfo(true).getLookupResults().size() > 0);
+            Map<String, String> cached = inferAll(unit);
+            assertTrue("Delegate type should have been set: " + uncached, uncached.toString().contains("delegate: Obj"));
+            assertEquals(uncached, cached);
+        } finally {
+            unit.discardWorkingCopy();
+        }
+    }
+
+    /**
+     * @return the inferred type of every node and the type of the delegate in its scope, by node and position
+     */
+    private Map<String, String> inferAll(GroovyCompilationUnit unit) {
+        final Map<String, String> types = new HashMap<String, String>();
+        factory.createVisitor(unit).visitCompilationUnit(new ITypeRequestor() {
+            public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+                VariableInfo delegate = result.scope != null ? result.scope.lookupName("delegate") : null;
+                types.put(node.getText() + " @" + node.getStart() + ".." + node.getEnd(), printTypeName(result.type)
+                        + ", delegate: " + (delegate != null ? printTypeName(delegate.type) : null));
+                return VisitStatus.CONTINUE;
+            }
+        });
+        return types;
+    }
+
     public void testSetDelegateType1a() throws Exception {
         createDsls(
                 SET_DELEGATE_TYPE_DSLD);
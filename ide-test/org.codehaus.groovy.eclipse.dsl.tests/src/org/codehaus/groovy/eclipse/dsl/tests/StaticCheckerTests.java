@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.eclipse.dsl.checker.IStaticCheckerHandler;
+import org.codehaus.groovy.eclipse.dsl.checker.ResourceTypeChecker;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.text.Position;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests the static type checker over several files
+ */
+public class StaticCheckerTests extends AbstractDSLInferencingTest {
+
+    public StaticCheckerTests(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(StaticCheckerTests.class);
+    }
+
+    /**
+     * Records the problems found, with the file they were found in
+     */
+    private static class RecordingHandler implements IStaticCheckerHandler {
+        final List<String> problems = new ArrayList<String>();
+        private IFile resource;
+
+        public void handleUnknownReference(ASTNode node, Position position, int line) {
+            problems.add(resource.getName() + ":" + line + ":" + position.offset + ": unknown " + node.getText());
+        }
+
+        public void handleTypeAssertionFailed(ASTNode node, String expectedType, String actualType, Position position, int line) {
+            problems.add(resource.getName() + ":" + line + ":" + position.offset + ": " + node.getText() + " expected "
+                    + expectedType + " was " + actualType);
+        }
+
+        public void setResource(IFile resource) {
+            this.resource = resource;
+        }
+
+        public int numProblemsFound() {
+            return problems.size();
+        }
+
+        public void handleResourceStart(IResource resource) throws CoreException {
+        }
+
+        public boolean finish(Shell shell) {
+            return problems.isEmpty();
+        }
+    }
+
+    public void testSameProblemsWithSeveralThreads() throws Exception {
+        createUnit("p", "A",
+                "package p\n" +
+                "class A {\n" +
+                "  String name\n" +
+                "  def first() { unknownA }\n" +
+                "  def second() { name.length() // TYPE:java.lang.String\n" +
+                "  }\n" +
+                "}");
+        createUnit("p", "B",
+                "package p\n" +
+                "class B extends A {\n" +
+                "  def third() { new A().name.unknownB }\n" +
+                "  def fourth() { first() + second() }\n" +
+                "}");
+        createUnit("p", "C",
+                "package p\n" +
+                "def b = new B()\n" +
+                "b.name // TYPE:java.lang.Integer\n" +
+                "b.unknownC\n" +
+                "unknownScriptVar.toString()\n");
+        for (int i = 0; i < 5; i++) {
+            createUnit("q", "D" + i,
+                    "package q\n" +
+                    "class D" + i + " extends p.B {\n" +
+                    "  def fifth() { third().size() + unknownD" + i + " }\n" +
+                    "  def sixth() { [name, 1].collect { it.unknownInClosure } }\n" +
+                    "}");
+        }
+        env.fullBuild();
+
+        List<String> serialProblems = check(1);
+        assertFalse("Should have found some problems", serialProblems.isEmpty());
+        assertEquals("Checking with several threads should find the same problems in the same order", serialProblems, check(4));
+    }
+
+    private List<String> check(int parallelism) throws CoreException {
+        RecordingHandler handler = new RecordingHandler();
+        ResourceTypeChecker checker = new ResourceTypeChecker(handler, Collections.<IResource> singletonList(project), null,
+                null, false);
+        checker.setParallelism(parallelism);
+        checker.doCheck(null);
+        return handler.problems;
+    }
+}
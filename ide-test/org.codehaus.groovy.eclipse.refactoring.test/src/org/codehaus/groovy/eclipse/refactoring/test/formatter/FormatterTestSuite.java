@@ -37,6 +37,7 @@ public class FormatterTestSuite extends BaseTestSuite {
         ts.addTestSuite(FindIndentsTests.class);
         ts.addTestSuite(TestFormatterPreferences.class);
         ts.addTestSuite(GroovyDocumentScannerTests.class);
+        ts.addTestSuite(TokenDiffTests.class);
         return ts;
     }
 }
@@ -119,6 +119,70 @@ public class GroovyDocumentScannerTests extends TestCase {
         scanner.dispose();
     }
 
+    public void testIncrementalEdits() throws Exception {
+        String text =
+            "class Foo {\n" +
+            "    def a = 1\n" +
+            "    def b() {\n" +
+            "        foo(1,\n" +
+            "            2)<***>\n" +
+            "    }\n" +
+            "    def c = 3\n" +
+            "}\n";
+        makeEditor(text);
+
+        IDocument doc = getDocument();
+        GroovyDocumentScanner scanner = new GroovyDocumentScanner(doc);
+        assertSameTokens(doc, scanner);
+
+        send("\n        bar(");
+        assertSameTokens(doc, scanner);
+        send(")\n        \"\"\"");
+        assertSameTokens(doc, scanner);
+        send("\"\"\"");
+        assertSameTokens(doc, scanner);
+        doc.replace(0, "class".length(), "interface");
+        assertSameTokens(doc, scanner);
+        scanner.dispose();
+    }
+
+    public void testEditsBetweenRequests() throws Exception {
+        String text =
+            "def a = 1\n" +
+            "def b = [<***>\n" +
+            "def c = 3\n";
+        makeEditor(text);
+
+        IDocument doc = getDocument();
+        GroovyDocumentScanner scanner = new GroovyDocumentScanner(doc);
+        scanner.getTokenFrom(0);
+
+        send("1,\n");
+        send("2]");
+        assertSameTokens(doc, scanner);
+        scanner.dispose();
+    }
+
+    /**
+     * Checks that the scanner, which has seen the edits, has the same tokens as a new one
+     */
+    private void assertSameTokens(IDocument doc, GroovyDocumentScanner scanner) throws Exception {
+        GroovyDocumentScanner fresh = new GroovyDocumentScanner(new Document(doc.get()));
+        List<Token> expected = fresh.getTokens(0, doc.getLength() + 1);
+        List<Token> actual = scanner.getTokens(0, doc.getLength() + 1);
+        assertEquals(toString(expected), toString(actual));
+        assertEquals(expected.get(expected.size() - 1).getType(), scanner.getLastToken().getType());
+        fresh.dispose();
+    }
+
+    private String toString(List<Token> tokens) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (Token token : tokens) {
+            sb.append(token.getText()).append('@').append(token.getLine()).append(':').append(token.getColumn()).append(' ');
+        }
+        return sb.toString();
+    }
+
     private IDocument getDocument() {
         return editDoc;
     }
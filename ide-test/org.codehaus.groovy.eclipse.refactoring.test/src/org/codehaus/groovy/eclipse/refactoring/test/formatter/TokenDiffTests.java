@@ -0,0 +1,79 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse.refactoring.test.formatter;
+
+import junit.framework.TestCase;
+
+import org.codehaus.groovy.eclipse.refactoring.formatter.TokenDiff;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * Checks the edits that turn an unformatted source into its formatted version
+ */
+public class TokenDiffTests extends TestCase {
+
+    public void testNoChange() throws Exception {
+        assertFalse(TokenDiff.createEdits("def x = 1", "def x = 1", 0).hasChildren());
+    }
+
+    public void testWhitespaceOnly() throws Exception {
+        MultiTextEdit edits = assertEdits("class A {\ndef x( ) {  }\n}\n", "class A {\n    def x() {\n    }\n}\n");
+        for (TextEdit edit : edits.getChildren()) {
+            assertEquals("Only whitespace should be replaced", "", ((ReplaceEdit) edit).getText().trim());
+        }
+    }
+
+    public void testUntouchedPartsHaveNoEdits() throws Exception {
+        MultiTextEdit edits = assertEdits("def a() {\n  1\n}\ndef b() {\n2\n}\n", "def a() {\n  1\n}\ndef b() {\n  2\n}\n");
+        assertEquals(1, edits.getChildrenSize());
+        assertEquals("def a() {\n  1\n}\ndef b() {\n".length(), edits.getChildren()[0].getOffset());
+    }
+
+    public void testTokensAddedAndRemoved() throws Exception {
+        assertEdits("def x = 1;\nif (x) print x", "def x = 1\nif (x) {\n    print x\n}");
+        assertEdits("a b c d e", "a c e f");
+        assertEdits("", "def x");
+        assertEdits("def x", "");
+    }
+
+    public void testOffset() throws Exception {
+        String prefix = "// header\n";
+        Document document = new Document(prefix + "def  x");
+        TokenDiff.createEdits("def  x", "def x", prefix.length()).apply(document);
+        assertEquals(prefix + "def x", document.get());
+    }
+
+    public void testManyDifferences() throws Exception {
+        StringBuilder original = new StringBuilder();
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            original.append("a").append(i).append(' ');
+            formatted.append("b").append(i).append(' ');
+        }
+        assertEdits("first " + original + "last", "first " + formatted + "last");
+    }
+
+    private MultiTextEdit assertEdits(String original, String formatted) throws Exception {
+        MultiTextEdit edits = TokenDiff.createEdits(original, formatted, 0);
+        Document document = new Document(original);
+        edits.copy().apply(document);
+        assertEquals(formatted, document.get());
+        return edits;
+    }
+}
@@ -632,5 +632,15 @@ PP"""
         doDeleteImportTest(contents, 0)
     }
 
+    void testTypeAddedAfterIndexing() {
+        // the first organize imports builds the type name index of the project
+        doAddImportTest("def x = new FirstClass()", ["import other.FirstClass\n"])
+        testProject.createGroovyTypeAndPackage("other", "Added.groovy", "class AddedClass { }")
+        def file = testProject.createGroovyTypeAndPackage("main", "Main2.groovy", "def x = new AddedClass()")
+        def unit = JavaCore.createCompilationUnitFrom(file)
+        OrganizeGroovyImports organize = new OrganizeGroovyImports(unit, new NoChoiceQuery())
+        TextEdit edit = organize.calculateMissingImports()
+        assertTrue "Should have found the type added after the index was built:\n$edit", edit.toString().contains("import other.AddedClass")
+    }
 }
 
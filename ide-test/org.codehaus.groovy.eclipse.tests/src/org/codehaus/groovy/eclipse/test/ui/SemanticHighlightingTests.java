@@ -24,6 +24,7 @@ import static org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPo
 import static org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPosition.HighlightKind.UNKNOWN;
 import static org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPosition.HighlightKind.NUMBER;
 
+import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 import java.util.Comparator;
 
@@ -190,6 +191,40 @@ public class SemanticHighlightingTests extends EclipseTestCase {
                 new HighlightedTypedPosition(third, "f".length(), STATIC_METHOD));
     }
     
+    public void testIncrementalEditInsideMethod() throws Exception {
+        assertIncrementalHighlighting(
+                "class X { static FOO\n def x() { \n FOO } \n def y() { \n FOO.toString() } }",
+                "class X { static FOO\n def x() { \n FOO\n  FOO.length() } \n def y() { \n FOO.toString() } }");
+    }
+
+    public void testIncrementalEditInsideFieldInitializer() throws Exception {
+        assertIncrementalHighlighting(
+                "class X { static FOO\n def bar = 7\n def x() { \n FOO } }",
+                "class X { static FOO\n def bar = 7 + 0x10\n def x() { \n FOO } }");
+    }
+
+    public void testIncrementalEditOfDeclaration() throws Exception {
+        assertIncrementalHighlighting(
+                "class X { static FOO\n def x() { \n FOO } }",
+                "class X { static FOO\n static y() { } \n def x() { \n FOO\n y() } }");
+    }
+
+    /**
+     * Highlights the unit, changes its contents and checks that highlighting again starting
+     * from the first result gives the same positions as highlighting from scratch
+     */
+    private void assertIncrementalHighlighting(String contents, String newContents) throws Exception {
+        GroovyCompilationUnit unit = openFile(contents);
+        GatherSemanticReferences references = new GatherSemanticReferences(unit);
+        GatherSemanticReferences.Snapshot first = references.findSemanticHighlightingReferences(null);
+        assertNotNull(first);
+
+        ((IFile) unit.getResource()).setContents(new ByteArrayInputStream(newContents.getBytes()), true, false, null);
+        GatherSemanticReferences.Snapshot incremental = references.findSemanticHighlightingReferences(first);
+        GatherSemanticReferences.Snapshot full = references.findSemanticHighlightingReferences(null);
+        assertEquals(full.getPositions().toString(), incremental.getPositions().toString());
+    }
+
     private void assertHighlighting(String contents, HighlightedTypedPosition... expectedPositions) throws Exception {
         GroovyCompilationUnit unit = openFile(contents);
         checkStyles(unit, expectedPositions);
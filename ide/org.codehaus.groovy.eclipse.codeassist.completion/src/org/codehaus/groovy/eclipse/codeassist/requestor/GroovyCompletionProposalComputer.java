@@ -7,6 +7,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.GroovyMetrics;
+import org.codehaus.groovy.eclipse.MetricCategory;
 import org.codehaus.groovy.eclipse.TraceCategory;
 import org.codehaus.groovy.eclipse.codeassist.DocumentSourceBuffer;
 import org.codehaus.groovy.eclipse.codeassist.factories.ConstructorCompletionProcessorFactory;
@@ -122,6 +124,16 @@ public class GroovyCompletionProposalComputer implements
             return Collections.EMPTY_LIST;
         }
 
+        GroovyMetrics.Span span = GroovyMetrics.metrics.start(MetricCategory.CONTENT_ASSIST);
+        try {
+            return computeGroovyCompletionProposals(context, javaContext, unit, monitor);
+        } finally {
+            span.end();
+        }
+    }
+
+    private List<ICompletionProposal> computeGroovyCompletionProposals(ContentAssistInvocationContext context,
+            JavaContentAssistInvocationContext javaContext, ICompilationUnit unit, IProgressMonitor monitor) {
         String event = null;
         if (GroovyLogManager.manager.hasLoggers()) {
             GroovyLogManager.manager.log(TraceCategory.CONTENT_ASSIST,
@@ -60,7 +60,8 @@ public class CodeSelectHelper implements ICodeSelectHelper {
                     
                     CodeSelectRequestor requestor = createRequestor(unit, nodeToLookFor);
                     TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                    visitor.visitCompilationUnit(requestor);
+                    // only the members enclosing the node need to be inferred
+                    visitor.visitCompilationUnit(requestor, nodeToLookFor.getStart(), nodeToLookFor.getEnd());
                     return requestor.getRequestedElement() != null ? new IJavaElement[] { requestor.getRequestedElement() } : new IJavaElement[0];
                 }
             } finally {
@@ -102,7 +103,8 @@ public class CodeSelectHelper implements ICodeSelectHelper {
                     
                     CodeSelectRequestor requestor = createRequestor(unit, nodeToLookFor);
                     TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                    visitor.visitCompilationUnit(requestor);
+                    // only the members enclosing the node need to be inferred
+                    visitor.visitCompilationUnit(requestor, nodeToLookFor.getStart(), nodeToLookFor.getEnd());
                     return requestor.getRequestedNode();
                 }
             } finally {
@@ -21,6 +21,7 @@ import org.codehaus.groovy.eclipse.TraceCategory;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.SuggestionsLoader;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsFileProperties;
 import org.codehaus.groovy.eclipse.dsl.script.DSLDScriptExecutor;
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
@@ -266,6 +267,8 @@ public class RefreshDSLDJob extends Job {
         monitor.beginTask("Refresh DSLD scripts", projects.size() * 9);
         for (IProject project : projects) {
             IStatus res = refreshProject(project, new SubProgressMonitor(monitor, 9));
+            // module nodes of closed files shared by search and checking were inferred with the old scripts
+            GroovyCompilationUnit.discardSharedModuleInfos(project);
             if (!res.isOK()) {
                 errorStatuses.add(res);
             } else if (res == Status.CANCEL_STATUS) {
@@ -15,16 +15,18 @@
  */
 package org.codehaus.groovy.eclipse.dsl.checker;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 
+import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.Comment;
-import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.codehaus.jdt.groovy.model.GroovyNature;
+import org.codehaus.jdt.groovy.model.ModuleNodeMapper.ModuleNodeInfo;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -34,11 +36,14 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
-import org.eclipse.jdt.groovy.search.TypeInferencingVisitorFactory;
-import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
+import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.ParallelTypeInferencing;
 import org.eclipse.jdt.internal.core.util.Util;
+import org.eclipse.jface.text.Position;
+import org.eclipse.swt.widgets.Shell;
 
 /**
  * Performs static checking on all groovy files contained in the resource passed in
@@ -47,11 +52,16 @@ import org.eclipse.jdt.internal.core.util.Util;
  */
 public class ResourceTypeChecker {
     
+    /**
+     * Finds the groovy compilation units to check
+     */
     class CheckerVisitor implements IResourceVisitor {
         private IProgressMonitor monitor;
+        private final List<GroovyCompilationUnit> units;
 
-        CheckerVisitor(IProgressMonitor monitor) {
+        CheckerVisitor(IProgressMonitor monitor, List<GroovyCompilationUnit> units) {
             this.monitor = monitor;
+            this.units = units;
         }
 
         public boolean visit(IResource resource) throws CoreException {
@@ -71,24 +81,43 @@ public class ResourceTypeChecker {
                     if (monitor.isCanceled()) {
                         throw new OperationCanceledException();
                     }
-                    monitor.subTask(resource.getName());
-                    handler.setResource((IFile) resource);
-                    Map<Integer, String> commentsMap = findComments(unit);
-                    StaticTypeCheckerRequestor requestor = new StaticTypeCheckerRequestor(handler, commentsMap, onlyAssertions);
-                    TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                    try {
-                        unit.becomeWorkingCopy(monitor);
-                        visitor.visitCompilationUnit(requestor);
-                    } finally {
-                        unit.discardWorkingCopy();
-                    }
+                    units.add(unit);
                 }
             }
             return true;
         }
+    }
+
+    /**
+     * Creates a requestor per unit, each reporting into its own {@link UnitProblems}. The problems are passed on to the real
+     * handler unit by unit, on the thread that started the check, so the handler never sees concurrent calls.
+     */
+    class CheckerRequestorFactory implements ParallelTypeInferencing.IUnitRequestorFactory {
+        private final Map<ITypeRequestor, UnitProblems> problems = Collections.synchronizedMap(new HashMap<ITypeRequestor, UnitProblems>());
+
+        public ITypeRequestor createRequestor(GroovyCompilationUnit unit) throws CoreException {
+            // no need for a working copy, the module node of a closed file is cached and shared with the inferencing visitor
+            UnitProblems unitProblems = new UnitProblems();
+            StaticTypeCheckerRequestor requestor = new StaticTypeCheckerRequestor(unitProblems, findComments(unit), onlyAssertions);
+            problems.put(requestor, unitProblems);
+            return requestor;
+        }
+
+        public void releaseRequestor(GroovyCompilationUnit unit, ITypeRequestor requestor) {
+        }
+
+        public void acceptResults(GroovyCompilationUnit unit, ITypeRequestor requestor) throws CoreException {
+            handler.setResource((IFile) unit.getResource());
+            problems.remove(requestor).replay(handler);
+        }
 
         private Map<Integer, String> findComments(GroovyCompilationUnit unit) {
-            List<Comment> comments = unit.getModuleNode().getContext().getComments();
+            ModuleNodeInfo info = unit.getSharedModuleInfo();
+            if (info == null || info.module == null) {
+                // there was a problem building the module node, the inferencing visitor will not find anything to check
+                return Collections.emptyMap();
+            }
+            List<Comment> comments = info.module.getContext().getComments();
             Map<Integer, String> allComments = new HashMap<Integer, String>(comments.size());
             for (Comment comment : comments) {
                 StringTokenizer stok = new StringTokenizer(comment.toString());
@@ -123,6 +152,54 @@ public class ResourceTypeChecker {
             return allComments;
         }
     }
+
+    /**
+     * Remembers the problems found in one unit until they can be passed on to the real handler
+     */
+    static class UnitProblems implements IStaticCheckerHandler {
+        interface Problem {
+            void reportTo(IStaticCheckerHandler target);
+        }
+
+        private final List<Problem> problems = new ArrayList<Problem>();
+
+        public void handleUnknownReference(final ASTNode node, final Position position, final int line) {
+            problems.add(new Problem() {
+                public void reportTo(IStaticCheckerHandler target) {
+                    target.handleUnknownReference(node, position, line);
+                }
+            });
+        }
+
+        public void handleTypeAssertionFailed(final ASTNode node, final String expectedType, final String actualType,
+                final Position position, final int line) {
+            problems.add(new Problem() {
+                public void reportTo(IStaticCheckerHandler target) {
+                    target.handleTypeAssertionFailed(node, expectedType, actualType, position, line);
+                }
+            });
+        }
+
+        void replay(IStaticCheckerHandler target) {
+            for (Problem problem : problems) {
+                problem.reportTo(target);
+            }
+        }
+
+        public void setResource(IFile resource) {
+        }
+
+        public int numProblemsFound() {
+            return problems.size();
+        }
+
+        public void handleResourceStart(IResource resource) throws CoreException {
+        }
+
+        public boolean finish(Shell shell) {
+            return problems.isEmpty();
+        }
+    }
     
     private final IStaticCheckerHandler handler;
     private final List<IResource> resources;
@@ -130,6 +207,7 @@ public class ResourceTypeChecker {
     protected boolean onlyAssertions;
     protected final char[][] includes;
     protected final char[][] excludes;
+    protected int parallelism = ParallelTypeInferencing.getDefaultParallelism();
     
     public ResourceTypeChecker(IStaticCheckerHandler handler, String projectName, char[][] includes, char[][] excludes, boolean onlyAssertions) {
         this(handler, createProject(projectName), includes, excludes, onlyAssertions);
@@ -161,15 +239,25 @@ public class ResourceTypeChecker {
         if (monitor == null) {
             monitor = new NullProgressMonitor();
         }
-        monitor.beginTask("Static type analysis", resources.size());
+        monitor.beginTask("Static type analysis", resources.size() * 10);
+        List<GroovyCompilationUnit> units = new ArrayList<GroovyCompilationUnit>();
         for (IResource resource : resources) {
             if (monitor.isCanceled()) {
                 throw new OperationCanceledException();
             }
-            CheckerVisitor visitor = new CheckerVisitor(monitor);
+            CheckerVisitor visitor = new CheckerVisitor(monitor, units);
             resource.accept(visitor);
             monitor.worked(1);
         }
+        new ParallelTypeInferencing(parallelism).visit(units, new CheckerRequestorFactory(),
+                new SubProgressMonitor(monitor, resources.size() * 9));
         return handler.finish(null);
     }
+
+    /**
+     * @param parallelism the number of files to check at the same time
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
 }
@@ -16,6 +16,8 @@ import java.util.Set;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.eclipse.GroovyMetrics;
+import org.codehaus.groovy.eclipse.MetricCategory;
 import org.codehaus.groovy.eclipse.dsl.DSLDStore;
 import org.codehaus.groovy.eclipse.dsl.DSLPreferences;
 import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
@@ -68,7 +70,7 @@ public class DSLDTypeLookup extends AbstractSimplifiedTypeLookup implements ITyp
         pattern.setCurrentScope(scope);
         pattern.setTargetType(declaringType);
         pattern.setStatic(isStatic());
-        List<IContributionElement> elts = store.findContributions(pattern, disabledScriptsAsSet);
+        List<IContributionElement> elts = findContributions();
         declaringType = pattern.getCurrentType(); // may have changed via a setDelegateType
         for (IContributionElement elt : elts) {
             TypeAndDeclaration td = elt.lookupType(name, declaringType, pattern.getResolverCache());
@@ -89,10 +91,19 @@ public class DSLDTypeLookup extends AbstractSimplifiedTypeLookup implements ITyp
         if (delegateOrThis != null) {
             pattern.setTargetType(delegateOrThis);
             pattern.setStatic(isStatic());
-            store.findContributions(pattern, disabledScriptsAsSet);
+            findContributions();
         }
         // no need to return anything.  setDelegateType is called and evaluated implicitly
     }
+
+    private List<IContributionElement> findContributions() {
+        GroovyMetrics.Span span = GroovyMetrics.metrics.start(MetricCategory.DSLD);
+        try {
+            return store.findContributions(pattern, disabledScriptsAsSet);
+        } finally {
+            span.end();
+        }
+    }
     
     
     @Override
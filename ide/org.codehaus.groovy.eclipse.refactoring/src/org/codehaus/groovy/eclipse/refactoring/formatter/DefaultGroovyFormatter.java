@@ -18,6 +18,11 @@
  */
 package org.codehaus.groovy.eclipse.refactoring.formatter;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Vector;
 import java.util.regex.Matcher;
@@ -26,6 +31,8 @@ import java.util.regex.Pattern;
 import org.codehaus.greclipse.GroovyTokenTypeBridge;
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.InnerClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.ast.stmt.ExpressionStatement;
@@ -42,8 +49,6 @@ import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.text.TextSelection;
-import org.eclipse.text.edits.MultiTextEdit;
-import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
 import org.eclipse.text.edits.UndoEdit;
 
@@ -66,6 +71,9 @@ public class DefaultGroovyFormatter extends GroovyFormatter {
     private KlenkDocumentScanner tokens;
     private int indentationLevel = 0;
 
+    // the lines of the document formatted by formatEnclosingMembers()
+    private int regionOffset, regionLength;
+
     /**
      * Default Formatter for the Groovy-Eclipse Plugin
      *
@@ -111,6 +119,9 @@ public class DefaultGroovyFormatter extends GroovyFormatter {
 
     private void initCodebase() throws Exception {
         GroovyCore.trace(formattedDocument.get());
+        if (tokens != null) {
+            tokens.dispose();
+        }
         tokens = new KlenkDocumentScanner(formattedDocument);
         rootNode = ASTTools.getASTNodeFromSource(formattedDocument.get());
         if (rootNode == null) {
@@ -119,40 +130,188 @@ public class DefaultGroovyFormatter extends GroovyFormatter {
         }
     }
 
+    /**
+     * Formats the selected lines, or the whole document if nothing is
+     * selected. When the selection lies within the members of a top level
+     * class, only those members are formatted. The document is still parsed
+     * once to find them. The returned edit only touches the parts of the
+     * document whose formatting changed.
+     */
     @Override
     public TextEdit format() {
-        formattedDocument = new Document(document.get());
-        try {
-            if (!indentOnly) {
-                initCodebase();
-                GroovyBeautifier beautifier = new GroovyBeautifier(this, pref);
-                int lengthBefore = formattedDocument.getLength();
-                beautifier.getBeautifiEdits().apply(formattedDocument);
-                int lengthAfter = formattedDocument.getLength();
-                formatLength += lengthAfter - lengthBefore;
+        String contents = document.get();
+        if (selection.getLength() != 0) {
+            try {
+                String formattedMembers = formatEnclosingMembers();
+                if (formattedMembers != null) {
+                    return TokenDiff.createEdits(document.get(regionOffset, regionLength), formattedMembers, regionOffset);
+                }
+            } catch (Exception e) {
+                // fall back to formatting the whole document
+                GroovyCore.trace("Could not format the selected members only: " + e.getMessage());
             }
+        }
 
-            initCodebase();
-            GroovyIndentation indent = new GroovyIndentation(this, pref, indentationLevel);
-            UndoEdit undo2 = indent.getIndentationEdits().apply(formattedDocument);
-            formatLength += undo2.getLength();
-
-//          if (!indentendOnly) {
-//              initCodebase();
-//              GroovyLineWrapper linewrap = new GroovyLineWrapper(this, pref, indent.getLineIndentations());
-//              UndoEdit undo3 = linewrap.getLineWrapEdits().apply(formattedDocument);
-//              formatLength += undo3.getLength();
-//          }
+        formattedDocument = new Document(contents);
+        try {
+            formatDocument();
         } catch (Exception e) {
             // swallow exception. Caused by unparseable code
             e.printStackTrace();
+        } finally {
+            disposeTokens();
+        }
+        return TokenDiff.createEdits(contents, formattedDocument.get(), 0);
+    }
+
+    /**
+     * Beautifies and indents the formatted document. The tokens and the AST
+     * are only computed again for indenting if beautifying changed anything.
+     */
+    private void formatDocument() throws Exception {
+        initCodebase();
+        if (!indentOnly) {
+            GroovyBeautifier beautifier = new GroovyBeautifier(this, pref);
+            int lengthBefore = formattedDocument.getLength();
+            String before = formattedDocument.get();
+            beautifier.getBeautifiEdits().apply(formattedDocument);
+            int lengthAfter = formattedDocument.getLength();
+            formatLength += lengthAfter - lengthBefore;
+            if (!before.equals(formattedDocument.get())) {
+                initCodebase();
+            }
+        }
+
+        GroovyIndentation indent = new GroovyIndentation(this, pref, indentationLevel);
+        UndoEdit undo2 = indent.getIndentationEdits().apply(formattedDocument);
+        formatLength += undo2.getLength();
+
+//      if (!indentendOnly) {
+//          initCodebase();
+//          GroovyLineWrapper linewrap = new GroovyLineWrapper(this, pref, indent.getLineIndentations());
+//          UndoEdit undo3 = linewrap.getLineWrapEdits().apply(formattedDocument);
+//          formatLength += undo3.getLength();
+//      }
+    }
+
+    private void disposeTokens() {
+        if (tokens != null) {
+            tokens.dispose();
+        }
+    }
+
+    /**
+     * Formats the whole members of a top level class that the selected lines
+     * belong to. The whole document is parsed once, to find the members and
+     * their lines. They are then formatted on their own, inside a stand-in
+     * class declaration, so the beautifier and the indenter only scan and
+     * parse those members instead of the whole document.
+     *
+     * @return the formatted text of the lines from regionOffset to
+     *         regionOffset + regionLength, or null if the selection does not
+     *         consist of whole members of a class
+     */
+    private String formatEnclosingMembers() throws Exception {
+        ModuleNode module = ASTTools.getASTNodeFromSource(document.get());
+        if (module == null) {
+            return null;
+        }
+        int selectionStartLine = document.getLineOfOffset(formatOffset) + 1;
+        int selectionEndLine = document.getLineOfOffset(formatOffset + formatLength) + 1;
+        ClassNode enclosing = null;
+        for (ClassNode clazz : module.getClasses()) {
+            if (!(clazz instanceof InnerClassNode) && clazz.getLineNumber() > 0
+                    && clazz.getLineNumber() < selectionStartLine && selectionEndLine < clazz.getLastLineNumber()) {
+                enclosing = clazz;
+                break;
+            }
+        }
+        if (enclosing == null || enclosing.isScript() || enclosing.isEnum() || enclosing.isAnnotationDefinition()) {
+            return null;
+        }
+
+        List<ASTNode> members = getMembers(enclosing);
+        int first = -1, last = -1;
+        for (int i = 0; i < members.size(); i++) {
+            ASTNode member = members.get(i);
+            if (member.getLastLineNumber() >= selectionStartLine && member.getLineNumber() <= selectionEndLine) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first < 0) {
+            return null;
+        }
+        int startLine = members.get(first).getLineNumber();
+        int endLine = members.get(last).getLastLineNumber();
+        int lineBefore = first > 0 ? members.get(first - 1).getLastLineNumber() : enclosing.getLineNumber();
+        int lineAfter = last < members.size() - 1 ? members.get(last + 1).getLineNumber() : enclosing.getLastLineNumber();
+        if (startLine > selectionStartLine || endLine < selectionEndLine || startLine <= lineBefore || endLine >= lineAfter) {
+            // the selection is not made of whole members or they share lines with other code
+            return null;
         }
 
-        if (formattedDocument.get().equals(document.get())) {
-            return new MultiTextEdit();
+        regionOffset = document.getLineOffset(startLine - 1);
+        IRegion endLineInfo = document.getLineInformation(endLine - 1);
+        regionLength = endLineInfo.getOffset() + endLineInfo.getLength() - regionOffset;
+
+        String newLine = new Document(document.get()).getDefaultLineDelimiter();
+        String header = (enclosing.isInterface() ? "interface" : "class") + " FormatterRegion {" + newLine;
+        String footer = newLine + "}";
+        Document membersDocument = new Document(header + document.get(regionOffset, regionLength) + footer);
+        DefaultGroovyFormatter membersFormatter = new DefaultGroovyFormatter(new TextSelection(header.length()
+                + selection.getOffset() - regionOffset, selection.getLength()), membersDocument, pref, indentOnly);
+        membersFormatter.indentationLevel = indentationLevel;
+        membersFormatter.formattedDocument = new Document(membersDocument.get());
+        try {
+            membersFormatter.formatDocument();
+        } finally {
+            membersFormatter.disposeTokens();
         }
 
-        return new ReplaceEdit(0, document.getLength(), formattedDocument.get());
+        String formatted = trimEnd(membersFormatter.formattedDocument.get());
+        if (!formatted.startsWith(header) || !formatted.endsWith(footer)
+                || formatted.length() < header.length() + footer.length()) {
+            return null;
+        }
+        return formatted.substring(header.length(), formatted.length() - footer.length());
+    }
+
+    /**
+     * @return the methods, fields and inner classes of the class that have a
+     *         source location, sorted by line, leaving out those nested in
+     *         another one
+     */
+    private List<ASTNode> getMembers(ClassNode clazz) {
+        List<ASTNode> candidates = new ArrayList<ASTNode>();
+        candidates.addAll(clazz.getMethods());
+        candidates.addAll(clazz.getDeclaredConstructors());
+        candidates.addAll(clazz.getFields());
+        for (Iterator<InnerClassNode> inners = clazz.getInnerClasses(); inners.hasNext();) {
+            candidates.add(inners.next());
+        }
+        Collections.sort(candidates, new Comparator<ASTNode>() {
+            public int compare(ASTNode n1, ASTNode n2) {
+                if (n1.getLineNumber() != n2.getLineNumber()) {
+                    return n1.getLineNumber() - n2.getLineNumber();
+                }
+                return n2.getLastLineNumber() - n1.getLastLineNumber();
+            }
+        });
+        List<ASTNode> members = new ArrayList<ASTNode>(candidates.size());
+        for (ASTNode candidate : candidates) {
+            if (candidate.getLineNumber() < 1 || candidate.getLastLineNumber() < candidate.getLineNumber()) {
+                continue;
+            }
+            ASTNode previous = members.isEmpty() ? null : members.get(members.size() - 1);
+            if (previous == null || previous.getLastLineNumber() < candidate.getLineNumber()
+                    || previous.getLastLineNumber() < candidate.getLastLineNumber()) {
+                members.add(candidate);
+            }
+        }
+        return members;
     }
 
     /**
@@ -16,7 +16,9 @@
 package org.codehaus.groovy.eclipse.refactoring.formatter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.codehaus.greclipse.GroovyTokenTypeBridge;
 import org.codehaus.groovy.antlr.GroovySourceToken;
@@ -37,9 +39,13 @@ import antlr.TokenStreamException;
  * This class provides methods to retrieve tokens for a given IDocument
  * presumed to contain Groovy source code.
  * <p>
- * A sophisticated implementation could try to work incrementally and invalidate
- * only some tokens when the document is changed. This implementation is rather
- * naive and clears the whole cache on every document change.
+ * Tokens are scanned lazily, only as far as needed to answer a request. Newline
+ * tokens after which the lexer is back in its initial state (not inside brackets
+ * or a string) are remembered as restart points. When the document changes, the
+ * tokens from the last restart point before the edit onwards are set aside and
+ * scanning starts again from there. As soon as the new scan reaches a restart
+ * point that the old tokens also had, the rest of the old tokens are reused,
+ * with their positions shifted by the edit.
  *
  * @author kdvolder
  * @created 2010-05-26
@@ -63,6 +69,79 @@ public class GroovyDocumentScanner implements IDocumentListener {
 
     private GroovyScanner tokenScanner;
 
+    /**
+     * The newline tokens after which scanning can be restarted with a new
+     * scanner, with the number of braces open at that point.
+     */
+    private final Map<Token, Integer> restartPoints = new HashMap<Token, Integer>();
+
+    /**
+     * true when the EOF token has been scanned, or scanning failed.
+     */
+    private boolean scanComplete;
+
+    /**
+     * The tokens set aside by the last document change, if they have not been
+     * reused or thrown away yet.
+     */
+    private PendingEdit pending;
+
+    /**
+     * Tokens following a document change, with the positions they had before
+     * the change.
+     */
+    private static class PendingEdit {
+        final List<Token> tokens;
+        final boolean complete;
+
+        // antlr line and column of the end of the replaced text, before and after the change
+        final int oldEndLine;
+        final int oldEndColumn;
+        int newEndLine;
+        int newEndColumn;
+
+        // index of the first of the tokens that has not been compared yet
+        int next;
+
+        PendingEdit(List<Token> tokens, boolean complete, int oldEndLine, int oldEndColumn) {
+            this.tokens = tokens;
+            this.complete = complete;
+            this.oldEndLine = oldEndLine;
+            this.oldEndColumn = oldEndColumn;
+        }
+
+        /**
+         * Move a position following the edit from before the edit to after it.
+         * @return the new line and column
+         */
+        int[] toNew(int line, int column) {
+            return new int[] {
+                    line + newEndLine - oldEndLine,
+                    line == oldEndLine ? column - oldEndColumn + newEndColumn : column
+            };
+        }
+
+        /**
+         * Move a position following the edit from after the edit to before it.
+         * @return the old line and column
+         */
+        int[] toOld(int line, int column) {
+            return new int[] {
+                    line - newEndLine + oldEndLine,
+                    line == newEndLine ? column - newEndColumn + oldEndColumn : column
+            };
+        }
+
+        void shift(GroovySourceToken token) {
+            int[] start = toNew(token.getLine(), token.getColumn());
+            token.setLine(start[0]);
+            token.setColumn(start[1]);
+            int[] end = toNew(token.getLineLast(), token.getColumnLast());
+            token.setLineLast(end[0]);
+            token.setColumnLast(end[1]);
+        }
+    }
+
     /** At most this number of scanner errors will be reported */
     private static int logLimit = 4;
 
@@ -76,43 +155,167 @@ public class GroovyDocumentScanner implements IDocumentListener {
     }
 
     public void documentChanged(DocumentEvent event) {
-        reset();
+        if (pending == null) {
+            reset();
+            return;
+        }
+        try {
+            String text = event.getText();
+            int newEnd = event.getOffset() + (text == null ? 0 : text.length());
+            int line = document.getLineOfOffset(newEnd);
+            pending.newEndLine = line + 1;
+            pending.newEndColumn = newEnd - document.getLineOffset(line) + 1;
+        } catch (BadLocationException e) {
+            reset();
+        }
     }
 
-    public void documentAboutToBeChanged(DocumentEvent event) {}
+    /**
+     * Sets aside the tokens from the last restart point before the edit,
+     * while the positions of the old tokens can still be computed.
+     */
+    public void documentAboutToBeChanged(DocumentEvent event) {
+        discardPending();
+        if (tokens == null) {
+            return;
+        }
+        try {
+            int startLine = document.getLineOfOffset(event.getOffset()) + 1;
+            int restart = tokens.size();
+            // the newline token before the restart point must end on an earlier line,
+            // otherwise the edit might make it longer
+            while (restart > 0 && !(restartPoints.containsKey(tokens.get(restart - 1))
+                    && ((GroovySourceToken) tokens.get(restart - 1)).getLineLast() < startLine)) {
+                restart--;
+            }
+            int oldEnd = event.getOffset() + event.getLength();
+            int endLine = document.getLineOfOffset(oldEnd);
+            List<Token> damaged = tokens.subList(restart, tokens.size());
+            pending = new PendingEdit(new ArrayList<Token>(damaged), scanComplete, endLine + 1, oldEnd
+                    - document.getLineOffset(endLine) + 1);
+            damaged.clear();
+            scanComplete = false;
+            tokenScanner = null;
+        } catch (BadLocationException e) {
+            reset();
+        }
+    }
 
     /**
      * This method must be called internally before operating on the list of
      * scanned tokens, to ensure that we have scanned the file at least upto the
      * position that we are interested in.
      * <p>
-     * Current implementation is very naive and just scans the whole file at
-     * once. A smarter implementation could stop scanning when the position of
-     * interest is reached, and keep enough state to be able to scan onward
-     * later if a request for tokens requires it.
+     * Scanning stops at the first restart point past that position, so that it
+     * can be resumed later if a request for tokens requires it.
      */
     protected void ensureScanned(int end) {
         if (tokens == null) {
-            // We haven't started scanning yet. Initialise the scanner and token list.
-            tokenScanner = new GroovyScanner(document.get());
-            tokens = getTokensIncludingEOF();
+            // We haven't started scanning yet. Initialise the token list.
+            tokens = new ArrayList<Token>();
+        }
+        while (!scanComplete && !isScannedTo(end)) {
+            scanToNextRestartPoint();
         }
     }
 
-    private List<Token> getTokensIncludingEOF() {
-        List<Token> result = new ArrayList<Token>();
-        Token token;
+    /**
+     * @return true if a token starting at or after the offset has been scanned
+     */
+    private boolean isScannedTo(int offset) {
+        if (tokens.isEmpty()) {
+            return false;
+        }
+        Token last = tokens.get(tokens.size() - 1);
         try {
+            return GroovyScanner.getOffset(document, last.getLine(), last.getColumn()) >= offset;
+        } catch (BadLocationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scan tokens until the next restart point or the end of the document.
+     */
+    private void scanToNextRestartPoint() {
+        try {
+            if (tokenScanner == null) {
+                // scanning always stops at a restart point
+                int resumeOffset = 0;
+                int depth = 0;
+                if (!tokens.isEmpty()) {
+                    GroovySourceToken last = (GroovySourceToken) tokens.get(tokens.size() - 1);
+                    resumeOffset = GroovyScanner.getOffset(document, last.getLineLast(), last.getColumnLast());
+                    depth = restartPoints.get(last);
+                }
+                tokenScanner = new GroovyScanner(document, resumeOffset, depth);
+            }
+            Token token;
             do {
                 token = nextToken();
-                result.add(token);
+                tokens.add(token);
+                int depth = token.getType() == GroovyTokenTypeBridge.NLS ? tokenScanner.getRestartDepth() : -1;
+                if (depth >= 0) {
+                    restartPoints.put(token, depth);
+                    if (pending != null) {
+                        resynchronize((GroovySourceToken) token);
+                    }
+                    return;
+                }
             } while (token.getType() != GroovyTokenTypeBridge.EOF);
         } catch (Exception e) {
             if (logLimit-- > 0) {
                 Util.log(e);
             }
         }
-        return result;
+        scanComplete = true;
+        discardPending();
+    }
+
+    /**
+     * If the tokens set aside by the last edit have a restart point at the same
+     * place and with the same number of open braces as the one just scanned,
+     * the lexer would produce the same tokens again from here on, so the set
+     * aside tokens after it are used instead.
+     */
+    private void resynchronize(GroovySourceToken restartPoint) {
+        int line = restartPoint.getLineLast();
+        int column = restartPoint.getColumnLast();
+        if (line < pending.newEndLine || (line == pending.newEndLine && column < pending.newEndColumn)) {
+            // still in the edited text
+            return;
+        }
+        int[] old = pending.toOld(line, column);
+        List<Token> oldTokens = pending.tokens;
+        while (pending.next < oldTokens.size()) {
+            GroovySourceToken oldToken = (GroovySourceToken) oldTokens.get(pending.next);
+            if (oldToken.getLineLast() > old[0] || (oldToken.getLineLast() == old[0] && oldToken.getColumnLast() > old[1])) {
+                // the old token ends later, maybe the next restart point matches
+                return;
+            }
+            pending.next++;
+            Integer oldDepth = restartPoints.remove(oldToken);
+            if (oldDepth != null && oldDepth.equals(restartPoints.get(restartPoint))
+                    && oldToken.getLineLast() == old[0] && oldToken.getColumnLast() == old[1]) {
+                for (Token token : oldTokens.subList(pending.next, oldTokens.size())) {
+                    pending.shift((GroovySourceToken) token);
+                    tokens.add(token);
+                }
+                scanComplete = pending.complete;
+                tokenScanner = null;
+                pending = null;
+                return;
+            }
+        }
+        // went past all the old tokens without finding a match
+        discardPending();
+    }
+
+    private void discardPending() {
+        if (pending != null) {
+            restartPoints.keySet().removeAll(pending.tokens);
+            pending = null;
+        }
     }
 
     private Token nextToken() throws TokenStreamException, BadLocationException {
@@ -129,11 +332,15 @@ public class GroovyDocumentScanner implements IDocumentListener {
     }
 
     /**
-     * Called upon initialisation and upon any change to the document to
-     * invalidate the list of cached tokens.
+     * Called upon initialisation, and when a change to the document could not
+     * be handled incrementally, to invalidate the list of cached tokens.
      */
-    private void reset() {
+    protected void reset() {
         tokens = null;
+        tokenScanner = null;
+        scanComplete = false;
+        pending = null;
+        restartPoints.clear();
     }
 
     /**
@@ -261,7 +468,8 @@ public class GroovyDocumentScanner implements IDocumentListener {
                 endTokenIndex = endTokenIndex - 1;
             }
             Assert.isTrue(startTokenIndex <= endTokenIndex);
-            return tokens.subList(startTokenIndex, endTokenIndex + 1);
+            // a copy, since scanning further on changes the list
+            return new ArrayList<Token>(tokens.subList(startTokenIndex, endTokenIndex + 1));
         } catch (BadLocationException e) {
             throw new Error(e);
         }
@@ -25,6 +25,7 @@ import org.codehaus.groovy.antlr.parser.GroovyLexer;
 import org.codehaus.groovy.eclipse.core.GroovyCore;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 
 import antlr.Token;
@@ -65,6 +66,18 @@ public class KlenkDocumentScanner extends GroovyDocumentScanner {
         super(doc);
     }
 
+    /**
+     * The tokens and lines are always scanned all at once, so simply throw
+     * them away when the document changes.
+     */
+    @Override
+    public void documentAboutToBeChanged(DocumentEvent event) {}
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        reset();
+    }
+
     @Override
     protected void ensureScanned(int end) {
         if (tokens != null)
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2003-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse.refactoring.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+
+/**
+ * Computes the edits that turn a piece of text into its formatted version.
+ * <p>
+ * Both texts are split into words (runs of identifier characters) and single
+ * punctuation characters, ignoring whitespace. The two token sequences are
+ * matched up with Myers' difference algorithm, and an edit is created for each
+ * stretch of text between matching tokens that differs. Formatting mostly
+ * changes whitespace, so this gives small edits that leave markers and the
+ * undo history of untouched code alone.
+ */
+public class TokenDiff {
+
+    /**
+     * Beyond this number of inserted and removed tokens, the text between the
+     * first and the last difference is replaced as a whole.
+     */
+    private static final int MAX_DIFFERENCES = 1000;
+
+    private final String original;
+    private final String formatted;
+    private final Tokens originalTokens;
+    private final Tokens formattedTokens;
+
+    private TokenDiff(String original, String formatted) {
+        this.original = original;
+        this.formatted = formatted;
+        this.originalTokens = new Tokens(original);
+        this.formattedTokens = new Tokens(formatted);
+    }
+
+    /**
+     * @param offset the offset of the original text in its document, added to
+     *        the offsets of all the edits
+     * @return the edits turning the original text into the formatted text, an
+     *         empty edit if they are the same
+     */
+    public static MultiTextEdit createEdits(String original, String formatted, int offset) {
+        MultiTextEdit edits = new MultiTextEdit();
+        if (!original.equals(formatted)) {
+            new TokenDiff(original, formatted).addEdits(edits, offset);
+        }
+        return edits;
+    }
+
+    private void addEdits(MultiTextEdit edits, int offset) {
+        int[] matches = match();
+        int originalEnd = 0, formattedEnd = 0;
+        for (int i = 0; i < matches.length; i++) {
+            int j = matches[i];
+            if (j >= 0) {
+                addEdit(edits, offset, originalEnd, originalTokens.starts[i], formattedEnd, formattedTokens.starts[j]);
+                originalEnd = originalTokens.ends[i];
+                formattedEnd = formattedTokens.ends[j];
+            }
+        }
+        addEdit(edits, offset, originalEnd, original.length(), formattedEnd, formatted.length());
+    }
+
+    /**
+     * Adds an edit replacing the original text between start and end by the
+     * formatted text between start and end, if they differ
+     */
+    private void addEdit(MultiTextEdit edits, int offset, int originalStart, int originalEnd, int formattedStart,
+            int formattedEnd) {
+        while (originalStart < originalEnd && formattedStart < formattedEnd
+                && original.charAt(originalStart) == formatted.charAt(formattedStart)) {
+            originalStart++;
+            formattedStart++;
+        }
+        while (originalStart < originalEnd && formattedStart < formattedEnd
+                && original.charAt(originalEnd - 1) == formatted.charAt(formattedEnd - 1)) {
+            originalEnd--;
+            formattedEnd--;
+        }
+        if (originalStart < originalEnd || formattedStart < formattedEnd) {
+            edits.addChild(new ReplaceEdit(offset + originalStart, originalEnd - originalStart, formatted.substring(
+                    formattedStart, formattedEnd)));
+        }
+    }
+
+    /**
+     * @return for each original token, the index of the matching formatted
+     *         token or -1
+     */
+    private int[] match() {
+        int n = originalTokens.size, m = formattedTokens.size;
+        int[] matches = new int[n];
+        int prefix = 0;
+        while (prefix < n && prefix < m && same(prefix, prefix)) {
+            matches[prefix] = prefix;
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix && same(n - 1 - suffix, m - 1 - suffix)) {
+            matches[n - 1 - suffix] = m - 1 - suffix;
+            suffix++;
+        }
+        for (int i = prefix; i < n - suffix; i++) {
+            matches[i] = -1;
+        }
+        if (!matchMiddle(matches, prefix, n - suffix, prefix, m - suffix)) {
+            // too different, the whole middle part will be replaced
+            for (int i = prefix; i < n - suffix; i++) {
+                matches[i] = -1;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Myers' greedy algorithm over the original tokens from aStart to aEnd and
+     * the formatted tokens from bStart to bEnd
+     *
+     * @return false if there are more than {@link #MAX_DIFFERENCES} differences
+     */
+    private boolean matchMiddle(int[] matches, int aStart, int aEnd, int bStart, int bEnd) {
+        int n = aEnd - aStart, m = bEnd - bStart;
+        int max = Math.min(n + m, MAX_DIFFERENCES);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        // v for each number of differences, from -d to d
+        List<int[]> trace = new ArrayList<int[]>();
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && same(aStart + x, bStart + y)) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(matches, trace, d, n, m, aStart, bStart);
+                    return true;
+                }
+            }
+            int[] band = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, band, 0, band.length);
+            trace.add(band);
+        }
+        return false;
+    }
+
+    private void backtrack(int[] matches, List<int[]> trace, int differences, int x, int y, int aStart, int bStart) {
+        for (int d = differences; d > 0; d--) {
+            int[] previous = trace.get(d - 1);
+            int k = x - y;
+            int previousK;
+            if (k == -d || (k != d && previous[k - 1 + d - 1] < previous[k + 1 + d - 1])) {
+                previousK = k + 1;
+            } else {
+                previousK = k - 1;
+            }
+            int previousX = previous[previousK + d - 1];
+            int previousY = previousX - previousK;
+            // the diagonal run ends at (x, y) and starts after the step from the previous position
+            int snakeX = previousK == k + 1 ? previousX : previousX + 1;
+            while (x > snakeX) {
+                x--;
+                y--;
+                matches[aStart + x] = bStart + y;
+            }
+            x = previousX;
+            y = previousY;
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            matches[aStart + x] = bStart + y;
+        }
+    }
+
+    private boolean same(int i, int j) {
+        int length = originalTokens.ends[i] - originalTokens.starts[i];
+        return length == formattedTokens.ends[j] - formattedTokens.starts[j]
+                && original.regionMatches(originalTokens.starts[i], formatted, formattedTokens.starts[j], length);
+    }
+
+    /**
+     * The start and end offsets of the tokens of a text
+     */
+    private static class Tokens {
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int size;
+
+        Tokens(String text) {
+            int i = 0, length = text.length();
+            while (i < length) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                int start = i++;
+                if (Character.isJavaIdentifierPart(c)) {
+                    while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                        i++;
+                    }
+                }
+                add(start, i);
+            }
+        }
+
+        private void add(int start, int end) {
+            if (size == starts.length) {
+                int[] newStarts = new int[size * 2];
+                int[] newEnds = new int[size * 2];
+                System.arraycopy(starts, 0, newStarts, 0, size);
+                System.arraycopy(ends, 0, newEnds, 0, size);
+                starts = newStarts;
+                ends = newEnds;
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.codehaus.groovy.eclipse.editor.GroovyOutlineTools;
 import org.codehaus.groovy.eclipse.editor.GroovyTextTools;
 import org.codehaus.groovy.eclipse.preferences.AskToConvertLegacyProjects;
 import org.codehaus.groovy.eclipse.refactoring.actions.DelegatingCleanUpPostSaveListener;
+import org.codehaus.groovy.eclipse.refactoring.actions.TypeNameIndex;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
@@ -246,6 +247,7 @@ public class GroovyPlugin extends AbstractUIPlugin {
         outlineTools.dispose();
         outlineTools = null;
         DelegatingCleanUpPostSaveListener.uninstallCleanUp();
+        TypeNameIndex.shutdown();
         removeMonospaceFontListener();
 
         // undo the preference store damage
@@ -16,9 +16,18 @@
 
 package org.codehaus.groovy.eclipse.editor.highlighting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
 
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.stmt.Statement;
 import org.codehaus.groovy.eclipse.GroovyPlugin;
 import org.codehaus.groovy.eclipse.core.GroovyCore;
 import org.codehaus.groovy.eclipse.core.preferences.PreferenceConstants;
@@ -26,9 +35,31 @@ import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorFactory;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.Position;
 
 public class GatherSemanticReferences {
 
+    /**
+     * The positions found for one version of the contents of a unit, kept so that
+     * the next pass only needs to look at the member that was edited
+     */
+    public static class Snapshot {
+        final char[] contents;
+        final List<HighlightedTypedPosition> positions;
+
+        Snapshot(char[] contents, Collection<HighlightedTypedPosition> positions) {
+            this.contents = contents;
+            this.positions = Collections.unmodifiableList(new ArrayList<HighlightedTypedPosition>(positions));
+        }
+
+        /**
+         * @return the positions, sorted by offset
+         */
+        public List<HighlightedTypedPosition> getPositions() {
+            return positions;
+        }
+    }
+
     private final GroovyCompilationUnit unit;
     private final IPreferenceStore preferences;
     public GatherSemanticReferences(GroovyCompilationUnit unit) {
@@ -37,24 +68,127 @@ public class GatherSemanticReferences {
     }
 
     public Collection<HighlightedTypedPosition> findSemanticHighlightingReferences() {
-        if (preferences.getBoolean(PreferenceConstants.GROOVY_SEMANTIC_HIGHLIGHTING) /*
-                                                                                      * &&
-                                                                                      * unit
-                                                                                      * .
-                                                                                      * isOnBuildPath
-                                                                                      * (
-                                                                                      * )
-                                                                                      */) {
-
-            try {
-                SemanticHighlightingReferenceRequestor typeRequestor = new SemanticHighlightingReferenceRequestor(unit.getContents());
-                TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                visitor.visitCompilationUnit(typeRequestor);
-                return typeRequestor.typedPosition;
-            } catch (Exception e) {
-                GroovyCore.logException("Exception with semantic highlighting", e);
-            }
+        Snapshot snapshot = findSemanticHighlightingReferences(null);
+        if (snapshot != null) {
+            return snapshot.getPositions();
         }
         return Collections.emptyList();
     }
+
+    /**
+     * Finds the positions to highlight, looking only inside the method or field that
+     * was edited since the previous snapshot if that is possible. All other members
+     * keep the positions they had, shifted by the length of the edit. Everything is
+     * looked at again if there is no previous snapshot or if the edit is not confined
+     * to a single method body or field initializer, since then declarations that other
+     * members depend on may have changed.
+     *
+     * @param previous the result of the previous pass over this unit, or null
+     * @return the new snapshot, or null if semantic highlighting is disabled or failed
+     */
+    public Snapshot findSemanticHighlightingReferences(Snapshot previous) {
+        if (!preferences.getBoolean(PreferenceConstants.GROOVY_SEMANTIC_HIGHLIGHTING)) {
+            return null;
+        }
+        try {
+            char[] contents = unit.getContents();
+            int[] edit = previous != null ? findEdit(previous.contents, contents) : null;
+            if (edit != null && !isInsideMemberBody(unit.getModuleNode(), edit[0], edit[2])) {
+                edit = null;
+            }
+
+            SemanticHighlightingReferenceRequestor typeRequestor = edit == null ?
+                    new SemanticHighlightingReferenceRequestor(contents) :
+                        new SemanticHighlightingReferenceRequestor(contents, edit[0], edit[2]);
+            TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
+            visitor.visitCompilationUnit(typeRequestor);
+
+            if (edit != null) {
+                int delta = edit[2] - edit[1];
+                for (Position member : typeRequestor.skippedMembers) {
+                    int shift = member.getOffset() >= edit[0] ? delta : 0;
+                    copyPositions(previous.positions, member.getOffset() - shift, member.getOffset() + member.getLength() - shift,
+                            shift, typeRequestor.typedPosition);
+                }
+            }
+            return new Snapshot(contents, typeRequestor.typedPosition);
+        } catch (Exception e) {
+            GroovyCore.logException("Exception with semantic highlighting", e);
+            return null;
+        }
+    }
+
+    /**
+     * Compares the old and new contents from both ends
+     *
+     * @return the start of the edit, its end in the old contents and its end in
+     *         the new contents, or null if the contents are the same
+     */
+    static int[] findEdit(char[] oldContents, char[] newContents) {
+        int max = Math.min(oldContents.length, newContents.length);
+        int prefix = 0;
+        while (prefix < max && oldContents[prefix] == newContents[prefix]) {
+            prefix++;
+        }
+        if (prefix == oldContents.length && prefix == newContents.length) {
+            return null;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && oldContents[oldContents.length - 1 - suffix] == newContents[newContents.length - 1 - suffix]) {
+            suffix++;
+        }
+        return new int[] { prefix, oldContents.length - suffix, newContents.length - suffix };
+    }
+
+    /**
+     * @return true if the region lies strictly inside the code block of a method or
+     *         inside the initializer of a field
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean isInsideMemberBody(ModuleNode module, int start, int end) {
+        if (module == null || module.encounteredUnrecoverableError()) {
+            return false;
+        }
+        for (ClassNode clazz : (Iterable<ClassNode>) module.getClasses()) {
+            List<MethodNode> methods = new ArrayList<MethodNode>(clazz.getMethods());
+            methods.addAll(clazz.getDeclaredConstructors());
+            for (MethodNode method : methods) {
+                Statement code = method.getCode();
+                if (code != null && code.getEnd() > 0 && code.getStart() < start && end < code.getEnd()) {
+                    return true;
+                }
+            }
+            for (FieldNode field : (Iterable<FieldNode>) clazz.getFields()) {
+                Expression init = field.getInitialExpression();
+                if (init != null && init.getEnd() > 0 && init.getStart() <= start && end <= init.getEnd()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the positions lying between start and end, moving them by shift
+     */
+    private static void copyPositions(List<HighlightedTypedPosition> positions, int start, int end, int shift,
+            SortedSet<HighlightedTypedPosition> result) {
+        int low = 0, high = positions.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions.get(mid).getOffset() < start) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < positions.size(); i++) {
+            HighlightedTypedPosition pos = positions.get(i);
+            if (pos.getOffset() + pos.getLength() > end) {
+                break;
+            }
+            result.add(new HighlightedTypedPosition(pos.getOffset() + shift, pos.getLength(), pos.kind));
+        }
+    }
 }
\ No newline at end of file
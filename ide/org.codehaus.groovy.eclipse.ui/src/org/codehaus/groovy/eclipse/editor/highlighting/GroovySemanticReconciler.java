@@ -22,15 +22,16 @@ import greclipse.org.eclipse.jdt.internal.ui.javaeditor.HighlightingStyle;
 import greclipse.org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingPresenter;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.codehaus.groovy.eclipse.GroovyPlugin;
 import org.codehaus.groovy.eclipse.core.preferences.PreferenceConstants;
 import org.codehaus.groovy.eclipse.editor.GroovyColorManager;
 import org.codehaus.groovy.eclipse.editor.GroovyEditor;
+import org.codehaus.groovy.eclipse.editor.highlighting.GatherSemanticReferences.Snapshot;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
@@ -85,6 +86,17 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
      */
     private boolean fIsReconciling= false;
 
+    /**
+     * the result of the last reconcile, so that the next one only needs to
+     * look at the member that was edited
+     */
+    private Snapshot lastSnapshot;
+
+    private static final Comparator<HighlightedPosition> BY_OFFSET = new Comparator<HighlightedPosition>() {
+        public int compare(HighlightedPosition p1, HighlightedPosition p2) {
+            return p1.getOffset() - p2.getOffset();
+        }
+    };
 
     public GroovySemanticReconciler() {
         RGB rgbString = PreferenceConverter.getColor(GroovyPlugin.getDefault().getPreferenceStore(),
@@ -123,6 +135,7 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
         presenter.uninstall();
         presenter = null;
         editor = null;
+        lastSnapshot = null;
     }
 
     public void aboutToBeReconciled() { }
@@ -146,24 +159,28 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
             if (unit != null) {
                 presenter.setCanceled(progressMonitor.isCanceled());
                 GatherSemanticReferences finder = new GatherSemanticReferences(unit);
-                Collection<HighlightedTypedPosition> semanticReferences = finder.findSemanticHighlightingReferences();
+                // a forced reconcile may mean that other units have changed, so look at everything again
+                Snapshot snapshot = finder.findSemanticHighlightingReferences(forced ? null : lastSnapshot);
+                lastSnapshot = snapshot;
+                List<HighlightedTypedPosition> semanticReferences = snapshot != null ? snapshot.getPositions()
+                        : Collections.<HighlightedTypedPosition> emptyList();
                 progressMonitor.worked(50);
 
-                List<HighlightedPosition> newPositions = new LinkedList<HighlightedPosition>();
-                List<HighlightedPosition> removedPositions = new LinkedList<HighlightedPosition>();
-
+                List<HighlightedPosition> oldPositions = new ArrayList<HighlightedPosition>(presenter.fPositions.size());
                 for (HighlightedPosition oldPosition : (Iterable<HighlightedPosition>) presenter.fPositions) {
                     if (oldPosition != null) {
-                        removedPositions.add(oldPosition);
+                        oldPositions.add(oldPosition);
                     }
                 }
+                Collections.sort(oldPositions, BY_OFFSET);
                 progressMonitor.worked(20);
-                List<HighlightedPosition> semanticReferencesHighlighted = new ArrayList<HighlightedPosition>(semanticReferences.size());
+                List<HighlightedPosition> currentPositions = new ArrayList<HighlightedPosition>(semanticReferences.size());
                 for (HighlightedTypedPosition pos : semanticReferences) {
-                    HighlightedPosition range = createHighlightedPosition(pos);
-                    maybeAddPosition(newPositions, removedPositions, range);
-                    semanticReferencesHighlighted.add(range);
+                    currentPositions.add(createHighlightedPosition(pos));
                 }
+                List<HighlightedPosition> newPositions = new ArrayList<HighlightedPosition>();
+                List<HighlightedPosition> removedPositions = new ArrayList<HighlightedPosition>();
+                diffPositions(oldPositions, currentPositions, newPositions, removedPositions);
                 progressMonitor.worked(20);
 
                 TextPresentation textPresentation = null;
@@ -208,20 +225,48 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
         return null;
     }
 
-    private void maybeAddPosition(List<HighlightedPosition> newPositions, List<HighlightedPosition> oldPositionsCopy,
-            HighlightedPosition maybePosition) {
-        boolean found = false;
-        for (Iterator<HighlightedPosition> positionIter = oldPositionsCopy.iterator(); positionIter.hasNext();) {
-            HighlightedPosition oldPosition = positionIter.next();
-            if (oldPosition.isEqual(maybePosition.offset, maybePosition.length, maybePosition.getHighlighting())) {
-                positionIter.remove();
-                found = true;
-                break;
+    /**
+     * Merges the old and current positions, both sorted by offset. Current positions
+     * that are not already highlighted go into newPositions and old positions that
+     * are no longer current go into removedPositions.
+     */
+    private void diffPositions(List<HighlightedPosition> oldPositions, List<HighlightedPosition> currentPositions,
+            List<HighlightedPosition> newPositions, List<HighlightedPosition> removedPositions) {
+        int i = 0, j = 0;
+        while (i < oldPositions.size() && j < currentPositions.size()) {
+            int oldOffset = oldPositions.get(i).getOffset();
+            int currentOffset = currentPositions.get(j).getOffset();
+            if (oldOffset < currentOffset) {
+                removedPositions.add(oldPositions.get(i++));
+            } else if (oldOffset > currentOffset) {
+                newPositions.add(currentPositions.get(j++));
+            } else {
+                // there may be several positions at the same offset, match them up
+                int oldEnd = i;
+                while (oldEnd < oldPositions.size() && oldPositions.get(oldEnd).getOffset() == oldOffset) {
+                    oldEnd++;
+                }
+                List<HighlightedPosition> unmatched = new ArrayList<HighlightedPosition>(oldPositions.subList(i, oldEnd));
+                for (; j < currentPositions.size() && currentPositions.get(j).getOffset() == currentOffset; j++) {
+                    HighlightedPosition current = currentPositions.get(j);
+                    boolean found = false;
+                    for (Iterator<HighlightedPosition> positionIter = unmatched.iterator(); positionIter.hasNext();) {
+                        if (positionIter.next().isEqual(current.offset, current.length, current.getHighlighting())) {
+                            positionIter.remove();
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        newPositions.add(current);
+                    }
+                }
+                removedPositions.addAll(unmatched);
+                i = oldEnd;
             }
         }
-        if (!found) {
-            newPositions.add(maybePosition);
-        }
+        removedPositions.addAll(oldPositions.subList(i, oldPositions.size()));
+        newPositions.addAll(currentPositions.subList(j, currentPositions.size()));
     }
 
 
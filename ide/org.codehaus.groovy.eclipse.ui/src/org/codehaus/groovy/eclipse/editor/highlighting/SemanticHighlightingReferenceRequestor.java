@@ -16,6 +16,8 @@
 
 package org.codehaus.groovy.eclipse.editor.highlighting;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -51,8 +53,32 @@ public class SemanticHighlightingReferenceRequestor extends SemanticReferenceReq
 
     final char[] contents;
 
+    /**
+     * start and end of the edited region, members that do not touch it are
+     * skipped. Both are -1 if all members are visited.
+     */
+    private final int editStart;
+    private final int editEnd;
+
+    /**
+     * the source ranges of the members that were skipped
+     */
+    final List<Position> skippedMembers = new ArrayList<Position>();
+
     public SemanticHighlightingReferenceRequestor(char[] contents) {
+        this(contents, -1, -1);
+    }
+
+    /**
+     * Creates a requestor that only looks inside the members whose source range
+     * touches the region from editStart to editEnd. The ranges of the other
+     * members are available in {@link #skippedMembers} so that their positions
+     * can be taken from a previous pass.
+     */
+    public SemanticHighlightingReferenceRequestor(char[] contents, int editStart, int editEnd) {
         this.contents = contents;
+        this.editStart = editStart;
+        this.editEnd = editEnd;
     }
 
     public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result,
@@ -67,6 +93,12 @@ public class SemanticHighlightingReferenceRequestor extends SemanticReferenceReq
             return VisitStatus.CONTINUE;
         }
 
+        if (editStart >= 0 && (node instanceof MethodNode || node instanceof FieldNode)
+                && (node.getEnd() < editStart || node.getStart() > editEnd)) {
+            skippedMembers.add(new Position(node.getStart(), node.getEnd() - node.getStart()));
+            return VisitStatus.CANCEL_BRANCH;
+        }
+
         HighlightedTypedPosition pos = null;
         if (result.confidence == TypeConfidence.UNKNOWN && node.getEnd() > 0) {
             // GRECLIPSE-1327 check to see if this is a synthetic call() on a closure reference
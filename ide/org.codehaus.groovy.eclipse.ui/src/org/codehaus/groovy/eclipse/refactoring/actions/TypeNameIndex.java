@@ -0,0 +1,316 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse.refactoring.actions;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.groovy.eclipse.core.GroovyCore;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.internal.corext.util.TypeNameMatchCollector;
+
+/**
+ * Maps the simple names of the types visible from a project to the types, so
+ * that organize imports and the missing import quick fix do not have to search
+ * the whole classpath each time they run.
+ * <p>
+ * The index of a project is built with a single search for all type names the
+ * first time it is used, and is held through a soft reference. Afterwards it
+ * is kept up to date from Java element deltas: the types of a compilation unit
+ * that is added, removed or has types added or removed are indexed again the
+ * next time the index is used, and any change to a classpath, to a jar or class
+ * folder, or to a whole package discards the indexes of all projects.
+ */
+public class TypeNameIndex implements IElementChangedListener {
+
+    private static TypeNameIndex instance;
+
+    public static synchronized TypeNameIndex getInstance() {
+        if (instance == null) {
+            instance = new TypeNameIndex();
+            // reconcile deltas keep the index in line with the types of unsaved editors
+            JavaCore.addElementChangedListener(instance, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            JavaCore.removeElementChangedListener(instance);
+            instance = null;
+        }
+    }
+
+    private final Map<IJavaProject, SoftReference<ProjectIndex>> indexes = new ConcurrentHashMap<IJavaProject, SoftReference<ProjectIndex>>();
+
+    private TypeNameIndex() {
+        // use getInstance()
+    }
+
+    /**
+     * @return the types visible from the project with one of the given simple
+     *         names
+     */
+    public List<TypeNameMatch> findTypes(IJavaProject project, Collection<String> simpleNames) throws JavaModelException {
+        ProjectIndex index;
+        synchronized (indexes) {
+            SoftReference<ProjectIndex> ref = indexes.get(project);
+            index = ref != null ? ref.get() : null;
+            if (index == null) {
+                index = new ProjectIndex(project);
+                indexes.put(project, new SoftReference<ProjectIndex>(index));
+            }
+        }
+        return index.find(simpleNames);
+    }
+
+    public void elementChanged(ElementChangedEvent event) {
+        IJavaElementDelta delta = event.getDelta();
+        if (delta != null && !indexes.isEmpty()) {
+            processDelta(delta);
+        }
+    }
+
+    private void processDelta(IJavaElementDelta delta) {
+        int flags = delta.getFlags();
+        switch (delta.getElement().getElementType()) {
+            case IJavaElement.JAVA_MODEL:
+                break;
+            case IJavaElement.JAVA_PROJECT:
+                if (delta.getKind() != IJavaElementDelta.CHANGED
+                        || (flags & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+                                | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED)) != 0) {
+                    discardAll();
+                    return;
+                }
+                break;
+            case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+                if (delta.getKind() != IJavaElementDelta.CHANGED
+                        || (flags & (IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH
+                                | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_REORDER)) != 0) {
+                    discardAll();
+                    return;
+                }
+                break;
+            case IJavaElement.PACKAGE_FRAGMENT:
+                if (delta.getKind() != IJavaElementDelta.CHANGED) {
+                    discardAll();
+                    return;
+                }
+                break;
+            case IJavaElement.COMPILATION_UNIT:
+                if (typesChanged(delta)) {
+                    unitChanged((ICompilationUnit) delta.getElement());
+                }
+                return;
+            case IJavaElement.CLASS_FILE:
+                // a class folder
+                discardAll();
+                return;
+            default:
+                return;
+        }
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            processDelta(child);
+        }
+    }
+
+    /**
+     * @return true unless the delta tells that the types of the compilation
+     *         unit and their modifiers are the same as before
+     */
+    private boolean typesChanged(IJavaElementDelta delta) {
+        if (delta.getKind() != IJavaElementDelta.CHANGED) {
+            return true;
+        }
+        if (delta.getElement().getElementType() == IJavaElement.COMPILATION_UNIT) {
+            int flags = delta.getFlags();
+            if ((flags & IJavaElementDelta.F_CONTENT) != 0 && (flags & IJavaElementDelta.F_FINE_GRAINED) == 0) {
+                // no details
+                return true;
+            }
+            if ((flags & IJavaElementDelta.F_PRIMARY_WORKING_COPY) != 0) {
+                return true;
+            }
+        } else if ((delta.getFlags() & IJavaElementDelta.F_MODIFIERS) != 0) {
+            return true;
+        }
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            if (child.getElement().getElementType() == IJavaElement.TYPE && typesChanged(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unitChanged(ICompilationUnit unit) {
+        if (unit.getOwner() != null) {
+            // types of working copies with their own owner are not visible to others
+            return;
+        }
+        for (SoftReference<ProjectIndex> ref : indexes.values()) {
+            ProjectIndex index = ref.get();
+            if (index != null) {
+                index.unitChanged(unit);
+            }
+        }
+    }
+
+    private void discardAll() {
+        synchronized (indexes) {
+            indexes.clear();
+        }
+    }
+
+    private static class ProjectIndex {
+        private final IJavaProject project;
+
+        private final IJavaSearchScope scope;
+
+        // simple name > types, null until built
+        private Map<String, List<TypeNameMatch>> types;
+
+        // source units > the simple names of their types
+        private final Map<ICompilationUnit, List<String>> namesByUnit = new HashMap<ICompilationUnit, List<String>>();
+
+        // units to index again before the next lookup, filled by the delta listener without taking the lock of the index
+        private final Set<ICompilationUnit> changedUnits = Collections.synchronizedSet(new HashSet<ICompilationUnit>());
+
+        ProjectIndex(IJavaProject project) {
+            this.project = project;
+            this.scope = SearchEngine.createJavaSearchScope(new IJavaElement[] { project });
+        }
+
+        void unitChanged(ICompilationUnit unit) {
+            changedUnits.add(unit);
+        }
+
+        synchronized List<TypeNameMatch> find(Collection<String> simpleNames) throws JavaModelException {
+            if (types == null) {
+                build();
+            }
+            updateChangedUnits();
+            List<TypeNameMatch> found = new ArrayList<TypeNameMatch>();
+            for (String simpleName : simpleNames) {
+                List<TypeNameMatch> matches = types.get(simpleName);
+                if (matches != null) {
+                    found.addAll(matches);
+                }
+            }
+            return found;
+        }
+
+        private void build() throws JavaModelException {
+            // units changed from here on are indexed again afterwards
+            changedUnits.clear();
+            List<TypeNameMatch> allTypes = new ArrayList<TypeNameMatch>();
+            new SearchEngine().searchAllTypeNames(null, SearchPattern.R_EXACT_MATCH, null, SearchPattern.R_PREFIX_MATCH,
+                    IJavaSearchConstants.TYPE, scope, new TypeNameMatchCollector(allTypes),
+                    IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, null);
+            types = new HashMap<String, List<TypeNameMatch>>(allTypes.size());
+            for (TypeNameMatch match : allTypes) {
+                add(match);
+            }
+        }
+
+        private void updateChangedUnits() {
+            ICompilationUnit[] units;
+            synchronized (changedUnits) {
+                if (changedUnits.isEmpty()) {
+                    return;
+                }
+                units = changedUnits.toArray(new ICompilationUnit[changedUnits.size()]);
+                changedUnits.clear();
+            }
+            for (ICompilationUnit unit : units) {
+                remove(unit);
+                if (unit.exists() && scope.encloses(unit)) {
+                    try {
+                        for (IType type : unit.getAllTypes()) {
+                            add(SearchEngine.createTypeNameMatch(type, type.getFlags()));
+                        }
+                    } catch (JavaModelException e) {
+                        GroovyCore.logException("Problem indexing the types of " + unit.getElementName() + " for project "
+                                + project.getElementName(), e);
+                    }
+                }
+            }
+        }
+
+        private void add(TypeNameMatch match) {
+            String simpleName = match.getSimpleTypeName();
+            List<TypeNameMatch> matches = types.get(simpleName);
+            if (matches == null) {
+                // most simple names belong to a single type
+                matches = new ArrayList<TypeNameMatch>(1);
+                types.put(simpleName, matches);
+            }
+            matches.add(match);
+
+            ICompilationUnit unit = match.getType().getCompilationUnit();
+            if (unit != null) {
+                List<String> names = namesByUnit.get(unit);
+                if (names == null) {
+                    names = new ArrayList<String>(1);
+                    namesByUnit.put(unit, names);
+                }
+                names.add(simpleName);
+            }
+        }
+
+        private void remove(ICompilationUnit unit) {
+            List<String> names = namesByUnit.remove(unit);
+            if (names == null) {
+                return;
+            }
+            for (String simpleName : names) {
+                List<TypeNameMatch> matches = types.get(simpleName);
+                if (matches == null) {
+                    continue;
+                }
+                for (int i = matches.size() - 1; i >= 0; i--) {
+                    if (unit.equals(matches.get(i).getType().getCompilationUnit())) {
+                        matches.remove(i);
+                    }
+                }
+                if (matches.isEmpty()) {
+                    types.remove(simpleName);
+                }
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
+// GROOVY PATCHED
 package org.eclipse.jdt.internal.core.search.indexing;
 
 import org.eclipse.jdt.core.Signature;
@@ -177,6 +178,17 @@ public abstract class AbstractIndexer implements IIndexConstants {
 	public void addMethodReference(char[] methodName, int argCount) {
 		addIndexEntry(METHOD_REF, MethodPattern.createIndexKey(methodName, argCount));
 	}
+	// GROOVY start
+	/**
+	 * Method references from groovy files are encoded as selector '/' Arity, or as selector '/'
+	 * when the number of arguments is not known, e.g. with spread arguments
+	 */
+	public void addGroovyMethodReference(char[] methodName, int argCount) {
+		addIndexEntry(GROOVY_METHOD_REF, argCount < 0
+			? CharOperation.append(methodName, SEPARATOR)
+			: MethodPattern.createIndexKey(methodName, argCount));
+	}
+	// GROOVY end
 	public void addNameReference(char[] name) {
 		addIndexEntry(REF, name);
 	}
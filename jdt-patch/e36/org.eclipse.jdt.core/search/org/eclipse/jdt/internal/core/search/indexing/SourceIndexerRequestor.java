@@ -8,6 +8,7 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
+// GROOVY PATCHED
 package org.eclipse.jdt.internal.core.search.indexing;
 
 import org.eclipse.jdt.core.Signature;
@@ -91,6 +92,15 @@ public void acceptLineSeparatorPositions(int[] positions) {
 public void acceptMethodReference(char[] methodName, int argCount, int sourcePosition) {
 	this.indexer.addMethodReference(methodName, argCount);
 }
+// GROOVY start
+/**
+ * Reports a method call made from a groovy file
+ * @param argCount the number of arguments, or -1 if it is not known
+ */
+public void acceptGroovyMethodReference(char[] methodName, int argCount) {
+	this.indexer.addGroovyMethodReference(methodName, argCount);
+}
+// GROOVY end
 /**
  * @see ISourceElementRequestor#acceptPackage(ImportReference)
  */
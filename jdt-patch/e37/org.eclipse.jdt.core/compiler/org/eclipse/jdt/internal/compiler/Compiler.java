@@ -750,6 +750,10 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		if (!this.useSingleThread && maxUnits >= ReadManager.THRESHOLD)
 			this.parser.readManager = new ReadManager(sourceUnits, maxUnits);
 
+		// GROOVY start: groovy files are parsed together, so let the parser know what is coming
+		this.parser.beginParsing(sourceUnits, maxUnits);
+		// GROOVY end
+
 		// Switch the current policy and compilation result for this unit to the requested one.
 		for (int i = 0; i < maxUnits; i++) {
 			try {
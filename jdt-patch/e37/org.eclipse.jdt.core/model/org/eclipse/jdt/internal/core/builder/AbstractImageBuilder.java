@@ -90,6 +90,10 @@ protected boolean keepStoringProblemMarkers;
 protected SimpleSet filesWithAnnotations = null;
 
 public static int MAX_AT_ONCE = 2000; // best compromise between space used and speed
+// GROOVY start
+// the number of files compiled at once in groovy projects, 0 to compile them all at once
+public static int GROOVY_MAX_AT_ONCE = Integer.getInteger("greclipse.build.chunkSize", 0).intValue(); //$NON-NLS-1$
+// GROOVY end
 public final static String[] JAVA_PROBLEM_MARKER_ATTRIBUTE_NAMES = {
 	IMarker.MESSAGE,
 	IMarker.SEVERITY,
@@ -337,15 +341,17 @@ protected void compile(SourceFile[] units) {
 	}
 
 	int unitsLength = units.length;
+	/* GROOVY start
 	this.compiledAllAtOnce = unitsLength <= MAX_AT_ONCE;
-
-	// GROOVY start
-	// currently can't easily fault in files from the other group.  Easier to
-	// do this than fix that right now.
+	*/
+	int maxAtOnce = MAX_AT_ONCE;
 	if (this.compiler!=null && this.compiler.options!=null && this.compiler.options.buildGroovyFiles==2) {
-		// System.out.println("although more than "+MAX_AT_ONCE+" still compiling "+unitsLength+" files at once");
-		this.compiledAllAtOnce = true;
+		// groovy files faulted in from a later group are compiled on their own, see GroovyParser.dietParse, and
+		// groovy types other than the primary one are found by NameEnvironment.findGroovyAdditionalType.  Compiling
+		// everything at once remains the default as it avoids compiling some files twice.
+		maxAtOnce = GROOVY_MAX_AT_ONCE > 0 ? GROOVY_MAX_AT_ONCE : Integer.MAX_VALUE;
 	}
+	this.compiledAllAtOnce = unitsLength <= maxAtOnce;
 	// GROOVY end
 	if (this.compiledAllAtOnce) {
 		// do them all now
@@ -356,7 +362,12 @@ protected void compile(SourceFile[] units) {
 	} else {
 		SourceFile[] remainingUnits = new SourceFile[unitsLength]; // copy of units, removing units when about to compile
 		System.arraycopy(units, 0, remainingUnits, 0, unitsLength);
+		// GROOVY start
+		/* old {
 		int doNow = unitsLength < MAX_AT_ONCE ? unitsLength : MAX_AT_ONCE;
+		} new */
+		int doNow = unitsLength < maxAtOnce ? unitsLength : maxAtOnce;
+		// GROOVY end
 		SourceFile[] toCompile = new SourceFile[doNow];
 		int remainingIndex = 0;
 		boolean compilingFirstGroup = true;
@@ -8,6 +8,7 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
+// GROOVY PATCHED
 package org.eclipse.jdt.internal.core.index;
 
 import java.io.*;
@@ -46,7 +47,12 @@ private int bufferIndex, bufferEnd; // used when reading from the file into the
 private int streamEnd; // used when writing data from the streamBuffer to the file
 char separator = Index.DEFAULT_SEPARATOR;
 
+/* GROOVY start
 public static final String SIGNATURE= "INDEX VERSION 1.126"; //$NON-NLS-1$
+*/
+// indexes written before groovy method references had their own category are rebuilt
+public static final String SIGNATURE= "INDEX VERSION 1.126 GROOVY 1"; //$NON-NLS-1$
+// GROOVY end
 private static final char[] SIGNATURE_CHARS = SIGNATURE.toCharArray();
 public static boolean DEBUG = false;
 
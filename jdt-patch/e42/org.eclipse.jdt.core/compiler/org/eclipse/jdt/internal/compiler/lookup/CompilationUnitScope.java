@@ -825,6 +825,9 @@ void recordSuperTypeReference(TypeBinding type) {
 public void recordTypeConversion(TypeBinding superType, TypeBinding subType) {
 	recordSuperTypeReference(subType); // must record the hierarchy of the subType that is converted to the superType
 }
+// GROOVY start: visible
+public
+// GROOVY end
 void recordTypeReference(TypeBinding type) {
 	if (this.referencedTypes == null) return; // not recording dependencies
 
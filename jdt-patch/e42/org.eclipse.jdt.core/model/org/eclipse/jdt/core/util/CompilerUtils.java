@@ -2,6 +2,7 @@ package org.eclipse.jdt.core.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -13,9 +14,19 @@ import java.util.Set;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
@@ -31,6 +42,125 @@ public class CompilerUtils {
 
 	public static final int IsGrails = 0x0001;
 
+	private static final String GROOVY_PROPERTIES = "groovy.properties"; //$NON-NLS-1$
+
+	/**
+	 * Remembers, per project, the result of calculateClasspath() and of reading groovy.properties since both are needed on
+	 * every reconcile.  A cached classpath is only used if the resolved classpath and output location it was computed from
+	 * are unchanged, and the whole cache is discarded when a java element delta reports a classpath change anywhere (a
+	 * project's result includes entries re-exported by the projects it depends on).  The groovy.properties settings for a
+	 * project are discarded when that file changes.
+	 */
+	private static class GroovyClasspathCache implements IElementChangedListener, IResourceChangeListener {
+
+		private static class CachedClasspath {
+			final IClasspathEntry[] resolvedClasspath;
+			final IPath outputLocation;
+			final String classpath;
+
+			CachedClasspath(IClasspathEntry[] resolvedClasspath, IPath outputLocation, String classpath) {
+				this.resolvedClasspath = resolvedClasspath;
+				this.outputLocation = outputLocation;
+				this.classpath = classpath;
+			}
+		}
+
+		// project name > CachedClasspath
+		private final Map classpaths = new HashMap();
+
+		// project name > Map of the options read from groovy.properties
+		private final Map properties = new HashMap();
+
+		synchronized String getClasspath(String projectName, IClasspathEntry[] resolvedClasspath, IPath outputLocation) {
+			CachedClasspath cached = (CachedClasspath) this.classpaths.get(projectName);
+			if (cached != null && Arrays.equals(cached.resolvedClasspath, resolvedClasspath)
+					&& (cached.outputLocation == null ? outputLocation == null : cached.outputLocation.equals(outputLocation))) {
+				return cached.classpath;
+			}
+			return null;
+		}
+
+		synchronized void putClasspath(String projectName, IClasspathEntry[] resolvedClasspath, IPath outputLocation, String classpath) {
+			this.classpaths.put(projectName, new CachedClasspath(resolvedClasspath, outputLocation, classpath));
+		}
+
+		synchronized Map getProperties(String projectName) {
+			return (Map) this.properties.get(projectName);
+		}
+
+		synchronized void putProperties(String projectName, Map options) {
+			this.properties.put(projectName, options);
+		}
+
+		synchronized void clear() {
+			this.classpaths.clear();
+			// groovy.properties may refer to %projclasspath%
+			this.properties.clear();
+		}
+
+		synchronized void clear(String projectName) {
+			this.classpaths.remove(projectName);
+			this.properties.remove(projectName);
+		}
+
+		public void elementChanged(ElementChangedEvent event) {
+			if (affectsClasspath(event.getDelta())) {
+				clear();
+			}
+		}
+
+		private boolean affectsClasspath(IJavaElementDelta delta) {
+			int flags = delta.getFlags();
+			if ((flags & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+				return true;
+			}
+			int elementType = delta.getElement().getElementType();
+			if (elementType == IJavaElement.JAVA_PROJECT) {
+				return delta.getKind() != IJavaElementDelta.CHANGED
+						|| (flags & (IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED)) != 0;
+			}
+			if (elementType == IJavaElement.JAVA_MODEL) {
+				IJavaElementDelta[] children = delta.getAffectedChildren();
+				for (int i = 0; i < children.length; i++) {
+					if (affectsClasspath(children[i])) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		public void resourceChanged(IResourceChangeEvent event) {
+			IResourceDelta delta = event.getDelta();
+			if (delta == null) {
+				return;
+			}
+			IResourceDelta[] projectDeltas = delta.getAffectedChildren();
+			for (int i = 0; i < projectDeltas.length; i++) {
+				IResourceDelta projectDelta = projectDeltas[i];
+				IResource project = projectDelta.getResource();
+				if (projectDelta.getKind() != IResourceDelta.CHANGED || (projectDelta.getFlags() & IResourceDelta.OPEN) != 0) {
+					clear(project.getName());
+				} else if (projectDelta.findMember(new Path(GROOVY_PROPERTIES)) != null) {
+					synchronized (this) {
+						this.properties.remove(project.getName());
+					}
+				}
+			}
+		}
+	}
+
+	private static GroovyClasspathCache classpathCache;
+
+	private static synchronized GroovyClasspathCache getClasspathCache() {
+		if (classpathCache == null) {
+			classpathCache = new GroovyClasspathCache();
+			JavaCore.addElementChangedListener(classpathCache, ElementChangedEvent.POST_CHANGE);
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(classpathCache, IResourceChangeEvent.POST_CHANGE);
+		}
+		return classpathCache;
+	}
+
 	
 	/**
 	 * Configure a real compiler options object based on the project.  If anything goes wrong it will configure the options to just build java.
@@ -122,30 +252,19 @@ public class CompilerUtils {
 	}
 	
 	public static void setGroovyClasspath(Map optionMap, IJavaProject javaProject) {
-		IFile file = javaProject.getProject().getFile("groovy.properties"); //$NON-NLS-1$
+		String projectName = javaProject.getProject().getName();
+		IFile file = javaProject.getProject().getFile(GROOVY_PROPERTIES);
 		if (file.exists()) {
-			try {
-				PropertyResourceBundle prb = new PropertyResourceBundle(file.getContents());
-				Enumeration e = prb.getKeys();
-				// System.err.println("Loading groovy settings for project '"+project.getName()+"'");
-				while (e.hasMoreElements()) {
-					String k = (String)e.nextElement();
-					String v = (String)prb.getObject(k);
-					v = fixup(v,javaProject);
-					// System.out.println(k+"="+v);
-					if (k.equals(CompilerOptions.OPTIONG_GroovyClassLoaderPath)) {
-						optionMap.put(CompilerOptions.OPTIONG_GroovyClassLoaderPath,v);
-					}
+			GroovyClasspathCache cache = getClasspathCache();
+			Map propertiesOptions = cache.getProperties(projectName);
+			if (propertiesOptions == null) {
+				propertiesOptions = loadGroovyProperties(file, javaProject);
+				if (propertiesOptions != null) {
+					cache.putProperties(projectName, propertiesOptions);
 				}
-			} catch (IOException ioe) {
-				System.err.println("Problem configuring groovy classloader classpath"); //$NON-NLS-1$
-				ioe.printStackTrace();
-			} catch (CoreException ce) {
-				System.err.println("Problem configuring groovy classloader classpath"); //$NON-NLS-1$
-				ce.printStackTrace();
-			} catch (Throwable t) {
-				System.err.println("Problem configuring groovy classloader classpath"); //$NON-NLS-1$
-				t.printStackTrace();
+			}
+			if (propertiesOptions != null) {
+				optionMap.putAll(propertiesOptions);
 			}
 		} else {
 			try {
@@ -156,7 +275,39 @@ public class CompilerUtils {
 				t.printStackTrace();				
 			}
 		}
-		optionMap.put(CompilerOptions.OPTIONG_GroovyProjectName,javaProject.getProject().getName());
+		optionMap.put(CompilerOptions.OPTIONG_GroovyProjectName,projectName);
+	}
+
+	/**
+	 * @return the options configured by the groovy.properties file, or null if it could not be read
+	 */
+	private static Map loadGroovyProperties(IFile file, IJavaProject javaProject) {
+		try {
+			Map propertiesOptions = new HashMap();
+			PropertyResourceBundle prb = new PropertyResourceBundle(file.getContents());
+			Enumeration e = prb.getKeys();
+			// System.err.println("Loading groovy settings for project '"+project.getName()+"'");
+			while (e.hasMoreElements()) {
+				String k = (String)e.nextElement();
+				String v = (String)prb.getObject(k);
+				v = fixup(v,javaProject);
+				// System.out.println(k+"="+v);
+				if (k.equals(CompilerOptions.OPTIONG_GroovyClassLoaderPath)) {
+					propertiesOptions.put(CompilerOptions.OPTIONG_GroovyClassLoaderPath,v);
+				}
+			}
+			return propertiesOptions;
+		} catch (IOException ioe) {
+			System.err.println("Problem configuring groovy classloader classpath"); //$NON-NLS-1$
+			ioe.printStackTrace();
+		} catch (CoreException ce) {
+			System.err.println("Problem configuring groovy classloader classpath"); //$NON-NLS-1$
+			ce.printStackTrace();
+		} catch (Throwable t) {
+			System.err.println("Problem configuring groovy classloader classpath"); //$NON-NLS-1$
+			t.printStackTrace();
+		}
+		return null;
 	}
 
 		
@@ -210,6 +361,14 @@ public class CompilerUtils {
 			String defaultOutputLocation = pathToString(defaultOutputPath,project);
 
 			IClasspathEntry[] cpes = javaProject.getResolvedClasspath(true);
+			// GROOVY start
+			// the result only depends on the resolved classpath and the output location, reuse it while they are unchanged
+			GroovyClasspathCache cache = getClasspathCache();
+			String cached = cache.getClasspath(projectName, cpes, defaultOutputPath);
+			if (cached != null) {
+				return cached;
+			}
+			// GROOVY end
 			if (cpes!=null) {
 				for (int i=0,max=cpes.length;i<max;i++) {
 					IClasspathEntry cpe = cpes[i];
@@ -264,6 +423,9 @@ public class CompilerUtils {
 				}
 				String classpath = sb.toString();
 //				System.out.println("Project classpath for '"+projectName+"' is "+classpath);
+				// GROOVY start
+				cache.putClasspath(projectName, cpes, defaultOutputPath, classpath);
+				// GROOVY end
 				return classpath;
 			}
 		} catch (JavaModelException jme) {
@@ -8,8 +8,9 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
-package org.eclipse.jdt.internal.core.builder;
+package org.eclipse.jdt.internal.core.builder; // GROOVY PATCHED
 
+import org.codehaus.jdt.groovy.integration.LanguageSupportFactory;
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
 
@@ -34,6 +35,12 @@ BuildNotifier notifier;
 
 SimpleSet initialTypeNames; // assumed that each name is of the form "a/b/ClassName"
 SimpleLookupTable additionalUnits;
+// GROOVY start
+// the top level types declared by the groovy files waiting to be compiled, computed when first needed
+SimpleLookupTable groovyAdditionalTypes;
+// the types declared by each groovy file, kept for the whole build as the files wait through several batches
+SimpleLookupTable groovyDeclaredTypes;
+// GROOVY end
 
 NameEnvironment(IWorkspaceRoot root, JavaProject javaProject, SimpleLookupTable binaryLocationsPerProject, BuildNotifier notifier) throws CoreException {
 	this.isIncrementalBuild = false;
@@ -238,6 +245,10 @@ private void computeClasspathLocations(
 public void cleanup() {
 	this.initialTypeNames = null;
 	this.additionalUnits = null;
+	// GROOVY start
+	this.groovyAdditionalTypes = null;
+	this.groovyDeclaredTypes = null;
+	// GROOVY end
 	for (int i = 0, l = this.sourceLocations.length; i < l; i++)
 		this.sourceLocations[i].cleanup();
 	for (int i = 0, l = this.binaryLocations.length; i < l; i++)
@@ -274,6 +285,13 @@ private NameEnvironmentAnswer findClass(String qualifiedTypeName, char[] typeNam
 		SourceFile unit = (SourceFile) this.additionalUnits.get(qualifiedTypeName); // doesn't have file extension
 		if (unit != null)
 			return new NameEnvironmentAnswer(unit, null /*no access restriction*/);
+		// GROOVY start
+		// a groovy file may declare any number of types, whatever their names. If the file declaring the type is compiled in
+		// a later batch, it must be faulted in, like a java file declaring a primary type.
+		unit = findGroovyAdditionalType(qualifiedTypeName);
+		if (unit != null)
+			return new NameEnvironmentAnswer(unit, null /*no access restriction*/);
+		// GROOVY end
 	}
 
 	String qBinaryFileName = qualifiedTypeName + SUFFIX_STRING_class;
@@ -332,6 +350,51 @@ public boolean isPackage(String qualifiedPackageName) {
 	return false;
 }
 
+// GROOVY start
+private SourceFile findGroovyAdditionalType(String qualifiedTypeName) {
+	if (this.groovyAdditionalTypes == null) {
+		this.groovyAdditionalTypes = new SimpleLookupTable();
+		if (this.groovyDeclaredTypes == null)
+			this.groovyDeclaredTypes = new SimpleLookupTable();
+		Object[] units = this.additionalUnits.valueTable;
+		for (int i = 0, l = units.length; i < l; i++) {
+			SourceFile unit = (SourceFile) units[i];
+			if (unit == null || !LanguageSupportFactory.isInterestingSourceFile(unit.resource.getName()))
+				continue;
+			String[] typeNames = (String[]) this.groovyDeclaredTypes.get(unit);
+			if (typeNames == null) {
+				typeNames = findGroovyTypeNames(unit);
+				this.groovyDeclaredTypes.put(unit, typeNames);
+			}
+			for (int j = 0; j < typeNames.length; j++)
+				if (!this.groovyAdditionalTypes.containsKey(typeNames[j]))
+					this.groovyAdditionalTypes.put(typeNames[j], unit);
+		}
+	}
+	return (SourceFile) this.groovyAdditionalTypes.get(qualifiedTypeName);
+}
+
+/**
+ * Answers the names, such as "a/b/C", of the top level types declared in the groovy file. The java model builds the structure
+ * of a groovy file with the groovy parser, so any syntax it accepts is understood and files open in an editor are not parsed
+ * again. The compiler has the last word, this only tells which file to fault in.
+ */
+private static String[] findGroovyTypeNames(SourceFile unit) {
+	org.eclipse.jdt.core.ICompilationUnit compilationUnit = JavaCore.createCompilationUnitFrom(unit.resource);
+	if (compilationUnit == null)
+		return new String[0];
+	try {
+		IType[] types = compilationUnit.getTypes();
+		String[] names = new String[types.length];
+		for (int i = 0, l = types.length; i < l; i++)
+			names[i] = types[i].getFullyQualifiedName().replace('.', '/');
+		return names;
+	} catch (JavaModelException e) {
+		return new String[0]; // cannot read it, the compiler will report that when it gets to it
+	}
+}
+// GROOVY end
+
 void setNames(String[] typeNames, SourceFile[] additionalFiles) {
 	// convert the initial typeNames to a set
 	if (typeNames == null) {
@@ -342,6 +405,9 @@ void setNames(String[] typeNames, SourceFile[] additionalFiles) {
 			this.initialTypeNames.add(typeNames[i]);
 	}
 	// map the additional source files by qualified type name
+	// GROOVY start
+	this.groovyAdditionalTypes = null;
+	// GROOVY end
 	if (additionalFiles == null) {
 		this.additionalUnits = null;
 	} else {
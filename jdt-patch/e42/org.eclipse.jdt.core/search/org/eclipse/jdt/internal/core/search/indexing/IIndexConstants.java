@@ -8,6 +8,7 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
+// GROOVY PATCHED
 package org.eclipse.jdt.internal.core.search.indexing;
 
 import org.eclipse.jdt.core.search.IJavaSearchConstants;
@@ -18,6 +19,10 @@ public interface IIndexConstants {
 	char[] REF= "ref".toCharArray(); //$NON-NLS-1$
 	char[] ANNOTATION_REF= "annotationRef".toCharArray(); //$NON-NLS-1$
 	char[] METHOD_REF= "methodRef".toCharArray(); //$NON-NLS-1$
+	// GROOVY start
+	// method references from groovy files, which may match methods declared with another number of parameters
+	char[] GROOVY_METHOD_REF= "groovyMethodRef".toCharArray(); //$NON-NLS-1$
+	// GROOVY end
 	char[] CONSTRUCTOR_REF= "constructorRef".toCharArray(); //$NON-NLS-1$
 	char[] SUPER_REF = "superRef".toCharArray(); //$NON-NLS-1$
 	char[] TYPE_DECL = "typeDecl".toCharArray(); //$NON-NLS-1$
@@ -8,6 +8,7 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
+// GROOVY PATCHED
 package org.eclipse.jdt.internal.core.search.matching;
 
 import java.io.IOException;
@@ -50,6 +51,12 @@ char[][] methodArguments;
 protected static char[][] REF_CATEGORIES = { METHOD_REF };
 protected static char[][] REF_AND_DECL_CATEGORIES = { METHOD_REF, METHOD_DECL };
 protected static char[][] DECL_CATEGORIES = { METHOD_DECL };
+// GROOVY start
+protected static char[][] GROOVY_REF_CATEGORIES = { GROOVY_METHOD_REF };
+
+// the numbers of parameters of the other methods of the declaring type with the same name, computed when first needed
+private int[] overloadParameterCounts;
+// GROOVY end
 
 public final static int FINE_GRAIN_MASK =
 	IJavaSearchConstants.SUPER_REFERENCE |
@@ -346,8 +353,95 @@ public EntryResult[] queryIn(Index index) throws IOException {
 			break;
 	}
 
+	// GROOVY start
+	/* old {
 	return index.query(getIndexCategories(), key, matchRule); // match rule is irrelevant when the key is null
+	} new */
+	EntryResult[] results = index.query(getIndexCategories(), key, matchRule); // match rule is irrelevant when the key is null
+	if (!this.findReferences)
+		return results;
+	EntryResult[] groovyResults = queryGroovyReferencesIn(index);
+	if (results == null)
+		return groovyResults;
+	if (groovyResults == null)
+		return results;
+	int length = results.length;
+	System.arraycopy(results, 0, results = new EntryResult[length + groovyResults.length], 0, length);
+	System.arraycopy(groovyResults, 0, results, length, groovyResults.length);
+	return results;
+	// GROOVY end
+}
+// GROOVY start
+/**
+ * Groovy method references are matched like the groovy search requestor does: a call with a different number of
+ * arguments still matches if it has fewer arguments, as the method may have default values for its last parameters,
+ * or if the declaring type has no other method with that many parameters.  Calls whose number of arguments is not
+ * known always match.  The accepted references are answered as if they had the number of parameters of the pattern.
+ */
+private EntryResult[] queryGroovyReferencesIn(Index index) throws IOException {
+	char[] key = this.selector; // can be null
+	int matchRule = getMatchRule();
+	switch(getMatchMode()) {
+		case R_EXACT_MATCH :
+			// do a prefix query with the selector and the separator
+			if (this.selector != null)
+				key = CharOperation.append(this.selector, SEPARATOR);
+			matchRule &= ~R_EXACT_MATCH;
+			matchRule |= R_PREFIX_MATCH;
+			break;
+		case R_PATTERN_MATCH :
+			if (this.selector != null && this.selector[this.selector.length - 1] != '*')
+				key = CharOperation.concat(this.selector, ONE_STAR, SEPARATOR);
+			break;
+	}
+	EntryResult[] results = index.query(GROOVY_REF_CATEGORIES, key, matchRule);
+	if (results == null || this.parameterCount < 0 || this.varargs)
+		return results; // the number of arguments does not matter
+	int count = 0;
+	for (int i = 0, length = results.length; i < length; i++) {
+		char[] word = results[i].getWord();
+		int separator = CharOperation.lastIndexOf(SEPARATOR, word);
+		int argCount = separator == word.length - 1 ? -1 : Integer.parseInt(new String(word, separator + 1, word.length - separator - 1));
+		if (argCount == this.parameterCount) {
+			results[count++] = results[i];
+		} else if (argCount < this.parameterCount || !isOverloadParameterCount(argCount)) {
+			EntryResult result = new EntryResult(createIndexKey(CharOperation.subarray(word, 0, separator), this.parameterCount), null);
+			String[] documentNames = results[i].getDocumentNames(index);
+			for (int j = 0; j < documentNames.length; j++)
+				result.addDocumentName(documentNames[j]);
+			results[count++] = result;
+		}
+	}
+	if (count < results.length)
+		System.arraycopy(results, 0, results = new EntryResult[count], 0, count);
+	return results;
+}
+private boolean isOverloadParameterCount(int argCount) {
+	if (this.overloadParameterCounts == null) {
+		int[] counts = new int[0];
+		if (this.declaringType != null && this.selector != null) {
+			try {
+				IMethod[] methods = this.declaringType.getMethods();
+				String name = new String(this.selector);
+				for (int i = 0; i < methods.length; i++) {
+					if (methods[i].getElementName().equals(name)) {
+						int length = counts.length;
+						System.arraycopy(counts, 0, counts = new int[length + 1], 0, length);
+						counts[length] = methods[i].getNumberOfParameters();
+					}
+				}
+			} catch (JavaModelException e) {
+				// then no overload is known
+			}
+		}
+		this.overloadParameterCounts = counts;
+	}
+	for (int i = 0; i < this.overloadParameterCounts.length; i++)
+		if (this.overloadParameterCounts[i] == argCount)
+			return true;
+	return false;
 }
+// GROOVY end
 protected StringBuffer print(StringBuffer output) {
 	if (this.findDeclarations) {
 		output.append(this.findReferences